@@ -0,0 +1,128 @@
+package home.automation.benchmark;
+
+import home.automation.HomeAutomation;
+import home.automation.configuration.CityPowerInputConfiguration;
+import home.automation.configuration.TemperatureSensorsBoardsConfiguration;
+import home.automation.enums.TemperatureSensor;
+import home.automation.service.BotService;
+import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.AopTestUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static home.automation.configuration.TemperatureSensorsBoardsConfiguration.FIRST_BOARD_NAME;
+
+/**
+ * Контекст приложения для бенчмарков: те же свойства, что и в тестах, но вместо моков шина в памяти и бот без
+ * отправки сообщений. Задачи по расписанию в профиле test не запускаются, поэтому замеряется только вызываемый
+ * бенчмарком код
+ */
+public class BenchmarkContext {
+    /* 21.5 градуса на всех датчиках и регистрах по умолчанию */
+    public static final int DEFAULT_REGISTER_VALUE = 215;
+    /* -11.2 градуса в дополнительном коде платы R4DCB08 */
+    public static final int OUTSIDE_TEMPERATURE_REGISTER_VALUE = Integer.parseInt("FF90", 16);
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param properties свойства бенчмарка в виде ключ=значение, перекрывают application.yml
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        InMemoryModbusService modbusService = new InMemoryModbusService(DEFAULT_REGISTER_VALUE);
+        BotService botService = message -> {
+        };
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HomeAutomation.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .initializers(applicationContext -> applicationContext.addBeanFactoryPostProcessor(
+                        new StubBeansPostProcessor(modbusService, botService)))
+                .run(Stream.concat(Stream.of(
+                        "bot.name=no_data",
+                        "bot.token=no_data",
+                        "bot.validUserIds=0",
+                        "bot.chatIds=0",
+                        "streetLight.latitude=55.7522",
+                        "streetLight.longitude=37.6156",
+                        "coilState.maxAge=PT0S",
+                        "history.persistence.enabled=false",
+                        "logging.level.root=warn",
+                        "logging.level.home.automation=error"
+                ), Arrays.stream(properties)).map(property -> "--" + property).toArray(String[]::new));
+
+        int boardAddress = context.getBean(TemperatureSensorsBoardsConfiguration.class)
+                .getAddressByName(FIRST_BOARD_NAME);
+        modbusService.setHoldingRegister(boardAddress, TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId(),
+                OUTSIDE_TEMPERATURE_REGISTER_VALUE);
+        CityPowerInputConfiguration cityPowerInputConfiguration = context.getBean(CityPowerInputConfiguration.class);
+        modbusService.setDiscreteInput(cityPowerInputConfiguration.getAddress(),
+                cityPowerInputConfiguration.getDiscreteInput(), true);
+        return context;
+    }
+
+    /**
+     * Один цикл центрального опроса, после него сервисы читают значения из снимка, как и в работающем приложении
+     */
+    public static void pollPlantState(ConfigurableApplicationContext context) {
+        try {
+            privateMethod(getTarget(context, PlantStateService.class), "poll", void.class).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Не удалось выполнить цикл опроса устройств", e);
+        }
+    }
+
+    public static InMemoryModbusService getModbusService(ConfigurableApplicationContext context) {
+        return (InMemoryModbusService) context.getBean(ModbusService.class);
+    }
+
+    /**
+     * Бин сервиса без прокси, чтобы замерять сам сервис
+     */
+    public static <T> T getTarget(ConfigurableApplicationContext context, Class<T> type) {
+        return AopTestUtils.getUltimateTargetObject(context.getBean(type));
+    }
+
+    /**
+     * Доступ к приватному методу сервиса без накладных расходов рефлексии на каждом вызове
+     */
+    public static MethodHandle privateMethod(Object target, String name, Class<?> returnType,
+                                             Class<?>... parameterTypes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(target.getClass(), MethodHandles.lookup());
+            return lookup.findVirtual(target.getClass(), name, MethodType.methodType(returnType, parameterTypes))
+                    .bindTo(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не найден метод " + name + " в " + target.getClass().getName(), e);
+        }
+    }
+
+    /* сервисы шины и бота из приложения подменяются до создания бинов, поэтому к шлюзу и telegram никто не
+    подключается */
+    private record StubBeansPostProcessor(ModbusService modbusService, BotService botService)
+            implements BeanFactoryPostProcessor {
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            replace(beanFactory, ModbusService.class, modbusService);
+            replace(beanFactory, BotService.class, botService);
+        }
+
+        private static <T> void replace(ConfigurableListableBeanFactory beanFactory, Class<T> type, T stub) {
+            for (String name : beanFactory.getBeanNamesForType(type, true, false)) {
+                ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition(name);
+                beanFactory.registerSingleton(name, stub);
+            }
+        }
+    }
+}
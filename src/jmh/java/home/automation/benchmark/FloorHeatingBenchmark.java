@@ -0,0 +1,106 @@
+package home.automation.benchmark;
+
+import home.automation.configuration.TemperatureSensorsBoardsConfiguration;
+import home.automation.enums.TemperatureSensor;
+import home.automation.service.FloorHeatingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static home.automation.configuration.TemperatureSensorsBoardsConfiguration.FIRST_BOARD_NAME;
+
+/**
+ * Расчет положения клапана подмеса: целевой процент по температурам, фактический процент по температурам и
+ * пересчет процента в напряжение ЦАП и обратно с коррекцией
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FloorHeatingBenchmark {
+    private static final float DIRECT_BEFORE_MIXING_TEMPERATURE = 55F;
+    private static final float DIRECT_AFTER_MIXING_TEMPERATURE = 33F;
+    private static final float RETURN_TEMPERATURE = 28F;
+    private static final float TARGET_DIRECT_TEMPERATURE = 35F;
+
+    private ConfigurableApplicationContext context;
+    private Function<TemperatureSensor, Float> temperatures;
+    private MethodHandle calculateTargetValvePercent;
+    private MethodHandle getEffectiveValvePercent;
+    private MethodHandle getPercentFromVoltage;
+    private MethodHandle getVoltageFromPercent;
+    private int percent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("plantState.maxAge=P1D");
+        int boardAddress = context.getBean(TemperatureSensorsBoardsConfiguration.class)
+                .getAddressByName(FIRST_BOARD_NAME);
+        InMemoryModbusService modbusService = BenchmarkContext.getModbusService(context);
+        modbusService.setHoldingRegister(boardAddress,
+                TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_BEFORE_MIXING.getRegisterId(),
+                Math.round(DIRECT_BEFORE_MIXING_TEMPERATURE * 10));
+        modbusService.setHoldingRegister(boardAddress,
+                TemperatureSensor.WATER_RETURN_FLOOR_TEMPERATURE.getRegisterId(),
+                Math.round(RETURN_TEMPERATURE * 10));
+        /* целевой процент считается по температурам из снимка, как и в задаче управления */
+        BenchmarkContext.pollPlantState(context);
+
+        Map<TemperatureSensor, Float> values = new EnumMap<>(TemperatureSensor.class);
+        values.put(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_BEFORE_MIXING, DIRECT_BEFORE_MIXING_TEMPERATURE);
+        values.put(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_AFTER_MIXING, DIRECT_AFTER_MIXING_TEMPERATURE);
+        values.put(TemperatureSensor.WATER_RETURN_FLOOR_TEMPERATURE, RETURN_TEMPERATURE);
+        temperatures = values::get;
+
+        FloorHeatingService floorHeatingService = BenchmarkContext.getTarget(context, FloorHeatingService.class);
+        calculateTargetValvePercent = BenchmarkContext.privateMethod(floorHeatingService,
+                "calculateTargetValvePercentByTemperatureBeforeMixing", Integer.class, float.class);
+        getEffectiveValvePercent = BenchmarkContext.privateMethod(floorHeatingService,
+                "getEffectiveValvePercent", Integer.class, Function.class);
+        getPercentFromVoltage = BenchmarkContext.privateMethod(floorHeatingService,
+                "getPercentFromVoltageInVWithCorrection", int.class, float.class);
+        getVoltageFromPercent = BenchmarkContext.privateMethod(floorHeatingService,
+                "getVoltageInVFromPercentWithCorrection", float.class, int.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Integer calculateTargetValvePercent() throws Throwable {
+        return (Integer) calculateTargetValvePercent.invokeExact(TARGET_DIRECT_TEMPERATURE);
+    }
+
+    @Benchmark
+    public Integer getEffectiveValvePercent() throws Throwable {
+        return (Integer) getEffectiveValvePercent.invokeExact(temperatures);
+    }
+
+    /* процент перебирается по кругу, чтобы замер не сводился к одной точке шкалы */
+    @Benchmark
+    public int convertPercentToVoltageAndBack() throws Throwable {
+        percent = percent == 100 ? 1 : percent + 1;
+        float voltage = (float) getVoltageFromPercent.invokeExact(percent);
+        return (int) getPercentFromVoltage.invokeExact(voltage);
+    }
+}
@@ -0,0 +1,72 @@
+package home.automation.benchmark;
+
+import home.automation.enums.TemperatureSensor;
+import home.automation.service.GasBoilerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Расчет температур по климатической кривой. Температуры на улице взяты ниже кривой, на кривой и выше нее, чтобы
+ * пройти все ветки расчета
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GasBoilerBenchmark {
+    @Param({"-30", "-5", "15"})
+    float outsideTemperature;
+
+    private ConfigurableApplicationContext context;
+    private Function<TemperatureSensor, Float> temperatures;
+    private MethodHandle calculateTargetDirectTemperature;
+    private MethodHandle calculateMinReturnTemperature;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        GasBoilerService gasBoilerService = BenchmarkContext.getTarget(context, GasBoilerService.class);
+        Map<TemperatureSensor, Float> values = new EnumMap<>(TemperatureSensor.class);
+        values.put(TemperatureSensor.OUTSIDE_TEMPERATURE, outsideTemperature);
+        temperatures = values::get;
+        calculateTargetDirectTemperature = BenchmarkContext.privateMethod(gasBoilerService,
+                "calculateTargetDirectTemperature", Float.class, Function.class);
+        calculateMinReturnTemperature = BenchmarkContext.privateMethod(gasBoilerService,
+                "calculateMinReturnTemperature", float.class, Function.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Float calculateTargetDirectTemperature() throws Throwable {
+        return (Float) calculateTargetDirectTemperature.invokeExact(temperatures);
+    }
+
+    @Benchmark
+    public float calculateMinReturnTemperature() throws Throwable {
+        return (float) calculateMinReturnTemperature.invokeExact(temperatures);
+    }
+}
@@ -0,0 +1,53 @@
+package home.automation.benchmark;
+
+import home.automation.enums.SelfMonitoringStatus;
+import home.automation.service.HealthService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цикл селфмониторинга по свежему снимку опроса: проверки температур и накопленных событий об ошибках
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HealthBenchmark {
+    private ConfigurableApplicationContext context;
+    private MethodHandle calculateHealthStatus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("plantState.maxAge=P1D");
+        BenchmarkContext.pollPlantState(context);
+        HealthService healthService = BenchmarkContext.getTarget(context, HealthService.class);
+        calculateHealthStatus = BenchmarkContext.privateMethod(healthService, "calculateHealthStatus",
+                SelfMonitoringStatus.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SelfMonitoringStatus calculateHealthStatus() throws Throwable {
+        return (SelfMonitoringStatus) calculateHealthStatus.invokeExact();
+    }
+}
@@ -0,0 +1,136 @@
+package home.automation.benchmark;
+
+import home.automation.configuration.HistoryConfiguration;
+import home.automation.enums.GasBoilerStatus;
+import home.automation.enums.RollupResolution;
+import home.automation.enums.TemperatureSensor;
+import home.automation.model.RollupBucket;
+import home.automation.service.HistoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись и чтение истории. Размер 1440 - сутки опроса раз в минуту, 40320 - полный буфер ряда за весь срок хранения
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    private static final long MINUTE_MILLIS = 60_000L;
+    /* котел переключается между работой и простоем каждые 10 точек */
+    private static final int POINTS_PER_CYCLE = 10;
+
+    @Param({"1440", "40320"})
+    int points;
+
+    private ConfigurableApplicationContext context;
+    private HistoryService historyService;
+    private long step;
+    private long timestamp;
+    private int value;
+    private boolean works;
+    private Instant dayAgo;
+    private Instant retentionStart;
+    private Instant now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        historyService = BenchmarkContext.getTarget(context, HistoryService.class);
+        Duration retention = context.getBean(HistoryConfiguration.class).getRetention();
+
+        step = Math.min(MINUTE_MILLIS, retention.toMillis() / points);
+        timestamp = System.currentTimeMillis() - points * step;
+        for (int i = 0; i < points; i++) {
+            timestamp += step;
+            Instant ts = Instant.ofEpochMilli(timestamp);
+            for (TemperatureSensor sensor : TemperatureSensor.values()) {
+                historyService.putTemperatureToDailyHistory(sensor, nextTemperature(), ts);
+            }
+            if (i % POINTS_PER_CYCLE == 0) {
+                works = !works;
+            }
+            historyService.putGasBoilerStatusToDailyHistory(works ? GasBoilerStatus.WORKS : GasBoilerStatus.IDLE,
+                    ts);
+            historyService.putCalculatedTargetValvePercent(value % 100, ts);
+        }
+        now = Instant.ofEpochMilli(timestamp);
+        dayAgo = now.minus(Duration.ofDays(1));
+        retentionStart = now.minus(retention);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private float nextTemperature() {
+        value++;
+        return 20 + (value % 50) / 10F;
+    }
+
+    private Instant nextTimestamp() {
+        timestamp += step;
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+    @Benchmark
+    public void putTemperature() {
+        historyService.putTemperatureToDailyHistory(TemperatureSensor.OUTSIDE_TEMPERATURE, nextTemperature(),
+                nextTimestamp());
+    }
+
+    @Benchmark
+    public void putGasBoilerStatusChange() {
+        works = !works;
+        historyService.putGasBoilerStatusToDailyHistory(works ? GasBoilerStatus.WORKS : GasBoilerStatus.IDLE,
+                nextTimestamp());
+    }
+
+    @Benchmark
+    public void putCalculatedTargetValvePercent() {
+        historyService.putCalculatedTargetValvePercent(++value % 100, nextTimestamp());
+    }
+
+    @Benchmark
+    public String getGasBoilerFormattedStatusForLastDay() {
+        return historyService.getGasBoilerFormattedStatusForLastDay();
+    }
+
+    @Benchmark
+    public Integer getAverageCalculatedTargetValvePercent() {
+        return historyService.getAverageCalculatedTargetValvePercentForLastNValues();
+    }
+
+    @Benchmark
+    public List<RollupBucket> getTemperatureMinuteRollupForLastDay() {
+        return historyService.getTemperatureRollup(TemperatureSensor.OUTSIDE_TEMPERATURE, RollupResolution.MINUTE,
+                dayAgo, now);
+    }
+
+    @Benchmark
+    public List<RollupBucket> getTemperatureHourRollupForRetention() {
+        return historyService.getTemperatureRollup(TemperatureSensor.OUTSIDE_TEMPERATURE, RollupResolution.HOUR,
+                retentionStart, now);
+    }
+}
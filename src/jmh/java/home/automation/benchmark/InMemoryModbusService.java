@@ -0,0 +1,95 @@
+package home.automation.benchmark;
+
+import home.automation.service.ModbusService;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Шина в памяти для бенчмарков: регистры, катушки и входы хранятся в массивах по адресу устройства, запись сразу
+ * видна при чтении. Непрописанные регистры отдают значение по умолчанию, поэтому любое устройство отвечает
+ */
+public class InMemoryModbusService implements ModbusService {
+    private static final int REGISTERS_PER_DEVICE = 64;
+    private static final int COILS_PER_DEVICE = 8;
+    private final Map<Integer, int[]> holdingRegisters = new HashMap<>();
+    private final Map<Integer, boolean[]> coils = new HashMap<>();
+    private final Map<Integer, boolean[]> discreteInputs = new HashMap<>();
+    private final int defaultRegisterValue;
+
+    /**
+     * @param defaultRegisterValue значение непрописанных регистров
+     */
+    public InMemoryModbusService(int defaultRegisterValue) {
+        this.defaultRegisterValue = defaultRegisterValue;
+    }
+
+    public synchronized void setHoldingRegister(int address, int registerId, int value) {
+        registers(address)[registerId] = value;
+    }
+
+    public synchronized void setDiscreteInput(int address, int inputId, boolean value) {
+        discreteInputs.computeIfAbsent(address, key -> new boolean[COILS_PER_DEVICE])[inputId] = value;
+    }
+
+    private int[] registers(int address) {
+        return holdingRegisters.computeIfAbsent(address, key -> {
+            int[] values = new int[REGISTERS_PER_DEVICE];
+            Arrays.fill(values, defaultRegisterValue);
+            return values;
+        });
+    }
+
+    @Override
+    public synchronized boolean[] readAllDiscreteInputsFromZero(int address) {
+        return discreteInputs.computeIfAbsent(address, key -> new boolean[COILS_PER_DEVICE]).clone();
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readAllDiscreteInputsFromZeroAsync(int address) {
+        return CompletableFuture.completedFuture(readAllDiscreteInputsFromZero(address));
+    }
+
+    @Override
+    public synchronized boolean[] readAllCoilsFromZero(int address) {
+        return coils.computeIfAbsent(address, key -> new boolean[COILS_PER_DEVICE]).clone();
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readAllCoilsFromZeroAsync(int address) {
+        return CompletableFuture.completedFuture(readAllCoilsFromZero(address));
+    }
+
+    @Override
+    public synchronized void writeCoil(int address, int coilId, boolean value) {
+        coils.computeIfAbsent(address, key -> new boolean[COILS_PER_DEVICE])[coilId] = value;
+    }
+
+    @Override
+    public synchronized int readHoldingRegister(int address, int registerId) {
+        return registers(address)[registerId];
+    }
+
+    @Override
+    public synchronized int[] readHoldingRegisters(int address, int registerStartId, int quantity) {
+        return Arrays.copyOfRange(registers(address), registerStartId, registerStartId + quantity);
+    }
+
+    @Override
+    public CompletableFuture<int[]> readHoldingRegistersAsync(int address, int registerStartId, int quantity) {
+        return CompletableFuture.completedFuture(readHoldingRegisters(address, registerStartId, quantity));
+    }
+
+    @Override
+    public synchronized void writeHoldingRegister(int address, int registerId, int value) {
+        registers(address)[registerId] = value;
+    }
+
+    @Override
+    public Set<Integer> getUnavailableSlaves() {
+        return Set.of();
+    }
+}
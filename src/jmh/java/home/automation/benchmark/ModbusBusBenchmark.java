@@ -0,0 +1,92 @@
+package home.automation.benchmark;
+
+import home.automation.service.impl.ModbusServiceImpl;
+import home.automation.simulator.SimulatedPlant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static home.automation.simulator.SimulatedPlant.DAC_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.TEMPERATURE_BOARD_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.UNIVERSAL_SENSOR_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.VALVE_DAC_CHANNEL;
+
+/**
+ * Шина целиком: настоящий ModbusServiceImpl против симулятора шлюза со скоростью линии 9600. Цикл опроса - все
+ * запросы центрального опроса дома, отправленные сразу, время управления - одно синхронное чтение платы датчиков.
+ * С двумя шлюзами линии работают параллельно и цикл опроса короче
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModbusBusBenchmark {
+    private static final int[] RELAY_ADDRESSES = {2, 3, 4, 6};
+
+    @Param({"nio", "jlibmodbus"})
+    String transport;
+
+    /* пауза после кадра: 75 - настройка в доме, 20 - минимум автоподстройки */
+    @Param({"20", "75"})
+    int delay;
+
+    /* 2 - плата датчиков и реле 4 и 6 на линии второго шлюза */
+    @Param({"1", "2"})
+    int gateways;
+
+    private SimulatedPlant plant;
+    private ModbusServiceImpl modbusService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        plant = new SimulatedPlant(Duration.ofSeconds(52));
+        modbusService = gateways == 1
+                ? plant.createModbusService(transport, delay, Duration.ofSeconds(1), new SimpleMeterRegistry())
+                : plant.createShardedModbusService(transport, delay, Duration.ofSeconds(1),
+                Set.of(TEMPERATURE_BOARD_ADDRESS, 4, 6), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        modbusService.close();
+        plant.close();
+    }
+
+    @Benchmark
+    public Object pollCycle() {
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[RELAY_ADDRESSES.length * 2 + 3];
+        int i = 0;
+        reads[i++] = modbusService.readHoldingRegistersAsync(TEMPERATURE_BOARD_ADDRESS, 0, 8);
+        reads[i++] = modbusService.readHoldingRegistersAsync(UNIVERSAL_SENSOR_ADDRESS, 0, 3);
+        reads[i++] = modbusService.readHoldingRegistersAsync(DAC_ADDRESS, VALVE_DAC_CHANNEL, 1);
+        for (int address : RELAY_ADDRESSES) {
+            reads[i++] = modbusService.readAllCoilsFromZeroAsync(address);
+            reads[i++] = modbusService.readAllDiscreteInputsFromZeroAsync(address);
+        }
+        return CompletableFuture.allOf(reads).join();
+    }
+
+    @Benchmark
+    public int[] controlRead() throws Exception {
+        return modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8);
+    }
+}
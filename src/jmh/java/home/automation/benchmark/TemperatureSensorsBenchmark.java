@@ -0,0 +1,91 @@
+package home.automation.benchmark;
+
+import home.automation.enums.TemperatureSensor;
+import home.automation.model.TemperatureSensorsBoardData;
+import home.automation.service.TemperatureSensorsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раскодирование регистров платы R4DCB08 и чтение температуры сервисом: из шины без кэша и из снимка опроса
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemperatureSensorsBenchmark {
+    /* положительная, отрицательная температура и канал без датчика */
+    private static final int[] BOARD_REGISTERS = {215, 480, 305, Integer.parseInt("FF90", 16), 0,
+            TemperatureSensorsBoardData.TEMPERATURE_SENSOR_BORDER_VALUE, 1250, 221};
+
+    @State(Scope.Benchmark)
+    public static class BusState {
+        ConfigurableApplicationContext context;
+        TemperatureSensorsService temperatureSensorsService;
+
+        /* без кэша плат и без снимка каждый вызов читает плату с шины и раскодирует ее */
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkContext.start("spring.cache.type=none");
+            temperatureSensorsService = BenchmarkContext.getTarget(context, TemperatureSensorsService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SnapshotState {
+        ConfigurableApplicationContext context;
+        TemperatureSensorsService temperatureSensorsService;
+
+        /* снимок не устаревает за время замера */
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkContext.start("plantState.maxAge=P1D");
+            BenchmarkContext.pollPlantState(context);
+            temperatureSensorsService = BenchmarkContext.getTarget(context, TemperatureSensorsService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public TemperatureSensorsBoardData decodeBoardRegisters() {
+        return TemperatureSensorsBoardData.fromRegisters(0, BOARD_REGISTERS);
+    }
+
+    @Benchmark
+    public Float getCurrentTemperatureFromBus(BusState state) {
+        return state.temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE);
+    }
+
+    @Benchmark
+    public Float getCurrentTemperatureFromSnapshot(SnapshotState state) {
+        return state.temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE);
+    }
+
+    @Benchmark
+    public String getCurrentTemperaturesFormatted(SnapshotState state) {
+        return state.temperatureSensorsService.getCurrentTemperaturesFormatted();
+    }
+}
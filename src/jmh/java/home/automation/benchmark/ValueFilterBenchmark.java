@@ -0,0 +1,67 @@
+package home.automation.benchmark;
+
+import home.automation.enums.ValveAveragingMode;
+import home.automation.model.ExponentialMovingAverage;
+import home.automation.model.MovingAverage;
+import home.automation.model.MovingMedian;
+import home.automation.model.ValueFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сглаживание уставки клапана: добавление значения и чтение результата. Окно 30 - рабочая настройка, 1000 -
+ * проверка, что стоимость не растет вместе с окном у среднего и растет не более чем линейно у медианы
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueFilterBenchmark {
+    private static final float EWMA_ALPHA = 0.1F;
+
+    @Param({"MEAN", "EWMA", "MEDIAN"})
+    ValveAveragingMode mode;
+
+    @Param({"30", "1000"})
+    int window;
+
+    private ValueFilter filter;
+    private int value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filter = switch (mode) {
+            case MEAN -> new MovingAverage(window);
+            case EWMA -> new ExponentialMovingAverage(EWMA_ALPHA, window);
+            case MEDIAN -> new MovingMedian(window);
+        };
+        for (int i = 0; i < window; i++) {
+            filter.add(nextValue());
+        }
+    }
+
+    private float nextValue() {
+        value = (value * 31 + 17) % 101;
+        return value;
+    }
+
+    @Benchmark
+    public Float addAndGet() {
+        filter.add(nextValue());
+        return filter.getValue();
+    }
+}
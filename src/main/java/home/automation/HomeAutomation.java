@@ -1,5 +1,9 @@
 package home.automation;
 
+import home.automation.configuration.HistoryRollupsConfiguration;
+import home.automation.configuration.ModbusSegmentsConfiguration;
+import home.automation.configuration.ModbusTimingConfiguration;
+import home.automation.configuration.RelayModulesConfiguration;
 import home.automation.configuration.UniversalSensorsConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -8,7 +12,13 @@ import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
 @EnableCaching
-@EnableConfigurationProperties(UniversalSensorsConfiguration.class)
+@EnableConfigurationProperties({
+        UniversalSensorsConfiguration.class,
+        ModbusTimingConfiguration.class,
+        ModbusSegmentsConfiguration.class,
+        RelayModulesConfiguration.class,
+        HistoryRollupsConfiguration.class
+})
 public class HomeAutomation {
     public static void main(String[] args) {
         SpringApplication.run(HomeAutomation.class, args);
@@ -0,0 +1,262 @@
+package home.automation.actuation;
+
+import home.automation.enums.ValveMotionState;
+import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
+import home.automation.service.ModbusService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервопривод клапана с питанием через реле и положением по напряжению ЦАП как конечный автомат на таймерах:
+ * IDLE -> POWERING (реле включено, напряжение записано) -> MOVING (ждем время хода) -> SETTLING (реле выключено, ждем
+ * остановки привода) -> DONE. Время хода отмеряет таймер, поток на это время не занимается. Все переходы выполняются
+ * в одном потоке привода, поэтому состояние не требует блокировок, снаружи оно только читается.
+ * Новая цель во время движения не ждет окончания: напряжение перезаписывается и таймер переставляется, движение
+ * завершается для всех, кто его ждал. Цель во время остановки привода откладывается до ее окончания, отмена выключает
+ * питание сразу
+ */
+public class ValveActuator implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ValveActuator.class);
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private final CoilStateService coilStateService;
+    private final ModbusService modbusService;
+    private final int relayAddress;
+    private final int relayCoil;
+    private final int dacAddress;
+    private final int dacRegister;
+    private final Duration settleTime;
+    private final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "valve-actuator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ValveMotionState state = ValveMotionState.IDLE;
+    private volatile long movingSince;
+    private volatile long movingUntil;
+    /* дальше только из потока привода */
+    private final List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+    private boolean cancelled = false;
+    private ScheduledFuture<?> timer;
+    private Request pending;
+
+    /**
+     * @param coilStateService сервис состояния реле
+     * @param modbusService    сервис шины
+     * @param relayAddress     modbus адрес реле питания привода
+     * @param relayCoil        катушка реле питания привода
+     * @param dacAddress       modbus адрес ЦАП
+     * @param dacRegister      регистр ЦАП, задающий положение
+     * @param settleTime       пауза после выключения питания до следующего движения
+     */
+    public ValveActuator(CoilStateService coilStateService, ModbusService modbusService, int relayAddress,
+                         int relayCoil, int dacAddress, int dacRegister, Duration settleTime) {
+        this.coilStateService = coilStateService;
+        this.modbusService = modbusService;
+        this.relayAddress = relayAddress;
+        this.relayCoil = relayCoil;
+        this.dacAddress = dacAddress;
+        this.dacRegister = dacRegister;
+        this.settleTime = settleTime;
+        this.timers.setRemoveOnCancelPolicy(true);
+        this.timers.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Движение к положению, если клапан уже движется - смена цели
+     *
+     * @param dacValue  значение регистра ЦАП для нового положения
+     * @param powerTime сколько держать питание привода с этого момента
+     * @return true, когда движение завершено, false - движение отменено или цель сменилась до его начала, исключение -
+     * ошибка работы с реле или ЦАП
+     */
+    public CompletableFuture<Boolean> move(int dacValue, Duration powerTime) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        timers.execute(() -> request(new Request(dacValue, powerTime, result)));
+        return result;
+    }
+
+    /**
+     * Отмена движения: питание привода выключается сразу, отложенная цель отбрасывается
+     */
+    public void cancel() {
+        timers.execute(this::cancelMotion);
+    }
+
+    public ValveMotionState getState() {
+        return state;
+    }
+
+    /**
+     * @return доля пройденного времени хода от 0 до 1, 1 - привод остановлен
+     */
+    public float getProgress() {
+        return switch (state) {
+            case IDLE, POWERING -> 0;
+            case MOVING -> {
+                long total = movingUntil - movingSince;
+                float progress = total <= 0 ? 1 : (float) (System.nanoTime() - movingSince) / total;
+                yield Math.max(0, Math.min(1, progress));
+            }
+            case SETTLING, DONE -> 1;
+        };
+    }
+
+    /* питание привода выключается до остановки потока, иначе реле останется включенным */
+    @Override
+    public void close() {
+        Future<?> stop = timers.submit(() -> {
+            pending = discard(pending);
+            if (state == ValveMotionState.POWERING || state == ValveMotionState.MOVING) {
+                cancelTimer();
+                powerOff();
+            }
+            state = ValveMotionState.DONE;
+            complete(false);
+        });
+        timers.shutdown();
+        try {
+            stop.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("Не удалось выключить питание сервопривода клапана при остановке", e);
+        }
+    }
+
+    private void request(Request request) {
+        switch (state) {
+            case IDLE, DONE -> start(request);
+            case MOVING -> retarget(request);
+            case SETTLING -> {
+                logger.debug("Привод клапана останавливается, новое положение будет выставлено после остановки");
+                discard(pending);
+                pending = request;
+            }
+            /* POWERING не выходит за пределы одной задачи потока привода */
+            case POWERING -> throw new IllegalStateException("Привод клапана в промежуточном состоянии");
+        }
+    }
+
+    private void start(Request request) {
+        waiters.add(request.result);
+        cancelled = false;
+        state = ValveMotionState.POWERING;
+        try {
+            logger.info("Включаем питание сервопривода клапана");
+            coilStateService.writeCoil(relayAddress, relayCoil, true);
+            modbusService.writeHoldingRegister(dacAddress, dacRegister, request.dacValue);
+        } catch (ModbusException e) {
+            fail(e);
+            return;
+        }
+        movingSince = System.nanoTime();
+        moveFor(request.powerTime);
+        state = ValveMotionState.MOVING;
+    }
+
+    private void retarget(Request request) {
+        waiters.add(request.result);
+        try {
+            modbusService.writeHoldingRegister(dacAddress, dacRegister, request.dacValue);
+        } catch (ModbusException e) {
+            cancelTimer();
+            fail(e);
+            return;
+        }
+        cancelTimer();
+        moveFor(request.powerTime);
+        logger.info("Цель клапана изменена во время движения, питание продлено на {} секунд",
+                request.powerTime.toSeconds());
+    }
+
+    private void moveFor(Duration powerTime) {
+        movingUntil = System.nanoTime() + powerTime.toNanos();
+        timer = timers.schedule(this::stop, powerTime.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void stop() {
+        state = ValveMotionState.SETTLING;
+        try {
+            logger.info("Выключаем питание сервопривода клапана");
+            coilStateService.writeCoil(relayAddress, relayCoil, false);
+        } catch (ModbusException e) {
+            fail(e);
+            return;
+        }
+        timer = timers.schedule(this::settle, settleTime.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void settle() {
+        state = ValveMotionState.DONE;
+        complete(!cancelled);
+        if (pending != null) {
+            Request request = pending;
+            pending = null;
+            start(request);
+        }
+    }
+
+    private void cancelMotion() {
+        pending = discard(pending);
+        if (state != ValveMotionState.MOVING) {
+            /* при остановке питание уже выключено, движение только помечается отмененным */
+            cancelled = state == ValveMotionState.SETTLING;
+            return;
+        }
+        logger.info("Движение клапана отменено");
+        cancelTimer();
+        cancelled = true;
+        stop();
+    }
+
+    /* реле пытаемся выключить в любом случае, чтобы привод не остался под питанием */
+    private void fail(ModbusException e) {
+        powerOff();
+        state = ValveMotionState.DONE;
+        for (CompletableFuture<Boolean> waiter : waiters) {
+            waiter.completeExceptionally(e);
+        }
+        waiters.clear();
+        pending = discard(pending);
+    }
+
+    private void powerOff() {
+        try {
+            coilStateService.writeCoil(relayAddress, relayCoil, false);
+        } catch (ModbusException e) {
+            logger.error("Не удалось выключить питание сервопривода клапана");
+        }
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void complete(boolean moved) {
+        for (CompletableFuture<Boolean> waiter : waiters) {
+            waiter.complete(moved);
+        }
+        waiters.clear();
+    }
+
+    private static Request discard(Request request) {
+        if (request != null) {
+            request.result.complete(false);
+        }
+        return null;
+    }
+
+    private record Request(int dacValue, Duration powerTime, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,176 @@
+package home.automation.bot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Разделы статуса системы, которые считаются параллельно, каждый в своем потоке. Ответ собирается к общему сроку:
+ * раздел, не успевший к нему или упавший с ошибкой, показывается последним удачным значением с пометкой о его
+ * возрасте, если оно не старше допустимого, иначе - пометкой, что данных нет. Не успевший раздел досчитывается в
+ * фоне и обновляет снимок для следующего запроса, а пока он считается, новые запросы не запускают его повторно
+ */
+public class StatusSections implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StatusSections.class);
+    private final Duration deadline;
+    private final Duration maxStaleness;
+    private final MeterRegistry meterRegistry;
+    private final List<Section> sections = new ArrayList<>();
+    private final ExecutorService executor;
+
+    /**
+     * @param deadline      сколько ждать разделы с начала расчета статуса
+     * @param maxStaleness  насколько старое значение раздела можно показать вместо не успевшего
+     * @param meterRegistry реестр метрик
+     */
+    public StatusSections(Duration deadline, Duration maxStaleness, MeterRegistry meterRegistry) {
+        this.deadline = deadline;
+        this.maxStaleness = maxStaleness;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threads = new AtomicInteger();
+        /* разделы блокируются на шине, поэтому поток на каждый раздел; больше потоков, чем разделов, не бывает */
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bot-status-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Добавляет раздел пунктом списка, отделенным от следующего пустой строкой
+     *
+     * @param name    имя раздела для логов и метрик
+     * @param title   название раздела для пользователя, если данных нет
+     * @param section расчет текста раздела
+     */
+    public StatusSections add(String name, String title, Supplier<String> section) {
+        return add(name, title, "* ", "\n\n", section);
+    }
+
+    /**
+     * Добавляет раздел, разделы выводятся в порядке добавления
+     *
+     * @param name      имя раздела для логов и метрик
+     * @param title     название раздела для пользователя, если данных нет
+     * @param prefix    текст перед разделом
+     * @param separator текст после раздела
+     * @param section   расчет текста раздела
+     */
+    public StatusSections add(String name, String title, String prefix, String separator,
+                              Supplier<String> section) {
+        sections.add(new Section(name, title, prefix, separator, section));
+        return this;
+    }
+
+    /**
+     * @return разделы в порядке добавления, каждый со своими текстом перед ним и после него
+     */
+    public String render() {
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<String>> calculations = new ArrayList<>(sections.size());
+        for (Section section : sections) {
+            calculations.add(section.calculate());
+        }
+        long deadlineAt = startedAt + deadline.toNanos();
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < sections.size(); i++) {
+            Section section = sections.get(i);
+            message.append(section.prefix).append(section.await(calculations.get(i), deadlineAt))
+                    .append(section.separator);
+        }
+        return message.toString();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class Section {
+        private final String name;
+        private final String title;
+        private final String prefix;
+        private final String separator;
+        private final Supplier<String> supplier;
+        private final Timer duration;
+        private CompletableFuture<String> calculation;
+        private volatile Snapshot snapshot;
+
+        private Section(String name, String title, String prefix, String separator, Supplier<String> supplier) {
+            this.name = name;
+            this.title = title;
+            this.prefix = prefix;
+            this.separator = separator;
+            this.supplier = supplier;
+            this.duration = Timer.builder("bot_status_section")
+                    .tag("component", name)
+                    .tag("system", "home_automation")
+                    .description("Длительность расчета раздела статуса системы")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        /* раздел, еще считающийся с прошлого запроса, повторно не запускается */
+        private synchronized CompletableFuture<String> calculate() {
+            if (calculation == null || calculation.isDone()) {
+                calculation = CompletableFuture.supplyAsync(this::calculateNow, executor);
+            }
+            return calculation;
+        }
+
+        private String calculateNow() {
+            long startedAt = System.nanoTime();
+            try {
+                String text = supplier.get();
+                snapshot = new Snapshot(text, System.nanoTime());
+                return text;
+            } finally {
+                duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private String await(CompletableFuture<String> calculation, long deadlineAt) {
+            try {
+                return calculation.get(Math.max(0, deadlineAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Раздел статуса {} не посчитан за {}", name, deadline);
+                return fallback("не успели обновить");
+            } catch (ExecutionException e) {
+                logger.error("Ошибка расчета раздела статуса {}", name, e.getCause());
+                return fallback("ошибка при обновлении");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fallback("расчет прерван");
+            }
+        }
+
+        private String fallback(String reason) {
+            Snapshot last = snapshot;
+            if (last == null) {
+                return title + ": нет данных, " + reason;
+            }
+            long age = System.nanoTime() - last.calculatedAt;
+            long ageSeconds = TimeUnit.NANOSECONDS.toSeconds(age);
+            if (age > maxStaleness.toNanos()) {
+                return title + ": нет данных, " + reason + ", последние устарели на " + ageSeconds + " с";
+            }
+            return last.text + " (данные " + ageSeconds + " с назад, " + reason + ")";
+        }
+    }
+
+    private record Snapshot(String text, long calculatedAt) {
+    }
+}
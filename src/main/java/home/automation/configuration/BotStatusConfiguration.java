@@ -0,0 +1,23 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BotStatusConfiguration {
+    @Value("${bot.status.deadline}")
+    private Duration deadline;
+
+    @Value("${bot.status.maxStaleness}")
+    private Duration maxStaleness;
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
+}
@@ -0,0 +1,16 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CoilStateConfiguration {
+    @Value("${coilState.maxAge}")
+    private Duration maxAge;
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+}
@@ -1,5 +1,6 @@
 package home.automation.configuration;
 
+import home.automation.enums.ValveAveragingMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +17,12 @@ public class FloorHeatingConfiguration {
     @Value("${floorHeating.gasBoilerWorkDurationToRotateValve}")
     private Duration gasBoilerWorkDurationToRotateValve;
 
+    @Value("${floorHeating.valveAveragingMode}")
+    private ValveAveragingMode valveAveragingMode;
+
+    @Value("${floorHeating.ewmaAlpha}")
+    private Float ewmaAlpha;
+
     public Duration getIdleIntervalToRotate() {
         return idleIntervalToRotate;
     }
@@ -27,4 +34,12 @@ public class FloorHeatingConfiguration {
     public Duration getGasBoilerWorkDurationToRotateValve() {
         return gasBoilerWorkDurationToRotateValve;
     }
+
+    public ValveAveragingMode getValveAveragingMode() {
+        return valveAveragingMode;
+    }
+
+    public Float getEwmaAlpha() {
+        return ewmaAlpha;
+    }
 }
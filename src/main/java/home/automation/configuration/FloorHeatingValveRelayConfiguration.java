@@ -3,6 +3,8 @@ package home.automation.configuration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class FloorHeatingValveRelayConfiguration {
     @Value("${floorHeating.valve.relay.address}")
@@ -17,6 +19,9 @@ public class FloorHeatingValveRelayConfiguration {
     @Value("${floorHeating.valve.relay.rotationTimeReserve}")
     private Integer rotationTimeReserve;
 
+    @Value("${floorHeating.valve.relay.settleTime}")
+    private Duration settleTime;
+
     public Integer getAddress() {
         return address;
     }
@@ -32,4 +37,8 @@ public class FloorHeatingValveRelayConfiguration {
     public Integer getRotationTimeReserve() {
         return rotationTimeReserve;
     }
+
+    public Duration getSettleTime() {
+        return settleTime;
+    }
 }
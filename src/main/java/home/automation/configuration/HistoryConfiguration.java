@@ -0,0 +1,51 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class HistoryConfiguration {
+    @Value("${history.retention}")
+    private Duration retention;
+
+    @Value("${history.capacity}")
+    private Integer capacity;
+
+    @Value("${history.persistence.enabled}")
+    private Boolean persistenceEnabled;
+
+    @Value("${history.persistence.directory}")
+    private String directory;
+
+    @Value("${history.persistence.recordsPerSegment}")
+    private Integer recordsPerSegment;
+
+    @Value("${history.persistence.rollupsSaveInterval}")
+    private Duration rollupsSaveInterval;
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public Boolean getPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public Integer getRecordsPerSegment() {
+        return recordsPerSegment;
+    }
+
+    public Duration getRollupsSaveInterval() {
+        return rollupsSaveInterval;
+    }
+}
@@ -0,0 +1,16 @@
+package home.automation.configuration;
+
+import home.automation.enums.RollupResolution;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@ConfigurationProperties("history.rollups")
+public class HistoryRollupsConfiguration {
+    private final Map<RollupResolution, Integer> buckets = new EnumMap<>(RollupResolution.class);
+
+    public Map<RollupResolution, Integer> getBuckets() {
+        return buckets;
+    }
+}
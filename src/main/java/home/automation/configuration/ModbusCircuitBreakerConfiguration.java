@@ -0,0 +1,30 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ModbusCircuitBreakerConfiguration {
+    @Value("${modbus.circuitBreaker.enabled}")
+    private Boolean enabled;
+
+    @Value("${modbus.circuitBreaker.failureThreshold}")
+    private Integer failureThreshold;
+
+    @Value("${modbus.circuitBreaker.probeInterval}")
+    private Duration probeInterval;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Integer getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration getProbeInterval() {
+        return probeInterval;
+    }
+}
@@ -3,6 +3,8 @@ package home.automation.configuration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class ModbusConfiguration {
     @Value("${modbus.tcpHost}")
@@ -14,6 +16,33 @@ public class ModbusConfiguration {
     @Value("${modbus.delay}")
     private Integer delay;
 
+    @Value("${modbus.transport}")
+    private String transport;
+
+    @Value("${modbus.framing}")
+    private String framing;
+
+    @Value("${modbus.maxInFlight}")
+    private Integer maxInFlight;
+
+    @Value("${modbus.responseTimeout}")
+    private Duration responseTimeout;
+
+    @Value("${modbus.queueCapacity}")
+    private Integer queueCapacity;
+
+    @Value("${modbus.staleAfter}")
+    private Duration staleAfter;
+
+    @Value("${modbus.reconnect.initialBackoff}")
+    private Duration reconnectInitialBackoff;
+
+    @Value("${modbus.reconnect.maxBackoff}")
+    private Duration reconnectMaxBackoff;
+
+    @Value("${modbus.reconnect.failuresToReconnect}")
+    private Integer failuresToReconnect;
+
     public String getHost() {
         return host;
     }
@@ -25,4 +54,40 @@ public class ModbusConfiguration {
     public Integer getDelay() {
         return delay;
     }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public String getFraming() {
+        return framing;
+    }
+
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Duration getStaleAfter() {
+        return staleAfter;
+    }
+
+    public Duration getReconnectInitialBackoff() {
+        return reconnectInitialBackoff;
+    }
+
+    public Duration getReconnectMaxBackoff() {
+        return reconnectMaxBackoff;
+    }
+
+    public Integer getFailuresToReconnect() {
+        return failuresToReconnect;
+    }
 }
@@ -0,0 +1,47 @@
+package home.automation.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties("modbus.segments")
+public class ModbusSegmentsConfiguration {
+    private final Map<String, Gateway> gateways = new HashMap<>();
+    private final Map<Integer, String> routing = new HashMap<>();
+
+    /**
+     * @return дополнительные шлюзы по имени, основной задан в modbus.tcpHost и modbus.tcpPort
+     */
+    public Map<String, Gateway> getGateways() {
+        return gateways;
+    }
+
+    /**
+     * @return имя шлюза по modbus адресу устройства, не перечисленные устройства опрашиваются через основной
+     */
+    public Map<Integer, String> getRouting() {
+        return routing;
+    }
+
+    public static class Gateway {
+        private String host;
+        private int port;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package home.automation.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties("modbus.timing")
+public class ModbusTimingConfiguration {
+    private final Map<Integer, Integer> delays = new HashMap<>();
+    private final AutoTune autoTune = new AutoTune();
+
+    public Map<Integer, Integer> getDelays() {
+        return delays;
+    }
+
+    public AutoTune getAutoTune() {
+        return autoTune;
+    }
+
+    public static class AutoTune {
+        private boolean enabled;
+        private int minDelay;
+        private int step;
+        private int window;
+        private double maxErrorRate;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(int minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public int getStep() {
+            return step;
+        }
+
+        public void setStep(int step) {
+            this.step = step;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public void setWindow(int window) {
+            this.window = window;
+        }
+
+        public double getMaxErrorRate() {
+            return maxErrorRate;
+        }
+
+        public void setMaxErrorRate(double maxErrorRate) {
+            this.maxErrorRate = maxErrorRate;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class PlantStateConfiguration {
+    @Value("${plantState.maxAge}")
+    private Duration maxAge;
+
+    @Value("${plantState.cachedMetrics}")
+    private Boolean cachedMetrics;
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public Boolean getCachedMetrics() {
+        return cachedMetrics;
+    }
+}
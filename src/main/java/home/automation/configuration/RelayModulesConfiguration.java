@@ -0,0 +1,21 @@
+package home.automation.configuration;
+
+import home.automation.enums.RelayModuleModel;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties("relay-modules")
+public class RelayModulesConfiguration {
+    private final Map<Integer, RelayModuleModel> models = new HashMap<>();
+
+    public Map<Integer, RelayModuleModel> getModels() {
+        return models;
+    }
+
+    public @Nullable RelayModuleModel getModel(int address) {
+        return models.get(address);
+    }
+}
@@ -1,5 +1,8 @@
 package home.automation.configuration;
 
+import home.automation.scheduling.IsolatedTaskScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -8,4 +11,9 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @Configuration
 @EnableScheduling
 public class SchedulingConfiguration {
+    /* каждый контур управления в своем потоке, чтобы зависший на шине не задерживал остальные */
+    @Bean
+    public IsolatedTaskScheduler taskScheduler(MeterRegistry meterRegistry) {
+        return new IsolatedTaskScheduler(meterRegistry);
+    }
 }
@@ -0,0 +1,23 @@
+package home.automation.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class UniversalSensorsCacheConfiguration {
+    @Value("${universalSensors.cache.ttl}")
+    private Duration ttl;
+
+    @Value("${universalSensors.cache.refreshAhead}")
+    private Duration refreshAhead;
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public Duration getRefreshAhead() {
+        return refreshAhead;
+    }
+}
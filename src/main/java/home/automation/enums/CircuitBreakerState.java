@@ -0,0 +1,27 @@
+package home.automation.enums;
+
+public enum CircuitBreakerState {
+
+    CLOSED("устройство отвечает", 0),
+
+    HALF_OPEN("проверка, ответит ли устройство", 1),
+
+    OPEN("устройство не отвечает, запросы к нему не отправляются", 2);
+
+    private final String template;
+
+    private final Integer numericStatus;
+
+    CircuitBreakerState(String template, Integer numericStatus) {
+        this.template = template;
+        this.numericStatus = numericStatus;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Integer getNumericStatus() {
+        return numericStatus;
+    }
+}
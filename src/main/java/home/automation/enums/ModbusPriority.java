@@ -0,0 +1,33 @@
+package home.automation.enums;
+
+/**
+ * Классы запросов к шине modbus в порядке убывания приоритета
+ */
+public enum ModbusPriority {
+
+    ACTUATOR("запись в исполнительные устройства", false),
+
+    CONTROL("чтение для управляющих алгоритмов", false),
+
+    TELEMETRY("чтение для мониторинга", true),
+
+    INTERACTIVE("чтение по запросу пользователя", true);
+
+    private final String template;
+
+    /* запросы низкого приоритета при переполнении очереди вытесняются, а устаревшие отбрасываются */
+    private final boolean discardable;
+
+    ModbusPriority(String template, boolean discardable) {
+        this.template = template;
+        this.discardable = discardable;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public boolean isDiscardable() {
+        return discardable;
+    }
+}
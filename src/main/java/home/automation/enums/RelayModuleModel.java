@@ -0,0 +1,30 @@
+package home.automation.enums;
+
+public enum RelayModuleModel {
+
+    CHINALCTECH_2IN_2OUT("реле CHINALCTECH 2IN-2OUT", 2, 2);
+
+    private final String template;
+
+    private final int coils;
+
+    private final int discreteInputs;
+
+    RelayModuleModel(String template, int coils, int discreteInputs) {
+        this.template = template;
+        this.coils = coils;
+        this.discreteInputs = discreteInputs;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getCoils() {
+        return coils;
+    }
+
+    public int getDiscreteInputs() {
+        return discreteInputs;
+    }
+}
@@ -0,0 +1,30 @@
+package home.automation.enums;
+
+import java.time.Duration;
+
+public enum RollupResolution {
+    MINUTE(Duration.ofMinutes(1), "1 минута"),
+
+    QUARTER_HOUR(Duration.ofMinutes(15), "15 минут"),
+
+    HOUR(Duration.ofHours(1), "1 час"),
+
+    DAY(Duration.ofDays(1), "1 сутки");
+
+    private final Duration width;
+
+    private final String template;
+
+    RollupResolution(Duration width, String template) {
+        this.width = width;
+        this.template = template;
+    }
+
+    public Duration getWidth() {
+        return width;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+}
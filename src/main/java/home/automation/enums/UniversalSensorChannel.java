@@ -0,0 +1,30 @@
+package home.automation.enums;
+
+import home.automation.model.UniversalSensorData;
+
+import java.util.function.Function;
+
+public enum UniversalSensorChannel {
+    TEMPERATURE("температура", UniversalSensorData::getTemperature),
+
+    HUMIDITY("влажность", UniversalSensorData::getHumidityPercent),
+
+    CO2("CO2", UniversalSensorData::getCO2ppm);
+
+    private final String template;
+
+    private final Function<UniversalSensorData, Number> extractor;
+
+    UniversalSensorChannel(String template, Function<UniversalSensorData, Number> extractor) {
+        this.template = template;
+        this.extractor = extractor;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Number getValue(UniversalSensorData data) {
+        return extractor.apply(data);
+    }
+}
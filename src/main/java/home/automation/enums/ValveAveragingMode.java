@@ -0,0 +1,19 @@
+package home.automation.enums;
+
+public enum ValveAveragingMode {
+    MEAN("скользящее среднее"),
+
+    EWMA("экспоненциальное скользящее среднее"),
+
+    MEDIAN("скользящая медиана");
+
+    private final String template;
+
+    ValveAveragingMode(String template) {
+        this.template = template;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+}
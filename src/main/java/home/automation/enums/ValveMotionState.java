@@ -0,0 +1,31 @@
+package home.automation.enums;
+
+public enum ValveMotionState {
+
+    IDLE("клапан не двигался с запуска", 0),
+
+    POWERING("включается питание сервопривода клапана", 1),
+
+    MOVING("клапан движется", 2),
+
+    SETTLING("питание сервопривода клапана выключено, привод останавливается", 3),
+
+    DONE("клапан установлен", 4);
+
+    private final String template;
+
+    private final Integer numericStatus;
+
+    ValveMotionState(String template, Integer numericStatus) {
+        this.template = template;
+        this.numericStatus = numericStatus;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Integer getNumericStatus() {
+        return numericStatus;
+    }
+}
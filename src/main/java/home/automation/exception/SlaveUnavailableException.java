@@ -0,0 +1,10 @@
+package home.automation.exception;
+
+/**
+ * Устройство перестало отвечать, запрос к нему не отправлялся на шину
+ */
+public class SlaveUnavailableException extends ModbusException {
+    public SlaveUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,156 @@
+package home.automation.history;
+
+import home.automation.enums.GasBoilerStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Инкрементальный учет циклов газового котла за скользящее окно. Интервал работы или простоя закрывается при смене
+ * статуса, его длительность сразу прибавляется к итогам окна и попадает в гистограмму, интервалы, начавшиеся до
+ * окна, вычитаются из итогов. Статусы кроме работы и простоя не прерывают интервал. Обновление и чтение итогов за
+ * O(1) в среднем. Потокобезопасность обеспечивает владелец
+ */
+public class GasBoilerCycleTracker {
+    private static final long MINUTE_MILLIS = 60_000L;
+    private final long windowMillis;
+    private final Deque<Cycle> cycles = new ArrayDeque<>();
+    private final Timer workCycles;
+    private final Timer idleCycles;
+    private GasBoilerStatus currentStatus;
+    private long currentStart;
+    private long workMinutes = 0;
+    private long idleMinutes = 0;
+    private int workCount = 0;
+
+    /**
+     * @param window        ширина скользящего окна
+     * @param meterRegistry реестр метрик
+     */
+    public GasBoilerCycleTracker(Duration window, MeterRegistry meterRegistry) {
+        this.windowMillis = window.toMillis();
+        this.workCycles = cycleTimer("work", "Длительность циклов работы газового котла на отопление",
+                meterRegistry);
+        this.idleCycles = cycleTimer("idle", "Длительность простоя газового котла между циклами", meterRegistry);
+    }
+
+    /* короткие циклы видны по нижним корзинам гистограммы */
+    private static Timer cycleTimer(String component, String description, MeterRegistry meterRegistry) {
+        return Timer.builder("gas_boiler_cycle")
+                .tag("component", component)
+                .tag("system", "home_automation")
+                .description(description)
+                .serviceLevelObjectives(
+                        Duration.ofMinutes(1),
+                        Duration.ofMinutes(3),
+                        Duration.ofMinutes(5),
+                        Duration.ofMinutes(10),
+                        Duration.ofMinutes(15),
+                        Duration.ofMinutes(30),
+                        Duration.ofHours(1),
+                        Duration.ofHours(3)
+                )
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учет смены статуса, статусы должны приходить по возрастанию времени
+     *
+     * @param status        статус котла
+     * @param timestamp     время, epoch-millis
+     * @param recordMetrics записывать ли закрытый интервал в гистограмму, при восстановлении истории не нужно
+     */
+    public void onStatus(GasBoilerStatus status, long timestamp, boolean recordMetrics) {
+        if (status != GasBoilerStatus.WORKS && status != GasBoilerStatus.IDLE) {
+            return;
+        }
+        if (currentStatus == null) {
+            currentStatus = status;
+            currentStart = timestamp;
+            return;
+        }
+        if (status == currentStatus) {
+            return;
+        }
+        Cycle cycle = new Cycle(currentStatus == GasBoilerStatus.WORKS, currentStart, timestamp - currentStart);
+        cycles.addLast(cycle);
+        add(cycle, 1);
+        if (recordMetrics) {
+            (cycle.works ? workCycles : idleCycles).record(Duration.ofMillis(cycle.durationMillis));
+        }
+        currentStatus = status;
+        currentStart = timestamp;
+    }
+
+    public void clear() {
+        cycles.clear();
+        currentStatus = null;
+        workMinutes = 0;
+        idleMinutes = 0;
+        workCount = 0;
+    }
+
+    /**
+     * @return есть ли в окне хотя бы начало интервала работы или простоя
+     */
+    public boolean hasData(long now) {
+        expire(now);
+        return !cycles.isEmpty() || isCurrentInWindow(now);
+    }
+
+    /**
+     * @return минут работы в окне, включая незакрытый интервал
+     */
+    public long getWorkMinutes(long now) {
+        expire(now);
+        return workMinutes + (currentStatus == GasBoilerStatus.WORKS ? currentMinutes(now) : 0);
+    }
+
+    /**
+     * @return минут простоя в окне, включая незакрытый интервал
+     */
+    public long getIdleMinutes(long now) {
+        expire(now);
+        return idleMinutes + (currentStatus == GasBoilerStatus.IDLE ? currentMinutes(now) : 0);
+    }
+
+    /**
+     * @return число циклов работы в окне, включая незакрытый
+     */
+    public int getWorkCount(long now) {
+        expire(now);
+        return workCount + (currentStatus == GasBoilerStatus.WORKS && isCurrentInWindow(now) ? 1 : 0);
+    }
+
+    private void expire(long now) {
+        long windowStart = now - windowMillis;
+        while (!cycles.isEmpty() && cycles.peekFirst().start < windowStart) {
+            add(cycles.pollFirst(), -1);
+        }
+    }
+
+    private void add(Cycle cycle, int sign) {
+        /* как и в отчете, длительность интервала учитывается целыми минутами */
+        long minutes = cycle.durationMillis / MINUTE_MILLIS;
+        if (cycle.works) {
+            workMinutes += sign * minutes;
+            workCount += sign;
+        } else {
+            idleMinutes += sign * minutes;
+        }
+    }
+
+    private boolean isCurrentInWindow(long now) {
+        return currentStatus != null && currentStart >= now - windowMillis;
+    }
+
+    private long currentMinutes(long now) {
+        return isCurrentInWindow(now) ? (now - currentStart) / MINUTE_MILLIS : 0;
+    }
+
+    private record Cycle(boolean works, long start, long durationMillis) {
+    }
+}
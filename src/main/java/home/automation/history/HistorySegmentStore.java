@@ -0,0 +1,223 @@
+package home.automation.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Хранилище истории в файлах сегментов, отображенных в память. Сегмент - файл фиксированного размера из записей
+ * фиксированной длины: время, id ряда, значение и контрольная сумма. Новый сегмент открывается на каждые сутки по UTC
+ * и при заполнении текущего. Записи только добавляются, хвост, оборванный падением процесса, при открытии сегмента
+ * отбрасывается по контрольной сумме. Не потокобезопасно, синхронизацию обеспечивает владелец
+ */
+public class HistorySegmentStore {
+    private static final Logger logger = LoggerFactory.getLogger(HistorySegmentStore.class);
+    /* время 8 байт, id ряда 4 байта, значение 4 байта, контрольная сумма 4 байта */
+    public static final int RECORD_SIZE = 20;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d{4}-\\d{2}-\\d{2})-(\\d+)\\.seg");
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final CRC32C crc = new CRC32C();
+    private final byte[] scratch = new byte[CHECKSUM_OFFSET];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentDay = Long.MIN_VALUE;
+    private int segmentPart;
+    private int segmentRecords;
+
+    /**
+     * @param directory         каталог сегментов
+     * @param recordsPerSegment емкость одного сегмента в записях
+     */
+    public HistorySegmentStore(Path directory, int recordsPerSegment) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Чтение всех сохраненных записей по порядку сегментов, последний сегмент остается открытым для добавления
+     *
+     * @param consumer обработчик записей
+     * @return число прочитанных записей
+     */
+    public int load(RecordConsumer consumer) throws IOException {
+        List<Segment> segments = listSegments();
+        int loaded = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment stored = segments.get(i);
+            if (i == segments.size() - 1) {
+                open(stored.day, stored.part);
+                loaded += replay(segment, segmentRecords, consumer);
+            } else {
+                try (FileChannel readChannel = FileChannel.open(stored.path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    loaded += replay(buffer, validRecords(buffer), consumer);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Добавление записи. Запись попадает в сегмент текущих суток, опоздавшая на сутки запись остается в открытом
+     * сегменте, время хранится в самой записи
+     *
+     * @param seriesId  id ряда
+     * @param timestamp время, epoch-millis
+     * @param value     значение
+     */
+    public void append(int seriesId, long timestamp, float value) throws IOException {
+        long day = Math.floorDiv(timestamp, DAY_MILLIS);
+        if (segment == null || day > segmentDay) {
+            open(day, 0);
+        }
+        while (segmentRecords >= recordsPerSegment) {
+            open(segmentDay, segmentPart + 1);
+        }
+        int offset = segmentRecords * RECORD_SIZE;
+        scratchBuffer.putLong(0, timestamp).putInt(8, seriesId).putFloat(12, value);
+        crc.reset();
+        crc.update(scratch, 0, CHECKSUM_OFFSET);
+        segment.put(offset, scratch, 0, CHECKSUM_OFFSET);
+        segment.putInt(offset + CHECKSUM_OFFSET, (int) crc.getValue());
+        segmentRecords++;
+    }
+
+    /**
+     * Сброс открытого сегмента на диск
+     */
+    public void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Удаление сегментов, все записи которых старее заданного времени
+     *
+     * @param timestamp время, epoch-millis
+     */
+    public void deleteBefore(long timestamp) throws IOException {
+        long day = Math.floorDiv(timestamp, DAY_MILLIS);
+        for (Segment stored : listSegments()) {
+            if (stored.day < day && !(stored.day == segmentDay && stored.part == segmentPart)) {
+                Files.deleteIfExists(stored.path);
+                logger.debug("Удален устаревший сегмент истории {}", stored.path.getFileName());
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        flush();
+        segment = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void open(long day, int part) throws IOException {
+        close();
+        Path path = directory.resolve("history-" + LocalDate.ofEpochDay(day) + "-" + part + ".seg");
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        /* сегмент сразу занимает полный размер, незаписанные записи нулевые */
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        segmentDay = day;
+        segmentPart = part;
+        segmentRecords = validRecords(segment);
+        recoverTail();
+    }
+
+    /* после падения за последней целой записью может остаться оборванная, ее и все за ней обнуляем, чтобы новые
+    записи не перемешались со старым мусором */
+    private void recoverTail() {
+        int offset = segmentRecords * RECORD_SIZE;
+        int end = recordsPerSegment * RECORD_SIZE;
+        if (offset >= end || isZero(segment, offset)) {
+            return;
+        }
+        logger.warn("В сегменте истории за {} найден оборванный хвост после записи {}, он отброшен",
+                LocalDate.ofEpochDay(segmentDay), segmentRecords);
+        for (int position = offset; position < end; position++) {
+            segment.put(position, (byte) 0);
+        }
+    }
+
+    private int validRecords(ByteBuffer buffer) {
+        int capacity = buffer.capacity() / RECORD_SIZE;
+        int count = 0;
+        while (count < capacity && isValid(buffer, count * RECORD_SIZE)) {
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isValid(ByteBuffer buffer, int offset) {
+        buffer.get(offset, scratch, 0, CHECKSUM_OFFSET);
+        crc.reset();
+        crc.update(scratch, 0, CHECKSUM_OFFSET);
+        return (int) crc.getValue() == buffer.getInt(offset + CHECKSUM_OFFSET);
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int offset) {
+        for (int position = offset; position < offset + RECORD_SIZE; position++) {
+            if (buffer.get(position) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int replay(ByteBuffer buffer, int records, RecordConsumer consumer) {
+        for (int i = 0; i < records; i++) {
+            int offset = i * RECORD_SIZE;
+            consumer.accept(buffer.getInt(offset + 8), buffer.getLong(offset), buffer.getFloat(offset + 12));
+        }
+        return records;
+    }
+
+    private List<Segment> listSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(new Segment(path,
+                            LocalDate.parse(matcher.group(1)).toEpochDay(),
+                            Integer.parseInt(matcher.group(2))
+                    ));
+                }
+            });
+        }
+        segments.sort(Comparator.comparingLong(Segment::day).thenComparingInt(Segment::part));
+        return segments;
+    }
+
+    private record Segment(Path path, long day, int part) {
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(int seriesId, long timestamp, float value);
+    }
+}
@@ -0,0 +1,77 @@
+package home.automation.history;
+
+import home.automation.model.MultiResolutionRollup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Файл с состоянием агрегатов истории. Сырые сегменты хранятся недолго, а агрегаты за месяцы восстанавливаются
+ * из этого файла. В файл пишется отметка времени сохранения, после загрузки агрегаты догоняются сегментами по
+ * записям новее отметки
+ */
+public class RollupSnapshotFile {
+    private static final int MAGIC = 0x524F4C4C;
+    private static final int VERSION = 1;
+    private final Path path;
+
+    public RollupSnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Сохранение через временный файл, оборванная запись не портит предыдущее состояние
+     *
+     * @param savedAt отметка времени сохранения, epoch-millis
+     * @param rollups агрегаты по id рядов
+     */
+    public void save(long savedAt, Map<Integer, MultiResolutionRollup> rollups) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(savedAt);
+            output.writeInt(rollups.size());
+            for (Map.Entry<Integer, MultiResolutionRollup> entry : rollups.entrySet()) {
+                output.writeInt(entry.getKey());
+                entry.getValue().writeTo(output);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загрузка в уже созданные агрегаты, состояние рядов, которых больше нет, пропускается
+     *
+     * @param rollups агрегаты по id рядов
+     * @return отметка времени сохранения, epoch-millis, или Long.MIN_VALUE если файла нет
+     */
+    public long load(Map<Integer, MultiResolutionRollup> rollups) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат файла агрегатов " + path);
+            }
+            long savedAt = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                MultiResolutionRollup rollup = rollups.get(input.readInt());
+                if (rollup == null) {
+                    rollup = new MultiResolutionRollup(Map.of());
+                }
+                rollup.readFrom(input);
+            }
+            return savedAt;
+        } catch (NoSuchFileException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package home.automation.modbus;
+
+/**
+ * Время, которое текущий поток провел в ожидании ответов шины. Позволяет узнать, какую часть цикла задачи по
+ * расписанию занимает ввод-вывод, не передавая счетчик через все вызовы
+ */
+public class BusWaitScope {
+    private static final ThreadLocal<long[]> waitedNanos = new ThreadLocal<>();
+
+    /**
+     * Начинает учет в текущем потоке, учет вне начатого ничего не стоит
+     */
+    public static void start() {
+        waitedNanos.set(new long[1]);
+    }
+
+    public static void record(long nanos) {
+        long[] waited = waitedNanos.get();
+        if (waited != null) {
+            waited[0] += nanos;
+        }
+    }
+
+    /**
+     * @return сколько поток ждал шину с начала учета
+     */
+    public static long stop() {
+        long[] waited = waitedNanos.get();
+        waitedNanos.remove();
+        return waited == null ? 0 : waited[0];
+    }
+}
@@ -0,0 +1,186 @@
+package home.automation.modbus;
+
+import com.intelligt.modbus.jlibmodbus.Modbus;
+import com.intelligt.modbus.jlibmodbus.exception.ModbusProtocolException;
+import com.intelligt.modbus.jlibmodbus.master.ModbusMaster;
+import com.intelligt.modbus.jlibmodbus.master.ModbusMasterFactory;
+import com.intelligt.modbus.jlibmodbus.tcp.TcpParameters;
+import home.automation.exception.ModbusException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Транспорт на jlibmodbus: запросы выполняются строго по одному в отдельном потоке, после каждого выдерживается
+ * пауза из профиля устройства, чтобы устройства успевали обрабатывать команды. Подключение одно на все время работы,
+ * его потерю и переподключение отслеживает {@link ModbusConnectionSupervisor}
+ */
+public class JlibModbusTransport implements ModbusTransport {
+    private static final Logger logger = LoggerFactory.getLogger(JlibModbusTransport.class);
+    private final String host;
+    private final int port;
+    private final SlaveTimingProfiles timingProfiles;
+    private final ExecutorService executorService;
+    private final ModbusConnectionSupervisor supervisor;
+    private ModbusMaster modbusMaster;
+
+    /**
+     * @param gateway         имя шлюза для логов и метрик
+     * @param host            адрес шлюза
+     * @param port            порт шлюза
+     * @param timingProfiles  паузы после запросов по устройствам
+     * @param reconnectPolicy паузы переподключения и признак потери связи
+     * @param meterRegistry   реестр метрик
+     */
+    public JlibModbusTransport(String gateway, String host, int port, SlaveTimingProfiles timingProfiles,
+                               ModbusConnectionSupervisor.ReconnectPolicy reconnectPolicy,
+                               MeterRegistry meterRegistry) {
+        this.host = host;
+        this.port = port;
+        this.timingProfiles = timingProfiles;
+        this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "modbus-jlib-" + gateway);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.supervisor = new ModbusConnectionSupervisor(gateway, new ModbusConnectionSupervisor.Connection() {
+            @Override
+            public void open() throws ModbusException {
+                JlibModbusTransport.this.open();
+            }
+
+            @Override
+            public void drop(Exception cause) {
+                disconnect();
+            }
+        }, reconnectPolicy, meterRegistry);
+    }
+
+    @Override
+    public void connect() throws ModbusException {
+        supervisor.connect();
+    }
+
+    private synchronized void open() throws ModbusException {
+        try {
+            if (modbusMaster == null) {
+                TcpParameters tcpParameters = new TcpParameters();
+                tcpParameters.setHost(InetAddress.getByName(host));
+                tcpParameters.setKeepAlive(true);
+                tcpParameters.setPort(port);
+
+                modbusMaster = ModbusMasterFactory.createModbusMasterTCP(tcpParameters);
+                Modbus.setAutoIncrementTransactionId(true);
+            }
+
+            modbusMaster.connect();
+            timingProfiles.gatewayReconnected();
+
+        } catch (Exception e) {
+            logger.error("Ошибка подключения к modbus", e);
+            throw new ModbusException();
+        }
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readCoils(int address, int start, int quantity) {
+        return submit(address, () -> modbusMaster.readCoils(address, start, quantity));
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readDiscreteInputs(int address, int start, int quantity) {
+        return submit(address, () -> modbusMaster.readDiscreteInputs(address, start, quantity));
+    }
+
+    @Override
+    public CompletableFuture<int[]> readHoldingRegisters(int address, int start, int quantity) {
+        return submit(address, () -> modbusMaster.readHoldingRegisters(address, start, quantity));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSingleCoil(int address, int coil, boolean value) {
+        return submit(address, () -> {
+            modbusMaster.writeSingleCoil(address, coil, value);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSingleRegister(int address, int register, int value) {
+        return submit(address, () -> {
+            modbusMaster.writeSingleRegister(address, register, value);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(int address, Callable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executorService.submit(() -> {
+            /* пока связи нет, запрос сразу получает ошибку, переподключается супервизор */
+            try {
+                supervisor.ensureConnected();
+            } catch (ModbusException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                long startedAt = System.nanoTime();
+                T result = operation.call();
+                supervisor.recordSuccess();
+                timingProfiles.recordGatewayAnswer();
+                timingProfiles.recordSuccess(address, System.nanoTime() - startedAt);
+                delay(address);
+                future.complete(result);
+            } catch (ModbusProtocolException e) {
+                /* устройство ответило исключением, связь со шлюзом есть */
+                supervisor.recordSuccess();
+                timingProfiles.recordGatewayAnswer();
+                timingProfiles.recordFailure(address);
+                future.completeExceptionally(new ModbusException(e.getMessage()));
+            } catch (Exception e) {
+                timingProfiles.recordTimeout(address);
+                supervisor.recordFailure();
+                future.completeExceptionally(new ModbusException(e.getMessage()));
+            }
+        });
+        return future;
+    }
+
+    private void delay(int address) {
+        long startedAt = System.nanoTime();
+        try {
+            Thread.sleep(timingProfiles.getDelayMillis(address));
+        } catch (InterruptedException ignored) {
+        }
+        timingProfiles.recordEnforcedDelay(address, System.nanoTime() - startedAt);
+    }
+
+    private synchronized void disconnect() {
+        try {
+            if (modbusMaster != null) {
+                modbusMaster.disconnect();
+            }
+        } catch (Exception e) {
+            logger.warn("Ошибка отключения от modbus", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        supervisor.close();
+        executorService.shutdownNow();
+        try {
+            if (modbusMaster != null) {
+                modbusMaster.disconnect();
+            }
+        } catch (Exception e) {
+            logger.warn("Ошибка отключения от modbus", e);
+        }
+    }
+}
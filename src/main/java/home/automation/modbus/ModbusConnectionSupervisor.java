@@ -0,0 +1,231 @@
+package home.automation.modbus;
+
+import home.automation.exception.ModbusException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Одно долгоживущее подключение транспорта к шлюзу. Потеря связи определяется по ошибке сокета или по серии запросов
+ * подряд, на которые шлюз не ответил ничем. После потери переподключение идет в фоне с паузой, растущей вдвое от
+ * начальной до максимальной, половина паузы случайна, чтобы попытки не совпадали с перезагрузкой шлюза. Пока связи
+ * нет, запросы сразу завершаются ошибкой и не ждут таймаута подключения
+ */
+public class ModbusConnectionSupervisor {
+    private static final Logger logger = LoggerFactory.getLogger(ModbusConnectionSupervisor.class);
+    /* дальше паузу удваивать незачем, она упрется в максимальную раньше */
+    private static final int MAX_BACKOFF_DOUBLINGS = 30;
+    private final String gateway;
+    private final Connection connection;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final int failuresToReconnect;
+    private final ScheduledExecutorService reconnects;
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Object opening = new Object();
+    private final Counter successfulAttempts;
+    private final Counter failedAttempts;
+    private final Counter losses;
+    private volatile boolean closed = false;
+    private volatile long nextAttemptAt;
+    private int attempts = 0;
+    private ScheduledFuture<?> scheduledAttempt;
+
+    /**
+     * @param gateway       имя шлюза для логов и метрик
+     * @param connection    открытие и закрытие подключения транспорта
+     * @param policy        паузы переподключения и признак потери связи
+     * @param meterRegistry реестр метрик
+     */
+    public ModbusConnectionSupervisor(String gateway, Connection connection, ReconnectPolicy policy,
+                                      MeterRegistry meterRegistry) {
+        this.gateway = gateway;
+        this.connection = connection;
+        this.initialBackoffNanos = policy.initialBackoff().toNanos();
+        this.maxBackoffNanos = policy.maxBackoff().toNanos();
+        this.failuresToReconnect = policy.failuresToReconnect();
+        this.reconnects = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "modbus-reconnect-" + gateway);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("modbus_connection_state", connected, value -> value.get() ? 1 : 0)
+                .description("Состояние подключения к modbus шлюзу: 1 - подключено, 0 - нет связи")
+                .tag("gateway", gateway)
+                .register(meterRegistry);
+        this.successfulAttempts = Counter.builder("modbus_connect_attempts")
+                .description("Число попыток подключения к modbus шлюзу")
+                .tag("gateway", gateway)
+                .tag("result", "ok")
+                .register(meterRegistry);
+        this.failedAttempts = Counter.builder("modbus_connect_attempts")
+                .description("Число попыток подключения к modbus шлюзу")
+                .tag("gateway", gateway)
+                .tag("result", "error")
+                .register(meterRegistry);
+        this.losses = Counter.builder("modbus_connection_lost")
+                .description("Число потерь связи с modbus шлюзом")
+                .tag("gateway", gateway)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Первое подключение. Если оно не удалось, переподключение продолжается в фоне
+     *
+     * @throws ModbusException если подключиться сразу не удалось
+     */
+    public void connect() throws ModbusException {
+        if (!open()) {
+            scheduleAttempt();
+            throw new ModbusException("Нет подключения к modbus шлюзу " + gateway);
+        }
+    }
+
+    /**
+     * Проверка перед отправкой запроса, ничего не ждет
+     *
+     * @throws ModbusException если связи со шлюзом сейчас нет
+     */
+    public void ensureConnected() throws ModbusException {
+        if (closed) {
+            throw new ModbusException("Транспорт modbus закрыт");
+        }
+        if (!connected.get()) {
+            long untilAttempt = Math.max(0, nextAttemptAt - System.nanoTime());
+            throw new ModbusException("Нет связи с modbus шлюзом " + gateway +
+                    ", следующая попытка подключения через " + TimeUnit.NANOSECONDS.toMillis(untilAttempt) + " мс");
+        }
+    }
+
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    /**
+     * Шлюз ответил, пусть даже исключением устройства, значит связь есть
+     */
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Шлюз не ответил на запрос. Серия таких запросов означает потерю связи, даже если сокет еще открыт
+     */
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= failuresToReconnect) {
+            connectionLost(new ModbusException(failures + " запросов подряд без ответа modbus шлюза"));
+        }
+    }
+
+    /**
+     * Связь потеряна: подключение закрывается и начинается переподключение в фоне. Повторные сообщения о той же
+     * потере ничего не делают
+     */
+    public void connectionLost(Exception cause) {
+        if (!connected.compareAndSet(true, false)) {
+            return;
+        }
+        losses.increment();
+        logger.error("Потеряна связь с modbus шлюзом {}", gateway, cause);
+        connection.drop(cause);
+        scheduleAttempt();
+    }
+
+    public void close() {
+        closed = true;
+        connected.set(false);
+        reconnects.shutdownNow();
+    }
+
+    private boolean open() {
+        synchronized (opening) {
+            if (closed) {
+                return false;
+            }
+            if (connected.get()) {
+                return true;
+            }
+            try {
+                connection.open();
+            } catch (ModbusException e) {
+                failedAttempts.increment();
+                return false;
+            }
+            successfulAttempts.increment();
+            consecutiveFailures.set(0);
+            connected.set(true);
+            return true;
+        }
+    }
+
+    private synchronized void scheduleAttempt() {
+        if (closed || scheduledAttempt != null) {
+            return;
+        }
+        long backoff = Math.min(maxBackoffNanos,
+                initialBackoffNanos << Math.min(attempts, MAX_BACKOFF_DOUBLINGS));
+        if (backoff < 0) {
+            backoff = maxBackoffNanos;
+        }
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        attempts++;
+        nextAttemptAt = System.nanoTime() + delay;
+        logger.info("Попытка подключения к modbus шлюзу {} №{} через {} мс", gateway, attempts,
+                TimeUnit.NANOSECONDS.toMillis(delay));
+        scheduledAttempt = reconnects.schedule(this::attempt, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void attempt() {
+        synchronized (this) {
+            scheduledAttempt = null;
+        }
+        if (open()) {
+            synchronized (this) {
+                attempts = 0;
+            }
+            logger.info("Связь с modbus шлюзом {} восстановлена", gateway);
+        } else {
+            scheduleAttempt();
+        }
+    }
+
+    /**
+     * @param initialBackoff      пауза перед первой попыткой переподключения
+     * @param maxBackoff          максимальная пауза между попытками
+     * @param failuresToReconnect сколько запросов подряд без ответа шлюза означают потерю связи
+     */
+    public record ReconnectPolicy(Duration initialBackoff, Duration maxBackoff, int failuresToReconnect) {
+    }
+
+    /**
+     * Подключение транспорта, которым управляет супервизор
+     */
+    public interface Connection {
+        /**
+         * Открывает подключение, ждет не дольше таймаута подключения
+         *
+         * @throws ModbusException если подключиться не удалось
+         */
+        void open() throws ModbusException;
+
+        /**
+         * Закрывает подключение и завершает ошибкой запросы, ожидающие ответа
+         *
+         * @param cause причина потери связи
+         */
+        void drop(Exception cause);
+    }
+}
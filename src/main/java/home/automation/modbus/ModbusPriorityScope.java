@@ -0,0 +1,32 @@
+package home.automation.modbus;
+
+import home.automation.enums.ModbusPriority;
+
+import java.util.function.Supplier;
+
+/**
+ * Приоритет запросов к шине для текущего потока. Позволяет понизить приоритет чтений, которые сервисы делают при
+ * обработке запроса пользователя, не передавая приоритет через все вызовы
+ */
+public class ModbusPriorityScope {
+    private static final ThreadLocal<ModbusPriority> currentPriority = new ThreadLocal<>();
+
+    public static <T> T callWith(ModbusPriority priority, Supplier<T> action) {
+        ModbusPriority previous = currentPriority.get();
+        currentPriority.set(priority);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                currentPriority.remove();
+            } else {
+                currentPriority.set(previous);
+            }
+        }
+    }
+
+    public static ModbusPriority current(ModbusPriority defaultPriority) {
+        ModbusPriority priority = currentPriority.get();
+        return priority == null ? defaultPriority : priority;
+    }
+}
@@ -0,0 +1,103 @@
+package home.automation.modbus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кадры Modbus RTU для прозрачного режима шлюза (RTU over TCP): шлюз передает байты в RS485 как есть, кадр состоит
+ * из адреса устройства, PDU и CRC16, id транзакции нет. PDU такие же, как в {@link ModbusTcpFrames}
+ */
+public class ModbusRtuFrames {
+    /* все поддерживаемые запросы: адрес, код функции, адрес и количество или значение, CRC16 */
+    public static final int REQUEST_LENGTH = 8;
+    /* адрес устройства и CRC16 вокруг PDU */
+    public static final int OVERHEAD = 3;
+    /* ответ-исключение: адрес, код функции с флагом, код исключения, CRC16 */
+    public static final int EXCEPTION_LENGTH = 5;
+    private static final int CRC_POLYNOMIAL = 0xA001;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < CRC_TABLE.length; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ CRC_POLYNOMIAL : crc >>> 1;
+            }
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * CRC16 Modbus по таблице, байт за шаг
+     */
+    public static int crc16(byte[] bytes, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ bytes[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * CRC16 Modbus участка буфера, позиция и граница не меняются
+     */
+    public static int crc16(ByteBuffer buffer, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ buffer.get(i)) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * @return CRC16, записанная в кадре после участка, младший байт первым
+     */
+    public static int getCrc(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & 0xFF) | ((buffer.get(offset + 1) & 0xFF) << 8);
+    }
+
+    /**
+     * Пишет кадр запроса в буфер с его текущей позиции
+     *
+     * @param buffer       буфер отправки
+     * @param address      modbus адрес устройства
+     * @param functionCode код функции
+     * @param first        адрес первой катушки или регистра
+     * @param second       количество или записываемое значение
+     */
+    public static void putRequest(ByteBuffer buffer, int address, int functionCode, int first, int second) {
+        int start = buffer.position();
+        buffer.put((byte) address);
+        buffer.put((byte) functionCode);
+        buffer.putShort((short) first);
+        buffer.putShort((short) second);
+        int crc = crc16(buffer, start, REQUEST_LENGTH - 2);
+        buffer.put((byte) crc);
+        buffer.put((byte) (crc >> 8));
+    }
+
+    /**
+     * Длина кадра ответа на запрос функции по уже пришедшим байтам, в RTU длины в кадре нет
+     *
+     * @param functionCode код функции запроса
+     * @param buffer       буфер приема
+     * @param offset       начало кадра
+     * @param available    сколько байт кадра уже пришло
+     * @return длина кадра или -1, если для ее определения пришло мало байт
+     */
+    public static int responseLength(int functionCode, ByteBuffer buffer, int offset, int available) {
+        if (available < 3) {
+            return -1;
+        }
+        int responseFunctionCode = buffer.get(offset + 1) & 0xFF;
+        if (responseFunctionCode != functionCode) {
+            /* исключение или чужой ответ, в обоих случаях дальше код исключения и CRC */
+            return EXCEPTION_LENGTH;
+        }
+        return switch (functionCode) {
+            case ModbusTcpFrames.READ_COILS, ModbusTcpFrames.READ_DISCRETE_INPUTS,
+                    ModbusTcpFrames.READ_HOLDING_REGISTERS -> OVERHEAD + 2 + (buffer.get(offset + 2) & 0xFF);
+            /* ответ на запись повторяет запрос */
+            default -> REQUEST_LENGTH;
+        };
+    }
+}
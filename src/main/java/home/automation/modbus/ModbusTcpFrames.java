@@ -0,0 +1,109 @@
+package home.automation.modbus;
+
+import home.automation.exception.ModbusException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кодирование запросов и разбор ответов Modbus TCP. Кадр состоит из заголовка MBAP (id транзакции, протокол, длина,
+ * адрес устройства) и PDU (код функции и данные)
+ */
+public class ModbusTcpFrames {
+    public static final int READ_COILS = 0x01;
+    public static final int READ_DISCRETE_INPUTS = 0x02;
+    public static final int READ_HOLDING_REGISTERS = 0x03;
+    public static final int WRITE_SINGLE_COIL = 0x05;
+    public static final int WRITE_SINGLE_REGISTER = 0x06;
+    public static final int MBAP_HEADER_LENGTH = 7;
+    /* все поддерживаемые запросы имеют одинаковый PDU: код функции, адрес и количество или значение */
+    public static final int REQUEST_LENGTH = MBAP_HEADER_LENGTH + 5;
+    public static final int MAX_PDU_LENGTH = 253;
+    private static final int EXCEPTION_FLAG = 0x80;
+    private static final int COIL_ON = 0xFF00;
+
+    /**
+     * Пишет кадр запроса в буфер с его текущей позиции, без промежуточного массива
+     *
+     * @param buffer        буфер отправки
+     * @param transactionId id транзакции, по нему сопоставляется ответ
+     * @param address       modbus адрес устройства
+     * @param functionCode  код функции
+     * @param first         адрес первой катушки или регистра
+     * @param second        количество или записываемое значение
+     */
+    public static void putRequest(ByteBuffer buffer, int transactionId, int address, int functionCode, int first,
+                                  int second) {
+        buffer.putShort((short) transactionId);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) (REQUEST_LENGTH - 6));
+        buffer.put((byte) address);
+        buffer.put((byte) functionCode);
+        buffer.putShort((short) first);
+        buffer.putShort((short) second);
+    }
+
+    public static int coilValue(boolean value) {
+        return value ? COIL_ON : 0;
+    }
+
+    /**
+     * Проверяет, что PDU ответа в буфере приема относится к запрошенной функции и не является исключением modbus
+     *
+     * @param functionCode код функции запроса
+     * @param buffer       буфер приема, позиция и граница не меняются
+     * @param pduOffset    начало PDU в буфере
+     * @param pduLength    длина PDU
+     * @throws ModbusException если устройство вернуло исключение или ответ не той функции
+     */
+    public static void checkResponse(int functionCode, ByteBuffer buffer, int pduOffset, int pduLength)
+            throws ModbusException {
+        if (pduLength < 2) {
+            throw new ModbusException("Слишком короткий ответ на функцию " + functionCode);
+        }
+        int responseFunctionCode = buffer.get(pduOffset) & 0xFF;
+        if (responseFunctionCode == (functionCode | EXCEPTION_FLAG)) {
+            throw new ModbusException("Устройство вернуло исключение " + (buffer.get(pduOffset + 1) & 0xFF) +
+                    " на функцию " + functionCode);
+        }
+        if (responseFunctionCode != functionCode) {
+            throw new ModbusException("Ответ функции " + responseFunctionCode + " на запрос функции " + functionCode);
+        }
+    }
+
+    /**
+     * Разбирает ответ на F01 и F02 прямо из буфера приема
+     */
+    public static boolean[] decodeBits(ByteBuffer buffer, int pduOffset, int pduLength) throws ModbusException {
+        int byteCount = buffer.get(pduOffset + 1) & 0xFF;
+        if (pduLength < 2 + byteCount) {
+            throw new ModbusException("Ответ короче заявленных " + byteCount + " байт");
+        }
+        boolean[] bits = new boolean[byteCount * 8];
+        for (int i = 0; i < byteCount; i++) {
+            int value = buffer.get(pduOffset + 2 + i);
+            for (int bit = 0; bit < 8; bit++) {
+                bits[i * 8 + bit] = (value & (1 << bit)) != 0;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Разбирает ответ на F03 прямо из буфера приема, значения регистров беззнаковые
+     */
+    public static int[] decodeRegisters(ByteBuffer buffer, int pduOffset, int pduLength) throws ModbusException {
+        int byteCount = buffer.get(pduOffset + 1) & 0xFF;
+        if (pduLength < 2 + byteCount || byteCount % 2 != 0) {
+            throw new ModbusException("Ответ короче заявленных " + byteCount + " байт");
+        }
+        int[] registers = new int[byteCount / 2];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = buffer.getShort(pduOffset + 2 + i * 2) & 0xFFFF;
+        }
+        return registers;
+    }
+
+    public static int getUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,71 @@
+package home.automation.modbus;
+
+import home.automation.exception.ModbusException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный транспорт до modbus шлюза. Все методы не блокируют вызывающий поток, ошибки возвращаются через
+ * исключительное завершение future с {@link ModbusException}
+ */
+public interface ModbusTransport {
+    /**
+     * Первое подключение к шлюзу. Если оно не удалось или связь потеряна позже, транспорт переподключается в фоне
+     *
+     * @throws ModbusException если подключиться сразу не удалось
+     */
+    void connect() throws ModbusException;
+
+    /**
+     * Чтение катушек (F01)
+     *
+     * @param address  modbus адрес
+     * @param start    id первой катушки
+     * @param quantity количество катушек
+     * @return все биты ответа, длина массива кратна 8
+     */
+    CompletableFuture<boolean[]> readCoils(int address, int start, int quantity);
+
+    /**
+     * Чтение дискретных входов (F02)
+     *
+     * @param address  modbus адрес
+     * @param start    id первого входа
+     * @param quantity количество входов
+     * @return все биты ответа, длина массива кратна 8
+     */
+    CompletableFuture<boolean[]> readDiscreteInputs(int address, int start, int quantity);
+
+    /**
+     * Чтение Holding Register (F03)
+     *
+     * @param address  modbus адрес
+     * @param start    id первого регистра
+     * @param quantity количество регистров
+     * @return значения регистров
+     */
+    CompletableFuture<int[]> readHoldingRegisters(int address, int start, int quantity);
+
+    /**
+     * Запись катушки (F05)
+     *
+     * @param address modbus адрес
+     * @param coil    id катушки
+     * @param value   новое значение
+     */
+    CompletableFuture<Void> writeSingleCoil(int address, int coil, boolean value);
+
+    /**
+     * Запись Holding Register (F06)
+     *
+     * @param address  modbus адрес
+     * @param register id регистра
+     * @param value    значение
+     */
+    CompletableFuture<Void> writeSingleRegister(int address, int register, int value);
+
+    /**
+     * Закрывает подключение и завершает все ожидающие запросы ошибкой
+     */
+    void close();
+}
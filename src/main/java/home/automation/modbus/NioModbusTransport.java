@@ -0,0 +1,588 @@
+package home.automation.modbus;
+
+import home.automation.exception.ModbusException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт на {@link SocketChannel} с одним потоком ввода-вывода: он же отправляет кадры, выдерживает паузы RS485,
+ * разбирает ответы и снимает запросы по таймауту. Кадры собираются и разбираются в заранее выделенных direct буферах,
+ * ответ декодируется прямо из буфера приема в массив результата, транзакции берутся из выделенного при создании пула,
+ * поэтому на запрос транспорт выделяет только результат и его future. Опрос целиком при этом не обходится без
+ * выделения памяти: склейка чтений и планировщик шины создают на каждое чтение свои объекты. В кадрах Modbus TCP запросы идут конвейером и сопоставляются по id
+ * транзакции, в прозрачном режиме шлюза (RTU over TCP) id нет, поэтому без ответа может быть только один запрос, а
+ * ответ принимается, только если адрес, функция и длина данных совпадают с запросом. После таймаута RTU принятые
+ * байты отбрасываются и следующий кадр ждет паузу устройства, чтобы опоздавший ответ не достался следующему запросу.
+ * Подключение одно на все время работы, его потерю и переподключение отслеживает {@link ModbusConnectionSupervisor}
+ */
+public class NioModbusTransport implements ModbusTransport {
+    private static final Logger logger = LoggerFactory.getLogger(NioModbusTransport.class);
+    /* с запасом больше окна планировщика шины, очередь и пул транзакций выделяются при создании */
+    private static final int SUBMIT_QUEUE_CAPACITY = 256;
+    /* два самых длинных кадра ответа */
+    private static final int READ_BUFFER_SIZE =
+            2 * (ModbusTcpFrames.MBAP_HEADER_LENGTH + ModbusTcpFrames.MAX_PDU_LENGTH);
+    private final String host;
+    private final int port;
+    private final SlaveTimingProfiles timingProfiles;
+    private final Duration responseTimeout;
+    private final boolean rtu;
+    private final Transaction[] inFlight;
+    private final ArrayBlockingQueue<Transaction> submitted = new ArrayBlockingQueue<>(SUBMIT_QUEUE_CAPACITY);
+    private final ArrayBlockingQueue<Transaction> freeTransactions = new ArrayBlockingQueue<>(SUBMIT_QUEUE_CAPACITY);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(ModbusTcpFrames.REQUEST_LENGTH);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final AtomicReference<SocketChannel> openedChannel = new AtomicReference<>();
+    private final Selector selector;
+    private final Thread ioThread;
+    private final ModbusConnectionSupervisor supervisor;
+    private volatile boolean closed = false;
+    private volatile boolean dropRequested = false;
+    /* дальше поля только потока ввода-вывода */
+    /* select с обработчиком не заполняет множество выбранных ключей и не выделяет под него память */
+    private final Consumer<SelectionKey> onReady = ready -> readable = ready.isReadable();
+    private boolean readable;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private int inFlightCount = 0;
+    private int transactionId = 0;
+    private long lastFrameSentAt = 0;
+    private int lastFrameAddress = -1;
+    private long delayedSince = 0;
+    private long nextSendAt = 0;
+    /* конец тишины на линии после таймаута RTU, 0 - тишину выдерживать не нужно */
+    private long quietUntil = 0;
+
+    /**
+     * @param gateway         имя шлюза для логов и метрик
+     * @param host            адрес шлюза
+     * @param port            порт шлюза
+     * @param timingProfiles  паузы между кадрами по устройствам
+     * @param rtu             кадры RTU over TCP для прозрачного режима шлюза вместо Modbus TCP
+     * @param maxInFlight     максимальное число запросов без ответа, для RTU всегда один
+     * @param responseTimeout время ожидания ответа после отправки запроса, им же ограничено подключение
+     * @param reconnectPolicy паузы переподключения и признак потери связи
+     * @param meterRegistry   реестр метрик
+     */
+    public NioModbusTransport(String gateway, String host, int port, SlaveTimingProfiles timingProfiles, boolean rtu,
+                              int maxInFlight, Duration responseTimeout,
+                              ModbusConnectionSupervisor.ReconnectPolicy reconnectPolicy,
+                              MeterRegistry meterRegistry) {
+        this.host = host;
+        this.port = port;
+        this.timingProfiles = timingProfiles;
+        this.rtu = rtu;
+        this.responseTimeout = responseTimeout;
+        this.inFlight = new Transaction[rtu ? 1 : maxInFlight];
+        for (int i = 0; i < SUBMIT_QUEUE_CAPACITY; i++) {
+            freeTransactions.add(new Transaction());
+        }
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось открыть селектор для modbus", e);
+        }
+        this.supervisor = new ModbusConnectionSupervisor(gateway, new ModbusConnectionSupervisor.Connection() {
+            @Override
+            public void open() throws ModbusException {
+                NioModbusTransport.this.open();
+            }
+
+            @Override
+            public void drop(Exception cause) {
+                logger.debug("Закрываем подключение к modbus шлюзу", cause);
+                closeQuietly(openedChannel.getAndSet(null));
+                dropRequested = true;
+                selector.wakeup();
+            }
+        }, reconnectPolicy, meterRegistry);
+        this.ioThread = new Thread(this::ioLoop, "modbus-nio-" + gateway);
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    @Override
+    public void connect() throws ModbusException {
+        if (closed) {
+            throw new ModbusException("Транспорт modbus закрыт");
+        }
+        supervisor.connect();
+    }
+
+    /* подключение открывается в потоке супервизора, а регистрирует его у селектора поток ввода-вывода */
+    private void open() throws ModbusException {
+        SocketChannel opened = null;
+        try {
+            opened = SocketChannel.open();
+            opened.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            opened.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            opened.socket().connect(new InetSocketAddress(host, port), (int) responseTimeout.toMillis());
+            opened.configureBlocking(false);
+        } catch (IOException e) {
+            closeQuietly(opened);
+            logger.error("Ошибка подключения к modbus", e);
+            throw new ModbusException(e.getMessage());
+        }
+        closeQuietly(openedChannel.getAndSet(opened));
+        timingProfiles.gatewayReconnected();
+        selector.wakeup();
+        logger.info("Подключились к modbus шлюзу {}:{}", host, port);
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readCoils(int address, int start, int quantity) {
+        return submit(address, ModbusTcpFrames.READ_COILS, start, quantity);
+    }
+
+    @Override
+    public CompletableFuture<boolean[]> readDiscreteInputs(int address, int start, int quantity) {
+        return submit(address, ModbusTcpFrames.READ_DISCRETE_INPUTS, start, quantity);
+    }
+
+    @Override
+    public CompletableFuture<int[]> readHoldingRegisters(int address, int start, int quantity) {
+        return submit(address, ModbusTcpFrames.READ_HOLDING_REGISTERS, start, quantity);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSingleCoil(int address, int coil, boolean value) {
+        return submit(address, ModbusTcpFrames.WRITE_SINGLE_COIL, coil, ModbusTcpFrames.coilValue(value));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSingleRegister(int address, int register, int value) {
+        return submit(address, ModbusTcpFrames.WRITE_SINGLE_REGISTER, register, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(int address, int functionCode, int first, int second) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        /* все транзакции пула заняты, только когда очередь отправки и окно уже заполнены */
+        Transaction transaction = freeTransactions.poll();
+        if (transaction == null) {
+            future.completeExceptionally(new ModbusException("Переполнена очередь отправки modbus"));
+            return (CompletableFuture<T>) future;
+        }
+        transaction.address = address;
+        transaction.functionCode = functionCode;
+        transaction.first = first;
+        transaction.second = second;
+        transaction.future = future;
+        /* транзакция, не попавшая в очередь, сразу возвращается в пул */
+        if (closed) {
+            fail(transaction, new ModbusException("Транспорт modbus закрыт"));
+        } else if (!submitted.offer(transaction)) {
+            fail(transaction, new ModbusException("Переполнена очередь отправки modbus"));
+        } else if (closed && submitted.remove(transaction)) {
+            fail(transaction, new ModbusException("Транспорт modbus закрыт"));
+        } else {
+            selector.wakeup();
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    private void ioLoop() {
+        while (!closed) {
+            readable = false;
+            try {
+                selector.select(onReady, selectTimeoutMillis());
+            } catch (IOException e) {
+                logger.error("Ошибка селектора modbus", e);
+                break;
+            }
+            if (dropRequested) {
+                dropRequested = false;
+                closeChannel(new ModbusException("Потеряно подключение к modbus шлюзу"));
+            }
+            SocketChannel opened = openedChannel.getAndSet(null);
+            if (opened != null) {
+                register(opened);
+            }
+            if (readable && channel != null) {
+                read();
+            }
+            long now = System.nanoTime();
+            expire(now);
+            send(now);
+        }
+        closeChannel(new ModbusException("Транспорт modbus закрыт"));
+        failSubmitted();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /* до ближайшего таймаута ответа или конца паузы RS485, 0 - до пробуждения */
+    private long selectTimeoutMillis() {
+        long now = System.nanoTime();
+        long waitNanos = Long.MAX_VALUE;
+        for (int i = 0; i < inFlightCount; i++) {
+            waitNanos = Math.min(waitNanos, inFlight[i].deadline - now);
+        }
+        if (quietUntil != 0 && !submitted.isEmpty()) {
+            waitNanos = Math.min(waitNanos, quietUntil - now);
+        }
+        if (nextSendAt != 0 && !submitted.isEmpty()) {
+            waitNanos = Math.min(waitNanos, nextSendAt - now);
+        }
+        if (waitNanos == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+    }
+
+    private void register(SocketChannel opened) {
+        closeChannel(new ModbusException("Подключение к modbus шлюзу заменено новым"));
+        try {
+            key = opened.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            closeQuietly(opened);
+            supervisor.connectionLost(e);
+            return;
+        }
+        channel = opened;
+        readBuffer.clear();
+        lastFrameAddress = -1;
+        quietUntil = 0;
+    }
+
+    private void send(long now) {
+        while (inFlightCount < inFlight.length) {
+            Transaction transaction = submitted.peek();
+            if (transaction == null) {
+                return;
+            }
+            /* пока связи нет, запрос сразу получает ошибку, переподключается супервизор */
+            try {
+                supervisor.ensureConnected();
+            } catch (ModbusException e) {
+                submitted.poll();
+                fail(transaction, e);
+                continue;
+            }
+            if (channel == null) {
+                /* супервизор уже подключился, но поток еще не зарегистрировал подключение */
+                return;
+            }
+            if (quietUntil != 0) {
+                if (now - quietUntil < 0) {
+                    return;
+                }
+                quietUntil = 0;
+            }
+
+            /* RS485 полудуплексный, шлюз передает кадры по очереди, выдерживаем паузу, нужную устройству
+            предыдущего кадра */
+            if (lastFrameAddress >= 0) {
+                long sendAt = lastFrameSentAt + timingProfiles.getDelayNanos(lastFrameAddress);
+                if (now - sendAt < 0) {
+                    if (delayedSince == 0) {
+                        delayedSince = now;
+                    }
+                    nextSendAt = sendAt;
+                    return;
+                }
+                timingProfiles.recordEnforcedDelay(lastFrameAddress, delayedSince == 0 ? 0 : now - delayedSince);
+            }
+            delayedSince = 0;
+            nextSendAt = 0;
+            submitted.poll();
+
+            writeBuffer.clear();
+            if (rtu) {
+                ModbusRtuFrames.putRequest(writeBuffer, transaction.address, transaction.functionCode,
+                        transaction.first, transaction.second);
+            } else {
+                transactionId = (transactionId + 1) & 0xFFFF;
+                transaction.transactionId = transactionId;
+                ModbusTcpFrames.putRequest(writeBuffer, transactionId, transaction.address,
+                        transaction.functionCode, transaction.first, transaction.second);
+            }
+            writeBuffer.flip();
+            try {
+                while (writeBuffer.hasRemaining()) {
+                    /* кадр в десяток байт не помещается в буфер сокета только у зависшего шлюза */
+                    if (channel.write(writeBuffer) == 0) {
+                        throw new IOException("Шлюз не принимает данные");
+                    }
+                }
+            } catch (IOException e) {
+                fail(transaction, new ModbusException(e.getMessage()));
+                connectionLost(e);
+                return;
+            }
+            lastFrameSentAt = now;
+            lastFrameAddress = transaction.address;
+            transaction.sentAt = now;
+            transaction.deadline = now + responseTimeout.toNanos();
+            inFlight[inFlightCount++] = transaction;
+        }
+    }
+
+    private void read() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            connectionLost(e);
+            return;
+        }
+        if (read < 0) {
+            connectionLost(new IOException("Шлюз закрыл подключение"));
+            return;
+        }
+        readBuffer.flip();
+        while (channel != null && (rtu ? readRtuFrame() : readTcpFrame())) {
+            /* разбираем все целиком пришедшие кадры */
+        }
+        if (channel == null) {
+            return;
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            connectionLost(new IOException("Переполнен буфер приема modbus"));
+        }
+    }
+
+    private boolean readTcpFrame() {
+        int start = readBuffer.position();
+        if (readBuffer.remaining() < ModbusTcpFrames.MBAP_HEADER_LENGTH) {
+            return false;
+        }
+        int responseTransactionId = readBuffer.getShort(start) & 0xFFFF;
+        int length = readBuffer.getShort(start + 4) & 0xFFFF;
+        if (length < 2 || length > ModbusTcpFrames.MAX_PDU_LENGTH + 1) {
+            connectionLost(new IOException("Некорректная длина кадра " + length));
+            return false;
+        }
+        int frameLength = ModbusTcpFrames.MBAP_HEADER_LENGTH + length - 1;
+        if (readBuffer.remaining() < frameLength) {
+            return false;
+        }
+        supervisor.recordSuccess();
+        timingProfiles.recordGatewayAnswer();
+        Transaction transaction = null;
+        for (int i = 0; i < inFlightCount; i++) {
+            if (inFlight[i].transactionId == responseTransactionId) {
+                transaction = removeInFlight(i);
+                break;
+            }
+        }
+        if (transaction == null) {
+            logger.debug("Ответ на неизвестную или просроченную транзакцию {}", responseTransactionId);
+        } else {
+            complete(transaction, readBuffer.get(start + 6) & 0xFF, start + ModbusTcpFrames.MBAP_HEADER_LENGTH,
+                    length - 1);
+        }
+        readBuffer.position(start + frameLength);
+        return true;
+    }
+
+    private boolean readRtuFrame() {
+        int start = readBuffer.position();
+        if (readBuffer.remaining() < ModbusRtuFrames.EXCEPTION_LENGTH) {
+            return false;
+        }
+        Transaction transaction = inFlightCount > 0 ? inFlight[0] : null;
+        /* длина по функции самого кадра: опоздавший ответ на другой запрос тоже должен разобраться целиком */
+        int frameLength = ModbusRtuFrames.responseLength(readBuffer.get(start + 1) & 0x7F, readBuffer, start,
+                readBuffer.remaining());
+        if (frameLength < 0 || readBuffer.remaining() < frameLength) {
+            return false;
+        }
+        int crc = ModbusRtuFrames.crc16(readBuffer, start, frameLength - 2);
+        if (crc != ModbusRtuFrames.getCrc(readBuffer, start + frameLength - 2)) {
+            /* границ кадров в потоке RTU больше не найти, отбрасываем все принятое, запрос уйдет в ошибку */
+            readBuffer.position(readBuffer.limit());
+            if (transaction != null) {
+                removeInFlight(0);
+                timingProfiles.recordFailure(transaction.address);
+                fail(transaction, new ModbusException("Ошибка CRC ответа устройства " + transaction.address));
+            }
+            return false;
+        }
+        supervisor.recordSuccess();
+        timingProfiles.recordGatewayAnswer();
+        if (transaction == null) {
+            logger.debug("Ответ устройства {} без запроса", readBuffer.get(start) & 0xFF);
+        } else if (!answers(transaction, start)) {
+            /* опоздавший ответ на снятый по таймауту запрос, текущий запрос ждет свой ответ дальше */
+            logger.debug("Ответ устройства {} с функцией {} не на текущий запрос к устройству {}, отброшен",
+                    readBuffer.get(start) & 0xFF, readBuffer.get(start + 1) & 0xFF, transaction.address);
+        } else {
+            removeInFlight(0);
+            complete(transaction, readBuffer.get(start) & 0xFF, start + 1,
+                    frameLength - ModbusRtuFrames.OVERHEAD);
+        }
+        readBuffer.position(start + frameLength);
+        return true;
+    }
+
+    /* кадр RTU отвечает на запрос, если совпадают адрес и функция, а для чтения еще и число байт данных; ответ на
+    запись повторяет запрос целиком */
+    private boolean answers(Transaction transaction, int start) {
+        if ((readBuffer.get(start) & 0xFF) != transaction.address) {
+            return false;
+        }
+        int functionCode = readBuffer.get(start + 1) & 0xFF;
+        if (functionCode == (transaction.functionCode | 0x80)) {
+            return true;
+        }
+        if (functionCode != transaction.functionCode) {
+            return false;
+        }
+        return switch (functionCode) {
+            case ModbusTcpFrames.READ_COILS, ModbusTcpFrames.READ_DISCRETE_INPUTS ->
+                    (readBuffer.get(start + 2) & 0xFF) == (transaction.second + 7) / 8;
+            case ModbusTcpFrames.READ_HOLDING_REGISTERS -> (readBuffer.get(start + 2) & 0xFF) == transaction.second * 2;
+            default -> (readBuffer.getShort(start + 2) & 0xFFFF) == transaction.first
+                    && (readBuffer.getShort(start + 4) & 0xFFFF) == (transaction.second & 0xFFFF);
+        };
+    }
+
+    /**
+     * Исход учитывается в профиле устройства до завершения запроса, чтобы следующий запрос вызывающего уже видел
+     * состояние предохранителя устройства
+     */
+    private void complete(Transaction transaction, int responseAddress, int pduOffset, int pduLength) {
+        Object result;
+        try {
+            if (responseAddress != transaction.address) {
+                throw new ModbusException("Ответ от устройства " + responseAddress + " вместо " +
+                        transaction.address);
+            }
+            ModbusTcpFrames.checkResponse(transaction.functionCode, readBuffer, pduOffset, pduLength);
+            result = switch (transaction.functionCode) {
+                case ModbusTcpFrames.READ_COILS, ModbusTcpFrames.READ_DISCRETE_INPUTS ->
+                        ModbusTcpFrames.decodeBits(readBuffer, pduOffset, pduLength);
+                case ModbusTcpFrames.READ_HOLDING_REGISTERS ->
+                        ModbusTcpFrames.decodeRegisters(readBuffer, pduOffset, pduLength);
+                default -> null;
+            };
+        } catch (ModbusException e) {
+            timingProfiles.recordFailure(transaction.address);
+            fail(transaction, e);
+            return;
+        }
+        timingProfiles.recordSuccess(transaction.address, System.nanoTime() - transaction.sentAt);
+        CompletableFuture<Object> future = transaction.future;
+        release(transaction);
+        future.complete(result);
+    }
+
+    private void expire(long now) {
+        int i = 0;
+        while (i < inFlightCount) {
+            Transaction transaction = inFlight[i];
+            if (now - transaction.deadline < 0) {
+                i++;
+                continue;
+            }
+            removeInFlight(i);
+            timingProfiles.recordTimeout(transaction.address);
+            logger.debug("Нет ответа на запрос к устройству {}", transaction.address);
+            if (rtu) {
+                /* начало опоздавшего ответа не отличить от ответа на следующий запрос, ждем, пока линия затихнет */
+                readBuffer.clear();
+                quietUntil = now + timingProfiles.getDelayNanos(transaction.address);
+            }
+            fail(transaction, new ModbusException("Нет ответа от устройства " + transaction.address + " за " +
+                    responseTimeout.toMillis() + " мс"));
+            supervisor.recordFailure();
+        }
+    }
+
+    private Transaction removeInFlight(int index) {
+        Transaction transaction = inFlight[index];
+        System.arraycopy(inFlight, index + 1, inFlight, index, inFlightCount - index - 1);
+        inFlight[--inFlightCount] = null;
+        return transaction;
+    }
+
+    private void connectionLost(IOException cause) {
+        closeChannel(new ModbusException("Потеряно подключение к modbus шлюзу"));
+        supervisor.connectionLost(cause);
+    }
+
+    private void closeChannel(ModbusException cause) {
+        if (channel != null) {
+            closeQuietly(channel);
+            channel = null;
+            key = null;
+            readBuffer.clear();
+        }
+        while (inFlightCount > 0) {
+            fail(removeInFlight(0), cause);
+        }
+    }
+
+    private void failSubmitted() {
+        Transaction transaction;
+        while ((transaction = submitted.poll()) != null) {
+            fail(transaction, new ModbusException("Транспорт modbus закрыт"));
+        }
+    }
+
+    private void fail(Transaction transaction, ModbusException cause) {
+        CompletableFuture<Object> future = transaction.future;
+        release(transaction);
+        future.completeExceptionally(cause);
+    }
+
+    private void release(Transaction transaction) {
+        transaction.future = null;
+        transaction.transactionId = -1;
+        freeTransactions.offer(transaction);
+    }
+
+    private static void closeQuietly(SocketChannel socketChannel) {
+        if (socketChannel != null) {
+            try {
+                socketChannel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        supervisor.close();
+        closeQuietly(openedChannel.getAndSet(null));
+        selector.wakeup();
+        try {
+            ioThread.join(responseTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failSubmitted();
+    }
+
+    /* запрос переиспользуется после завершения, future у каждого запроса своя */
+    private static class Transaction {
+        private int address;
+        private int functionCode;
+        private int first;
+        private int second;
+        private int transactionId = -1;
+        private long sentAt;
+        private long deadline;
+        private CompletableFuture<Object> future;
+    }
+}
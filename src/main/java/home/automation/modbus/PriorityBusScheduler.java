@@ -0,0 +1,328 @@
+package home.automation.modbus;
+
+import home.automation.enums.ModbusPriority;
+import home.automation.exception.ModbusException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Планировщик запросов к шине с приоритетами. У каждого класса запросов своя ограниченная очередь, транспорту
+ * передается не больше заданного числа запросов одновременно, поэтому запись в реле ждет не всю очередь опроса, а
+ * только уже переданные транспорту запросы. Запросы низкого приоритета при переполнении очереди вытесняют самые старые,
+ * устаревшие в очереди отбрасываются. Одинаковые чтения склеиваются раньше, в {@link SingleFlightReads}, и до
+ * планировщика доходят одним запросом. Для каждого запроса пишется время ожидания в очереди, время выполнения
+ * транспортом по функции и устройству и полное время от постановки в очередь до ответа
+ */
+public class PriorityBusScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(PriorityBusScheduler.class);
+    /* границы гистограмм времени запросов: кадр на 9600 занимает десятки миллисекунд, таймаут - секунды */
+    private static final Duration[] BUS_TIME_BUCKETS = {Duration.ofMillis(10), Duration.ofMillis(25),
+            Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500),
+            Duration.ofSeconds(1), Duration.ofMillis(2500)};
+    /* планировщик отправляет только функции чтения и записи одного значения, коды до 6 */
+    private static final int FUNCTION_CODES = ModbusTcpFrames.WRITE_SINGLE_REGISTER + 1;
+    /* адреса устройств modbus 0-247 */
+    private static final int ADDRESSES = 248;
+    private static final int PRIORITIES = ModbusPriority.values().length;
+    private static final int RESULTS = 2;
+    private final ModbusTransport transport;
+    private final int queueCapacity;
+    private final long staleAfterNanos;
+    private final Semaphore dispatchWindow;
+    private final Map<ModbusPriority, Deque<Request<?>>> queues = new EnumMap<>(ModbusPriority.class);
+    private final Map<ModbusPriority, Counter> droppedCounters = new EnumMap<>(ModbusPriority.class);
+    private final Map<ModbusPriority, Timer> queueWaitTimers = new EnumMap<>(ModbusPriority.class);
+    /* таймеры времени запросов регистрируются при первом запросе со своими тегами и дальше берутся из массивов по
+    индексу, чтобы завершение запроса в потоке транспорта ничего не выделяло и не обращалось к реестру метрик */
+    private final AtomicReferenceArray<Timer> transactionTimers =
+            new AtomicReferenceArray<>(FUNCTION_CODES * ADDRESSES * RESULTS);
+    private final AtomicReferenceArray<Timer> requestTimers =
+            new AtomicReferenceArray<>(FUNCTION_CODES * PRIORITIES * RESULTS);
+    private final MeterRegistry meterRegistry;
+    private final String gateway;
+    private final Object lock = new Object();
+    private final Thread dispatcher;
+    private volatile boolean closed = false;
+
+    /**
+     * @param gateway        имя шлюза, запросы к которому планируются, для метрик
+     * @param transport      транспорт, которому передаются запросы
+     * @param dispatchWindow максимальное число запросов, переданных транспорту и еще не выполненных
+     * @param queueCapacity  емкость очереди каждого класса запросов
+     * @param staleAfter     время, после которого чтение низкого приоритета в очереди считается устаревшим
+     * @param meterRegistry  реестр метрик
+     */
+    public PriorityBusScheduler(String gateway, ModbusTransport transport, int dispatchWindow, int queueCapacity,
+                                Duration staleAfter, MeterRegistry meterRegistry) {
+        this.gateway = gateway;
+        this.transport = transport;
+        this.queueCapacity = queueCapacity;
+        this.staleAfterNanos = staleAfter.toNanos();
+        this.dispatchWindow = new Semaphore(dispatchWindow);
+        this.meterRegistry = meterRegistry;
+        for (ModbusPriority priority : ModbusPriority.values()) {
+            Deque<Request<?>> queue = new ArrayDeque<>();
+            queues.put(priority, queue);
+            String priorityTag = priority.name();
+            Gauge.builder("modbus_queue_size", queue, this::queueSize)
+                    .description("Число запросов в очереди к шине modbus")
+                    .tag("gateway", gateway)
+                    .tag("priority", priorityTag)
+                    .register(meterRegistry);
+            droppedCounters.put(priority, Counter.builder("modbus_queue_dropped")
+                    .description("Число отброшенных устаревших или вытесненных запросов к шине modbus")
+                    .tag("gateway", gateway)
+                    .tag("priority", priorityTag)
+                    .register(meterRegistry));
+            queueWaitTimers.put(priority, Timer.builder("modbus_queue_wait")
+                    .description("Время ожидания запроса в очереди к шине modbus до передачи транспорту")
+                    .tag("gateway", gateway)
+                    .tag("priority", priorityTag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.dispatcher = new Thread(this::dispatchLoop, "modbus-scheduler-" + gateway);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<boolean[]> readCoils(ModbusPriority priority, int address, int start, int quantity) {
+        return submit(priority, ModbusTcpFrames.READ_COILS, address,
+                () -> transport.readCoils(address, start, quantity));
+    }
+
+    public CompletableFuture<boolean[]> readDiscreteInputs(ModbusPriority priority, int address, int start,
+                                                           int quantity) {
+        return submit(priority, ModbusTcpFrames.READ_DISCRETE_INPUTS, address,
+                () -> transport.readDiscreteInputs(address, start, quantity));
+    }
+
+    public CompletableFuture<int[]> readHoldingRegisters(ModbusPriority priority, int address, int start,
+                                                         int quantity) {
+        return submit(priority, ModbusTcpFrames.READ_HOLDING_REGISTERS, address,
+                () -> transport.readHoldingRegisters(address, start, quantity));
+    }
+
+    public CompletableFuture<Void> writeSingleCoil(ModbusPriority priority, int address, int coil, boolean value) {
+        return submit(priority, ModbusTcpFrames.WRITE_SINGLE_COIL, address,
+                () -> transport.writeSingleCoil(address, coil, value));
+    }
+
+    public CompletableFuture<Void> writeSingleRegister(ModbusPriority priority, int address, int register,
+                                                       int value) {
+        return submit(priority, ModbusTcpFrames.WRITE_SINGLE_REGISTER, address,
+                () -> transport.writeSingleRegister(address, register, value));
+    }
+
+    private <T> CompletableFuture<T> submit(ModbusPriority priority, int functionCode, int address,
+                                            Supplier<CompletableFuture<T>> operation) {
+        Request<T> request = new Request<>(priority, functionCode, address, operation);
+        Request<?> dropped = null;
+        synchronized (lock) {
+            if (closed) {
+                request.fail(new ModbusException("Транспорт modbus закрыт"));
+                return request.future;
+            }
+            Deque<Request<?>> queue = queues.get(priority);
+            if (queue.size() >= queueCapacity) {
+                if (!priority.isDiscardable()) {
+                    logger.error("Очередь запросов к шине ({}) переполнена", priority.getTemplate());
+                    request.fail(new ModbusException("Очередь запросов к шине переполнена"));
+                    return request.future;
+                }
+                dropped = queue.pollFirst();
+                droppedCounters.get(priority).increment();
+            }
+            queue.addLast(request);
+            lock.notifyAll();
+        }
+        if (dropped != null) {
+            logger.debug("Запрос ({}) вытеснен из переполненной очереди", priority.getTemplate());
+            dropped.fail(new ModbusException("Запрос вытеснен из переполненной очереди"));
+        }
+        return request.future;
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            Request<?> request;
+            try {
+                /* запрос выбирается только когда транспорт готов его принять, чтобы пришедшая за это время запись
+                обогнала накопившиеся чтения */
+                dispatchWindow.acquire();
+                request = next();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (request.isStale()) {
+                dispatchWindow.release();
+                droppedCounters.get(request.priority).increment();
+                logger.debug("Устаревший запрос ({}) отброшен", request.priority.getTemplate());
+                request.fail(new ModbusException("Запрос устарел в очереди"));
+                continue;
+            }
+            request.dispatch();
+        }
+    }
+
+    private Request<?> next() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                for (ModbusPriority priority : ModbusPriority.values()) {
+                    Request<?> request = queues.get(priority).pollFirst();
+                    if (request != null) {
+                        return request;
+                    }
+                }
+                lock.wait();
+            }
+        }
+    }
+
+    private int queueSize(Deque<Request<?>> queue) {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            for (ModbusPriority priority : ModbusPriority.values()) {
+                Request<?> request;
+                while ((request = queues.get(priority).pollFirst()) != null) {
+                    request.fail(new ModbusException("Транспорт modbus закрыт"));
+                }
+            }
+        }
+        dispatcher.interrupt();
+        transport.close();
+    }
+
+    private void recordBusTime(Request<?> request, long dispatchedAt, @Nullable Throwable error) {
+        long completedAt = System.nanoTime();
+        int result = error == null ? 0 : 1;
+        transactionTimer(request.functionCode, request.address, result)
+                .record(completedAt - dispatchedAt, TimeUnit.NANOSECONDS);
+        requestTimer(request.functionCode, request.priority, result)
+                .record(completedAt - request.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer transactionTimer(int functionCode, int address, int result) {
+        if (functionCode >= FUNCTION_CODES || address < 0 || address >= ADDRESSES) {
+            return registerTransactionTimer(functionCode, address, result);
+        }
+        int index = (functionCode * ADDRESSES + address) * RESULTS + result;
+        Timer timer = transactionTimers.get(index);
+        if (timer == null) {
+            /* реестр возвращает один и тот же таймер, гонка при первой регистрации безопасна */
+            timer = registerTransactionTimer(functionCode, address, result);
+            transactionTimers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private Timer requestTimer(int functionCode, ModbusPriority priority, int result) {
+        if (functionCode >= FUNCTION_CODES) {
+            return registerRequestTimer(functionCode, priority, result);
+        }
+        int index = (functionCode * PRIORITIES + priority.ordinal()) * RESULTS + result;
+        Timer timer = requestTimers.get(index);
+        if (timer == null) {
+            timer = registerRequestTimer(functionCode, priority, result);
+            requestTimers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private Timer registerTransactionTimer(int functionCode, int address, int result) {
+        return Timer.builder("modbus_transaction")
+                .description("Время выполнения запроса транспортом modbus от передачи до ответа")
+                .tag("gateway", gateway)
+                .tag("function", functionTag(functionCode))
+                .tag("slave", String.valueOf(address))
+                .tag("result", resultTag(result))
+                .serviceLevelObjectives(BUS_TIME_BUCKETS)
+                .register(meterRegistry);
+    }
+
+    private Timer registerRequestTimer(int functionCode, ModbusPriority priority, int result) {
+        return Timer.builder("modbus_request")
+                .description("Полное время запроса к шине modbus от постановки в очередь до ответа")
+                .tag("gateway", gateway)
+                .tag("function", functionTag(functionCode))
+                .tag("priority", priority.name())
+                .tag("result", resultTag(result))
+                .serviceLevelObjectives(BUS_TIME_BUCKETS)
+                .register(meterRegistry);
+    }
+
+    private static String functionTag(int functionCode) {
+        return String.format("F%02d", functionCode);
+    }
+
+    private static String resultTag(int result) {
+        return result == 0 ? "ok" : "error";
+    }
+
+    private class Request<T> {
+        private final ModbusPriority priority;
+        private final int functionCode;
+        private final int address;
+        private final Supplier<CompletableFuture<T>> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+
+        private Request(ModbusPriority priority, int functionCode, int address,
+                        Supplier<CompletableFuture<T>> operation) {
+            this.priority = priority;
+            this.functionCode = functionCode;
+            this.address = address;
+            this.operation = operation;
+        }
+
+        private boolean isStale() {
+            return priority.isDiscardable() && System.nanoTime() - enqueuedAt > staleAfterNanos;
+        }
+
+        private void dispatch() {
+            long dispatchedAt = System.nanoTime();
+            queueWaitTimers.get(priority).record(dispatchedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+            CompletableFuture<T> result;
+            try {
+                result = operation.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(new ModbusException(e.getMessage()));
+            }
+            result.whenComplete((value, error) -> {
+                dispatchWindow.release();
+                recordBusTime(this, dispatchedAt, error);
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(value);
+                }
+            });
+        }
+
+        private void fail(ModbusException cause) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
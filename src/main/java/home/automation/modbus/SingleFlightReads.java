@@ -0,0 +1,69 @@
+package home.automation.modbus;
+
+import home.automation.enums.ModbusPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Склейка одинаковых чтений: пока чтение той же функции с того же устройства и того же диапазона ждет в очереди или
+ * выполняется, новые вызывающие получают его результат вместо нового запроса к шине. Результат общий, поэтому
+ * вызывающие не должны менять полученный массив. Чтение более низкого приоритета не обслуживает более срочное, чтобы
+ * управляющее чтение не ждало в очереди мониторинга
+ */
+public class SingleFlightReads {
+    private final Map<String, Flight<?>> flights = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public SingleFlightReads(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("modbus_single_flight")
+                .description("Число чтений modbus, обслуженных уже выполняющимся таким же чтением")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("modbus_single_flight")
+                .description("Число чтений modbus, для которых выполнен отдельный запрос")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public static String key(int functionCode, int address, int start, int quantity) {
+        return functionCode + ":" + address + ":" + start + ":" + quantity;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> read(String key, ModbusPriority priority, Supplier<CompletableFuture<T>> read) {
+        Flight<T> created = new Flight<>(priority);
+        Flight<?> flight = flights.compute(key, (k, existing) ->
+                existing != null && existing.priority.ordinal() <= priority.ordinal() ? existing : created
+        );
+        if (flight != created) {
+            hits.increment();
+            return (CompletableFuture<T>) flight.future;
+        }
+        misses.increment();
+        read.get().whenComplete((value, error) -> {
+            /* снимаем до завершения, чтобы пришедший после ответа вызывающий получил новое значение */
+            flights.remove(key, created);
+            if (error != null) {
+                created.future.completeExceptionally(error);
+            } else {
+                created.future.complete(value);
+            }
+        });
+        return created.future;
+    }
+
+    private static class Flight<T> {
+        private final ModbusPriority priority;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Flight(ModbusPriority priority) {
+            this.priority = priority;
+        }
+    }
+}
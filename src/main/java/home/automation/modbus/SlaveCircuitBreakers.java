@@ -0,0 +1,176 @@
+package home.automation.modbus;
+
+import home.automation.configuration.ModbusCircuitBreakerConfiguration;
+import home.automation.enums.CircuitBreakerState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Предохранители устройств на шине RS485. После заданного числа ошибок и таймаутов устройства подряд предохранитель
+ * размыкается, и чтения этого устройства сразу завершаются ошибкой, не занимая шину на время таймаута. Раз в интервал
+ * проверки одно чтение пропускается на шину: ответ замыкает предохранитель, ошибка снова размыкает. Записи не
+ * задерживаются, их исход учитывается так же, как исход чтений
+ */
+public class SlaveCircuitBreakers {
+    private static final Logger logger = LoggerFactory.getLogger(SlaveCircuitBreakers.class);
+    private final ModbusCircuitBreakerConfiguration configuration;
+    private final MeterRegistry meterRegistry;
+    private final Map<Integer, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param configuration порог ошибок и интервал проверки
+     * @param meterRegistry реестр метрик
+     */
+    public SlaveCircuitBreakers(ModbusCircuitBreakerConfiguration configuration, MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Можно ли отправить чтение устройству. В полуоткрытом состоянии разрешает одно проверочное чтение за интервал
+     * проверки
+     */
+    public boolean allowRequest(int address) {
+        if (!configuration.getEnabled()) {
+            return true;
+        }
+        return breaker(address).allowRequest();
+    }
+
+    public void recordSuccess(int address) {
+        if (configuration.getEnabled()) {
+            breaker(address).recordSuccess();
+        }
+    }
+
+    public void recordFailure(int address) {
+        if (configuration.getEnabled()) {
+            breaker(address).recordFailure();
+        }
+    }
+
+    /**
+     * Следующее чтение устройства с разомкнутым предохранителем уйдет на шину как проверочное, не дожидаясь
+     * интервала проверки
+     */
+    public void probeNow(int address) {
+        Breaker breaker = breakers.get(address);
+        if (breaker != null) {
+            breaker.probeNow();
+        }
+    }
+
+    public CircuitBreakerState getState(int address) {
+        Breaker breaker = breakers.get(address);
+        return breaker == null ? CircuitBreakerState.CLOSED : breaker.state;
+    }
+
+    /**
+     * @return через сколько будет следующая проверка устройства, 0 - запросы к устройству не задерживаются
+     */
+    public Duration getTimeToProbe(int address) {
+        Breaker breaker = breakers.get(address);
+        if (breaker == null || breaker.state == CircuitBreakerState.CLOSED) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, breaker.probeAt - System.nanoTime()));
+    }
+
+    /**
+     * @return адреса устройств, предохранители которых разомкнуты или проверяются
+     */
+    public Set<Integer> getUnavailableSlaves() {
+        Set<Integer> unavailable = new TreeSet<>();
+        breakers.forEach((address, breaker) -> {
+            if (breaker.state != CircuitBreakerState.CLOSED) {
+                unavailable.add(address);
+            }
+        });
+        return unavailable;
+    }
+
+    private Breaker breaker(int address) {
+        Breaker breaker = breakers.get(address);
+        return breaker != null ? breaker : breakers.computeIfAbsent(address, Breaker::new);
+    }
+
+    private class Breaker {
+        private final int address;
+        private final Counter rejected;
+        private final Counter opened;
+        private volatile CircuitBreakerState state = CircuitBreakerState.CLOSED;
+        private volatile long probeAt;
+        private int failures = 0;
+
+        private Breaker(int address) {
+            this.address = address;
+            String slave = String.valueOf(address);
+            Gauge.builder("modbus_circuit_breaker_state", this, breaker -> breaker.state.getNumericStatus())
+                    .description("Предохранитель устройства modbus: 0 - замкнут, 1 - проверка, 2 - разомкнут")
+                    .tag("slave", slave)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("modbus_circuit_breaker_rejected")
+                    .description("Число чтений, не отправленных устройству modbus из-за разомкнутого предохранителя")
+                    .tag("slave", slave)
+                    .register(meterRegistry);
+            this.opened = Counter.builder("modbus_circuit_breaker_opened")
+                    .description("Число размыканий предохранителя устройства modbus")
+                    .tag("slave", slave)
+                    .register(meterRegistry);
+        }
+
+        private synchronized boolean allowRequest() {
+            if (state == CircuitBreakerState.CLOSED) {
+                return true;
+            }
+            long now = System.nanoTime();
+            /* проверочное чтение могло не дойти до шины, например устареть в очереди, тогда через интервал
+            пропускается следующее */
+            if (now - probeAt >= 0) {
+                state = CircuitBreakerState.HALF_OPEN;
+                probeAt = now + configuration.getProbeInterval().toNanos();
+                logger.debug("Проверочное чтение устройства {}", address);
+                return true;
+            }
+            rejected.increment();
+            return false;
+        }
+
+        private synchronized void probeNow() {
+            if (state != CircuitBreakerState.CLOSED) {
+                probeAt = System.nanoTime();
+            }
+        }
+
+        private synchronized void recordSuccess() {
+            failures = 0;
+            if (state != CircuitBreakerState.CLOSED) {
+                logger.info("Устройство {} снова отвечает, запросы к нему возобновлены", address);
+                state = CircuitBreakerState.CLOSED;
+            }
+        }
+
+        private synchronized void recordFailure() {
+            failures++;
+            if (state == CircuitBreakerState.HALF_OPEN
+                    || (state == CircuitBreakerState.CLOSED && failures >= configuration.getFailureThreshold())) {
+                if (state == CircuitBreakerState.CLOSED) {
+                    logger.warn("Устройство {} не ответило {} раз подряд, чтения приостановлены на {}", address,
+                            failures, configuration.getProbeInterval());
+                    opened.increment();
+                }
+                state = CircuitBreakerState.OPEN;
+                probeAt = System.nanoTime() + configuration.getProbeInterval().toNanos();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package home.automation.modbus;
+
+import home.automation.configuration.ModbusTimingConfiguration;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Профили таймингов устройств на шине RS485: пауза после кадра к каждому устройству своя. При включенной
+ * автоподстройке пауза уменьшается, пока доля ошибок и таймаутов устройства в окне запросов не выше порога, и
+ * возвращается к настроенной при росте ошибок. Время ответа каждого устройства и фактически выдержанная пауза перед
+ * следующим кадром пишутся в гистограммы. Исходы запросов передаются и предохранителям устройств. Профили ведутся
+ * на каждый шлюз отдельно, поэтому молчание шлюза отличается от молчания устройства: таймаут засчитывается
+ * устройству, только когда шлюз потом ответит на какой-нибудь запрос, а при переподключении к шлюзу отбрасывается
+ */
+public class SlaveTimingProfiles {
+    private static final Logger logger = LoggerFactory.getLogger(SlaveTimingProfiles.class);
+    private final int defaultDelay;
+    private final ModbusTimingConfiguration configuration;
+    private final MeterRegistry meterRegistry;
+    private final SlaveCircuitBreakers circuitBreakers;
+    private final Map<Integer, SlaveTiming> timings = new ConcurrentHashMap<>();
+    /* адреса устройств, таймауты которых еще не подтверждены ответом шлюза */
+    private final ConcurrentLinkedQueue<Integer> unconfirmedTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param defaultDelay    пауза для устройств без профиля, миллисекунд
+     * @param configuration   профили и параметры автоподстройки
+     * @param circuitBreakers предохранители устройств
+     * @param meterRegistry   реестр метрик
+     */
+    public SlaveTimingProfiles(int defaultDelay, ModbusTimingConfiguration configuration,
+                               SlaveCircuitBreakers circuitBreakers, MeterRegistry meterRegistry) {
+        this.defaultDelay = defaultDelay;
+        this.configuration = configuration;
+        this.circuitBreakers = circuitBreakers;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public long getDelayNanos(int address) {
+        return TimeUnit.MILLISECONDS.toNanos(getDelayMillis(address));
+    }
+
+    public int getDelayMillis(int address) {
+        return timing(address).delay;
+    }
+
+    /**
+     * @param address         modbus адрес устройства
+     * @param turnaroundNanos время от отправки запроса до получения ответа
+     */
+    public void recordSuccess(int address, long turnaroundNanos) {
+        SlaveTiming timing = timing(address);
+        timing.turnaround.record(turnaroundNanos, TimeUnit.NANOSECONDS);
+        timing.record(false);
+        circuitBreakers.recordSuccess(address);
+    }
+
+    /**
+     * @param address     modbus адрес устройства, после кадра к которому выдерживалась пауза
+     * @param waitedNanos сколько транспорт фактически ждал перед отправкой следующего кадра, 0 - пауза уже прошла
+     */
+    public void recordEnforcedDelay(int address, long waitedNanos) {
+        timing(address).enforcedDelay.record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает таймаут или ошибку устройства. Потеря связи со шлюзом сюда не относится - она не зависит от паузы
+     */
+    public void recordFailure(int address) {
+        timing(address).record(true);
+        circuitBreakers.recordFailure(address);
+    }
+
+    /**
+     * Учитывает запрос, на который шлюз не ответил ничем. Засчитывается устройству при следующем ответе шлюза
+     */
+    public void recordTimeout(int address) {
+        unconfirmedTimeouts.add(address);
+    }
+
+    /**
+     * Шлюз ответил, значит связь с ним есть, и накопленные таймауты - молчание самих устройств. Вызывается до учета
+     * исхода запроса, на который пришел ответ
+     */
+    public void recordGatewayAnswer() {
+        Integer address;
+        while ((address = unconfirmedTimeouts.poll()) != null) {
+            recordFailure(address);
+        }
+    }
+
+    /**
+     * Связь со шлюзом восстановлена: таймауты за время потери связи отбрасываются, а устройства с разомкнутыми
+     * предохранителями проверяются сразу, не дожидаясь интервала проверки
+     */
+    public void gatewayReconnected() {
+        unconfirmedTimeouts.clear();
+        for (Integer address : timings.keySet()) {
+            circuitBreakers.probeNow(address);
+        }
+    }
+
+    private SlaveTiming timing(int address) {
+        /* профиль ищется на каждом кадре, computeIfAbsent с ссылкой на конструктор создавал бы лямбду каждый раз */
+        SlaveTiming timing = timings.get(address);
+        return timing != null ? timing : timings.computeIfAbsent(address, SlaveTiming::new);
+    }
+
+    private class SlaveTiming {
+        private final int address;
+        private final int configuredDelay;
+        private final Timer turnaround;
+        private final Timer enforcedDelay;
+        private volatile int delay;
+        private int requests = 0;
+        private int failures = 0;
+
+        private SlaveTiming(int address) {
+            this.address = address;
+            this.configuredDelay = configuration.getDelays().getOrDefault(address, defaultDelay);
+            this.delay = configuredDelay;
+            String slave = String.valueOf(address);
+            this.turnaround = Timer.builder("modbus_turnaround")
+                    .description("Время ответа устройства modbus")
+                    .tag("slave", slave)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.enforcedDelay = Timer.builder("modbus_enforced_delay")
+                    .description("Фактически выдержанная пауза после кадра к устройству modbus")
+                    .tag("slave", slave)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("modbus_inter_frame_delay_ms", this, timing -> timing.delay)
+                    .description("Текущая пауза после кадра к устройству modbus")
+                    .tag("slave", slave)
+                    .register(meterRegistry);
+        }
+
+        private synchronized void record(boolean failure) {
+            ModbusTimingConfiguration.AutoTune autoTune = configuration.getAutoTune();
+            if (!autoTune.isEnabled()) {
+                return;
+            }
+            requests++;
+            if (failure) {
+                failures++;
+            }
+            if (requests < autoTune.getWindow()) {
+                return;
+            }
+            double errorRate = (double) failures / requests;
+            int minDelay = Math.min(autoTune.getMinDelay(), configuredDelay);
+            int newDelay;
+            if (errorRate <= autoTune.getMaxErrorRate()) {
+                newDelay = Math.max(minDelay, delay - autoTune.getStep());
+            } else {
+                newDelay = Math.min(configuredDelay, delay + 2 * autoTune.getStep());
+            }
+            if (newDelay != delay) {
+                logger.info("Пауза для устройства {} изменена с {} до {} мс, доля ошибок {}", address, delay,
+                        newDelay, errorRate);
+                delay = newDelay;
+            }
+            requests = 0;
+            failures = 0;
+        }
+    }
+}
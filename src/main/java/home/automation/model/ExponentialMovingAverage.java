@@ -0,0 +1,59 @@
+package home.automation.model;
+
+/**
+ * Экспоненциальное скользящее среднее: новое значение входит с весом alpha, память O(1). Готовым считается после
+ * заданного числа значений, чтобы не управлять по первому расчету
+ */
+public class ExponentialMovingAverage implements ValueFilter {
+    private final float alpha;
+    private final int warmUp;
+    private int count = 0;
+    private float value;
+    private float latest;
+
+    /**
+     * @param alpha  вес нового значения, от 0 до 1
+     * @param warmUp число значений, после которого сглаженное значение считается готовым
+     */
+    public ExponentialMovingAverage(float alpha, int warmUp) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Вес нового значения должен быть от 0 до 1");
+        }
+        this.alpha = alpha;
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    public void add(float newValue) {
+        value = count == 0 ? newValue : value + alpha * (newValue - value);
+        latest = newValue;
+        if (count < warmUp) {
+            count++;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return count >= warmUp;
+    }
+
+    @Override
+    public Float getValue() {
+        return count == 0 ? null : value;
+    }
+
+    @Override
+    public Float getLatest() {
+        return count == 0 ? null : latest;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package home.automation.model;
+
+/**
+ * Скользящее среднее последних N значений на кольцевом буфере с накопленной суммой: добавление значения и чтение
+ * среднего за O(1)
+ */
+public class MovingAverage implements ValueFilter {
+    private final float[] values;
+    private int head = 0;
+    private int size = 0;
+    private double sum = 0;
+
+    public MovingAverage(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Окно скользящего среднего должно быть положительным");
+        }
+        this.values = new float[window];
+    }
+
+    @Override
+    public void add(float value) {
+        int tail = head + size;
+        if (tail >= values.length) {
+            tail -= values.length;
+        }
+        if (size == values.length) {
+            /* вытесняем самое старое значение из суммы */
+            sum -= values[head];
+            head = head + 1 == values.length ? 0 : head + 1;
+        } else {
+            size++;
+        }
+        values[tail] = value;
+        sum += value;
+    }
+
+    @Override
+    public boolean isReady() {
+        return size == values.length;
+    }
+
+    @Override
+    public Float getValue() {
+        return size == 0 ? null : (float) (sum / size);
+    }
+
+    @Override
+    public Float getLatest() {
+        if (size == 0) {
+            return null;
+        }
+        int tail = head + size - 1;
+        return values[tail >= values.length ? tail - values.length : tail];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+        sum = 0;
+    }
+}
@@ -0,0 +1,87 @@
+package home.automation.model;
+
+import java.util.Arrays;
+
+/**
+ * Скользящая медиана последних N значений, устойчива к единичным выбросам расчета. Кроме кольцевого буфера в порядке
+ * поступления держит те же значения отсортированными, добавление - двоичный поиск и сдвиг массива за O(N), чтение
+ * медианы за O(1)
+ */
+public class MovingMedian implements ValueFilter {
+    private final float[] arrival;
+    private final float[] sorted;
+    private int head = 0;
+    private int size = 0;
+
+    public MovingMedian(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Окно скользящей медианы должно быть положительным");
+        }
+        this.arrival = new float[window];
+        this.sorted = new float[window];
+    }
+
+    @Override
+    public void add(float value) {
+        if (size == arrival.length) {
+            remove(arrival[head]);
+            arrival[head] = value;
+            head = head + 1 == arrival.length ? 0 : head + 1;
+        } else {
+            int tail = head + size;
+            arrival[tail >= arrival.length ? tail - arrival.length : tail] = value;
+            size++;
+        }
+        insert(value);
+    }
+
+    private void insert(float value) {
+        /* вставленное значение уже учтено в size, сортированная часть пока на одно значение короче */
+        int count = size - 1;
+        int index = Arrays.binarySearch(sorted, 0, count, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        System.arraycopy(sorted, index, sorted, index + 1, count - index);
+        sorted[index] = value;
+    }
+
+    private void remove(float value) {
+        int index = Arrays.binarySearch(sorted, 0, size, value);
+        System.arraycopy(sorted, index + 1, sorted, index, size - index - 1);
+    }
+
+    @Override
+    public boolean isReady() {
+        return size == arrival.length;
+    }
+
+    @Override
+    public Float getValue() {
+        if (size == 0) {
+            return null;
+        }
+        int middle = size / 2;
+        return size % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    @Override
+    public Float getLatest() {
+        if (size == 0) {
+            return null;
+        }
+        int tail = head + size - 1;
+        return arrival[tail >= arrival.length ? tail - arrival.length : tail];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
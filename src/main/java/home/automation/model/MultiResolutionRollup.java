@@ -0,0 +1,81 @@
+package home.automation.model;
+
+import home.automation.enums.RollupResolution;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Агрегаты одного временного ряда сразу во всех разрешениях, каждая точка учитывается во всех разрешениях при
+ * добавлении. Потокобезопасность обеспечивает владелец
+ */
+public class MultiResolutionRollup {
+    private final Map<RollupResolution, Rollup> rollups = new EnumMap<>(RollupResolution.class);
+
+    /**
+     * @param capacities число хранимых корзин каждого разрешения
+     */
+    public MultiResolutionRollup(Map<RollupResolution, Integer> capacities) {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            Integer capacity = capacities.get(resolution);
+            if (capacity != null) {
+                rollups.put(resolution, new Rollup(resolution.getWidth().toMillis(), capacity));
+            }
+        }
+    }
+
+    public void append(long timestamp, float value) {
+        for (Rollup rollup : rollups.values()) {
+            rollup.append(timestamp, value);
+        }
+    }
+
+    /**
+     * @return непустые корзины разрешения за интервал [from, to) по возрастанию времени, пустой список если
+     * разрешение не хранится
+     */
+    public List<RollupBucket> getBuckets(RollupResolution resolution, Instant from, Instant to) {
+        List<RollupBucket> result = new ArrayList<>();
+        Rollup rollup = rollups.get(resolution);
+        if (rollup != null) {
+            rollup.forEach(from.toEpochMilli(), to.toEpochMilli(), (start, min, max, average, count) ->
+                    result.add(new RollupBucket(Instant.ofEpochMilli(start), min, max, average, count)));
+        }
+        return result;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(rollups.size());
+        for (Map.Entry<RollupResolution, Rollup> entry : rollups.entrySet()) {
+            output.writeUTF(entry.getKey().name());
+            entry.getValue().writeTo(output);
+        }
+    }
+
+    /**
+     * Чтение состояния, записанного {@link #writeTo}. Разрешения, которых больше нет в настройках, пропускаются
+     */
+    public void readFrom(DataInput input) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = input.readUTF();
+            Rollup rollup = Arrays.stream(RollupResolution.values())
+                    .filter(resolution -> resolution.name().equals(name))
+                    .findFirst()
+                    .map(rollups::get)
+                    .orElse(null);
+            if (rollup == null) {
+                /* состояние разрешения, которого больше нет в настройках, только вычитывается */
+                rollup = new Rollup(1, 1);
+            }
+            rollup.readFrom(input);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package home.automation.model;
+
+import home.automation.enums.TemperatureSensor;
+import home.automation.enums.UniversalSensor;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static home.automation.model.PlantSnapshotLayout.UNIVERSAL_SENSOR_CO2;
+import static home.automation.model.PlantSnapshotLayout.UNIVERSAL_SENSOR_HUMIDITY;
+import static home.automation.model.PlantSnapshotLayout.UNIVERSAL_SENSOR_TEMPERATURE;
+
+/**
+ * Неизменяемый снимок состояния всех устройств за один цикл опроса. Показания лежат в плоском массиве по
+ * раскладке {@link PlantSnapshotLayout}, для каждой точки хранится признак успешного опроса
+ */
+public class PlantSnapshot {
+    private final PlantSnapshotLayout layout;
+    private final long version;
+    private final Instant timestamp;
+    private final float[] values;
+    private final boolean[] quality;
+
+    private PlantSnapshot(PlantSnapshotLayout layout, long version, Instant timestamp, float[] values,
+                          boolean[] quality) {
+        this.layout = layout;
+        this.version = version;
+        this.timestamp = timestamp;
+        this.values = values;
+        this.quality = quality;
+    }
+
+    public static Builder builder(PlantSnapshotLayout layout) {
+        return new Builder(layout);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public Duration getAge() {
+        return Duration.between(timestamp, Instant.now());
+    }
+
+    @Nullable
+    public Float getTemperature(TemperatureSensor sensor) {
+        return getValue(layout.temperatureIndex(sensor));
+    }
+
+    @Nullable
+    public UniversalSensorData getUniversalSensorData(UniversalSensor sensor) {
+        Float temperature = getValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_TEMPERATURE));
+        Float humidity = getValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_HUMIDITY));
+        Float co2 = getValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_CO2));
+        if (temperature == null || humidity == null || co2 == null) {
+            return null;
+        }
+        return new UniversalSensorData(temperature, Math.round(humidity), Math.round(co2));
+    }
+
+    @Nullable
+    public Boolean getCoil(int address, int coil) {
+        Float value = getValue(layout.coilIndex(address, coil));
+        return value == null ? null : value != 0;
+    }
+
+    @Nullable
+    public Boolean getDiscreteInput(int address, int input) {
+        Float value = getValue(layout.discreteInputIndex(address, input));
+        return value == null ? null : value != 0;
+    }
+
+    @Nullable
+    public Integer getHoldingRegister(int address, int register) {
+        Float value = getValue(layout.holdingRegisterIndex(address, register));
+        return value == null ? null : Math.round(value);
+    }
+
+    private @Nullable Float getValue(int index) {
+        if (index < 0 || !quality[index]) {
+            return null;
+        }
+        return values[index];
+    }
+
+    public static class Builder {
+        private final PlantSnapshotLayout layout;
+        private final float[] values;
+        private final boolean[] quality;
+
+        private Builder(PlantSnapshotLayout layout) {
+            this.layout = layout;
+            this.values = new float[layout.getSize()];
+            this.quality = new boolean[layout.getSize()];
+        }
+
+        public Builder temperature(TemperatureSensor sensor, @Nullable Float temperature) {
+            setValue(layout.temperatureIndex(sensor), temperature);
+            return this;
+        }
+
+        public Builder universalSensorData(UniversalSensor sensor, UniversalSensorData data) {
+            setValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_TEMPERATURE), data.getTemperature());
+            setValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_HUMIDITY),
+                    data.getHumidityPercent() == null ? null : (float) data.getHumidityPercent());
+            setValue(layout.universalSensorIndex(sensor, UNIVERSAL_SENSOR_CO2),
+                    data.getCO2ppm() == null ? null : (float) data.getCO2ppm());
+            return this;
+        }
+
+        public Builder coils(int address, boolean[] coils) {
+            for (int coil = 0; coil < coils.length; coil++) {
+                setValue(layout.coilIndex(address, coil), coils[coil] ? 1f : 0f);
+            }
+            return this;
+        }
+
+        public Builder discreteInputs(int address, boolean[] inputs) {
+            for (int input = 0; input < inputs.length; input++) {
+                setValue(layout.discreteInputIndex(address, input), inputs[input] ? 1f : 0f);
+            }
+            return this;
+        }
+
+        public Builder holdingRegister(int address, int register, int value) {
+            setValue(layout.holdingRegisterIndex(address, register), (float) value);
+            return this;
+        }
+
+        public PlantSnapshot build(long version, Instant timestamp) {
+            return new PlantSnapshot(layout, version, timestamp, values.clone(), quality.clone());
+        }
+
+        private void setValue(int index, @Nullable Float value) {
+            if (index < 0) {
+                return;
+            }
+            values[index] = value == null ? 0 : value;
+            quality[index] = value != null;
+        }
+    }
+}
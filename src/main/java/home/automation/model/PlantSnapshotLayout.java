@@ -0,0 +1,122 @@
+package home.automation.model;
+
+import home.automation.enums.TemperatureSensor;
+import home.automation.enums.UniversalSensor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Раскладка точек опроса в плоском массиве снимка состояния. Строится один раз при старте по конфигурации
+ * устройств и общая для всех снимков
+ */
+public class PlantSnapshotLayout {
+    public static final int UNIVERSAL_SENSOR_TEMPERATURE = 0;
+    public static final int UNIVERSAL_SENSOR_HUMIDITY = 1;
+    public static final int UNIVERSAL_SENSOR_CO2 = 2;
+    private static final int UNIVERSAL_SENSOR_CHANNELS = 3;
+    private final int universalSensorsOffset;
+    private final Map<Integer, Integer> coilOffsets = new TreeMap<>();
+    private final Map<Integer, Integer> coilCounts;
+    private final Map<Integer, Integer> discreteInputOffsets = new TreeMap<>();
+    private final Map<Integer, Integer> discreteInputCounts;
+    private final Map<Integer, Map<Integer, Integer>> holdingRegisterIndexes = new TreeMap<>();
+    private final int size;
+
+    /**
+     * @param coilCounts          modbus адреса реле, катушки которых входят в снимок, и число катушек модуля
+     * @param discreteInputCounts modbus адреса реле, дискретные входы которых входят в снимок, и число входов модуля
+     * @param holdingRegisters    modbus адреса и id регистров, которые входят в снимок
+     */
+    public PlantSnapshotLayout(
+            Map<Integer, Integer> coilCounts,
+            Map<Integer, Integer> discreteInputCounts,
+            Map<Integer, Set<Integer>> holdingRegisters
+    ) {
+        this.coilCounts = new TreeMap<>(coilCounts);
+        this.discreteInputCounts = new TreeMap<>(discreteInputCounts);
+        int index = TemperatureSensor.values().length;
+        universalSensorsOffset = index;
+        index += UniversalSensor.values().length * UNIVERSAL_SENSOR_CHANNELS;
+        for (Map.Entry<Integer, Integer> entry : this.coilCounts.entrySet()) {
+            coilOffsets.put(entry.getKey(), index);
+            index += entry.getValue();
+        }
+        for (Map.Entry<Integer, Integer> entry : this.discreteInputCounts.entrySet()) {
+            discreteInputOffsets.put(entry.getKey(), index);
+            index += entry.getValue();
+        }
+        for (Map.Entry<Integer, Set<Integer>> entry : new TreeMap<>(holdingRegisters).entrySet()) {
+            Map<Integer, Integer> registers = new TreeMap<>();
+            for (Integer register : new TreeSet<>(entry.getValue())) {
+                registers.put(register, index++);
+            }
+            holdingRegisterIndexes.put(entry.getKey(), registers);
+        }
+        size = index;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Set<Integer> getCoilAddresses() {
+        return Collections.unmodifiableSet(coilOffsets.keySet());
+    }
+
+    public Set<Integer> getDiscreteInputAddresses() {
+        return Collections.unmodifiableSet(discreteInputOffsets.keySet());
+    }
+
+    public Set<Integer> getHoldingRegisterAddresses() {
+        return Collections.unmodifiableSet(holdingRegisterIndexes.keySet());
+    }
+
+    public Set<Integer> getHoldingRegisters(int address) {
+        return Collections.unmodifiableSet(holdingRegisterIndexes.getOrDefault(address, Map.of()).keySet());
+    }
+
+    public int getCoilsCount(int address) {
+        return coilCounts.getOrDefault(address, 0);
+    }
+
+    public int getDiscreteInputsCount(int address) {
+        return discreteInputCounts.getOrDefault(address, 0);
+    }
+
+    int temperatureIndex(TemperatureSensor sensor) {
+        return sensor.ordinal();
+    }
+
+    int universalSensorIndex(UniversalSensor sensor, int channel) {
+        return universalSensorsOffset + sensor.ordinal() * UNIVERSAL_SENSOR_CHANNELS + channel;
+    }
+
+    /* -1 - точка не входит в снимок */
+    int coilIndex(int address, int coil) {
+        Integer offset = coilOffsets.get(address);
+        if (offset == null || coil < 0 || coil >= coilCounts.get(address)) {
+            return -1;
+        }
+        return offset + coil;
+    }
+
+    int discreteInputIndex(int address, int input) {
+        Integer offset = discreteInputOffsets.get(address);
+        if (offset == null || input < 0 || input >= discreteInputCounts.get(address)) {
+            return -1;
+        }
+        return offset + input;
+    }
+
+    int holdingRegisterIndex(int address, int register) {
+        Map<Integer, Integer> registers = holdingRegisterIndexes.get(address);
+        if (registers == null) {
+            return -1;
+        }
+        return registers.getOrDefault(register, -1);
+    }
+}
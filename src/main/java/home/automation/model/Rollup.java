@@ -0,0 +1,151 @@
+package home.automation.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Агрегаты временного ряда одного разрешения: минимум, максимум, сумма и количество точек по корзинам фиксированной
+ * ширины. Корзины лежат в кольце фиксированной емкости, корзина находится по своему номеру за O(1), поэтому
+ * добавление точки и чтение корзины не зависят от глубины истории, а память ограничена емкостью. Потокобезопасность
+ * обеспечивает владелец
+ */
+public class Rollup {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final long widthMillis;
+    private final long[] buckets;
+    private final float[] min;
+    private final float[] max;
+    private final double[] sum;
+    private final int[] count;
+    private long latestBucket = EMPTY;
+
+    /**
+     * @param widthMillis ширина корзины, миллисекунд
+     * @param capacity    число хранимых последних корзин
+     */
+    public Rollup(long widthMillis, int capacity) {
+        if (widthMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Ширина и число корзин агрегатов должны быть положительными");
+        }
+        this.widthMillis = widthMillis;
+        this.buckets = new long[capacity];
+        Arrays.fill(buckets, EMPTY);
+        this.min = new float[capacity];
+        this.max = new float[capacity];
+        this.sum = new double[capacity];
+        this.count = new int[capacity];
+    }
+
+    /**
+     * Учет точки в корзине ее времени. Корзина, вытесненная из кольца, переиспользуется без очистки остальных
+     *
+     * @param timestamp время, epoch-millis
+     * @param value     значение
+     */
+    public void append(long timestamp, float value) {
+        long bucket = Math.floorDiv(timestamp, widthMillis);
+        if (latestBucket != EMPTY && bucket <= latestBucket - buckets.length) {
+            return;
+        }
+        int slot = slot(bucket);
+        if (buckets[slot] != bucket) {
+            buckets[slot] = bucket;
+            min[slot] = value;
+            max[slot] = value;
+            sum[slot] = value;
+            count[slot] = 1;
+        } else {
+            min[slot] = Math.min(min[slot], value);
+            max[slot] = Math.max(max[slot], value);
+            sum[slot] += value;
+            count[slot]++;
+        }
+        if (latestBucket == EMPTY || bucket > latestBucket) {
+            latestBucket = bucket;
+        }
+    }
+
+    /**
+     * Обход непустых корзин, начало которых попадает в полуинтервал [from, to). Корзины старее емкости кольца не
+     * обходятся, поэтому время обхода ограничено емкостью при любом интервале
+     *
+     * @param from     начало интервала включительно, epoch-millis
+     * @param to       конец интервала не включительно, epoch-millis
+     * @param consumer обработчик корзин
+     */
+    public void forEach(long from, long to, BucketConsumer consumer) {
+        if (latestBucket == EMPTY || to <= from) {
+            return;
+        }
+        long first = Math.max(Math.floorDiv(from + widthMillis - 1, widthMillis), latestBucket - buckets.length + 1);
+        long last = Math.min(Math.floorDiv(to - 1, widthMillis), latestBucket);
+        for (long bucket = first; bucket <= last; bucket++) {
+            int slot = slot(bucket);
+            if (buckets[slot] == bucket) {
+                consumer.accept(bucket * widthMillis, min[slot], max[slot], (float) (sum[slot] / count[slot]),
+                        count[slot]);
+            }
+        }
+    }
+
+    public long getWidthMillis() {
+        return widthMillis;
+    }
+
+    /**
+     * Запись состояния, нужна чтобы агрегаты старее сырой истории переживали перезапуск
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeLong(widthMillis);
+        output.writeInt(buckets.length);
+        output.writeLong(latestBucket);
+        for (int slot = 0; slot < buckets.length; slot++) {
+            output.writeLong(buckets[slot]);
+            output.writeFloat(min[slot]);
+            output.writeFloat(max[slot]);
+            output.writeDouble(sum[slot]);
+            output.writeInt(count[slot]);
+        }
+    }
+
+    /**
+     * Чтение состояния, записанного {@link #writeTo}. Состояние другой ширины или емкости пропускается
+     *
+     * @return false если состояние не подошло и пропущено
+     */
+    public boolean readFrom(DataInput input) throws IOException {
+        long storedWidth = input.readLong();
+        int storedCapacity = input.readInt();
+        long storedLatestBucket = input.readLong();
+        boolean compatible = storedWidth == widthMillis && storedCapacity == buckets.length;
+        if (compatible) {
+            latestBucket = storedLatestBucket;
+        }
+        for (int slot = 0; slot < storedCapacity; slot++) {
+            long bucket = input.readLong();
+            float storedMin = input.readFloat();
+            float storedMax = input.readFloat();
+            double storedSum = input.readDouble();
+            int storedCount = input.readInt();
+            if (compatible) {
+                buckets[slot] = bucket;
+                min[slot] = storedMin;
+                max[slot] = storedMax;
+                sum[slot] = storedSum;
+                count[slot] = storedCount;
+            }
+        }
+        return compatible;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets.length);
+    }
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(long start, float min, float max, float average, int count);
+    }
+}
@@ -0,0 +1,39 @@
+package home.automation.model;
+
+import java.time.Instant;
+
+public class RollupBucket {
+    private final Instant start;
+    private final float min;
+    private final float max;
+    private final float average;
+    private final int count;
+
+    public RollupBucket(Instant start, float min, float max, float average, int count) {
+        this.start = start;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.count = count;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getAverage() {
+        return average;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
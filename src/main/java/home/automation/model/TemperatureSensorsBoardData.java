@@ -0,0 +1,64 @@
+package home.automation.model;
+
+import org.jetbrains.annotations.Nullable;
+
+public class TemperatureSensorsBoardData {
+    public static final Integer TEMPERATURE_SENSOR_BORDER_VALUE = Integer.parseInt("1000000000000000", 2);
+    public static final Integer TEMPERATURE_SENSOR_SUBTRACTING = 65536;
+    private final int startRegisterId;
+    private final Float[] temperatures;
+
+    /**
+     * Снимок всех каналов платы R4DCB08, прочитанных одним запросом
+     *
+     * @param startRegisterId id первого прочитанного регистра
+     * @param temperatures    температуры по порядку регистров, null - датчик не подключен
+     */
+    public TemperatureSensorsBoardData(int startRegisterId, Float[] temperatures) {
+        this.startRegisterId = startRegisterId;
+        this.temperatures = temperatures;
+    }
+
+    /**
+     * Раскодирует сырые значения регистров платы R4DCB08
+     *
+     * @param startRegisterId id первого прочитанного регистра
+     * @param rawTemperatures значения регистров
+     * @return снимок платы
+     */
+    public static TemperatureSensorsBoardData fromRegisters(int startRegisterId, int[] rawTemperatures) {
+        Float[] temperatures = new Float[rawTemperatures.length];
+        for (int i = 0; i < rawTemperatures.length; i++) {
+            temperatures[i] = decodeTemperature(rawTemperatures[i]);
+        }
+        return new TemperatureSensorsBoardData(startRegisterId, temperatures);
+    }
+
+    private static @Nullable Float decodeTemperature(int rawTemperature) {
+        if (rawTemperature == TEMPERATURE_SENSOR_BORDER_VALUE) {
+            /* так плата отдает канал, к которому не подключен датчик */
+            return null;
+        }
+        /* если старший бит единица - температура отрицательная и из нее нужно вычитать, смотри документацию
+        R4DCB08*/
+        if (rawTemperature > TEMPERATURE_SENSOR_BORDER_VALUE) {
+            rawTemperature = rawTemperature - TEMPERATURE_SENSOR_SUBTRACTING;
+        }
+        return (float) rawTemperature / 10;
+    }
+
+    /**
+     * Возвращает температуру канала из снимка
+     *
+     * @param registerId id регистра датчика
+     * @return температура или null, если датчик не подключен или регистр не попал в снимок
+     */
+    @Nullable
+    public Float getTemperature(int registerId) {
+        int index = registerId - startRegisterId;
+        if (index < 0 || index >= temperatures.length) {
+            return null;
+        }
+        return temperatures[index];
+    }
+}
@@ -0,0 +1,171 @@
+package home.automation.model;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Временной ряд фиксированной емкости на кольцевом буфере из примитивных массивов: время в epoch-millis и значение
+ * float. Точки хранятся упорядоченными по времени, добавление новой точки и чтение последней за O(1), при
+ * заполнении буфера самая старая точка перезаписывается. Потокобезопасность обеспечивает владелец ряда
+ */
+public class TimeSeries {
+    private final long[] timestamps;
+    private final float[] values;
+    private int head = 0;
+    private int size = 0;
+
+    public TimeSeries(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость временного ряда должна быть положительной");
+        }
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    /**
+     * Добавление точки. Обычно точки приходят по возрастанию времени, опоздавшая точка вставляется на свое место
+     * сдвигом более новых
+     *
+     * @param timestamp время, epoch-millis
+     * @param value     значение
+     */
+    public void append(long timestamp, float value) {
+        if (size == timestamps.length) {
+            /* буфер заполнен, точка старее всех хранимых уже не нужна */
+            if (timestamp < timestamps[head]) {
+                return;
+            }
+            head = physical(1);
+            size--;
+        }
+        int index = size;
+        while (index > 0 && getTimestamp(index - 1) > timestamp) {
+            int from = physical(index - 1);
+            int to = physical(index);
+            timestamps[to] = timestamps[from];
+            values[to] = values[from];
+            index--;
+        }
+        int to = physical(index);
+        timestamps[to] = timestamp;
+        values[to] = value;
+        size++;
+    }
+
+    /**
+     * Удаление точек старее заданного времени, каждая точка удаляется один раз, поэтому в среднем O(1) на добавление
+     *
+     * @param timestamp время, epoch-millis
+     */
+    public void expireBefore(long timestamp) {
+        while (size > 0 && timestamps[head] < timestamp) {
+            head = physical(1);
+            size--;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * @param index номер точки, начиная с самой старой
+     */
+    public long getTimestamp(int index) {
+        return timestamps[physical(checkIndex(index))];
+    }
+
+    /**
+     * @param index номер точки, начиная с самой старой
+     */
+    public float getValue(int index) {
+        return values[physical(checkIndex(index))];
+    }
+
+    public long getOldestTimestamp() {
+        checkNotEmpty();
+        return timestamps[head];
+    }
+
+    public long getLatestTimestamp() {
+        checkNotEmpty();
+        return timestamps[physical(size - 1)];
+    }
+
+    public float getLatestValue() {
+        checkNotEmpty();
+        return values[physical(size - 1)];
+    }
+
+    /**
+     * Поиск первой точки не старее заданного времени, двоичный поиск за O(log n)
+     *
+     * @param timestamp время, epoch-millis
+     * @return номер точки, начиная с самой старой, или размер ряда если таких точек нет
+     */
+    public int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[physical(middle)] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Обход точек из полуинтервала [from, to) по возрастанию времени без копирования и упаковки значений
+     *
+     * @param from     начало интервала включительно, epoch-millis
+     * @param to       конец интервала не включительно, epoch-millis
+     * @param consumer обработчик точек
+     */
+    public void forEach(long from, long to, PointConsumer consumer) {
+        for (int index = firstIndexAtOrAfter(from); index < size; index++) {
+            int position = physical(index);
+            if (timestamps[position] >= to) {
+                return;
+            }
+            consumer.accept(timestamps[position], values[position]);
+        }
+    }
+
+    private int physical(int index) {
+        int position = head + index;
+        return position >= timestamps.length ? position - timestamps.length : position;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Точки " + index + " нет во временном ряду из " + size + " точек");
+        }
+        return index;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException("Временной ряд пуст");
+        }
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(long timestamp, float value);
+    }
+}
@@ -1,6 +1,8 @@
 package home.automation.model;
 
 public class UniversalSensorData {
+    /* количество регистров CO2RS485, начиная с нулевого: влажность, температура, CO2 */
+    public static final int REGISTERS_COUNT = 3;
     private final Float temperature;
     private final Integer humidityPercent;
     private final Integer co2ppm;
@@ -11,6 +13,16 @@ public class UniversalSensorData {
         this.co2ppm = co2ppm;
     }
 
+    /**
+     * Раскодирует значения регистров датчика CO2RS485
+     *
+     * @param values значения регистров с нулевого
+     * @return показания датчика
+     */
+    public static UniversalSensorData fromRegisters(int[] values) {
+        return new UniversalSensorData(((float) values[1]) / 10, Math.round((float) values[0] / 10), values[2]);
+    }
+
     public Float getTemperature() {
         return temperature;
     }
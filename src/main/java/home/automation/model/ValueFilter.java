@@ -0,0 +1,33 @@
+package home.automation.model;
+
+/**
+ * Сглаживание потока значений, например рассчитанных положений клапана. Потокобезопасность обеспечивает владелец
+ */
+public interface ValueFilter {
+    /**
+     * Добавление очередного значения
+     */
+    void add(float value);
+
+    /**
+     * @return накоплено ли достаточно значений, чтобы сглаженному значению можно было верить
+     */
+    boolean isReady();
+
+    /**
+     * @return сглаженное значение или null если значений еще не было
+     */
+    Float getValue();
+
+    /**
+     * @return последнее добавленное значение или null если значений еще не было
+     */
+    Float getLatest();
+
+    /**
+     * @return число значений, участвующих в сглаживании
+     */
+    int size();
+
+    void clear();
+}
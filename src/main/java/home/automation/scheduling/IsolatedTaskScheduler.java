@@ -0,0 +1,192 @@
+package home.automation.scheduling;
+
+import home.automation.modbus.BusWaitScope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Планировщик, в котором каждая задача выполняется в собственном потоке. Общий поток планировщика только отмеряет
+ * запуски и передает их потоку задачи, поэтому задача, надолго заблокированная на исполнительном устройстве, не
+ * задерживает остальные контуры управления. Если к очередному запуску прошлый еще не закончился, запуск пропускается и
+ * учитывается как перебег. Задачи с фиксированной задержкой планируются прямо в своем потоке, и задержка отсчитывается
+ * от конца выполнения. По каждой задаче публикуются длительность выполнений, время ожидания шины за выполнение,
+ * число перебегов и время текущего выполнения
+ */
+public class IsolatedTaskScheduler implements TaskScheduler, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(IsolatedTaskScheduler.class);
+    private final ThreadPoolTaskScheduler dispatcher = new ThreadPoolTaskScheduler();
+    private final MeterRegistry meterRegistry;
+    private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+
+    public IsolatedTaskScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        dispatcher.setThreadNamePrefix("scheduling-dispatcher-");
+        dispatcher.initialize();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        return dispatcher.schedule(isolate(task), trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Instant startTime) {
+        return dispatcher.schedule(isolate(task), startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period) {
+        return dispatcher.scheduleAtFixedRate(isolate(task), startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Duration period) {
+        return dispatcher.scheduleAtFixedRate(isolate(task), period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Instant startTime, Duration delay) {
+        return scheduleWithFixedDelay(task, Math.max(0, Duration.between(Instant.now(), startTime).toNanos()), delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Duration delay) {
+        return scheduleWithFixedDelay(task, 0, delay);
+    }
+
+    /* общий поток отсчитывал бы задержку от передачи задачи ее потоку, а не от конца выполнения, поэтому задачу с
+    фиксированной задержкой планирует ее собственный поток: он выполняет задачу и после нее отмеряет задержку.
+    Перебегов у таких задач не бывает */
+    private ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelayNanos, Duration delay) {
+        String name = taskName(task);
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "task-" + name));
+        executors.add(executor);
+        IsolatedTask isolatedTask = new IsolatedTask(name, task, executor);
+        return executor.scheduleWithFixedDelay(isolatedTask::runInPlace, initialDelayNanos, delay.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdown();
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    private Runnable isolate(Runnable task) {
+        String name = taskName(task);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "task-" + name));
+        executors.add(executor);
+        return new IsolatedTask(name, task, executor);
+    }
+
+    /* имя задачи - класс и метод, помеченный @Scheduled */
+    static String taskName(Runnable task) {
+        if (task instanceof ScheduledMethodRunnable scheduledMethod) {
+            return AopUtils.getTargetClass(scheduledMethod.getTarget()).getSimpleName() + "." +
+                    scheduledMethod.getMethod().getName();
+        }
+        return task.getClass().getSimpleName();
+    }
+
+    private class IsolatedTask implements Runnable {
+        private final String name;
+        private final Runnable task;
+        private final ExecutorService executor;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final Timer duration;
+        private final Timer busWait;
+        private final Counter overruns;
+        private volatile long startedAt;
+
+        private IsolatedTask(String name, Runnable task, ExecutorService executor) {
+            this.name = name;
+            this.task = task;
+            this.executor = executor;
+            this.duration = Timer.builder("scheduled_task")
+                    .tag("component", name)
+                    .tag("system", "home_automation")
+                    .description("Длительность выполнения задачи по расписанию")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.busWait = Timer.builder("scheduled_task_bus_wait")
+                    .tag("component", name)
+                    .tag("system", "home_automation")
+                    .description("Сколько выполнение задачи по расписанию ждало ответов шины modbus")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.overruns = Counter.builder("scheduled_task_overrun")
+                    .tag("component", name)
+                    .tag("system", "home_automation")
+                    .description("Число запусков, пропущенных из-за того, что прошлое выполнение задачи не закончилось")
+                    .register(meterRegistry);
+            Gauge.builder("scheduled_task_running_seconds", this::getRunningSeconds)
+                    .tag("component", name)
+                    .tag("system", "home_automation")
+                    .description("Сколько секунд длится текущее выполнение задачи, 0 - задача не выполняется")
+                    .register(meterRegistry);
+        }
+
+        private double getRunningSeconds() {
+            return running.get() ? (System.nanoTime() - startedAt) / 1e9 : 0;
+        }
+
+        @Override
+        public void run() {
+            if (!running.compareAndSet(false, true)) {
+                overruns.increment();
+                logger.warn("Задача {} выполняется уже {} секунд, очередной запуск пропущен", name,
+                        Math.round(getRunningSeconds()));
+                return;
+            }
+            startedAt = System.nanoTime();
+            try {
+                executor.execute(this::execute);
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+
+        /* запуск уже в потоке задачи, ошибки задачи execute не выпускает, поэтому расписание не прерывается */
+        private void runInPlace() {
+            running.set(true);
+            startedAt = System.nanoTime();
+            execute();
+        }
+
+        private void execute() {
+            BusWaitScope.start();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("Ошибка выполнения задачи {}", name, e);
+            } finally {
+                busWait.record(BusWaitScope.stop(), TimeUnit.NANOSECONDS);
+                duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                running.set(false);
+            }
+        }
+    }
+}
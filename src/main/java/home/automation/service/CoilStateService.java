@@ -0,0 +1,35 @@
+package home.automation.service;
+
+import home.automation.exception.ModbusException;
+
+import java.time.Instant;
+
+public interface CoilStateService {
+    /**
+     * Возвращает известное состояние катушки реле, к шине обращается только если состояние неизвестно или устарело
+     *
+     * @param address modbus адрес реле
+     * @param coilId  id катушки
+     * @return состояние катушки
+     * @throws ModbusException если состояние пришлось читать с шины и это не удалось
+     */
+    boolean getCoil(int address, int coilId) throws ModbusException;
+
+    /**
+     * Переключает катушку и после подтверждения записи запоминает новое состояние
+     *
+     * @param address modbus адрес реле
+     * @param coilId  id катушки
+     * @param value   новое значение катушки
+     */
+    void writeCoil(int address, int coilId, boolean value) throws ModbusException;
+
+    /**
+     * Сверяет известное состояние с прочитанным с шины. Катушки, записанные после начала чтения, не обновляются
+     *
+     * @param address       modbus адрес реле
+     * @param coils         прочитанные состояния всех катушек реле
+     * @param readStartedAt время отправки запроса на чтение
+     */
+    void reconcile(int address, boolean[] coils, Instant readStartedAt);
+}
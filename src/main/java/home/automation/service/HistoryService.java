@@ -1,10 +1,15 @@
 package home.automation.service;
 
 import home.automation.enums.GasBoilerStatus;
+import home.automation.enums.RollupResolution;
 import home.automation.enums.TemperatureSensor;
+import home.automation.enums.UniversalSensor;
+import home.automation.enums.UniversalSensorChannel;
+import home.automation.model.RollupBucket;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 
 public interface HistoryService {
     /**
@@ -59,4 +64,39 @@ public interface HistoryService {
      * @return последнее рассчитанное положение клапана
      */
     Integer getLastCalculatedTargetValvePercent();
+
+    /**
+     * Получение агрегатов температуры за интервал
+     *
+     * @param sensor     датчик
+     * @param resolution разрешение
+     * @param from       начало интервала включительно
+     * @param to         конец интервала не включительно
+     * @return непустые корзины по возрастанию времени
+     */
+    List<RollupBucket> getTemperatureRollup(TemperatureSensor sensor, RollupResolution resolution, Instant from,
+                                            Instant to);
+
+    /**
+     * Получение агрегатов канала универсального датчика за интервал
+     *
+     * @param sensor     датчик
+     * @param channel    канал датчика
+     * @param resolution разрешение
+     * @param from       начало интервала включительно
+     * @param to         конец интервала не включительно
+     * @return непустые корзины по возрастанию времени
+     */
+    List<RollupBucket> getUniversalSensorRollup(UniversalSensor sensor, UniversalSensorChannel channel,
+                                                RollupResolution resolution, Instant from, Instant to);
+
+    /**
+     * Получение агрегатов рассчитанного процента открытия клапана за интервал
+     *
+     * @param resolution разрешение
+     * @param from       начало интервала включительно
+     * @param to         конец интервала не включительно
+     * @return непустые корзины по возрастанию времени
+     */
+    List<RollupBucket> getCalculatedTargetValvePercentRollup(RollupResolution resolution, Instant from, Instant to);
 }
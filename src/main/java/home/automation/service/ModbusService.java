@@ -2,10 +2,12 @@ package home.automation.service;
 
 import home.automation.exception.ModbusException;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 public interface ModbusService {
     /**
-     * Метод получения состояния дискретных входов реле, которые возвращают массив состояния при запросе к нулевому
-     * входу
+     * Метод получения состояния всех дискретных входов реле одним запросом, число входов берется из модели модуля
      *
      * @param address modbus адрес реле
      * @return массив состояний входов
@@ -14,7 +16,15 @@ public interface ModbusService {
     boolean[] readAllDiscreteInputsFromZero(int address) throws ModbusException;
 
     /**
-     * Метод получения состояния катушек для реле, которые возвращают массив состояния при запросе к нулевой катушке
+     * Асинхронный вариант {@link #readAllDiscreteInputsFromZero(int)}, ошибка возвращается через future
+     *
+     * @param address modbus адрес реле
+     * @return future с массивом состояний входов
+     */
+    CompletableFuture<boolean[]> readAllDiscreteInputsFromZeroAsync(int address);
+
+    /**
+     * Метод получения состояния всех катушек реле одним запросом, число катушек берется из модели модуля
      *
      * @param address modbus адрес реле
      * @return массив состояний катушек
@@ -22,6 +32,14 @@ public interface ModbusService {
      */
     boolean[] readAllCoilsFromZero(int address) throws ModbusException;
 
+    /**
+     * Асинхронный вариант {@link #readAllCoilsFromZero(int)}, ошибка возвращается через future
+     *
+     * @param address modbus адрес реле
+     * @return future с массивом состояний катушек
+     */
+    CompletableFuture<boolean[]> readAllCoilsFromZeroAsync(int address);
+
     /**
      * Метод переключения состояния катушки
      *
@@ -50,6 +68,16 @@ public interface ModbusService {
      */
     int[] readHoldingRegisters(int address, int registerStartId, int quantity) throws ModbusException;
 
+    /**
+     * Асинхронный вариант {@link #readHoldingRegisters(int, int, int)}, ошибка возвращается через future
+     *
+     * @param address    modbus адрес
+     * @param registerStartId id регистра
+     * @param quantity количество регистров
+     * @return future с массивом значений
+     */
+    CompletableFuture<int[]> readHoldingRegistersAsync(int address, int registerStartId, int quantity);
+
     /**
      * Метод записи в Holding Register (F06)
      *
@@ -58,4 +86,11 @@ public interface ModbusService {
      * @param value      значение
      */
     void writeHoldingRegister(int address, int registerId, int value) throws ModbusException;
+
+    /**
+     * Устройства, которые перестали отвечать: чтения к ним не отправляются на шину до успешной проверки
+     *
+     * @return modbus адреса устройств
+     */
+    Set<Integer> getUnavailableSlaves();
 }
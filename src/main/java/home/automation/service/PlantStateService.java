@@ -0,0 +1,32 @@
+package home.automation.service;
+
+import home.automation.model.PlantSnapshot;
+import jakarta.annotation.Nullable;
+
+import java.time.Instant;
+
+public interface PlantStateService {
+    /**
+     * Возвращает последний опубликованный снимок состояния устройств, чтение не обращается к шине
+     *
+     * @return снимок или null, если еще не было ни одного цикла опроса
+     */
+    @Nullable
+    PlantSnapshot getSnapshot();
+
+    /**
+     * Возвращает последний снимок, если он не старше допустимого возраста
+     *
+     * @return снимок или null, если снимка нет или он устарел
+     */
+    @Nullable
+    PlantSnapshot getFreshSnapshot();
+
+    /**
+     * Возвращает время последнего снимка, используется метриками возраста значений
+     *
+     * @return время снимка или null, если снимка еще нет
+     */
+    @Nullable
+    Instant getSnapshotTimestamp();
+}
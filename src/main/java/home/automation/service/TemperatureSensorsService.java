@@ -14,6 +14,16 @@ public interface TemperatureSensorsService {
     @Nullable
     Float getCurrentTemperatureForSensor(TemperatureSensor sensor);
 
+    /**
+     * Возвращает температуру из последнего снимка опроса без обращения к шине, используется метриками
+     * Если снимка еще нет или датчик не опросился - возвращает null
+     *
+     * @param sensor датчик
+     * @return температура с плавающей точкой
+     */
+    @Nullable
+    Float getCachedTemperatureForSensor(TemperatureSensor sensor);
+
     /**
      * Возвращает форматированный результат опроса всех температурных датчиков
      *
@@ -1,7 +1,11 @@
 package home.automation.service.impl;
 
+import home.automation.bot.StatusSections;
+import home.automation.configuration.BotStatusConfiguration;
 import home.automation.configuration.TelegramBotConfiguration;
 import home.automation.enums.BotCommands;
+import home.automation.enums.ModbusPriority;
+import home.automation.modbus.ModbusPriorityScope;
 import home.automation.service.BotService;
 import home.automation.service.CityPowerInputService;
 import home.automation.service.ElectricBoilerService;
@@ -14,6 +18,8 @@ import home.automation.service.HistoryService;
 import home.automation.service.StreetLightService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.service.UniversalSensorsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +37,8 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.util.function.Supplier;
+
 @Service
 public class BotServiceImpl extends TelegramLongPollingBot implements BotService {
     private final Logger logger = LoggerFactory.getLogger(BotServiceImpl.class);
@@ -46,6 +54,7 @@ public class BotServiceImpl extends TelegramLongPollingBot implements BotService
     private final HealthService healthService;
     private final StreetLightService streetLightService;
     private final FunnelHeatingService funnelHeatingService;
+    private final StatusSections statusSections;
     private BotSession session;
 
     public BotServiceImpl(
@@ -60,7 +69,9 @@ public class BotServiceImpl extends TelegramLongPollingBot implements BotService
             HeatRequestService heatRequestService,
             @Lazy HealthService healthService,
             StreetLightService streetLightService,
-            FunnelHeatingService funnelHeatingService
+            FunnelHeatingService funnelHeatingService,
+            BotStatusConfiguration botStatusConfiguration,
+            MeterRegistry meterRegistry
     ) {
         super(telegramBotConfiguration.getToken());
         this.telegramBotConfiguration = telegramBotConfiguration;
@@ -75,6 +86,37 @@ public class BotServiceImpl extends TelegramLongPollingBot implements BotService
         this.healthService = healthService;
         this.streetLightService = streetLightService;
         this.funnelHeatingService = funnelHeatingService;
+        this.statusSections = new StatusSections(botStatusConfiguration.getDeadline(),
+                botStatusConfiguration.getMaxStaleness(), meterRegistry)
+                .add("health", "Общий статус", "Общий статус системы - ", "\n\n",
+                        interactive(healthService::getFormattedStatus))
+                .add("heat_request", "Запрос на тепло", interactive(heatRequestService::getFormattedStatus))
+                /* история котла идет сразу за его статусом */
+                .add("gas_boiler", "Газовый котел", "* ", "\n", interactive(gasBoilerService::getFormattedStatus))
+                .add("gas_boiler_history", "Работа газового котла за сутки",
+                        interactive(historyService::getGasBoilerFormattedStatusForLastDay))
+                .add("floor_heating", "Теплые полы", interactive(floorHeatingService::getFormattedStatus))
+                .add("electric_boiler", "Электрокотел",
+                        interactive(electricBoilerService::getFormattedStatus))
+                .add("city_power_input", "Городской ввод",
+                        interactive(cityPowerInputService::getFormattedStatus))
+                .add("temperature_sensors", "Температуры",
+                        interactive(temperatureSensorsService::getCurrentTemperaturesFormatted))
+                .add("street_light", "Уличное освещение", interactive(streetLightService::getFormattedStatus))
+                .add("funnel_heating", "Обогрев воронок", interactive(funnelHeatingService::getFormattedStatus))
+                .add("universal_sensors", "Датчики",
+                        interactive(universalSensorsService::getCurrentParamsFormatted));
+    }
+
+    /* если снимок устарел, сервисы читают шину сами - такие чтения не должны мешать управлению. Разделы статуса
+    считаются в своих потоках, поэтому приоритет задается в каждом */
+    private static Supplier<String> interactive(Supplier<String> section) {
+        return () -> ModbusPriorityScope.callWith(ModbusPriority.INTERACTIVE, section);
+    }
+
+    @PreDestroy
+    public void close() {
+        statusSections.close();
     }
 
     @EventListener({ContextRefreshedEvent.class})
@@ -135,28 +177,11 @@ public class BotServiceImpl extends TelegramLongPollingBot implements BotService
     private @Nullable String processBotCommand(String messageText) {
         if (BotCommands.GET_STATUS.getTelegramCommand().equals(messageText)) {
             logger.info("Получена команда на получение статуса системы");
-            notify("Считаю статус системы...");
-            return formatStatus();
+            return statusSections.render();
         }
         return null;
     }
 
-    private String formatStatus() {
-        StringBuilder message =
-                new StringBuilder("Общий статус системы - ").append(healthService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(heatRequestService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(gasBoilerService.getFormattedStatus()).append("\n");
-        message.append("* ").append(historyService.getGasBoilerFormattedStatusForLastDay()).append("\n\n");
-        message.append("* ").append(floorHeatingService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(electricBoilerService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(cityPowerInputService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(temperatureSensorsService.getCurrentTemperaturesFormatted()).append("\n\n");
-        message.append("* ").append(streetLightService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(funnelHeatingService.getFormattedStatus()).append("\n\n");
-        message.append("* ").append(universalSensorsService.getCurrentParamsFormatted()).append("\n\n");
-        return message.toString();
-    }
-
     private void sendMessage(Long chatId, String text) {
         SendMessage sendMessage = new SendMessage();
         sendMessage.setChatId(String.valueOf(chatId));
@@ -5,8 +5,10 @@ import home.automation.enums.CityPowerInputStatus;
 import home.automation.event.error.CityPowerInputErrorEvent;
 import home.automation.event.info.CityPowerInputNoPowerEvent;
 import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
 import home.automation.service.CityPowerInputService;
 import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -23,14 +25,18 @@ public class CityPowerInputServiceImpl implements CityPowerInputService {
 
     private final ModbusService modbusService;
 
+    private final PlantStateService plantStateService;
+
     public CityPowerInputServiceImpl(
             CityPowerInputConfiguration configuration,
             ApplicationEventPublisher applicationEventPublisher,
-            ModbusService modbusService
+            ModbusService modbusService,
+            PlantStateService plantStateService
     ) {
         this.configuration = configuration;
         this.applicationEventPublisher = applicationEventPublisher;
         this.modbusService = modbusService;
+        this.plantStateService = plantStateService;
     }
 
     @Scheduled(fixedRateString = "${cityPowerInput.controlInterval}")
@@ -42,13 +48,7 @@ public class CityPowerInputServiceImpl implements CityPowerInputService {
     @Override
     public CityPowerInputStatus getStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllDiscreteInputsFromZero(configuration.getAddress());
-
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос реле напряжения на входе ИБП вернул пустой массив");
-            }
-
-            if (pollResult[configuration.getDiscreteInput()]) {
+            if (readDiscreteInput()) {
                 logger.debug("Статус напряжения на входе ИБП - есть");
                 return CityPowerInputStatus.POWER_ON;
             }
@@ -66,6 +66,24 @@ public class CityPowerInputServiceImpl implements CityPowerInputService {
         }
     }
 
+    private boolean readDiscreteInput() throws ModbusException {
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        if (snapshot != null) {
+            Boolean input = snapshot.getDiscreteInput(configuration.getAddress(), configuration.getDiscreteInput());
+            if (input != null) {
+                return input;
+            }
+        }
+
+        boolean[] pollResult = modbusService.readAllDiscreteInputsFromZero(configuration.getAddress());
+
+        if (pollResult.length < 1) {
+            throw new ModbusException("Опрос реле напряжения на входе ИБП вернул пустой массив");
+        }
+
+        return pollResult[configuration.getDiscreteInput()];
+    }
+
     @Override
     public String getFormattedStatus() {
         return getStatus().getTemplate();
@@ -0,0 +1,85 @@
+package home.automation.service.impl;
+
+import home.automation.configuration.CoilStateConfiguration;
+import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
+import home.automation.service.ModbusService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class CoilStateServiceImpl implements CoilStateService {
+    private static final Logger logger = LoggerFactory.getLogger(CoilStateServiceImpl.class);
+    private final CoilStateConfiguration configuration;
+    private final ModbusService modbusService;
+    private final Map<Long, CoilState> states = new ConcurrentHashMap<>();
+
+    public CoilStateServiceImpl(CoilStateConfiguration configuration, ModbusService modbusService) {
+        this.configuration = configuration;
+        this.modbusService = modbusService;
+    }
+
+    private static long key(int address, int coilId) {
+        return ((long) address << 32) | coilId;
+    }
+
+    @Override
+    public boolean getCoil(int address, int coilId) throws ModbusException {
+        Duration maxAge = configuration.getMaxAge();
+        CoilState state = states.get(key(address, coilId));
+        if (!maxAge.isZero() && state != null &&
+                Duration.between(state.updatedAt, Instant.now()).compareTo(maxAge) <= 0) {
+            return state.value;
+        }
+
+        logger.debug("Состояние катушки {} реле {} неизвестно или устарело, читаем с шины", coilId, address);
+        Instant readStartedAt = Instant.now();
+        boolean[] coils = modbusService.readAllCoilsFromZero(address);
+        if (coils.length <= coilId) {
+            throw new ModbusException("Опрос катушек реле " + address + " вернул " + coils.length + " значений");
+        }
+        reconcile(address, coils, readStartedAt);
+        return coils[coilId];
+    }
+
+    @Override
+    public void writeCoil(int address, int coilId, boolean value) throws ModbusException {
+        try {
+            modbusService.writeCoil(address, coilId, value);
+        } catch (ModbusException e) {
+            /* неизвестно, дошла ли команда до реле, следующая проверка должна прочитать реальное состояние */
+            states.remove(key(address, coilId));
+            throw e;
+        }
+        states.put(key(address, coilId), new CoilState(value, Instant.now()));
+    }
+
+    @Override
+    public void reconcile(int address, boolean[] coils, Instant readStartedAt) {
+        for (int coilId = 0; coilId < coils.length; coilId++) {
+            boolean value = coils[coilId];
+            states.compute(key(address, coilId), (key, state) -> {
+                if (state != null && state.updatedAt.isAfter(readStartedAt)) {
+                    return state;
+                }
+                return new CoilState(value, readStartedAt);
+            });
+        }
+    }
+
+    private static class CoilState {
+        private final boolean value;
+        private final Instant updatedAt;
+
+        private CoilState(boolean value, Instant updatedAt) {
+            this.value = value;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
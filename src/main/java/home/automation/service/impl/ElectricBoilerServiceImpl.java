@@ -9,11 +9,11 @@ import home.automation.enums.TemperatureSensor;
 import home.automation.event.error.ElectricBoilerErrorEvent;
 import home.automation.event.info.ElectricBoilerTurnedOnEvent;
 import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
 import home.automation.service.ElectricBoilerService;
 import home.automation.service.GasBoilerService;
 import home.automation.service.HeatRequestService;
 import home.automation.service.HeatingPumpsService;
-import home.automation.service.ModbusService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.utils.decimal.TD_F;
 import org.slf4j.Logger;
@@ -38,7 +38,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
 
     private final ApplicationEventPublisher applicationEventPublisher;
 
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
 
     public ElectricBoilerServiceImpl(
             ElectricBoilerConfiguration configuration,
@@ -47,7 +47,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
             HeatingPumpsService heatingPumpsService,
             GasBoilerService gasBoilerService,
             ApplicationEventPublisher applicationEventPublisher,
-            ModbusService modbusService
+            CoilStateService coilStateService
     ) {
         this.configuration = configuration;
         this.temperatureSensorsService = temperatureSensorsService;
@@ -55,7 +55,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
         this.heatingPumpsService = heatingPumpsService;
         this.gasBoilerService = gasBoilerService;
         this.applicationEventPublisher = applicationEventPublisher;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
     }
 
     @Scheduled(fixedRateString = "${electricBoiler.controlInterval}")
@@ -96,7 +96,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
     private void turnOn() {
         if (getStatus() != ElectricBoilerStatus.TURNED_ON) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле электрического котла");
                 applicationEventPublisher.publishEvent(new ElectricBoilerErrorEvent(this));
@@ -109,7 +109,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
     private void turnOff() {
         if (getStatus() != ElectricBoilerStatus.TURNED_OFF) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле электрического котла");
                 applicationEventPublisher.publishEvent(new ElectricBoilerErrorEvent(this));
@@ -122,11 +122,7 @@ public class ElectricBoilerServiceImpl implements ElectricBoilerService {
     @Override
     public ElectricBoilerStatus getStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllCoilsFromZero(configuration.getAddress());
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос катушек реле электрического котла вернул пустой массив");
-            }
-            if (pollResult[configuration.getCoil()]) {
+            if (coilStateService.getCoil(configuration.getAddress(), configuration.getCoil())) {
                 return ElectricBoilerStatus.TURNED_ON;
             }
             else {
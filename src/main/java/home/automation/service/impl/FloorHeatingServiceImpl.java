@@ -1,24 +1,32 @@
 package home.automation.service.impl;
 
+import home.automation.actuation.ValveActuator;
 import home.automation.configuration.FloorHeatingConfiguration;
 import home.automation.configuration.FloorHeatingTemperatureConfiguration;
 import home.automation.configuration.FloorHeatingValveDacConfiguration;
 import home.automation.configuration.FloorHeatingValveRelayConfiguration;
 import home.automation.configuration.GeneralConfiguration;
+import home.automation.configuration.PlantStateConfiguration;
 import home.automation.enums.GasBoilerStatus;
 import home.automation.enums.TemperatureSensor;
+import home.automation.enums.ValveMotionState;
 import home.automation.event.error.FloorHeatingErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
+import home.automation.service.CoilStateService;
 import home.automation.service.FloorHeatingService;
 import home.automation.service.GasBoilerService;
 import home.automation.service.HistoryService;
 import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.utils.P_F;
+import home.automation.utils.ValueAgeGauge;
 import home.automation.utils.decimal.TD_F;
 import home.automation.utils.decimal.VD_F;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,12 +37,13 @@ import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @Service
 public class FloorHeatingServiceImpl implements FloorHeatingService {
@@ -49,10 +58,13 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
     private final TemperatureSensorsService temperatureSensorsService;
     private final HistoryService historyService;
     private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
+    private final PlantStateService plantStateService;
     private final ApplicationEventPublisher applicationEventPublisher;
-    private final ReentrantLock valveLocker = new ReentrantLock();
+    private final ValveActuator valveActuator;
+    private final AtomicBoolean calibrating = new AtomicBoolean(false);
     Environment environment;
-    private Instant lastRotateTime = Instant.now();
+    private volatile Instant lastRotateTime = Instant.now();
 
     public FloorHeatingServiceImpl(
             FloorHeatingConfiguration floorHeatingConfiguration,
@@ -64,6 +76,9 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
             TemperatureSensorsService temperatureSensorsService,
             HistoryService historyService,
             ModbusService modbusService,
+            CoilStateService coilStateService,
+            PlantStateService plantStateService,
+            PlantStateConfiguration plantStateConfiguration,
             ApplicationEventPublisher applicationEventPublisher,
             Environment environment,
             MeterRegistry meterRegistry
@@ -77,41 +92,72 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
         this.temperatureSensorsService = temperatureSensorsService;
         this.historyService = historyService;
         this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
+        this.plantStateService = plantStateService;
         this.applicationEventPublisher = applicationEventPublisher;
         this.environment = environment;
+        this.valveActuator = new ValveActuator(coilStateService, modbusService, relayConfiguration.getAddress(),
+                relayConfiguration.getCoil(), dacConfiguration.getAddress(), dacConfiguration.getRegister(),
+                relayConfiguration.getSettleTime());
 
-        Gauge.builder("floor", this::calculateTargetDirectTemperature)
+        /* в режиме метрик из кэша скрейп считает значения по последнему снимку и не обращается к шине */
+        boolean cachedMetrics = plantStateConfiguration.getCachedMetrics();
+        Function<TemperatureSensor, Float> temperatures = cachedMetrics ?
+                temperatureSensorsService::getCachedTemperatureForSensor :
+                temperatureSensorsService::getCurrentTemperatureForSensor;
+
+        Gauge.builder("floor", () -> calculateTargetDirectTemperature(temperatures))
                 .tag("component", "target_direct_temperature")
                 .tag("system", "home_automation")
                 .description("Расчетная температура подачи в теплые полы")
                 .register(meterRegistry);
 
-        Gauge.builder("floor", this::getCurrentValvePercent)
+        Gauge.builder("floor", cachedMetrics ? this::getCachedValvePercent : this::getCurrentValvePercent)
                 .tag("component", "current_valve_percent")
                 .tag("system", "home_automation")
                 .description("Текущий процент открытия клапана по напряжению")
                 .register(meterRegistry);
 
-        Gauge.builder("floor", this::getEffectiveValvePercent)
+        Gauge.builder("floor", () -> getEffectiveValvePercent(temperatures))
                 .tag("component", "effective_valve_percent")
                 .tag("system", "home_automation")
                 .description("Текущий процент открытия клапана по температуре")
                 .register(meterRegistry);
+
+        Gauge.builder("floor", () -> valveActuator.getState().getNumericStatus())
+                .tag("component", "valve_motion_state")
+                .tag("system", "home_automation")
+                .description("Состояние привода клапана: 0 - не двигался, 1 - включение, 2 - движение, 3 - остановка, " +
+                        "4 - установлен")
+                .register(meterRegistry);
+
+        Gauge.builder("floor", () -> valveActuator.getProgress() * 100)
+                .tag("component", "valve_motion_progress")
+                .tag("system", "home_automation")
+                .description("Пройденная доля времени хода клапана в процентах")
+                .register(meterRegistry);
+
+        if (cachedMetrics) {
+            for (String component : new String[]{"target_direct_temperature", "current_valve_percent",
+                    "effective_valve_percent"}) {
+                ValueAgeGauge.register(meterRegistry, "floor", component, plantStateService::getSnapshotTimestamp);
+            }
+        }
     }
 
     @EventListener({ContextRefreshedEvent.class})
     public void init() {
         if (!environment.matchesProfiles("test")) {
-            logger.debug("Чтобы отпустить процесс инициализации приложения выставляем клапан через таски");
-            ExecutorService executor = Executors.newSingleThreadExecutor();
             logger.info("Система была перезагружена, закрываем клапан подмеса для калибровки и открываем его на треть");
-            executor.submit(() -> {
-                setValveOnPercent(-1);
-                setValveOnPercent(33);
-            });
+            calibrateValve();
         }
     }
 
+    @PreDestroy
+    public void close() {
+        valveActuator.close();
+    }
+
     @Scheduled(fixedRateString = "${floorHeating.controlInterval}")
     private void control() {
         logger.debug("Запущена задача управления теплым полом");
@@ -155,16 +201,29 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
                 return;
             }
 
-            setValveOnPercent(averageTargetValvePercent);
+            if (calibrating.get()) {
+                logger.info("Клапан калибруется, не выставляем положение");
+            } else {
+                setValveOnPercent(averageTargetValvePercent);
+            }
         }
 
         if (lastRotateTime.isBefore(Instant.now().minus(floorHeatingConfiguration.getIdleIntervalToRotate()))) {
             logger.debug("Клапан проворачивался слишком давно");
-            logger.info("Начинаем проворот клапана, полностью закрываем его");
-            setValveOnPercent(-1);
-            logger.info("и открываем его на треть");
-            setValveOnPercent(33);
+            logger.info("Начинаем проворот клапана, полностью закрываем его и открываем на треть");
+            calibrateValve();
+        }
+    }
+
+    /* закрытие до упора и открытие на треть, положение из расчета в это время не выставляется */
+    private void calibrateValve() {
+        if (!calibrating.compareAndSet(false, true)) {
+            logger.debug("Клапан уже калибруется");
+            return;
         }
+        setValveOnPercent(-1)
+                .thenCompose(closed -> closed ? setValveOnPercent(33) : CompletableFuture.completedFuture(false))
+                .whenComplete((opened, e) -> calibrating.set(false));
     }
 
     private Integer calculateTargetValvePercentByTemperatureBeforeMixing(float targetDirectTemperature) {
@@ -214,17 +273,20 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
 
     @Nullable
     Float calculateTargetDirectTemperature() {
+        return calculateTargetDirectTemperature(temperatureSensorsService::getCurrentTemperatureForSensor);
+    }
+
+    private @Nullable Float calculateTargetDirectTemperature(Function<TemperatureSensor, Float> temperatures) {
         float calculated;
 
-        Float averageInternalTemperature = calculateAverageInternalTemperature();
+        Float averageInternalTemperature = calculateAverageInternalTemperature(temperatures);
         logger.debug("Средняя температура в помещениях {}", TD_F.format(averageInternalTemperature));
         if (averageInternalTemperature == null) {
             logger.warn("Нет возможности определить среднюю температуру в помещениях");
             return null;
         }
 
-        Float outsideTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE);
+        Float outsideTemperature = temperatures.apply(TemperatureSensor.OUTSIDE_TEMPERATURE);
         logger.debug("Температура на улице {}", TD_F.format(outsideTemperature));
         if (outsideTemperature == null) {
             logger.warn("Нет возможности определить температуру на улице");
@@ -262,10 +324,10 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
         return calculated;
     }
 
-    private @Nullable Float calculateAverageInternalTemperature() {
+    private @Nullable Float calculateAverageInternalTemperature(Function<TemperatureSensor, Float> temperatures) {
         Set<Float> polledTemperatures = new HashSet<>();
         for (TemperatureSensor sensor : averageInternalSensors) {
-            Float sensorTemperature = temperatureSensorsService.getCurrentTemperatureForSensor(sensor);
+            Float sensorTemperature = temperatures.apply(sensor);
             if (sensorTemperature == null) {
                 logger.info(sensor.getTemplate() + " исключена из расчета средней");
                 continue;
@@ -285,73 +347,63 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
         }
     }
 
-    private void setValveOnPercent(int targetValvePercent) {
-            if (valveLocker.isLocked()) {
-                logger.info("Клапан заблокирован, не выставляем положение");
-                return;
-            }
-            int powerTime;
-            if (targetValvePercent == -1) {
-                logger.debug("Если выставляем -1 для калибровки клапана - всегда подаем питание на максимальное время");
-                powerTime = relayConfiguration.getRotationTime() + relayConfiguration.getRotationTimeReserve();
-            }
-            else {
-                Integer currentValvePercent = getCurrentValvePercent();
-                logger.debug("Текущий процент открытия клапана {}", P_F.format(currentValvePercent));
-                if (currentValvePercent == null) {
-                    logger.warn("Не удалось получить текущее положение клапана");
-                    applicationEventPublisher.publishEvent(new FloorHeatingErrorEvent(this));
-                    return;
-                }
-                int valvePercentDelta = targetValvePercent - currentValvePercent;
-                if (Math.abs(valvePercentDelta) < dacConfiguration.getAccuracy()) {
-                    logger.debug("Клапан уже установлен на заданный процент {}", P_F.format(targetValvePercent));
-                    return;
-                }
-                /* считаем по напряжению которое будет выдаваться на ЦА */
-                /* вычитаем из напряжения 2 вольта - клапан работает от 2 до 10V */
-                /* клапан доходит до нуля и возвращается до нужного процента */
-                powerTime =
-                        (int) Math.round(relayConfiguration.getRotationTime() * ((getVoltageInVFromPercentWithCorrection(currentValvePercent) - 2)
-                                + (getVoltageInVFromPercentWithCorrection(targetValvePercent) - 2)) / 8.0) + relayConfiguration.getRotationTimeReserve();
-                logger.debug("Питание на клапан нужно подать на {} секунд", powerTime);
-            }
-
-            float voltage = getVoltageInVFromPercentWithCorrection(targetValvePercent);
-
-            logger.debug("Берем блокировку на клапан");
-            valveLocker.lock();
-            try {
-                logger.info("Включаем питание сервопривода клапана");
-                modbusService.writeCoil(relayConfiguration.getAddress(), relayConfiguration.getCoil(), true);
-
-                logger.debug("Устанавливаемое напряжение на ЦАП {}", VD_F.format(voltage));
-                modbusService.writeHoldingRegister(
-                        dacConfiguration.getAddress(),
-                        dacConfiguration.getRegister(),
-                        Math.round(voltage* 100)
-                );
-
-                Thread.sleep(powerTime * 1000L);
-                logger.info("Выключаем питание сервопривода клапана");
-                modbusService.writeCoil(relayConfiguration.getAddress(), relayConfiguration.getCoil(), false);
-            } catch (ModbusException | InterruptedException e) {
-                logger.error("Ошибка выставления напряжение на ЦАП или работы с реле питания");
+    /**
+     * Выставление клапана без ожидания: питание и напряжение подаются сразу, выключение - по таймеру привода. Если
+     * клапан уже движется, меняется цель текущего движения
+     *
+     * @return true, когда клапан установлен, false - клапан не двигался или движение прервано
+     */
+    private CompletableFuture<Boolean> setValveOnPercent(int targetValvePercent) {
+        int powerTime;
+        if (targetValvePercent == -1) {
+            logger.debug("Если выставляем -1 для калибровки клапана - всегда подаем питание на максимальное время");
+            powerTime = relayConfiguration.getRotationTime() + relayConfiguration.getRotationTimeReserve();
+        }
+        else {
+            Integer currentValvePercent = getCurrentValvePercent();
+            logger.debug("Текущий процент открытия клапана {}", P_F.format(currentValvePercent));
+            if (currentValvePercent == null) {
+                logger.warn("Не удалось получить текущее положение клапана");
                 applicationEventPublisher.publishEvent(new FloorHeatingErrorEvent(this));
-            } finally {
-                logger.debug("Снимаем блокировку на клапан");
-                valveLocker.unlock();
-                logger.debug("Записываем время поворота клапана");
-                lastRotateTime = Instant.now();
+                return CompletableFuture.completedFuture(false);
             }
-
-            if (targetValvePercent == -1) {
-                logger.info("Сервопривод полностью перекрыт");
-            } else {
-                logger.info("Сервопривод был передвинут за {} секунд, новый процент открытия {}",
-                        powerTime,
-                        P_F.format(targetValvePercent));
+            int valvePercentDelta = targetValvePercent - currentValvePercent;
+            if (Math.abs(valvePercentDelta) < dacConfiguration.getAccuracy()) {
+                logger.debug("Клапан уже установлен на заданный процент {}", P_F.format(targetValvePercent));
+                return CompletableFuture.completedFuture(false);
             }
+            /* считаем по напряжению которое будет выдаваться на ЦА */
+            /* вычитаем из напряжения 2 вольта - клапан работает от 2 до 10V */
+            /* клапан доходит до нуля и возвращается до нужного процента */
+            powerTime =
+                    (int) Math.round(relayConfiguration.getRotationTime() * ((getVoltageInVFromPercentWithCorrection(currentValvePercent) - 2)
+                            + (getVoltageInVFromPercentWithCorrection(targetValvePercent) - 2)) / 8.0) + relayConfiguration.getRotationTimeReserve();
+            logger.debug("Питание на клапан нужно подать на {} секунд", powerTime);
+        }
+
+        float voltage = getVoltageInVFromPercentWithCorrection(targetValvePercent);
+        logger.debug("Устанавливаемое напряжение на ЦАП {}", VD_F.format(voltage));
+
+        return valveActuator.move(Math.round(voltage * 100), Duration.ofSeconds(powerTime))
+                .handle((moved, e) -> {
+                    logger.debug("Записываем время поворота клапана");
+                    lastRotateTime = Instant.now();
+                    if (e != null) {
+                        logger.error("Ошибка выставления напряжение на ЦАП или работы с реле питания");
+                        applicationEventPublisher.publishEvent(new FloorHeatingErrorEvent(this));
+                        return false;
+                    }
+                    if (!moved) {
+                        logger.info("Движение клапана на {} прервано", P_F.format(targetValvePercent));
+                    } else if (targetValvePercent == -1) {
+                        logger.info("Сервопривод полностью перекрыт");
+                    } else {
+                        logger.info("Сервопривод был передвинут за {} секунд, новый процент открытия {}",
+                                powerTime,
+                                P_F.format(targetValvePercent));
+                    }
+                    return moved;
+                });
     }
 
     private Integer getCurrentValvePercent() {
@@ -372,13 +424,24 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
         return null;
     }
 
-    private Integer getEffectiveValvePercent() {
+    private @Nullable Integer getCachedValvePercent() {
+        PlantSnapshot snapshot = plantStateService.getSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        Integer register = snapshot.getHoldingRegister(dacConfiguration.getAddress(), dacConfiguration.getRegister());
+        if (register == null) {
+            return null;
+        }
+        return getPercentFromVoltageInVWithCorrection((float) register / 100);
+    }
+
+    private Integer getEffectiveValvePercent(Function<TemperatureSensor, Float> temperatures) {
         Float floorDirectBeforeMixingTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_BEFORE_MIXING);
+                temperatures.apply(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_BEFORE_MIXING);
         Float floorDirectAfterMixingTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_AFTER_MIXING);
-        Float floorReturnTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.WATER_RETURN_FLOOR_TEMPERATURE);
+                temperatures.apply(TemperatureSensor.WATER_DIRECT_FLOOR_TEMPERATURE_AFTER_MIXING);
+        Float floorReturnTemperature = temperatures.apply(TemperatureSensor.WATER_RETURN_FLOOR_TEMPERATURE);
         if (floorDirectBeforeMixingTemperature == null ||
                 floorDirectAfterMixingTemperature == null ||
                 floorReturnTemperature == null) {
@@ -454,7 +517,15 @@ public class FloorHeatingServiceImpl implements FloorHeatingService {
             formattedTargetDirectTemperature = TD_F.format(targetDirectTemperature);
         }
 
-        return "текущий процент подмеса в теплые полы - " + getCurrentValvePercent() + "%" + "\n* " +
+        String status = "текущий процент подмеса в теплые полы - " + getCurrentValvePercent() + "%" + "\n* " +
                 "целевая температура подачи в теплые полы " + formattedTargetDirectTemperature;
+        ValveMotionState motionState = valveActuator.getState();
+        if (motionState == ValveMotionState.MOVING) {
+            status += "\n* " + motionState.getTemplate() + ", пройдено " +
+                    P_F.format(valveActuator.getProgress() * 100);
+        } else if (motionState == ValveMotionState.POWERING || motionState == ValveMotionState.SETTLING) {
+            status += "\n* " + motionState.getTemplate();
+        }
+        return status;
     }
 }
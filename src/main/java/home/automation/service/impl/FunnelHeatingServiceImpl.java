@@ -5,8 +5,8 @@ import home.automation.enums.FunnelHeatingStatus;
 import home.automation.enums.TemperatureSensor;
 import home.automation.event.error.FunnelHeatingErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
 import home.automation.service.FunnelHeatingService;
-import home.automation.service.ModbusService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.utils.decimal.TD_F;
 import org.slf4j.Logger;
@@ -25,18 +25,18 @@ public class FunnelHeatingServiceImpl implements FunnelHeatingService {
 
     private final ApplicationEventPublisher applicationEventPublisher;
 
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
 
     public FunnelHeatingServiceImpl(
             FunnelHeatingConfiguration configuration,
             TemperatureSensorsService temperatureSensorsService,
             ApplicationEventPublisher applicationEventPublisher,
-            ModbusService modbusService
+            CoilStateService coilStateService
     ) {
         this.configuration = configuration;
         this.temperatureSensorsService = temperatureSensorsService;
         this.applicationEventPublisher = applicationEventPublisher;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
     }
 
     @Scheduled(fixedRateString = "${funnelHeating.controlInterval}")
@@ -68,7 +68,7 @@ public class FunnelHeatingServiceImpl implements FunnelHeatingService {
     private void turnOn() {
         if (getStatus() != FunnelHeatingStatus.TURNED_ON) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
                 logger.info("Подогрева воронок включен");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле обогрева воронок");
@@ -82,7 +82,7 @@ public class FunnelHeatingServiceImpl implements FunnelHeatingService {
     private void turnOff() {
         if (getStatus() != FunnelHeatingStatus.TURNED_OFF) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
                 logger.info("Подогрева воронок отключен");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле обогрева воронок");
@@ -96,11 +96,7 @@ public class FunnelHeatingServiceImpl implements FunnelHeatingService {
     @Override
     public FunnelHeatingStatus getStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllCoilsFromZero(configuration.getAddress());
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос катушек реле обогрева воронок вернул пустой массив");
-            }
-            if (pollResult[configuration.getCoil()]) {
+            if (coilStateService.getCoil(configuration.getAddress(), configuration.getCoil())) {
                 return FunnelHeatingStatus.TURNED_ON;
             }
             else {
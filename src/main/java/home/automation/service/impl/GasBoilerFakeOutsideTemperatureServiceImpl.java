@@ -6,8 +6,8 @@ import home.automation.enums.GasBoilerFakeOutsideTemperatureStatus;
 import home.automation.enums.TemperatureSensor;
 import home.automation.event.error.GasBoilerFakeOutsideTemperatureErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
 import home.automation.service.GasBoilerFakeOutsideTemperatureService;
-import home.automation.service.ModbusService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.utils.decimal.TD_F;
 import org.slf4j.Logger;
@@ -28,20 +28,20 @@ public class GasBoilerFakeOutsideTemperatureServiceImpl implements GasBoilerFake
 
     private final ApplicationEventPublisher applicationEventPublisher;
 
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
 
     public GasBoilerFakeOutsideTemperatureServiceImpl(
             GasBoilerFakeOutsideTemperatureConfiguration gasBoilerFakeOutsideTemperatureConfiguration,
             GasBoilerConfiguration gasBoilerConfiguration,
             TemperatureSensorsService temperatureSensorsService,
             ApplicationEventPublisher applicationEventPublisher,
-            ModbusService modbusService
+            CoilStateService coilStateService
     ) {
         this.gasBoilerFakeOutsideTemperatureConfiguration = gasBoilerFakeOutsideTemperatureConfiguration;
         this.gasBoilerConfiguration = gasBoilerConfiguration;
         this.temperatureSensorsService = temperatureSensorsService;
         this.applicationEventPublisher = applicationEventPublisher;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
     }
 
     @Scheduled(fixedRateString = "${gasBoiler.fakeOutsideTemperature.controlInterval}")
@@ -72,11 +72,11 @@ public class GasBoilerFakeOutsideTemperatureServiceImpl implements GasBoilerFake
     private void turnOn1Degree() {
         if (getStatus() != GasBoilerFakeOutsideTemperatureStatus.TURNED_ON_1_DEGREE) {
             try {
-                modbusService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
+                coilStateService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
                         gasBoilerFakeOutsideTemperatureConfiguration.getMainCoil(),
                         true
                 );
-                modbusService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryAddress(),
+                coilStateService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryAddress(),
                         gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryCoil(),
                         false
                 );
@@ -93,7 +93,7 @@ public class GasBoilerFakeOutsideTemperatureServiceImpl implements GasBoilerFake
     private void turnOff() {
         if (getStatus() != GasBoilerFakeOutsideTemperatureStatus.TURNED_OFF) {
             try {
-                modbusService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
+                coilStateService.writeCoil(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
                         gasBoilerFakeOutsideTemperatureConfiguration.getMainCoil(),
                         false
                 );
@@ -110,18 +110,13 @@ public class GasBoilerFakeOutsideTemperatureServiceImpl implements GasBoilerFake
     @Override
     public GasBoilerFakeOutsideTemperatureStatus getStatus() {
         try {
-            boolean[] pollResult1 =
-                    modbusService.readAllCoilsFromZero(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress());
-            boolean[] pollResult2 =
-                    modbusService.readAllCoilsFromZero(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress());
-            if (pollResult1.length < 1 || pollResult2.length < 1) {
-                throw new ModbusException("Опрос катушек реле обманок вернул пустой результат");
-            }
-            if (!pollResult1[gasBoilerFakeOutsideTemperatureConfiguration.getMainCoil()]) {
+            if (!coilStateService.getCoil(gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
+                    gasBoilerFakeOutsideTemperatureConfiguration.getMainCoil())) {
                 return GasBoilerFakeOutsideTemperatureStatus.TURNED_OFF;
             }
             else {
-                if (pollResult2[gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryCoil()]) {
+                if (coilStateService.getCoil(gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryAddress(),
+                        gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryCoil())) {
                     return GasBoilerFakeOutsideTemperatureStatus.TURNED_ON_MINUS_20_DEGREE;
                 }
                 else {
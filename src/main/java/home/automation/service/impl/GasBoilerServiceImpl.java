@@ -1,17 +1,21 @@
 package home.automation.service.impl;
 
 import home.automation.configuration.GasBoilerConfiguration;
+import home.automation.configuration.PlantStateConfiguration;
 import home.automation.enums.GasBoilerRelayStatus;
 import home.automation.enums.GasBoilerStatus;
 import home.automation.enums.HeatRequestStatus;
 import home.automation.enums.TemperatureSensor;
 import home.automation.event.error.GasBoilerErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
+import home.automation.service.CoilStateService;
 import home.automation.service.GasBoilerService;
 import home.automation.service.HeatRequestService;
 import home.automation.service.HistoryService;
-import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
 import home.automation.service.TemperatureSensorsService;
+import home.automation.utils.ValueAgeGauge;
 import home.automation.utils.decimal.TD_F;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -23,33 +27,45 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.function.Function;
 
 @Service
 public class GasBoilerServiceImpl implements GasBoilerService {
     private static final Logger logger = LoggerFactory.getLogger(GasBoilerServiceImpl.class);
     private final GasBoilerConfiguration configuration;
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final TemperatureSensorsService temperatureSensorsService;
     private final HeatRequestService heatRequestService;
     private final HistoryService historyService;
+    private final PlantStateService plantStateService;
     private GasBoilerStatus status = GasBoilerStatus.INIT;
+    private Instant statusCalculatedAt = null;
     private Float lastDirectTemperature = null;
     private Float maxDirectTemperatureForPeriod = null;
 
     public GasBoilerServiceImpl(GasBoilerConfiguration configuration,
-                                ModbusService modbusService,
+                                CoilStateService coilStateService,
                                 ApplicationEventPublisher applicationEventPublisher,
                                 TemperatureSensorsService temperatureSensorsService,
                                 HeatRequestService heatRequestService,
                                 HistoryService historyService,
+                                PlantStateService plantStateService,
+                                PlantStateConfiguration plantStateConfiguration,
                                 MeterRegistry meterRegistry) {
         this.configuration = configuration;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
         this.applicationEventPublisher = applicationEventPublisher;
         this.temperatureSensorsService = temperatureSensorsService;
         this.heatRequestService = heatRequestService;
         this.historyService = historyService;
+        this.plantStateService = plantStateService;
+
+        /* в режиме метрик из кэша скрейп считает значения по последнему снимку и не обращается к шине */
+        boolean cachedMetrics = plantStateConfiguration.getCachedMetrics();
+        Function<TemperatureSensor, Float> temperatures = cachedMetrics ?
+                temperatureSensorsService::getCachedTemperatureForSensor :
+                temperatureSensorsService::getCurrentTemperatureForSensor;
 
         Gauge.builder("gas_boiler", this::getNumericStatus)
                 .tag("component", "status")
@@ -57,35 +73,44 @@ public class GasBoilerServiceImpl implements GasBoilerService {
                 .description("Статус газового котла")
                 .register(meterRegistry);
 
-        Gauge.builder("gas_boiler", this::getTemperatureDeltaIfWorks)
+        Gauge.builder("gas_boiler", () -> getTemperatureDeltaIfWorks(temperatures))
                 .tag("component", "delta")
                 .tag("system", "home_automation")
                 .description("Дельта подачи/обратки при работе газового котла")
                 .register(meterRegistry);
 
-        Gauge.builder("gas_boiler", this::calculatePowerInkW)
+        Gauge.builder("gas_boiler", () -> calculatePowerInkW(temperatures))
                 .tag("component", "power")
                 .tag("system", "home_automation")
                 .description("Мощность в кВт газового котла")
                 .register(meterRegistry);
 
-        Gauge.builder("gas_boiler", this::getGasBoilerRelayNumericStatus)
+        Gauge.builder("gas_boiler", cachedMetrics ? this::getCachedGasBoilerRelayNumericStatus :
+                        this::getGasBoilerRelayNumericStatus)
                 .tag("component", "relay_status")
                 .tag("system", "home_automation")
                 .description("Статус реле газового котла")
                 .register(meterRegistry);
 
-        Gauge.builder("gas_boiler", this::calculateTargetDirectTemperature)
+        Gauge.builder("gas_boiler", () -> calculateTargetDirectTemperature(temperatures))
                 .tag("component", "target_direct_temperature")
                 .tag("system", "home_automation")
                 .description("Расчетная температура подачи из газового котла по ПЗА")
                 .register(meterRegistry);
 
-        Gauge.builder("gas_boiler", this::calculateMinReturnTemperature)
+        Gauge.builder("gas_boiler", () -> calculateMinReturnTemperature(temperatures))
                 .tag("component", "min_return_temperature")
                 .tag("system", "home_automation")
                 .description("Расчетная температура обратки из газового котла при которой разрешено включение")
                 .register(meterRegistry);
+
+        if (cachedMetrics) {
+            ValueAgeGauge.register(meterRegistry, "gas_boiler", "status", () -> statusCalculatedAt);
+            for (String component : new String[]{"delta", "power", "relay_status", "target_direct_temperature",
+                    "min_return_temperature"}) {
+                ValueAgeGauge.register(meterRegistry, "gas_boiler", component, plantStateService::getSnapshotTimestamp);
+            }
+        }
     }
 
     @Scheduled(fixedRateString = "${gasBoiler.direct.pollInterval}")
@@ -116,6 +141,7 @@ public class GasBoilerServiceImpl implements GasBoilerService {
         }
 
         status = newStatus;
+        statusCalculatedAt = Instant.now();
     }
 
     private GasBoilerStatus calculateStatus() {
@@ -173,16 +199,8 @@ public class GasBoilerServiceImpl implements GasBoilerService {
                         TD_F.format(maxDirectTemperatureForPeriod));
                 maxDirectTemperatureForPeriod = newDirectTemperature;
             }
-
-            logger.debug("Отправляем в историю текущую температуру подачи {}", TD_F.format(newDirectTemperature));
-            historyService.putTemperatureToDailyHistory(TemperatureSensor.WATER_DIRECT_GAS_BOILER_TEMPERATURE,
-                    newDirectTemperature,
-                    now);
-
-            logger.debug("Отправляем в историю текущую температуру обратки {}", TD_F.format(newReturnTemperature));
-            historyService.putTemperatureToDailyHistory(TemperatureSensor.WATER_RETURN_GAS_BOILER_TEMPERATURE,
-                    newReturnTemperature,
-                    now);
+            /* температуры подачи и обратки пишет в историю общий сэмплер раз в history.sampleInterval, лишние точки
+            на время работы горелки сократили бы срок хранения и сместили средние в сторону работы котла */
         }
         else {
             logger.debug("Цикл работы котла закончен");
@@ -195,11 +213,14 @@ public class GasBoilerServiceImpl implements GasBoilerService {
     }
 
     private float calculateMinReturnTemperature() {
+        return calculateMinReturnTemperature(temperatureSensorsService::getCurrentTemperatureForSensor);
+    }
+
+    private float calculateMinReturnTemperature(Function<TemperatureSensor, Float> temperatures) {
         /* рассчитываем температуру обратки в зависимости от температуры на улице (линейная функция) */
         /* в котле BAXI ПЗА устанавливается кривой, каждая кривая имеет свои границы, эти границы и будут
         координатами нашей прямой по оси X */
-        Float outsideTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE);
+        Float outsideTemperature = temperatures.apply(TemperatureSensor.OUTSIDE_TEMPERATURE);
 
         if (outsideTemperature == null) {
             float targetReturnTemperature = configuration.getTemperatureReturnOnMinCurvePoint();
@@ -239,11 +260,14 @@ public class GasBoilerServiceImpl implements GasBoilerService {
     @Override
     @Nullable
     public Float calculateTargetDirectTemperature() {
+        return calculateTargetDirectTemperature(temperatureSensorsService::getCurrentTemperatureForSensor);
+    }
+
+    private @Nullable Float calculateTargetDirectTemperature(Function<TemperatureSensor, Float> temperatures) {
         /* рассчитываем температуру подачи в зависимости от температуры на улице (линейная функция) */
         /* в котле BAXI ПЗА устанавливается кривой, каждая кривая имеет свои границы, эти границы и будут
         координатами нашей прямой по оси X */
-        Float outsideTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE);
+        Float outsideTemperature = temperatures.apply(TemperatureSensor.OUTSIDE_TEMPERATURE);
 
         if (outsideTemperature == null) {
             logger.warn("Нет информации о температуре на улице, невозможно рассчитать температуру подачи");
@@ -287,7 +311,7 @@ public class GasBoilerServiceImpl implements GasBoilerService {
             }
             else
                 try {
-                    modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
+                    coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
                     logger.info("Включаем реле газового котла");
                 } catch (ModbusException e) {
                     logger.error("Ошибка переключения статуса реле газового котла");
@@ -309,7 +333,7 @@ public class GasBoilerServiceImpl implements GasBoilerService {
     private void turnOff() {
         if (getGasBoilerRelayStatus() != GasBoilerRelayStatus.NO_NEED_HEAT) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
                 logger.info("Отключаем реле газового котла");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле газового котла");
@@ -322,11 +346,7 @@ public class GasBoilerServiceImpl implements GasBoilerService {
 
     private GasBoilerRelayStatus getGasBoilerRelayStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllCoilsFromZero(configuration.getAddress());
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос катушек реле газового котла вернул пустой массив");
-            }
-            if (pollResult[configuration.getCoil()]) {
+            if (coilStateService.getCoil(configuration.getAddress(), configuration.getCoil())) {
                 return GasBoilerRelayStatus.NO_NEED_HEAT;
             }
             else {
@@ -344,6 +364,19 @@ public class GasBoilerServiceImpl implements GasBoilerService {
         return getGasBoilerRelayStatus().getNumericStatus();
     }
 
+    private @Nullable Integer getCachedGasBoilerRelayNumericStatus() {
+        PlantSnapshot snapshot = plantStateService.getSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        Boolean coil = snapshot.getCoil(configuration.getAddress(), configuration.getCoil());
+        if (coil == null) {
+            return GasBoilerRelayStatus.ERROR.getNumericStatus();
+        }
+        return coil ? GasBoilerRelayStatus.NO_NEED_HEAT.getNumericStatus() :
+                GasBoilerRelayStatus.NEED_HEAT.getNumericStatus();
+    }
+
     @Override
     public GasBoilerStatus getStatus() {
         return status;
@@ -353,8 +386,8 @@ public class GasBoilerServiceImpl implements GasBoilerService {
         return status.getNumericStatus();
     }
 
-    private Float getTemperatureDeltaIfWorks() {
-        Float delta = getTemperatureDeltaIfPositive();
+    private Float getTemperatureDeltaIfWorks(Function<TemperatureSensor, Float> temperatures) {
+        Float delta = getTemperatureDeltaIfPositive(temperatures);
         if (delta == null || getStatus() != GasBoilerStatus.WORKS) {
             return null;
         }
@@ -363,11 +396,9 @@ public class GasBoilerServiceImpl implements GasBoilerService {
         }
     }
 
-    private Float getTemperatureDeltaIfPositive() {
-        Float gasBoilerDirectTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.WATER_DIRECT_GAS_BOILER_TEMPERATURE);
-        Float gasBoilerReturnTemperature =
-                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.WATER_RETURN_GAS_BOILER_TEMPERATURE);
+    private Float getTemperatureDeltaIfPositive(Function<TemperatureSensor, Float> temperatures) {
+        Float gasBoilerDirectTemperature = temperatures.apply(TemperatureSensor.WATER_DIRECT_GAS_BOILER_TEMPERATURE);
+        Float gasBoilerReturnTemperature = temperatures.apply(TemperatureSensor.WATER_RETURN_GAS_BOILER_TEMPERATURE);
 
         if (gasBoilerDirectTemperature == null
                 || gasBoilerReturnTemperature == null
@@ -379,8 +410,8 @@ public class GasBoilerServiceImpl implements GasBoilerService {
         }
     }
 
-    private Float calculatePowerInkW() {
-        Float temperatureDelta = getTemperatureDeltaIfPositive();
+    private Float calculatePowerInkW(Function<TemperatureSensor, Float> temperatures) {
+        Float temperatureDelta = getTemperatureDeltaIfPositive(temperatures);
 
         if (temperatureDelta == null || temperatureDelta < 0) {
             return 0f;
@@ -23,6 +23,7 @@ import home.automation.service.BotService;
 import home.automation.service.CityPowerInputService;
 import home.automation.service.ElectricBoilerService;
 import home.automation.service.HealthService;
+import home.automation.service.ModbusService;
 import home.automation.service.TemperatureSensorsService;
 import home.automation.utils.decimal.TD_F;
 import org.slf4j.Logger;
@@ -46,6 +47,7 @@ public class HealthServiceImpl implements HealthService {
     private final TemperatureSensorsService temperatureSensorsService;
     private final ElectricBoilerService electricBoilerService;
     private final CityPowerInputService cityPowerInputService;
+    private final ModbusService modbusService;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final List<HeatRequestErrorEvent> heatRequestErrorEvents = new ArrayList<>();
     private final List<GasBoilerErrorEvent> gasBoilerErrorEvents = new ArrayList<>();
@@ -70,12 +72,14 @@ public class HealthServiceImpl implements HealthService {
             TemperatureSensorsService temperatureSensorsService,
             ElectricBoilerService electricBoilerService,
             CityPowerInputService cityPowerInputService,
+            ModbusService modbusService,
             ApplicationEventPublisher applicationEventPublisher
     ) {
         this.botService = botService;
         this.temperatureSensorsService = temperatureSensorsService;
         this.electricBoilerService = electricBoilerService;
         this.cityPowerInputService = cityPowerInputService;
+        this.modbusService = modbusService;
         this.applicationEventPublisher = applicationEventPublisher;
     }
 
@@ -92,7 +96,8 @@ public class HealthServiceImpl implements HealthService {
         SelfMonitoringStatus newStatus = SelfMonitoringStatus.OK;
 
         if (!gasBoilerFakeOutsideTemperatureIsOk() || !minorTemperatureSensorsAreOk() || !streetLightRelayIsOk()
-                || !funnelHeatingIsOk() || !maximumTemperaturesAreOk() || !universalSensorsAreOk()) {
+                || !funnelHeatingIsOk() || !maximumTemperaturesAreOk() || !universalSensorsAreOk()
+                || !modbusSlavesAreOk()) {
             newStatus = SelfMonitoringStatus.MINOR_PROBLEMS;
             notifyAndSetLastStatus(newStatus);
         }
@@ -303,6 +308,10 @@ public class HealthServiceImpl implements HealthService {
         return universalSensorPollErrorEvents.isEmpty();
     }
 
+    private boolean modbusSlavesAreOk() {
+        return modbusService.getUnavailableSlaves().isEmpty();
+    }
+
     private void clear() {
         heatRequestErrorEvents.clear();
         gasBoilerErrorEvents.clear();
@@ -387,6 +396,12 @@ public class HealthServiceImpl implements HealthService {
                     .collect(Collectors.joining(", ")));
             message.append("\n");
         }
+        if (!modbusSlavesAreOk()) {
+            message.append("* не отвечают устройства modbus: ");
+            message.append(modbusService.getUnavailableSlaves().stream().map(String::valueOf)
+                    .collect(Collectors.joining(", ")));
+            message.append("\n");
+        }
         return message.toString();
     }
 
@@ -5,9 +5,9 @@ import home.automation.enums.HeatRequestStatus;
 import home.automation.enums.HeatingPumpsStatus;
 import home.automation.event.error.HeatingPumpsErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
 import home.automation.service.HeatRequestService;
 import home.automation.service.HeatingPumpsService;
-import home.automation.service.ModbusService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -19,18 +19,18 @@ public class HeatingPumpsServiceImpl implements HeatingPumpsService {
     private final Logger logger = LoggerFactory.getLogger(HeatingPumpsServiceImpl.class);
     private final HeatingPumpsRelayConfiguration configuration;
     private final ApplicationEventPublisher applicationEventPublisher;
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
     private final HeatRequestService heatRequestService;
 
     public HeatingPumpsServiceImpl(
             HeatingPumpsRelayConfiguration configuration,
             ApplicationEventPublisher applicationEventPublisher,
-            ModbusService modbusService,
+            CoilStateService coilStateService,
             HeatRequestService heatRequestService
     ) {
         this.configuration = configuration;
         this.applicationEventPublisher = applicationEventPublisher;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
         this.heatRequestService = heatRequestService;
     }
 
@@ -50,7 +50,7 @@ public class HeatingPumpsServiceImpl implements HeatingPumpsService {
         if (getStatus() != HeatingPumpsStatus.TURNED_ON) {
             try {
                 /* реле нормально закрытое, управление инвертировано */
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
                 logger.info("Насосы отопления включены");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле насосов отопления");
@@ -62,7 +62,7 @@ public class HeatingPumpsServiceImpl implements HeatingPumpsService {
     private void turnOff() {
         if (getStatus() != HeatingPumpsStatus.TURNED_OFF) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
                 logger.info("Насосы отопления отключены");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле насосов отопления");
@@ -74,11 +74,7 @@ public class HeatingPumpsServiceImpl implements HeatingPumpsService {
     @Override
     public HeatingPumpsStatus getStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllCoilsFromZero(configuration.getAddress());
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос катушек реле насосов отопления вернул пустой массив");
-            }
-            if (pollResult[configuration.getCoil()]) {
+            if (coilStateService.getCoil(configuration.getAddress(), configuration.getCoil())) {
                 return HeatingPumpsStatus.TURNED_OFF;
             }
             else {
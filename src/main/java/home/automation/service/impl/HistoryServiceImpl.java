@@ -1,86 +1,353 @@
 package home.automation.service.impl;
 
 import home.automation.configuration.FloorHeatingConfiguration;
+import home.automation.configuration.HistoryConfiguration;
+import home.automation.configuration.HistoryRollupsConfiguration;
 import home.automation.enums.GasBoilerStatus;
+import home.automation.enums.RollupResolution;
 import home.automation.enums.TemperatureSensor;
+import home.automation.enums.UniversalSensor;
+import home.automation.enums.UniversalSensorChannel;
+import home.automation.history.GasBoilerCycleTracker;
+import home.automation.history.HistorySegmentStore;
+import home.automation.history.RollupSnapshotFile;
+import home.automation.model.ExponentialMovingAverage;
+import home.automation.model.MovingAverage;
+import home.automation.model.MovingMedian;
+import home.automation.model.MultiResolutionRollup;
+import home.automation.model.PlantSnapshot;
+import home.automation.model.RollupBucket;
+import home.automation.model.TimeSeries;
+import home.automation.model.UniversalSensorData;
+import home.automation.model.ValueFilter;
 import home.automation.service.HistoryService;
+import home.automation.service.PlantStateService;
 import home.automation.utils.P_F;
 import home.automation.utils.decimal.D_F;
-import org.apache.commons.lang3.tuple.Pair;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class HistoryServiceImpl implements HistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryServiceImpl.class);
+    private static final int GAS_BOILER_STATUS_SERIES_ID = "gasBoilerStatus".hashCode();
+    private static final int CALCULATED_VALVE_PERCENT_SERIES_ID = "calculatedValvePercent".hashCode();
     private final FloorHeatingConfiguration floorHeatingConfiguration;
-    private final Map<Instant, GasBoilerStatus> gasBoilerStatusDailyHistory = new HashMap<>();
-    private final Map<Instant, Float> gasBoilerDirectTemperatureDailyHistory = new HashMap<>();
-    private final Map<Instant, Float> gasBoilerReturnTemperatureDailyHistory = new HashMap<>();
-    private final Map<Instant, Integer> calculatedValvePercentLastNValues = new HashMap<>();
+    private final PlantStateService plantStateService;
+    private final Duration retention;
+    /* статус хранится числом, в ряд попадают только смены статуса */
+    private final TimeSeries gasBoilerStatusHistory;
+    private final GasBoilerCycleTracker gasBoilerCycleTracker;
+    private final Map<TemperatureSensor, TimeSeries> temperatureHistory = new EnumMap<>(TemperatureSensor.class);
+    /* ряды и агрегаты по id, под которыми точки лежат в сегментах на диске */
+    private final Map<Integer, TimeSeries> seriesById = new HashMap<>();
+    private final Map<Integer, MultiResolutionRollup> rollupsById = new HashMap<>();
+    private final ValueFilter calculatedValvePercentFilter;
+    private final Map<RollupResolution, Integer> rollupCapacities;
+    private final Duration rollupsSaveInterval;
+    private HistorySegmentStore store;
+    private RollupSnapshotFile rollupSnapshotFile;
+    private Instant rollupsSavedAt = Instant.now();
 
-    public HistoryServiceImpl(FloorHeatingConfiguration floorHeatingConfiguration) {
+    public HistoryServiceImpl(
+            FloorHeatingConfiguration floorHeatingConfiguration,
+            HistoryConfiguration historyConfiguration,
+            HistoryRollupsConfiguration historyRollupsConfiguration,
+            PlantStateService plantStateService,
+            MeterRegistry meterRegistry
+    ) {
         this.floorHeatingConfiguration = floorHeatingConfiguration;
+        this.calculatedValvePercentFilter = createValveFilter(floorHeatingConfiguration);
+        this.plantStateService = plantStateService;
+        this.retention = historyConfiguration.getRetention();
+        this.rollupCapacities = historyRollupsConfiguration.getBuckets();
+        this.rollupsSaveInterval = historyConfiguration.getRollupsSaveInterval();
+        this.gasBoilerStatusHistory = new TimeSeries(historyConfiguration.getCapacity());
+        seriesById.put(GAS_BOILER_STATUS_SERIES_ID, gasBoilerStatusHistory);
+        for (TemperatureSensor sensor : TemperatureSensor.values()) {
+            TimeSeries series = new TimeSeries(historyConfiguration.getCapacity());
+            temperatureHistory.put(sensor, series);
+            seriesById.put(temperatureSeriesId(sensor), series);
+        }
+        createRollups();
+        this.gasBoilerCycleTracker = new GasBoilerCycleTracker(Duration.ofDays(1), meterRegistry);
+        if (historyConfiguration.getPersistenceEnabled()) {
+            openStore(historyConfiguration);
+            restoreGasBoilerCycles();
+        }
+
+        Gauge.builder("gas_boiler", this::getWorkPercentMetric)
+                .tag("component", "work_percent")
+                .tag("system", "home_automation")
+                .description("Доля времени работы газового котла на отопление за сутки")
+                .register(meterRegistry);
+
+        Gauge.builder("gas_boiler", this::getAverageTurnOnPerHourMetric)
+                .tag("component", "turn_on_per_hour")
+                .tag("system", "home_automation")
+                .description("Среднее количество розжигов газового котла в час за сутки")
+                .register(meterRegistry);
+    }
+
+    /* после перезапуска итоги циклов пересчитываются по восстановленным статусам за сутки */
+    private void restoreGasBoilerCycles() {
+        for (int i = gasBoilerStatusHistory.firstIndexAtOrAfter(dayStart()); i < gasBoilerStatusHistory.size(); i++) {
+            gasBoilerCycleTracker.onStatus(toStatus(gasBoilerStatusHistory.getValue(i)),
+                    gasBoilerStatusHistory.getTimestamp(i),
+                    false
+            );
+        }
+    }
+
+    private synchronized float getWorkPercentMetric() {
+        return calculateWorkPercent();
+    }
+
+    private synchronized float getAverageTurnOnPerHourMetric() {
+        return calculateAverageTurnOnPerHour();
+    }
+
+    private static ValueFilter createValveFilter(FloorHeatingConfiguration floorHeatingConfiguration) {
+        int window = floorHeatingConfiguration.getValuesCountForAverage();
+        return switch (floorHeatingConfiguration.getValveAveragingMode()) {
+            case MEAN -> new MovingAverage(window);
+            case EWMA -> new ExponentialMovingAverage(floorHeatingConfiguration.getEwmaAlpha(), window);
+            case MEDIAN -> new MovingMedian(window);
+        };
+    }
+
+    private static int temperatureSeriesId(TemperatureSensor sensor) {
+        return ("temperature." + sensor.name()).hashCode();
+    }
+
+    private static int universalSensorSeriesId(UniversalSensor sensor, UniversalSensorChannel channel) {
+        return ("universal." + sensor.name() + "." + channel.name()).hashCode();
+    }
+
+    private void createRollups() {
+        rollupsById.clear();
+        for (TemperatureSensor sensor : TemperatureSensor.values()) {
+            rollupsById.put(temperatureSeriesId(sensor), new MultiResolutionRollup(rollupCapacities));
+        }
+        for (UniversalSensor sensor : UniversalSensor.values()) {
+            for (UniversalSensorChannel channel : UniversalSensorChannel.values()) {
+                rollupsById.put(universalSensorSeriesId(sensor, channel), new MultiResolutionRollup(rollupCapacities));
+            }
+        }
+        rollupsById.put(CALCULATED_VALVE_PERCENT_SERIES_ID, new MultiResolutionRollup(rollupCapacities));
+    }
+
+    /* история не критична для управления, без хранилища сервис продолжает работать только в памяти */
+    private void openStore(HistoryConfiguration historyConfiguration) {
+        long startedAt = System.nanoTime();
+        try {
+            Path directory = Path.of(historyConfiguration.getDirectory());
+            store = new HistorySegmentStore(directory, historyConfiguration.getRecordsPerSegment());
+            rollupSnapshotFile = new RollupSnapshotFile(directory.resolve("rollups.bin"));
+            /* агрегаты старее сырых сегментов берутся из файла, сегменты догоняют их только записями новее
+            сохранения */
+            long rollupsSavedAtMillis = loadRollups();
+            int loaded = store.load((seriesId, timestamp, value) -> {
+                TimeSeries series = seriesById.get(seriesId);
+                if (series != null) {
+                    series.append(timestamp, value);
+                }
+                MultiResolutionRollup rollup = rollupsById.get(seriesId);
+                if (rollup != null && timestamp > rollupsSavedAtMillis) {
+                    rollup.append(timestamp, value);
+                }
+            });
+            long retentionStart = retentionStart();
+            seriesById.values().forEach(series -> series.expireBefore(retentionStart));
+            store.deleteBefore(retentionStart);
+            logger.info("История восстановлена из {} записей за {} мс", loaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (IOException e) {
+            logger.error("Ошибка открытия хранилища истории, история будет только в памяти", e);
+            store = null;
+        }
+    }
+
+    private long loadRollups() {
+        try {
+            return rollupSnapshotFile.load(rollupsById);
+        } catch (IOException e) {
+            logger.error("Ошибка чтения агрегатов истории, они будут пересчитаны из сегментов", e);
+            createRollups();
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private void saveRollups() {
+        if (rollupSnapshotFile == null) {
+            return;
+        }
+        try {
+            Instant savedAt = Instant.now();
+            rollupSnapshotFile.save(savedAt.toEpochMilli(), rollupsById);
+            rollupsSavedAt = savedAt;
+        } catch (IOException e) {
+            logger.error("Ошибка сохранения агрегатов истории", e);
+        }
+    }
+
+    /* точка попадает в ряд и во все агрегаты своего id */
+    private void remember(int seriesId, Instant ts, float value) {
+        TimeSeries series = seriesById.get(seriesId);
+        if (series != null) {
+            series.append(ts.toEpochMilli(), value);
+        }
+        MultiResolutionRollup rollup = rollupsById.get(seriesId);
+        if (rollup != null) {
+            rollup.append(ts.toEpochMilli(), value);
+        }
+        persist(seriesId, ts, value);
+    }
+
+    private void persist(int seriesId, Instant ts, float value) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.append(seriesId, ts.toEpochMilli(), value);
+        } catch (IOException e) {
+            logger.error("Ошибка записи истории на диск", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (store == null) {
+            return;
+        }
+        saveRollups();
+        try {
+            store.close();
+        } catch (IOException e) {
+            logger.error("Ошибка закрытия хранилища истории", e);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${history.sampleInterval}")
+    private void sampleTemperatures() {
+        /* история пишется из снимка состояния, запись не обращается к шине */
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        if (snapshot == null) {
+            logger.debug("Нет свежего снимка состояния, температуры в историю не записаны");
+            return;
+        }
+        for (TemperatureSensor sensor : TemperatureSensor.values()) {
+            putTemperatureToDailyHistory(sensor, snapshot.getTemperature(sensor), snapshot.getTimestamp());
+        }
+        for (UniversalSensor sensor : UniversalSensor.values()) {
+            putUniversalSensorData(sensor, snapshot.getUniversalSensorData(sensor), snapshot.getTimestamp());
+        }
+        flushStore();
+    }
+
+    private synchronized void putUniversalSensorData(UniversalSensor sensor, @Nullable UniversalSensorData data,
+                                                     Instant ts) {
+        if (data == null) {
+            return;
+        }
+        for (UniversalSensorChannel channel : UniversalSensorChannel.values()) {
+            Number value = channel.getValue(data);
+            if (value != null) {
+                remember(universalSensorSeriesId(sensor, channel), ts, value.floatValue());
+            }
+        }
+    }
+
+    private synchronized void flushStore() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.flush();
+            store.deleteBefore(retentionStart());
+        } catch (IOException e) {
+            logger.error("Ошибка сброса истории на диск", e);
+        }
+        if (Duration.between(rollupsSavedAt, Instant.now()).compareTo(rollupsSaveInterval) >= 0) {
+            saveRollups();
+        }
     }
 
     @Override
     public synchronized void putGasBoilerStatusToDailyHistory(GasBoilerStatus status, Instant ts) {
         /* не добавляем если статус такой же, как и предыдущий, экономим память */
         if (status != getLastGasBoilerStatus()) {
-            gasBoilerStatusDailyHistory.put(ts, status);
+            remember(GAS_BOILER_STATUS_SERIES_ID, ts, status.getNumericStatus());
+            gasBoilerCycleTracker.onStatus(status, ts.toEpochMilli(), true);
         }
-        gasBoilerStatusDailyHistory.entrySet()
-                .removeIf(entry -> entry.getKey().isBefore(Instant.now().minus(1, ChronoUnit.DAYS)));
+        gasBoilerStatusHistory.expireBefore(retentionStart());
     }
 
     private GasBoilerStatus getLastGasBoilerStatus() {
-        Optional<Instant> maxKey = gasBoilerStatusDailyHistory.keySet().stream().max(Comparator.naturalOrder());
-        return maxKey.map(gasBoilerStatusDailyHistory::get).orElse(null);
+        return gasBoilerStatusHistory.isEmpty() ? null : toStatus(gasBoilerStatusHistory.getLatestValue());
+    }
+
+    private static GasBoilerStatus toStatus(float value) {
+        for (GasBoilerStatus status : GasBoilerStatus.values()) {
+            if (status.getNumericStatus() == (int) value) {
+                return status;
+            }
+        }
+        return GasBoilerStatus.ERROR;
+    }
+
+    private long retentionStart() {
+        return Instant.now().minus(retention).toEpochMilli();
+    }
+
+    private static long dayStart() {
+        return Instant.now().minus(1, ChronoUnit.DAYS).toEpochMilli();
     }
 
     @Override
     public synchronized void putTemperatureToDailyHistory(TemperatureSensor sensor, Float temperature, Instant ts) {
         if (temperature != null) {
-            switch (sensor) {
-                case WATER_DIRECT_GAS_BOILER_TEMPERATURE -> gasBoilerDirectTemperatureDailyHistory.put(ts, temperature);
-                case WATER_RETURN_GAS_BOILER_TEMPERATURE -> gasBoilerReturnTemperatureDailyHistory.put(ts, temperature);
-            }
+            remember(temperatureSeriesId(sensor), ts, temperature);
         }
-        gasBoilerDirectTemperatureDailyHistory.entrySet()
-                .removeIf(entry -> entry.getKey().isBefore(Instant.now().minus(1, ChronoUnit.DAYS)));
-        gasBoilerReturnTemperatureDailyHistory.entrySet()
-                .removeIf(entry -> entry.getKey().isBefore(Instant.now().minus(1, ChronoUnit.DAYS)));
+        temperatureHistory.get(sensor).expireBefore(retentionStart());
     }
 
     @Override
-    public String getGasBoilerFormattedStatusForLastDay() {
-        if (!(gasBoilerStatusDailyHistory.containsValue(GasBoilerStatus.IDLE)
-                || gasBoilerStatusDailyHistory.containsValue(GasBoilerStatus.WORKS))
-                || gasBoilerDirectTemperatureDailyHistory.isEmpty()
-                || gasBoilerReturnTemperatureDailyHistory.isEmpty()) {
+    public synchronized String getGasBoilerFormattedStatusForLastDay() {
+        long dayStart = dayStart();
+        if (!gasBoilerCycleTracker.hasData(System.currentTimeMillis())
+                || !hasTemperatureSince(TemperatureSensor.WATER_DIRECT_GAS_BOILER_TEMPERATURE, dayStart)
+                || !hasTemperatureSince(TemperatureSensor.WATER_RETURN_GAS_BOILER_TEMPERATURE, dayStart)) {
             return "сведений о работе газового котла пока не достаточно";
         }
 
-        Pair<List<Float>, List<Float>> intervals = calculateWorkIdleIntervals(gasBoilerStatusDailyHistory);
-        float workPercent = calculateWorkPercent(intervals);
-        float averageTurnOnPerHour = calculateAverageTurnOnPerHour(intervals);
+        /* итоги за сутки ведутся инкрементально при смене статуса, здесь только чтение */
+        float workPercent = calculateWorkPercent();
+        float averageTurnOnPerHour = calculateAverageTurnOnPerHour();
 
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
 
-        Instant oldestTimestampIntDataset = Collections.min(gasBoilerStatusDailyHistory.keySet());
+        Instant oldestTimestampIntDataset = getOldestStatusTimestampForLastDay();
         String intro = oldestTimestampIntDataset.isBefore(Instant.now().minus(23, ChronoUnit.HOURS))
                 ? "за последние сутки котел работал на отопление "
                 : "начиная с " + dtf.format(LocalDateTime.ofInstant(oldestTimestampIntDataset, ZoneId.systemDefault()))
@@ -92,96 +359,74 @@ public class HistoryServiceImpl implements HistoryService {
                 D_F.format(averageTurnOnPerHour);
     }
 
+    private boolean hasTemperatureSince(TemperatureSensor sensor, long from) {
+        TimeSeries series = temperatureHistory.get(sensor);
+        return !series.isEmpty() && series.getLatestTimestamp() >= from;
+    }
+
+    private @Nullable Instant getOldestStatusTimestampForLastDay() {
+        int index = gasBoilerStatusHistory.firstIndexAtOrAfter(dayStart());
+        if (index == gasBoilerStatusHistory.size()) {
+            return null;
+        }
+        return Instant.ofEpochMilli(gasBoilerStatusHistory.getTimestamp(index));
+    }
+
     @Override
-    public Duration getGasBoilerCurrentStatusDuration() {
-        Instant lastKey = gasBoilerStatusDailyHistory.keySet().stream().max(Comparator.naturalOrder()).orElse(null);
-        if (lastKey == null) {
+    public synchronized Duration getGasBoilerCurrentStatusDuration() {
+        if (gasBoilerStatusHistory.isEmpty()) {
             return null;
         }
-        return Duration.between(lastKey, Instant.now());
+        return Duration.between(Instant.ofEpochMilli(gasBoilerStatusHistory.getLatestTimestamp()), Instant.now());
     }
 
     @Override
-    public void putCalculatedTargetValvePercent(Integer calculatedTargetValvePercent, Instant ts) {
+    public synchronized void putCalculatedTargetValvePercent(Integer calculatedTargetValvePercent, Instant ts) {
         if (calculatedTargetValvePercent != null) {
-            calculatedValvePercentLastNValues.put(ts, calculatedTargetValvePercent);
+            calculatedValvePercentFilter.add(calculatedTargetValvePercent);
+            remember(CALCULATED_VALVE_PERCENT_SERIES_ID, ts, calculatedTargetValvePercent);
         }
-        List<Instant> listOfTop10NewestKeys =
-                calculatedValvePercentLastNValues.keySet().stream().sorted(Comparator.reverseOrder())
-                        .limit(floorHeatingConfiguration.getValuesCountForAverage()).toList();
-        calculatedValvePercentLastNValues.entrySet().removeIf(entry -> !listOfTop10NewestKeys.contains(entry.getKey()));
     }
 
     @Override
-    public Integer getAverageCalculatedTargetValvePercentForLastNValues() {
-        if (calculatedValvePercentLastNValues.size() < floorHeatingConfiguration.getValuesCountForAverage()) {
+    public synchronized Integer getAverageCalculatedTargetValvePercentForLastNValues() {
+        if (!calculatedValvePercentFilter.isReady()) {
             return null;
         }
-        OptionalDouble averageOptional =
-                calculatedValvePercentLastNValues.values().stream().mapToDouble(t -> t).average();
-        Float average = averageOptional.isPresent() ? (float) averageOptional.getAsDouble() : null;
+        Float average = calculatedValvePercentFilter.getValue();
         return average != null ? Math.round(average) : null;
     }
 
     @Override
-    public Integer getLastCalculatedTargetValvePercent() {
-        Optional<Instant> lastKey = calculatedValvePercentLastNValues.keySet().stream().max(Comparator.naturalOrder());
-        return lastKey.map(calculatedValvePercentLastNValues::get).orElse(null);
-    }
-
-    private Pair<List<Float>, List<Float>> calculateWorkIdleIntervals(Map<Instant, GasBoilerStatus> gasBoilerStatusHistory) {
-        /* создаем shallow копию датасета и очищаем его от ненужных записей */
-        Map<Instant, GasBoilerStatus> gasBoilerStatusDailyHistoryCleared = new HashMap<>(gasBoilerStatusHistory);
-        gasBoilerStatusDailyHistoryCleared.entrySet()
-                .removeIf(entry -> (entry.getValue() != GasBoilerStatus.WORKS &&
-                        entry.getValue() != GasBoilerStatus.IDLE));
-
-        /* для работы нужен отсортированный список времен */
-        List<Instant> timestamps = new ArrayList<>(gasBoilerStatusDailyHistoryCleared.keySet());
-        Collections.sort(timestamps);
-
-        List<Float> workIntervals = new ArrayList<>();
-        List<Float> idleIntervals = new ArrayList<>();
-
-        /* запоминаем начало интервала - первый элемент очищенного датасета */
-        Instant intervalBeginTimestamp = timestamps.get(0);
-        GasBoilerStatus intervalBeginStatus = gasBoilerStatusDailyHistoryCleared.get(intervalBeginTimestamp);
-        /* и убираем его, чтобы начать со второго */
-        gasBoilerStatusDailyHistoryCleared.remove(intervalBeginTimestamp);
-        timestamps.remove(intervalBeginTimestamp);
-
-        /* добавляем в списке интервалы */
-        for (Instant timestamp : timestamps) {
-            if (gasBoilerStatusDailyHistoryCleared.get(timestamp) != intervalBeginStatus) {
-                float durationInMinutes =
-                        (float) (Duration.between(intervalBeginTimestamp, timestamp).toSeconds() / 60);
-                if (intervalBeginStatus == GasBoilerStatus.IDLE) {
-                    idleIntervals.add(durationInMinutes);
-                }
-                if (intervalBeginStatus == GasBoilerStatus.WORKS) {
-                    workIntervals.add(durationInMinutes);
-                }
-                intervalBeginTimestamp = timestamp;
-                intervalBeginStatus = gasBoilerStatusDailyHistoryCleared.get(timestamp);
-            }
-        }
-        /* если последний интервал не закрыт - закрываем вручную */
-        if (intervalBeginTimestamp != null) {
-            float durationInMinutes =
-                    (float) (Duration.between(intervalBeginTimestamp, Instant.now()).toSeconds() / 60);
-            if (intervalBeginStatus == GasBoilerStatus.IDLE) {
-                idleIntervals.add(durationInMinutes);
-            }
-            if (intervalBeginStatus == GasBoilerStatus.WORKS) {
-                workIntervals.add(durationInMinutes);
-            }
-        }
-        return Pair.of(workIntervals, idleIntervals);
+    public synchronized Integer getLastCalculatedTargetValvePercent() {
+        Float latest = calculatedValvePercentFilter.getLatest();
+        return latest != null ? Math.round(latest) : null;
     }
 
-    private float calculateWorkPercent(Pair<List<Float>, List<Float>> intervals) {
-        float countWorks = (float) intervals.getLeft().stream().mapToDouble(t -> t).sum();
-        float countIdle = (float) intervals.getRight().stream().mapToDouble(t -> t).sum();
+    @Override
+    public synchronized List<RollupBucket> getTemperatureRollup(TemperatureSensor sensor, RollupResolution resolution,
+                                                                Instant from, Instant to) {
+        return rollupsById.get(temperatureSeriesId(sensor)).getBuckets(resolution, from, to);
+    }
+
+    @Override
+    public synchronized List<RollupBucket> getUniversalSensorRollup(UniversalSensor sensor,
+                                                                    UniversalSensorChannel channel,
+                                                                    RollupResolution resolution, Instant from,
+                                                                    Instant to) {
+        return rollupsById.get(universalSensorSeriesId(sensor, channel)).getBuckets(resolution, from, to);
+    }
+
+    @Override
+    public synchronized List<RollupBucket> getCalculatedTargetValvePercentRollup(RollupResolution resolution,
+                                                                                 Instant from, Instant to) {
+        return rollupsById.get(CALCULATED_VALVE_PERCENT_SERIES_ID).getBuckets(resolution, from, to);
+    }
+
+    private float calculateWorkPercent() {
+        long now = System.currentTimeMillis();
+        float countWorks = gasBoilerCycleTracker.getWorkMinutes(now);
+        float countIdle = gasBoilerCycleTracker.getIdleMinutes(now);
         /* подпираем для ситуаций когда котел только что был опрошен в первый раз и не прошло еще минуты */
         float result = countWorks / (countWorks + countIdle) * 100;
         if (!Float.isNaN(result)) {
@@ -192,9 +437,12 @@ public class HistoryServiceImpl implements HistoryService {
         }
     }
 
-    private float calculateAverageTurnOnPerHour(Pair<List<Float>, List<Float>> intervals) {
-        int countWorks = intervals.getLeft().size();
-        Instant oldestTimestampIntDataset = Collections.min(gasBoilerStatusDailyHistory.keySet());
+    private float calculateAverageTurnOnPerHour() {
+        int countWorks = gasBoilerCycleTracker.getWorkCount(System.currentTimeMillis());
+        Instant oldestTimestampIntDataset = getOldestStatusTimestampForLastDay();
+        if (oldestTimestampIntDataset == null) {
+            return 0;
+        }
         Duration interval = Duration.between(oldestTimestampIntDataset, Instant.now());
         double countHours = interval.toMinutes() / 60.0;
         /* если прошло не больше часа - возвращаем чисто включений */
@@ -1,171 +1,298 @@
 package home.automation.service.impl;
 
-import com.intelligt.modbus.jlibmodbus.Modbus;
-import com.intelligt.modbus.jlibmodbus.master.ModbusMaster;
-import com.intelligt.modbus.jlibmodbus.master.ModbusMasterFactory;
-import com.intelligt.modbus.jlibmodbus.tcp.TcpParameters;
+import home.automation.configuration.ModbusCircuitBreakerConfiguration;
 import home.automation.configuration.ModbusConfiguration;
+import home.automation.configuration.ModbusSegmentsConfiguration;
+import home.automation.configuration.ModbusTimingConfiguration;
+import home.automation.configuration.RelayModulesConfiguration;
+import home.automation.enums.ModbusPriority;
+import home.automation.enums.RelayModuleModel;
 import home.automation.exception.ModbusException;
+import home.automation.exception.SlaveUnavailableException;
+import home.automation.modbus.BusWaitScope;
+import home.automation.modbus.JlibModbusTransport;
+import home.automation.modbus.ModbusConnectionSupervisor;
+import home.automation.modbus.ModbusPriorityScope;
+import home.automation.modbus.ModbusTcpFrames;
+import home.automation.modbus.ModbusTransport;
+import home.automation.modbus.NioModbusTransport;
+import home.automation.modbus.PriorityBusScheduler;
+import home.automation.modbus.SingleFlightReads;
+import home.automation.modbus.SlaveCircuitBreakers;
+import home.automation.modbus.SlaveTimingProfiles;
 import home.automation.service.ModbusService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.net.InetAddress;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 @Service
 public class ModbusServiceImpl implements ModbusService {
     private static final Logger logger = LoggerFactory.getLogger(ModbusServiceImpl.class);
-    private final ModbusConfiguration modbusConfiguration;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private ModbusMaster modbusMaster;
+    private static final String NIO_TRANSPORT = "nio";
+    private static final String RTU_FRAMING = "rtu";
+    private static final int UNKNOWN_RELAY_MODULE_BANK_SIZE = 1;
+    /* шлюз из modbus.tcpHost и modbus.tcpPort, через него идут устройства без маршрута */
+    private static final String MAIN_GATEWAY = "main";
+    private final PriorityBusScheduler mainScheduler;
+    private final Map<String, PriorityBusScheduler> gatewaySchedulers = new LinkedHashMap<>();
+    private final Map<Integer, PriorityBusScheduler> routes = new HashMap<>();
+    private final SingleFlightReads singleFlightReads;
+    private final SlaveCircuitBreakers circuitBreakers;
+    private final RelayModulesConfiguration relayModulesConfiguration;
 
-    public ModbusServiceImpl(ModbusConfiguration modbusConfiguration) {
-        this.modbusConfiguration = modbusConfiguration;
+    public ModbusServiceImpl(
+            ModbusConfiguration modbusConfiguration,
+            ModbusTimingConfiguration modbusTimingConfiguration,
+            ModbusSegmentsConfiguration segmentsConfiguration,
+            RelayModulesConfiguration relayModulesConfiguration,
+            ModbusCircuitBreakerConfiguration circuitBreakerConfiguration,
+            MeterRegistry meterRegistry
+    ) {
+        this.relayModulesConfiguration = relayModulesConfiguration;
+        this.circuitBreakers = new SlaveCircuitBreakers(circuitBreakerConfiguration, meterRegistry);
+        this.singleFlightReads = new SingleFlightReads(meterRegistry);
+        /* у каждого шлюза своя линия RS485: свой транспорт, очередь и паузы, шлюзы опрашиваются параллельно */
+        this.mainScheduler = createSegment(MAIN_GATEWAY, modbusConfiguration.getHost(), modbusConfiguration.getPort(),
+                modbusConfiguration, modbusTimingConfiguration, meterRegistry);
+        gatewaySchedulers.put(MAIN_GATEWAY, mainScheduler);
+        segmentsConfiguration.getGateways().forEach((name, gateway) -> gatewaySchedulers.put(name,
+                createSegment(name, gateway.getHost(), gateway.getPort(), modbusConfiguration,
+                        modbusTimingConfiguration, meterRegistry)
+        ));
+        segmentsConfiguration.getRouting().forEach((address, name) -> {
+            PriorityBusScheduler scheduler = gatewaySchedulers.get(name);
+            if (scheduler == null) {
+                throw new IllegalStateException("Устройство " + address + " привязано к неизвестному шлюзу " + name);
+            }
+            routes.put(address, scheduler);
+        });
+    }
+
+    private PriorityBusScheduler createSegment(String gateway, String host, int port,
+                                               ModbusConfiguration modbusConfiguration,
+                                               ModbusTimingConfiguration modbusTimingConfiguration,
+                                               MeterRegistry meterRegistry) {
+        ModbusTransport transport = createTransport(gateway, host, port, modbusConfiguration,
+                new SlaveTimingProfiles(modbusConfiguration.getDelay(), modbusTimingConfiguration, circuitBreakers,
+                        meterRegistry),
+                meterRegistry
+        );
+        /* jlibmodbus и кадры RTU без id транзакции допускают только один запрос без ответа, поэтому и передавать
+        транспорту больше одного запроса незачем */
+        int dispatchWindow = NIO_TRANSPORT.equals(modbusConfiguration.getTransport())
+                && !isRtuFraming(modbusConfiguration)
+                ? modbusConfiguration.getMaxInFlight()
+                : 1;
+        PriorityBusScheduler scheduler = new PriorityBusScheduler(gateway,
+                transport,
+                dispatchWindow,
+                modbusConfiguration.getQueueCapacity(),
+                modbusConfiguration.getStaleAfter(),
+                meterRegistry
+        );
         try {
-            init();
+            transport.connect();
         } catch (ModbusException e) {
             /* тут ничего не делаем - в логи уже отписали */
             /* а перехватываем чтобы приложение не падало при запуске если связи нет */
         }
+        return scheduler;
     }
 
-    private void init() throws ModbusException {
-        try {
-            if (modbusMaster == null) {
-                TcpParameters tcpParameters = new TcpParameters();
-                tcpParameters.setHost(InetAddress.getByName(modbusConfiguration.getHost()));
-                tcpParameters.setKeepAlive(true);
-                tcpParameters.setPort(modbusConfiguration.getPort());
-
-                modbusMaster = ModbusMasterFactory.createModbusMasterTCP(tcpParameters);
-                Modbus.setAutoIncrementTransactionId(true);
-            }
+    private static ModbusTransport createTransport(String gateway, String host, int port,
+                                                   ModbusConfiguration modbusConfiguration,
+                                                   SlaveTimingProfiles timingProfiles,
+                                                   MeterRegistry meterRegistry) {
+        ModbusConnectionSupervisor.ReconnectPolicy reconnectPolicy = new ModbusConnectionSupervisor.ReconnectPolicy(
+                modbusConfiguration.getReconnectInitialBackoff(),
+                modbusConfiguration.getReconnectMaxBackoff(),
+                modbusConfiguration.getFailuresToReconnect()
+        );
+        if (NIO_TRANSPORT.equals(modbusConfiguration.getTransport())) {
+            logger.info("Шлюз {}: используется транспорт modbus на SocketChannel, кадры {}", gateway,
+                    modbusConfiguration.getFraming());
+            return new NioModbusTransport(gateway,
+                    host,
+                    port,
+                    timingProfiles,
+                    isRtuFraming(modbusConfiguration),
+                    modbusConfiguration.getMaxInFlight(),
+                    modbusConfiguration.getResponseTimeout(),
+                    reconnectPolicy,
+                    meterRegistry
+            );
+        }
+        logger.info("Шлюз {}: используется транспорт modbus на jlibmodbus", gateway);
+        return new JlibModbusTransport(gateway,
+                host,
+                port,
+                timingProfiles,
+                reconnectPolicy,
+                meterRegistry
+        );
+    }
 
-            modbusMaster.connect();
+    private static boolean isRtuFraming(ModbusConfiguration modbusConfiguration) {
+        return RTU_FRAMING.equals(modbusConfiguration.getFraming());
+    }
 
-        } catch (Exception e) {
-            logger.error("Ошибка подключения к modbus", e);
-            throw new ModbusException();
-        }
+    /* очередь шлюза, на линии которого устройство */
+    private PriorityBusScheduler scheduler(int address) {
+        return routes.getOrDefault(address, mainScheduler);
+    }
+
+    @PreDestroy
+    public void close() {
+        gatewaySchedulers.values().forEach(PriorityBusScheduler::close);
+    }
+
+    /* синхронное чтение нужно тому, кто ждет ответа для принятия решения, асинхронные чтения делает цикл опроса */
+    private static ModbusPriority readPriority() {
+        return ModbusPriorityScope.current(ModbusPriority.CONTROL);
+    }
+
+    private static ModbusPriority asyncReadPriority() {
+        return ModbusPriorityScope.current(ModbusPriority.TELEMETRY);
     }
 
     @Override
     public boolean[] readAllDiscreteInputsFromZero(int address) throws ModbusException {
-        try {
-            init();
-            Future<boolean[]> future = executorService.submit(() -> readAllDiscreteInputsFromZeroWithDelay(address));
-            return future.get();
-        } catch (Exception e) {
-            logger.error("Ошибка чтения состояния входов", e);
-            throw new ModbusException();
-        }
+        return await(readDiscreteInputs(readPriority(), address), "Ошибка чтения состояния входов");
     }
 
-    private boolean[] readAllDiscreteInputsFromZeroWithDelay(int address) throws Exception {
-        boolean[] result = modbusMaster.readDiscreteInputs(address, 0, 1);
-        delay();
-        return result;
+    @Override
+    public CompletableFuture<boolean[]> readAllDiscreteInputsFromZeroAsync(int address) {
+        return readDiscreteInputs(asyncReadPriority(), address);
     }
 
     @Override
     public boolean[] readAllCoilsFromZero(int address) throws ModbusException {
-        try {
-            init();
-            Future<boolean[]> future = executorService.submit(() -> readAllCoilsFromZeroWithDelay(address));
-            return future.get();
-        } catch (Exception e) {
-            logger.error("Ошибка чтения состояний катушек", e);
-            throw new ModbusException();
-        }
+        return await(readCoils(readPriority(), address), "Ошибка чтения состояний катушек");
     }
 
-    private boolean[] readAllCoilsFromZeroWithDelay(int address) throws Exception {
-        boolean[] result = modbusMaster.readCoils(address, 0, 1);
-        delay();
-        return result;
+    @Override
+    public CompletableFuture<boolean[]> readAllCoilsFromZeroAsync(int address) {
+        return readCoils(asyncReadPriority(), address);
     }
 
     @Override
     public void writeCoil(int address, int coilId, boolean value) throws ModbusException {
-        try {
-            init();
-            Future<boolean[]> future = executorService.submit(() -> writeCoilWithDelay(address, coilId, value));
-            /* этот future.get нужен только чтобы получить ExecutionException и по нему понять, что что-то не так с
-            записью*/
-            future.get();
-        } catch (Exception e) {
-            logger.error("Ошибка выставления значения катушки", e);
-            throw new ModbusException();
-        }
-    }
-
-    private boolean[] writeCoilWithDelay(int address, int coilId, boolean value) throws Exception {
-        modbusMaster.writeSingleCoil(address, coilId, value);
-        delay();
-        return new boolean[]{true};
+        await(scheduler(address).writeSingleCoil(ModbusPriority.ACTUATOR, address, coilId, value),
+                "Ошибка выставления значения катушки"
+        );
     }
 
     @Override
     public int readHoldingRegister(int address, int registerId) throws ModbusException {
-        try {
-            init();
-            Future<int[]> future = executorService.submit(() -> readHoldingRegistersWithDelay(address, registerId, 1));
-            return future.get()[0];
-        } catch (Exception e) {
-            logger.error("Ошибка чтения регистра", e);
-            throw new ModbusException();
-        }
+        return await(readHoldingRegisters(readPriority(), address, registerId, 1), "Ошибка чтения регистра")[0];
     }
 
     @Override
     public int[] readHoldingRegisters(int address, int registerStartId, int quantity) throws ModbusException {
-        try {
-            init();
-            Future<int[]> future = executorService.submit(() -> readHoldingRegistersWithDelay(address,
-                    registerStartId, quantity));
-            return future.get();
-        } catch (Exception e) {
-            logger.error("Ошибка чтения регистров", e);
-            throw new ModbusException();
-        }
+        return await(readHoldingRegisters(readPriority(), address, registerStartId, quantity),
+                "Ошибка чтения регистров"
+        );
     }
 
-    private int[] readHoldingRegistersWithDelay(int address, int registerId, int quantity) throws Exception {
-        int[] result = modbusMaster.readHoldingRegisters(address, registerId, quantity);
-        delay();
-        return result;
+    @Override
+    public CompletableFuture<int[]> readHoldingRegistersAsync(int address, int registerStartId, int quantity) {
+        return readHoldingRegisters(asyncReadPriority(), address, registerStartId, quantity);
     }
 
     @Override
     public void writeHoldingRegister(int address, int registerId, int value) throws ModbusException {
-        try {
-            init();
-            Future<int[]> future = executorService.submit(() -> writeHoldingRegistersWithDelay(address,
-                    registerId,
-                    value));
-            /* этот future.get нужен только чтобы получить ExecutionException и по нему понять, что что-то не так с
-            записью*/
-            future.get();
-        } catch (Exception e) {
-            logger.error("Ошибка записи в регистр", e);
-            throw new ModbusException();
+        await(scheduler(address).writeSingleRegister(ModbusPriority.ACTUATOR, address, registerId, value),
+                "Ошибка записи в регистр"
+        );
+    }
+
+    @Override
+    public Set<Integer> getUnavailableSlaves() {
+        return circuitBreakers.getUnavailableSlaves();
+    }
+
+    /* чтение устройства, которое перестало отвечать, сразу завершается ошибкой и не ждет таймаута на шине */
+    private <T> CompletableFuture<T> readIfAvailable(int address, Supplier<CompletableFuture<T>> read) {
+        if (circuitBreakers.allowRequest(address)) {
+            return read.get();
+        }
+        return CompletableFuture.failedFuture(new SlaveUnavailableException("Устройство " + address +
+                " не отвечает, следующая проверка через " + circuitBreakers.getTimeToProbe(address).toSeconds() +
+                " секунд"));
+    }
+
+    /* весь банк катушек или входов модуля читается одним запросом. Ответ приходит целыми байтами, лишние биты
+    отрезаются, чтобы вызывающие видели только существующие катушки и входы. Реле без описания модели опрашиваются как
+    раньше - запросом одной катушки или входа, в ответе весь байт */
+    private CompletableFuture<boolean[]> readCoils(ModbusPriority priority, int address) {
+        RelayModuleModel model = relayModulesConfiguration.getModel(address);
+        int quantity = model == null ? UNKNOWN_RELAY_MODULE_BANK_SIZE : model.getCoils();
+        return readIfAvailable(address, () -> singleFlightReads.read(
+                SingleFlightReads.key(ModbusTcpFrames.READ_COILS, address, 0, quantity),
+                priority,
+                () -> truncate(scheduler(address).readCoils(priority, address, 0, quantity),
+                        model == null ? -1 : quantity
+                )
+        ));
+    }
+
+    private CompletableFuture<boolean[]> readDiscreteInputs(ModbusPriority priority, int address) {
+        RelayModuleModel model = relayModulesConfiguration.getModel(address);
+        int quantity = model == null ? UNKNOWN_RELAY_MODULE_BANK_SIZE : model.getDiscreteInputs();
+        return readIfAvailable(address, () -> singleFlightReads.read(
+                SingleFlightReads.key(ModbusTcpFrames.READ_DISCRETE_INPUTS, address, 0, quantity),
+                priority,
+                () -> truncate(scheduler(address).readDiscreteInputs(priority, address, 0, quantity),
+                        model == null ? -1 : quantity
+                )
+        ));
+    }
+
+    private static CompletableFuture<boolean[]> truncate(CompletableFuture<boolean[]> read, int length) {
+        if (length < 0) {
+            return read;
         }
+        return read.thenApply(bits -> bits.length > length ? Arrays.copyOf(bits, length) : bits);
     }
 
-    private int[] writeHoldingRegistersWithDelay(Integer address, Integer registerId, int value) throws Exception {
-        modbusMaster.writeSingleRegister(address, registerId, value);
-        delay();
-        return new int[0];
+    private CompletableFuture<int[]> readHoldingRegisters(ModbusPriority priority, int address, int start,
+                                                          int quantity) {
+        return readIfAvailable(address, () -> singleFlightReads.read(
+                SingleFlightReads.key(ModbusTcpFrames.READ_HOLDING_REGISTERS, address, start, quantity),
+                priority,
+                () -> scheduler(address).readHoldingRegisters(priority, address, start, quantity)
+        ));
     }
 
-    private void delay() {
+    private <T> T await(CompletableFuture<T> future, String errorMessage) throws ModbusException {
+        long startedAt = System.nanoTime();
         try {
-            Thread.sleep(modbusConfiguration.getDelay());
-        } catch (InterruptedException ignored) {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error(errorMessage, e);
+            throw new ModbusException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SlaveUnavailableException unavailable) {
+                /* о том, что устройство не отвечает, уже написали при размыкании предохранителя */
+                logger.debug(errorMessage, unavailable);
+                throw unavailable;
+            }
+            logger.error(errorMessage, e.getCause());
+            throw new ModbusException();
+        } finally {
+            BusWaitScope.record(System.nanoTime() - startedAt);
         }
     }
 }
@@ -0,0 +1,248 @@
+package home.automation.service.impl;
+
+import home.automation.configuration.CityPowerInputConfiguration;
+import home.automation.configuration.ElectricBoilerConfiguration;
+import home.automation.configuration.FloorHeatingValveDacConfiguration;
+import home.automation.configuration.FloorHeatingValveRelayConfiguration;
+import home.automation.configuration.FunnelHeatingConfiguration;
+import home.automation.configuration.GasBoilerConfiguration;
+import home.automation.configuration.GasBoilerFakeOutsideTemperatureConfiguration;
+import home.automation.configuration.HeatingPumpsRelayConfiguration;
+import home.automation.configuration.PlantStateConfiguration;
+import home.automation.configuration.RelayModulesConfiguration;
+import home.automation.configuration.StreetLightConfiguration;
+import home.automation.configuration.TemperatureSensorsBoardsConfiguration;
+import home.automation.configuration.UniversalSensorsConfiguration;
+import home.automation.enums.RelayModuleModel;
+import home.automation.enums.TemperatureSensor;
+import home.automation.enums.UniversalSensor;
+import home.automation.model.PlantSnapshot;
+import home.automation.model.PlantSnapshotLayout;
+import home.automation.model.TemperatureSensorsBoardData;
+import home.automation.model.UniversalSensorData;
+import home.automation.service.CoilStateService;
+import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class PlantStateServiceImpl implements PlantStateService {
+    private static final Logger logger = LoggerFactory.getLogger(PlantStateServiceImpl.class);
+    private final PlantStateConfiguration configuration;
+    private final TemperatureSensorsBoardsConfiguration temperatureSensorsBoardsConfiguration;
+    private final UniversalSensorsConfiguration universalSensorsConfiguration;
+    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
+    private final PlantSnapshotLayout layout;
+    private final Map<String, List<TemperatureSensor>> sensorsByBoard =
+            Arrays.stream(TemperatureSensor.values()).collect(Collectors.groupingBy(TemperatureSensor::getBoardName));
+    private long version = 0;
+    private volatile PlantSnapshot snapshot;
+
+    public PlantStateServiceImpl(
+            PlantStateConfiguration configuration,
+            TemperatureSensorsBoardsConfiguration temperatureSensorsBoardsConfiguration,
+            UniversalSensorsConfiguration universalSensorsConfiguration,
+            GasBoilerConfiguration gasBoilerConfiguration,
+            GasBoilerFakeOutsideTemperatureConfiguration gasBoilerFakeOutsideTemperatureConfiguration,
+            ElectricBoilerConfiguration electricBoilerConfiguration,
+            HeatingPumpsRelayConfiguration heatingPumpsRelayConfiguration,
+            FloorHeatingValveRelayConfiguration floorHeatingValveRelayConfiguration,
+            FloorHeatingValveDacConfiguration floorHeatingValveDacConfiguration,
+            StreetLightConfiguration streetLightConfiguration,
+            FunnelHeatingConfiguration funnelHeatingConfiguration,
+            CityPowerInputConfiguration cityPowerInputConfiguration,
+            RelayModulesConfiguration relayModulesConfiguration,
+            ModbusService modbusService,
+            CoilStateService coilStateService
+    ) {
+        this.configuration = configuration;
+        this.temperatureSensorsBoardsConfiguration = temperatureSensorsBoardsConfiguration;
+        this.universalSensorsConfiguration = universalSensorsConfiguration;
+        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
+        this.layout = new PlantSnapshotLayout(
+                Stream.of(
+                        gasBoilerConfiguration.getAddress(),
+                        gasBoilerFakeOutsideTemperatureConfiguration.getMainAddress(),
+                        gasBoilerFakeOutsideTemperatureConfiguration.getSecondaryAddress(),
+                        electricBoilerConfiguration.getAddress(),
+                        heatingPumpsRelayConfiguration.getAddress(),
+                        floorHeatingValveRelayConfiguration.getAddress(),
+                        streetLightConfiguration.getAddress(),
+                        funnelHeatingConfiguration.getAddress()
+                ).collect(Collectors.toMap(Function.identity(),
+                        address -> bankSize(relayModulesConfiguration.getModel(address), RelayModuleModel::getCoils),
+                        (first, second) -> first
+                )),
+                Map.of(cityPowerInputConfiguration.getAddress(), bankSize(
+                        relayModulesConfiguration.getModel(cityPowerInputConfiguration.getAddress()),
+                        RelayModuleModel::getDiscreteInputs
+                )),
+                Map.of(floorHeatingValveDacConfiguration.getAddress(),
+                        Set.of(floorHeatingValveDacConfiguration.getRegister())
+                )
+        );
+    }
+
+    /* для реле без описания модели в снимок попадает только нулевая катушка или вход */
+    private static int bankSize(@Nullable RelayModuleModel model, ToIntFunction<RelayModuleModel> size) {
+        return model == null ? 1 : size.applyAsInt(model);
+    }
+
+    @Scheduled(fixedRateString = "${plantState.pollInterval}")
+    private void poll() {
+        logger.debug("Запущен цикл опроса всех устройств");
+        PlantSnapshot.Builder builder = PlantSnapshot.builder(layout);
+        /* все запросы цикла ставятся в очередь сразу, транспорт отправляет их шлюзу конвейером, а ответы разбираются
+        в этом потоке после отправки всех запросов */
+        List<Runnable> collectors = new ArrayList<>();
+        pollTemperatureSensorsBoards(builder, collectors);
+        pollUniversalSensors(builder, collectors);
+        pollRelays(builder, collectors);
+        pollHoldingRegisters(builder, collectors);
+        collectors.forEach(Runnable::run);
+        snapshot = builder.build(++version, Instant.now());
+        logger.debug("Опубликован снимок состояния версии {}", version);
+    }
+
+    private void pollTemperatureSensorsBoards(PlantSnapshot.Builder builder, List<Runnable> collectors) {
+        sensorsByBoard.forEach((boardName, sensors) -> {
+            int startRegisterId = sensors.stream().mapToInt(TemperatureSensor::getRegisterId).min().orElseThrow();
+            int endRegisterId = sensors.stream().mapToInt(TemperatureSensor::getRegisterId).max().orElseThrow();
+            int quantity = endRegisterId - startRegisterId + 1;
+            CompletableFuture<int[]> read = modbusService.readHoldingRegistersAsync(
+                    temperatureSensorsBoardsConfiguration.getAddressByName(boardName),
+                    startRegisterId,
+                    quantity
+            );
+            collectors.add(() -> {
+                int[] rawTemperatures = await(read);
+                TemperatureSensorsBoardData boardData = null;
+                if (rawTemperatures != null && rawTemperatures.length >= quantity) {
+                    boardData = TemperatureSensorsBoardData.fromRegisters(startRegisterId, rawTemperatures);
+                } else {
+                    logger.error("Ошибка опроса платы температурных датчиков {} в цикле опроса", boardName);
+                }
+                for (TemperatureSensor sensor : sensors) {
+                    builder.temperature(sensor,
+                            boardData == null ? null : boardData.getTemperature(sensor.getRegisterId()));
+                }
+            });
+        });
+    }
+
+    private void pollUniversalSensors(PlantSnapshot.Builder builder, List<Runnable> collectors) {
+        /* несколько комнат могут обслуживаться одним датчиком, каждый адрес опрашиваем один раз за цикл */
+        Map<Integer, CompletableFuture<int[]>> readsByAddress = new HashMap<>();
+        for (UniversalSensor sensor : UniversalSensor.values()) {
+            int address = universalSensorsConfiguration.getUniversalSensorAddress(sensor);
+            CompletableFuture<int[]> read = readsByAddress.computeIfAbsent(address,
+                    key -> modbusService.readHoldingRegistersAsync(key, 0, UniversalSensorData.REGISTERS_COUNT)
+            );
+            collectors.add(() -> {
+                int[] values = await(read);
+                if (values == null || values.length < UniversalSensorData.REGISTERS_COUNT) {
+                    logger.error("Ошибка опроса универсального датчика по адресу {} в цикле опроса", address);
+                    return;
+                }
+                builder.universalSensorData(sensor, UniversalSensorData.fromRegisters(values));
+            });
+        }
+    }
+
+    private void pollRelays(PlantSnapshot.Builder builder, List<Runnable> collectors) {
+        for (Integer address : layout.getCoilAddresses()) {
+            Instant readStartedAt = Instant.now();
+            CompletableFuture<boolean[]> read = modbusService.readAllCoilsFromZeroAsync(address);
+            collectors.add(() -> {
+                boolean[] coils = await(read);
+                if (coils == null) {
+                    logger.error("Ошибка опроса катушек реле по адресу {} в цикле опроса", address);
+                    return;
+                }
+                builder.coils(address, coils);
+                /* цикл опроса заодно сверяет состояние катушек, по которому сервисы решают, нужно ли переключать реле */
+                coilStateService.reconcile(address, coils, readStartedAt);
+            });
+        }
+        for (Integer address : layout.getDiscreteInputAddresses()) {
+            CompletableFuture<boolean[]> read = modbusService.readAllDiscreteInputsFromZeroAsync(address);
+            collectors.add(() -> {
+                boolean[] inputs = await(read);
+                if (inputs == null) {
+                    logger.error("Ошибка опроса дискретных входов реле по адресу {} в цикле опроса", address);
+                    return;
+                }
+                builder.discreteInputs(address, inputs);
+            });
+        }
+    }
+
+    private void pollHoldingRegisters(PlantSnapshot.Builder builder, List<Runnable> collectors) {
+        for (Integer address : layout.getHoldingRegisterAddresses()) {
+            for (Integer register : layout.getHoldingRegisters(address)) {
+                CompletableFuture<int[]> read = modbusService.readHoldingRegistersAsync(address, register, 1);
+                collectors.add(() -> {
+                    int[] values = await(read);
+                    if (values == null || values.length < 1) {
+                        logger.error("Ошибка опроса регистра {} по адресу {} в цикле опроса", register, address);
+                        return;
+                    }
+                    builder.holdingRegister(address, register, values[0]);
+                });
+            }
+        }
+    }
+
+    /* ошибка опроса одной точки не должна срывать весь цикл, поэтому она превращается в null */
+    private @Nullable <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.debug("Ошибка запроса в цикле опроса", e.getCause());
+            return null;
+        }
+    }
+
+    @Override
+    public PlantSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Instant getSnapshotTimestamp() {
+        PlantSnapshot current = snapshot;
+        return current == null ? null : current.getTimestamp();
+    }
+
+    @Override
+    public PlantSnapshot getFreshSnapshot() {
+        PlantSnapshot current = snapshot;
+        if (current == null || current.getAge().compareTo(configuration.getMaxAge()) > 0) {
+            return null;
+        }
+        return current;
+    }
+}
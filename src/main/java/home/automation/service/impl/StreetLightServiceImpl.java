@@ -4,7 +4,7 @@ import home.automation.configuration.StreetLightConfiguration;
 import home.automation.enums.StreetLightStatus;
 import home.automation.event.error.StreetLightErrorEvent;
 import home.automation.exception.ModbusException;
-import home.automation.service.ModbusService;
+import home.automation.service.CoilStateService;
 import home.automation.service.StreetLightService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,16 +20,16 @@ import static ca.rmen.sunrisesunset.SunriseSunset.getSunriseSunset;
 public class StreetLightServiceImpl implements StreetLightService {
     private static final Logger logger = LoggerFactory.getLogger(StreetLightServiceImpl.class);
     private final StreetLightConfiguration configuration;
-    private final ModbusService modbusService;
+    private final CoilStateService coilStateService;
     private final ApplicationEventPublisher applicationEventPublisher;
 
     public StreetLightServiceImpl(
             StreetLightConfiguration configuration,
-            ModbusService modbusService,
+            CoilStateService coilStateService,
             ApplicationEventPublisher applicationEventPublisher
     ) {
         this.configuration = configuration;
-        this.modbusService = modbusService;
+        this.coilStateService = coilStateService;
         this.applicationEventPublisher = applicationEventPublisher;
     }
 
@@ -59,7 +59,7 @@ public class StreetLightServiceImpl implements StreetLightService {
     private void turnOn() {
         if (getStatus() != StreetLightStatus.TURNED_ON) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
                 logger.info("Уличное освещение включено");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле уличного освещения");
@@ -73,7 +73,7 @@ public class StreetLightServiceImpl implements StreetLightService {
     private void turnOff() {
         if (getStatus() != StreetLightStatus.TURNED_OFF) {
             try {
-                modbusService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
+                coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false);
                 logger.info("Уличное освещение отключено");
             } catch (ModbusException e) {
                 logger.error("Ошибка переключения статуса реле уличного освещения");
@@ -87,11 +87,7 @@ public class StreetLightServiceImpl implements StreetLightService {
     @Override
     public StreetLightStatus getStatus() {
         try {
-            boolean[] pollResult = modbusService.readAllCoilsFromZero(configuration.getAddress());
-            if (pollResult.length < 1) {
-                throw new ModbusException("Опрос катушек реле уличного освещения вернул пустой массив");
-            }
-            if (pollResult[configuration.getCoil()]) {
+            if (coilStateService.getCoil(configuration.getAddress(), configuration.getCoil())) {
                 return StreetLightStatus.TURNED_ON;
             }
             else {
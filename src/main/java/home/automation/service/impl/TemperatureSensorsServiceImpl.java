@@ -1,52 +1,74 @@
 package home.automation.service.impl;
 
+import home.automation.configuration.PlantStateConfiguration;
 import home.automation.configuration.TemperatureSensorsBoardsConfiguration;
 import home.automation.enums.TemperatureSensor;
 import home.automation.event.error.TemperatureSensorPollErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
+import home.automation.model.TemperatureSensorsBoardData;
 import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
 import home.automation.service.TemperatureSensorsService;
+import home.automation.utils.ValueAgeGauge;
 import home.automation.utils.decimal.TD_F;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
-@CacheConfig(cacheNames = {"temperature_sensors_cache"})
 public class TemperatureSensorsServiceImpl implements TemperatureSensorsService {
-    public static final Integer TEMPERATURE_SENSOR_BORDER_VALUE = Integer.parseInt("1000000000000000", 2);
-    public static final Integer TEMPERATURE_SENSOR_SUBTRACTING = 65536;
+    private static final String BOARDS_CACHE_NAME = "temperature_sensors_boards_cache";
     private static final Logger logger = LoggerFactory.getLogger(TemperatureSensorsServiceImpl.class);
     private final ApplicationEventPublisher applicationEventPublisher;
     private final TemperatureSensorsBoardsConfiguration configuration;
     private final ModbusService modbusService;
+    private final CacheManager cacheManager;
+    private final PlantStateService plantStateService;
+    private final Map<String, List<TemperatureSensor>> sensorsByBoard =
+            Arrays.stream(TemperatureSensor.values()).collect(Collectors.groupingBy(TemperatureSensor::getBoardName));
 
     public TemperatureSensorsServiceImpl(
             ApplicationEventPublisher applicationEventPublisher,
             TemperatureSensorsBoardsConfiguration configuration,
             ModbusService modbusService,
+            CacheManager cacheManager,
+            PlantStateService plantStateService,
+            PlantStateConfiguration plantStateConfiguration,
             MeterRegistry meterRegistry
     ) {
         this.applicationEventPublisher = applicationEventPublisher;
         this.configuration = configuration;
         this.modbusService = modbusService;
+        this.cacheManager = cacheManager;
+        this.plantStateService = plantStateService;
 
+        /* в режиме метрик из кэша скрейп не обращается к шине */
+        Function<TemperatureSensor, Number> temperatureSource = plantStateConfiguration.getCachedMetrics() ?
+                this::getCachedTemperatureForSensor : this::getCurrentTemperatureForSensor;
         for (TemperatureSensor sensor : TemperatureSensor.values()) {
-            Gauge.builder("temperature", bind(this::getCurrentTemperatureForSensor, sensor))
+            Gauge.builder("temperature", bind(temperatureSource, sensor))
                     .tag("system", "home_automation")
                     .tag("component", sensor.name())
                     .description(sensor.getTemplate())
                     .register(meterRegistry);
+            if (plantStateConfiguration.getCachedMetrics()) {
+                ValueAgeGauge.register(meterRegistry, "temperature", sensor.name(),
+                        plantStateService::getSnapshotTimestamp);
+            }
         }
     }
 
@@ -55,30 +77,80 @@ public class TemperatureSensorsServiceImpl implements TemperatureSensorsService
     }
 
     @Override
-    @Cacheable("temperature_sensors_cache")
     public Float getCurrentTemperatureForSensor(TemperatureSensor sensor) {
-        try {
-            int rawTemperature =
-                    modbusService.readHoldingRegister(configuration.getAddressByName(sensor.getBoardName()),
-                            sensor.getRegisterId()
-                    );
-            if (rawTemperature == TEMPERATURE_SENSOR_BORDER_VALUE) {
-                logger.error("Ошибка опроса  - температурный сенсор DS18B20 не подключен, регистр {}",
-                        sensor.getRegisterId());
-                throw new ModbusException(
-                        "Ошибка опроса  - температурный сенсор DS18B20 не подключен, регистр " +
-                                sensor.getRegisterId());
+        /* свежий снимок центрального опроса обслуживает запрос без обращения к шине */
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        if (snapshot != null) {
+            Float temperature = snapshot.getTemperature(sensor);
+            if (temperature != null) {
+                return temperature;
+            }
+            return handlePollError(sensor);
+        }
+
+        TemperatureSensorsBoardData boardData = getBoardData(sensor.getBoardName());
+        if (boardData != null) {
+            Float temperature = boardData.getTemperature(sensor.getRegisterId());
+            if (temperature != null) {
+                return temperature;
             }
-            /* если старший бит единица - температура отрицательная и из нее нужно вычитать, смотри документацию
-            R4DCB08*/
-            if (rawTemperature > TEMPERATURE_SENSOR_BORDER_VALUE) {
-                rawTemperature = rawTemperature - TEMPERATURE_SENSOR_SUBTRACTING;
+            logger.error("Ошибка опроса  - температурный сенсор DS18B20 не подключен, регистр {}",
+                    sensor.getRegisterId());
+        }
+        return handlePollError(sensor);
+    }
+
+    private @Nullable Float handlePollError(TemperatureSensor sensor) {
+        logger.error("{} - ошибка опроса, адрес регистра {}", sensor.getTemplate(), sensor.getRegisterId());
+        logger.debug("Отправляем событие об ошибке поллинга сенсора по адресу регистра {}", sensor.getRegisterId());
+        applicationEventPublisher.publishEvent(new TemperatureSensorPollErrorEvent(this, sensor));
+        return null;
+    }
+
+    @Override
+    public Float getCachedTemperatureForSensor(TemperatureSensor sensor) {
+        PlantSnapshot snapshot = plantStateService.getSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.getTemperature(sensor);
+    }
+
+    /* снимок платы кэшируется целиком, чтобы все датчики платы обслуживались одним запросом F03. Блокировки нет:
+    одновременные промахи по одной плате склеивает в один запрос сервис шины, а чтение одной платы не держит чтения
+    других */
+    private @Nullable TemperatureSensorsBoardData getBoardData(String boardName) {
+        Cache cache = cacheManager.getCache(BOARDS_CACHE_NAME);
+        if (cache != null) {
+            TemperatureSensorsBoardData cached = cache.get(boardName, TemperatureSensorsBoardData.class);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        TemperatureSensorsBoardData boardData = readBoardData(boardName);
+        if (boardData != null && cache != null) {
+            cache.put(boardName, boardData);
+        }
+        return boardData;
+    }
+
+    private @Nullable TemperatureSensorsBoardData readBoardData(String boardName) {
+        List<TemperatureSensor> sensors = sensorsByBoard.get(boardName);
+        int startRegisterId = sensors.stream().mapToInt(TemperatureSensor::getRegisterId).min().orElseThrow();
+        int endRegisterId = sensors.stream().mapToInt(TemperatureSensor::getRegisterId).max().orElseThrow();
+        int quantity = endRegisterId - startRegisterId + 1;
+        try {
+            int[] rawTemperatures = modbusService.readHoldingRegisters(configuration.getAddressByName(boardName),
+                    startRegisterId,
+                    quantity
+            );
+            if (rawTemperatures.length < quantity) {
+                throw new ModbusException("Опрос платы " + boardName + " вернул " + rawTemperatures.length +
+                        " регистров вместо " + quantity);
             }
-            return (float) rawTemperature / 10;
+            return TemperatureSensorsBoardData.fromRegisters(startRegisterId, rawTemperatures);
         } catch (ModbusException e) {
-            logger.error("{} - ошибка опроса, адрес регистра {}", sensor.getTemplate(), sensor.getRegisterId());
-            logger.debug("Отправляем событие об ошибке поллинга сенсора по адресу регистра {}", sensor.getRegisterId());
-            applicationEventPublisher.publishEvent(new TemperatureSensorPollErrorEvent(this, sensor));
+            logger.error("Ошибка опроса платы температурных датчиков {}", boardName);
             return null;
         }
     }
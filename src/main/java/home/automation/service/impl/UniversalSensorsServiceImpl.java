@@ -1,49 +1,67 @@
 package home.automation.service.impl;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import home.automation.configuration.PlantStateConfiguration;
+import home.automation.configuration.UniversalSensorsCacheConfiguration;
 import home.automation.configuration.UniversalSensorsConfiguration;
 import home.automation.enums.UniversalSensor;
 import home.automation.event.error.UniversalSensorPollErrorEvent;
 import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
 import home.automation.model.UniversalSensorData;
 import home.automation.service.ModbusService;
+import home.automation.service.PlantStateService;
 import home.automation.service.UniversalSensorsService;
 import home.automation.utils.P_F;
 import home.automation.utils.PPM_F;
+import home.automation.utils.ValueAgeGauge;
 import home.automation.utils.decimal.TD_F;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
-@CacheConfig(cacheNames = {"universal_sensors_cache"})
 public class UniversalSensorsServiceImpl implements UniversalSensorsService {
     private static final Logger logger = LoggerFactory.getLogger(UniversalSensorsServiceImpl.class);
     private final ApplicationEventPublisher applicationEventPublisher;
     private final UniversalSensorsConfiguration configuration;
     private final ModbusService modbusService;
+    private final PlantStateService plantStateService;
+    private final boolean cachedMetrics;
+    /* показания кэшируются по modbus адресу датчика, кэш вызывается напрямую и работает и для внутренних вызовов */
+    private final LoadingCache<Integer, UniversalSensorData> cache;
 
     public UniversalSensorsServiceImpl(
             ApplicationEventPublisher applicationEventPublisher,
             UniversalSensorsConfiguration configuration,
+            UniversalSensorsCacheConfiguration cacheConfiguration,
             ModbusService modbusService,
+            PlantStateService plantStateService,
+            PlantStateConfiguration plantStateConfiguration,
             MeterRegistry meterRegistry
     ) {
         this.applicationEventPublisher = applicationEventPublisher;
         this.configuration = configuration;
         this.modbusService = modbusService;
+        this.plantStateService = plantStateService;
+        this.cachedMetrics = plantStateConfiguration.getCachedMetrics();
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheConfiguration.getTtl())
+                .refreshAfterWrite(cacheConfiguration.getRefreshAhead())
+                .build(this::readUniversalSensorData);
 
         for (UniversalSensor sensor : UniversalSensor.values()) {
-            Gauge.builder("temperature", bind(this::getCurrentTemperatureForSensor, sensor))
+            Gauge.builder("temperature", metric(sensor, UniversalSensorData::getTemperature))
                     .tag("system", "home_automation")
                     .tag("component", sensor.name())
                     .description(sensor.getTemplate())
@@ -51,7 +69,7 @@ public class UniversalSensorsServiceImpl implements UniversalSensorsService {
         }
 
         for (UniversalSensor sensor : UniversalSensor.values()) {
-            Gauge.builder("humidity_percent", bind(this::getCurrentHumidityPercentForSensor, sensor))
+            Gauge.builder("humidity_percent", metric(sensor, UniversalSensorData::getHumidityPercent))
                     .tag("system", "home_automation")
                     .tag("component", sensor.name())
                     .description(sensor.getTemplate())
@@ -59,16 +77,37 @@ public class UniversalSensorsServiceImpl implements UniversalSensorsService {
         }
 
         for (UniversalSensor sensor : UniversalSensor.values()) {
-            Gauge.builder("CO2_ppm", bind(this::getCurrentCO2ppmForSensor, sensor))
+            Gauge.builder("CO2_ppm", metric(sensor, UniversalSensorData::getCO2ppm))
                     .tag("system", "home_automation")
                     .tag("component", sensor.name())
                     .description(sensor.getTemplate())
                     .register(meterRegistry);
         }
+
+        if (cachedMetrics) {
+            for (UniversalSensor sensor : UniversalSensor.values()) {
+                for (String name : new String[]{"temperature", "humidity_percent", "CO2_ppm"}) {
+                    ValueAgeGauge.register(meterRegistry, name, sensor.name(), plantStateService::getSnapshotTimestamp);
+                }
+            }
+        }
     }
 
-    private <T, R> Supplier<R> bind(Function<T, R> fn, T val) {
-        return () -> fn.apply(val);
+    /* в режиме метрик из кэша скрейп берет показания только из последнего снимка и не обращается к шине */
+    private <R> Supplier<R> metric(UniversalSensor sensor, Function<UniversalSensorData, R> field) {
+        return () -> {
+            UniversalSensorData data = cachedMetrics ? getCachedUniversalSensorData(sensor) :
+                    getUniversalSensorData(sensor);
+            return data == null ? null : field.apply(data);
+        };
+    }
+
+    private UniversalSensorData getCachedUniversalSensorData(UniversalSensor sensor) {
+        PlantSnapshot snapshot = plantStateService.getSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.getUniversalSensorData(sensor);
     }
 
     @Override
@@ -98,12 +137,17 @@ public class UniversalSensorsServiceImpl implements UniversalSensorsService {
         return data.getCO2ppm();
     }
 
-    @Cacheable("universal_sensors_cache")
     private UniversalSensorData getUniversalSensorData(UniversalSensor sensor) {
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        if (snapshot != null) {
+            UniversalSensorData data = snapshot.getUniversalSensorData(sensor);
+            if (data != null) {
+                return data;
+            }
+        }
         try {
-            int[] values = modbusService.readHoldingRegisters(configuration.getUniversalSensorAddress(sensor), 0, 3);
-            return new UniversalSensorData(((float)values[1])/10, Math.round((float)values[0]/10), values[2]);
-        } catch (ModbusException e) {
+            return cache.get(configuration.getUniversalSensorAddress(sensor));
+        } catch (CompletionException e) {
             logger.error("{} - ошибка опроса, modbus адрес {}", sensor.getTemplate(),
                     configuration.getUniversalSensorAddress(sensor));
             logger.debug("Отправляем событие об ошибке поллинга универстального датчика в {}", sensor.getRoom());
@@ -112,6 +156,15 @@ public class UniversalSensorsServiceImpl implements UniversalSensorsService {
         }
     }
 
+    /* вызывается кэшем при промахе и при фоновом обновлении, при ошибке фонового обновления остается старое значение */
+    private UniversalSensorData readUniversalSensorData(Integer address) throws ModbusException {
+        int[] values = modbusService.readHoldingRegisters(address, 0, UniversalSensorData.REGISTERS_COUNT);
+        if (values == null || values.length < UniversalSensorData.REGISTERS_COUNT) {
+            throw new ModbusException("Опрос универсального датчика по адресу " + address + " вернул неполный ответ");
+        }
+        return UniversalSensorData.fromRegisters(values);
+    }
+
     private String getCurrentParamsFromUniversalSensorFormatted(UniversalSensor sensor) {
         Float temperature = getCurrentTemperatureForSensor(sensor);
         String temperatureFormatted = (temperature != null) ? TD_F.format(temperature) : "ошибка опроса температуры";
@@ -0,0 +1,36 @@
+package home.automation.utils;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/* Спутник метрики, показывающий возраст значения, которое отдает основная метрика */
+public class ValueAgeGauge {
+    public static final String SUFFIX = "_value_age_seconds";
+
+    /**
+     * Регистрирует метрику возраста значения с теми же тегами, что и у основной метрики
+     *
+     * @param meterRegistry реестр метрик
+     * @param name          имя основной метрики
+     * @param component     тег component основной метрики
+     * @param timestamp     время получения значения, null - значения еще нет
+     */
+    public static void register(MeterRegistry meterRegistry, String name, String component,
+                                Supplier<Instant> timestamp) {
+        Gauge.builder(name + SUFFIX, () -> {
+                    Instant valueTimestamp = timestamp.get();
+                    if (valueTimestamp == null) {
+                        return null;
+                    }
+                    return Duration.between(valueTimestamp, Instant.now()).toMillis() / 1000.0;
+                })
+                .tag("component", component)
+                .tag("system", "home_automation")
+                .description("Возраст значения метрики " + name + " в секундах")
+                .register(meterRegistry);
+    }
+}
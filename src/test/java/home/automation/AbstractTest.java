@@ -15,7 +15,11 @@ import org.springframework.test.context.event.RecordApplicationEvents;
                 "bot.chatIds = 0",
                 "streetLight.latitude = 55.7522",
                 "streetLight.longitude = 37.6156",
-                "spring.cache.caffeine.spec = expireAfterWrite=1s"
+                "spring.cache.caffeine.spec = expireAfterWrite=1s",
+                /* тесты меняют состояние реле через мок, поэтому состояние катушек всегда читается с шины */
+                "coilState.maxAge = PT0S",
+                /* история тестов не должна переживать пересоздание контекста */
+                "history.persistence.enabled = false"
         })
 @ActiveProfiles("test")
 @RecordApplicationEvents
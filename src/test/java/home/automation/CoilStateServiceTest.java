@@ -0,0 +1,74 @@
+package home.automation;
+
+import home.automation.configuration.StreetLightConfiguration;
+import home.automation.enums.StreetLightStatus;
+import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
+import home.automation.service.StreetLightService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = "coilState.maxAge = PT1M")
+public class CoilStateServiceTest extends AbstractTest {
+    @Autowired
+    CoilStateService coilStateService;
+
+    @Autowired
+    StreetLightService streetLightService;
+
+    @Autowired
+    StreetLightConfiguration configuration;
+
+    @Test
+    @DisplayName("Проверка что проверка состояния реле перед переключением не обращается к шине после записи")
+    void checkWriteThrough() throws ModbusException {
+        Mockito.when(modbusService.readAllCoilsFromZero(configuration.getAddress()))
+                .thenReturn(new boolean[]{false, false});
+        assertEquals(StreetLightStatus.TURNED_OFF, streetLightService.getStatus());
+
+        coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+        assertEquals(StreetLightStatus.TURNED_ON, streetLightService.getStatus());
+        assertEquals(StreetLightStatus.TURNED_ON, streetLightService.getStatus());
+        Mockito.verify(modbusService, Mockito.times(1)).readAllCoilsFromZero(configuration.getAddress());
+
+        /* при ошибке записи состояние неизвестно и читается заново */
+        Mockito.doThrow(new ModbusException()).when(modbusService).writeCoil(anyInt(), anyInt(), anyBoolean());
+        assertThrows(ModbusException.class,
+                () -> coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), false)
+        );
+        assertEquals(StreetLightStatus.TURNED_OFF, streetLightService.getStatus());
+        Mockito.verify(modbusService, Mockito.times(2)).readAllCoilsFromZero(configuration.getAddress());
+    }
+
+    @Test
+    @DisplayName("Проверка что опрос, начатый до записи, не затирает записанное состояние")
+    void checkReconcile() throws ModbusException {
+        Instant readStartedAt = Instant.now();
+        coilStateService.writeCoil(configuration.getAddress(), configuration.getCoil(), true);
+        coilStateService.reconcile(configuration.getAddress(), new boolean[]{false, true}, readStartedAt);
+        assertTrue(coilStateService.getCoil(configuration.getAddress(), configuration.getCoil()));
+
+        /* соседняя катушка после записи не менялась, ее состояние берется из опроса */
+        int otherCoil = configuration.getCoil() == 0 ? 1 : 0;
+        assertEquals(otherCoil == 1, coilStateService.getCoil(configuration.getAddress(), otherCoil));
+
+        coilStateService.reconcile(configuration.getAddress(), new boolean[]{false, false}, Instant.now());
+        assertFalse(coilStateService.getCoil(configuration.getAddress(), configuration.getCoil()));
+        Mockito.verify(modbusService, Mockito.never()).readAllCoilsFromZero(anyInt());
+    }
+}
@@ -0,0 +1,48 @@
+package home.automation;
+
+import home.automation.enums.GasBoilerStatus;
+import home.automation.history.GasBoilerCycleTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GasBoilerCycleTrackerTest {
+    private static final long MINUTE = 60_000L;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GasBoilerCycleTracker tracker = new GasBoilerCycleTracker(Duration.ofHours(1), meterRegistry);
+
+    @Test
+    @DisplayName("Проверка итогов циклов котла и вытеснения циклов из скользящего окна")
+    void checkTotalsAndWindow() {
+        tracker.onStatus(GasBoilerStatus.IDLE, 0, true);
+        tracker.onStatus(GasBoilerStatus.WORKS, 10 * MINUTE, true);
+        /* ошибка расчета статуса не прерывает цикл работы */
+        tracker.onStatus(GasBoilerStatus.ERROR, 12 * MINUTE, true);
+        tracker.onStatus(GasBoilerStatus.WORKS, 13 * MINUTE, true);
+        tracker.onStatus(GasBoilerStatus.IDLE, 15 * MINUTE, true);
+        tracker.onStatus(GasBoilerStatus.WORKS, 40 * MINUTE, true);
+
+        long now = 50 * MINUTE;
+        assertEquals(15, tracker.getWorkMinutes(now));
+        assertEquals(35, tracker.getIdleMinutes(now));
+        assertEquals(2, tracker.getWorkCount(now));
+        assertEquals(1, meterRegistry.get("gas_boiler_cycle").tag("component", "work").timer().count());
+        assertEquals(2, meterRegistry.get("gas_boiler_cycle").tag("component", "idle").timer().count());
+
+        /* через час от начала окна остается только незакрытый цикл работы */
+        now = 100 * MINUTE;
+        assertEquals(60, tracker.getWorkMinutes(now));
+        assertEquals(0, tracker.getIdleMinutes(now));
+        assertEquals(1, tracker.getWorkCount(now));
+        assertTrue(tracker.hasData(now));
+        assertFalse(tracker.hasData(200 * MINUTE));
+    }
+}
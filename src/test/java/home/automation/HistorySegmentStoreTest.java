@@ -0,0 +1,81 @@
+package home.automation;
+
+import home.automation.history.HistorySegmentStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HistorySegmentStoreTest {
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    @TempDir
+    Path directory;
+
+    private static List<String> load(HistorySegmentStore store) throws IOException {
+        List<String> records = new ArrayList<>();
+        store.load((seriesId, timestamp, value) -> records.add(seriesId + "@" + timestamp + "=" + value));
+        return records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("Проверка что история переживает перезапуск и делится на сегменты по суткам и заполнению")
+    void checkReloadAndRollover() throws IOException {
+        HistorySegmentStore store = new HistorySegmentStore(directory, 2);
+        store.append(1, 1000L, 1.5F);
+        store.append(2, 2000L, 2.5F);
+        store.append(1, 3000L, 3.5F);
+        store.append(1, DAY_MILLIS + 1000L, 4.5F);
+        store.close();
+        assertEquals(3, segments().size());
+
+        HistorySegmentStore reopened = new HistorySegmentStore(directory, 2);
+        assertEquals(List.of("1@1000=1.5", "2@2000=2.5", "1@3000=3.5", "1@" + (DAY_MILLIS + 1000L) + "=4.5"),
+                load(reopened));
+        reopened.append(2, DAY_MILLIS + 2000L, 5.5F);
+        reopened.close();
+        assertEquals(3, segments().size());
+        assertEquals(5, load(new HistorySegmentStore(directory, 2)).size());
+
+        HistorySegmentStore cleaned = new HistorySegmentStore(directory, 2);
+        cleaned.deleteBefore(DAY_MILLIS);
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    @DisplayName("Проверка что оборванный хвост сегмента отбрасывается, а новые записи пишутся на его место")
+    void checkTornTailRecovery() throws IOException {
+        HistorySegmentStore store = new HistorySegmentStore(directory, 8);
+        store.append(1, 1000L, 1F);
+        store.append(1, 2000L, 2F);
+        store.close();
+
+        /* вторая запись оборвана: контрольная сумма не сходится */
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), HistorySegmentStore.RECORD_SIZE + 10);
+        }
+
+        HistorySegmentStore recovered = new HistorySegmentStore(directory, 8);
+        assertEquals(List.of("1@1000=1.0"), load(recovered));
+        recovered.append(1, 3000L, 3F);
+        recovered.close();
+        assertEquals(List.of("1@1000=1.0", "1@3000=3.0"), load(new HistorySegmentStore(directory, 8)));
+    }
+}
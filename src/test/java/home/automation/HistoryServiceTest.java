@@ -2,8 +2,13 @@ package home.automation;
 
 import home.automation.configuration.FloorHeatingConfiguration;
 import home.automation.enums.GasBoilerStatus;
+import home.automation.enums.RollupResolution;
+import home.automation.enums.TemperatureSensor;
+import home.automation.history.GasBoilerCycleTracker;
+import home.automation.model.RollupBucket;
+import home.automation.model.TimeSeries;
+import home.automation.model.ValueFilter;
 import home.automation.service.HistoryService;
-import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,10 +21,9 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -30,11 +34,14 @@ public class HistoryServiceTest extends AbstractTest {
     @Autowired
     HistoryService historyService;
 
-    private Map<Instant, GasBoilerStatus> getGasBoilerStatusDailyHistory() {
+    private void clearGasBoilerStatusHistory() {
         try {
-            Field field = historyService.getClass().getDeclaredField("gasBoilerStatusDailyHistory");
-            field.setAccessible(true);
-            return (Map<Instant, GasBoilerStatus>) field.get(historyService);
+            Field history = historyService.getClass().getDeclaredField("gasBoilerStatusHistory");
+            history.setAccessible(true);
+            ((TimeSeries) history.get(historyService)).clear();
+            Field tracker = historyService.getClass().getDeclaredField("gasBoilerCycleTracker");
+            tracker.setAccessible(true);
+            ((GasBoilerCycleTracker) tracker.get(historyService)).clear();
         } catch (Exception e) {
             throw new RuntimeException("Не удалось обратиться к датасету статусов котла", e);
         }
@@ -51,21 +58,11 @@ public class HistoryServiceTest extends AbstractTest {
         }
     }
     
-    private Pair<List<Float>, List<Float>> invokeCalculateWorkIdleIntervalsMethod(Map<Instant, GasBoilerStatus> gasBoilerStatusHistory) {
+    private float invokeCalculateAverageTurnOnPerHourMethod() {
         try {
-            Method method = historyService.getClass().getDeclaredMethod("calculateWorkIdleIntervals", Map.class);
+            Method method = historyService.getClass().getDeclaredMethod("calculateAverageTurnOnPerHour");
             method.setAccessible(true);
-            return (Pair<List<Float>, List<Float>>) method.invoke(historyService, gasBoilerStatusHistory);
-        } catch (Exception e) {
-            throw new RuntimeException("Не удалось вызвать метод расчета интервалов", e);
-        }
-    }
-
-    private float invokeCalculateAverageTurnOnPerHourMethod(Pair<List<Float>, List<Float>> intervals) {
-        try {
-            Method method = historyService.getClass().getDeclaredMethod("calculateAverageTurnOnPerHour", Pair.class);
-            method.setAccessible(true);
-            return (float) method.invoke(historyService, intervals);
+            return (float) method.invoke(historyService);
         } catch (Exception e) {
             throw new RuntimeException("Не удалось вызвать метод расчета количества включений в час", e);
         }
@@ -75,7 +72,6 @@ public class HistoryServiceTest extends AbstractTest {
     @DisplayName("Проверка метода рассчитывающего количество включений котла в час")
     void checkCalculateAverageTurnOnPerHour() {
         /* с момента включения прошло меньше часа */
-        Map<Instant, GasBoilerStatus> gasBoilerStatusDailyHistory = getGasBoilerStatusDailyHistory();
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.INIT, Instant.now().minus(10, ChronoUnit.MINUTES));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.IDLE, Instant.now().minus(9, ChronoUnit.MINUTES));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.WORKS, Instant.now().minus(8, ChronoUnit.MINUTES));
@@ -87,13 +83,11 @@ public class HistoryServiceTest extends AbstractTest {
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.WORKS, Instant.now().minus(2, ChronoUnit.MINUTES));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.IDLE, Instant.now().minus(1, ChronoUnit.MINUTES));
 
-        assertEquals(3f,
-                invokeCalculateAverageTurnOnPerHourMethod(invokeCalculateWorkIdleIntervalsMethod(
-                        getGasBoilerStatusDailyHistory())));
+        assertEquals(3f, invokeCalculateAverageTurnOnPerHourMethod());
 
 
         /* с момента включения прошло больше часа */
-        gasBoilerStatusDailyHistory.clear();
+        clearGasBoilerStatusHistory();
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.INIT, Instant.now().minus(10, ChronoUnit.HOURS));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.IDLE, Instant.now().minus(9, ChronoUnit.HOURS));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.WORKS, Instant.now().minus(8, ChronoUnit.HOURS));
@@ -106,17 +100,15 @@ public class HistoryServiceTest extends AbstractTest {
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.IDLE, Instant.now().minus(1, ChronoUnit.HOURS));
         invokePutGasBoilerStatusToDailyHistory(GasBoilerStatus.WORKS, Instant.now().minus(30, ChronoUnit.MINUTES));
 
-        assertEquals(0.4f,
-                invokeCalculateAverageTurnOnPerHourMethod(invokeCalculateWorkIdleIntervalsMethod(
-                        getGasBoilerStatusDailyHistory())));
+        assertEquals(0.4f, invokeCalculateAverageTurnOnPerHourMethod());
 
     }
 
-    private Map<Instant, Integer> getCalculatedValvePercentLastNValues() {
+    private ValueFilter getCalculatedValvePercentFilter() {
         try {
-            Field field = historyService.getClass().getDeclaredField("calculatedValvePercentLastNValues");
+            Field field = historyService.getClass().getDeclaredField("calculatedValvePercentFilter");
             field.setAccessible(true);
-            return (Map<Instant, Integer>) field.get(historyService);
+            return (ValueFilter) field.get(historyService);
         } catch (Exception e) {
             throw new RuntimeException("Не удалось обратиться к датасету рассчитанных процентов открытия клапана", e);
         }
@@ -137,16 +129,18 @@ public class HistoryServiceTest extends AbstractTest {
     @DisplayName("Проверка очистки старых данных из датасета рассчитанных процентов открытия клапана")
     void checkCleanOldValuesFromCalculatedValvePercentLast25Values() {
         Instant now = Instant.now();
-        for (int i = 0; i < floorHeatingConfiguration.getValuesCountForAverage(); i++) {
+        /* первое значение отличается от остальных, по среднему видно, осталось ли оно в окне */
+        invokePutCalculatedTargetValvePercentMethod(20, now);
+        for (int i = 1; i < floorHeatingConfiguration.getValuesCountForAverage(); i++) {
             invokePutCalculatedTargetValvePercentMethod(50, now.plus(i, ChronoUnit.MINUTES));
         }
-        assertEquals(floorHeatingConfiguration.getValuesCountForAverage(), getCalculatedValvePercentLastNValues().size());
-        assertTrue(getCalculatedValvePercentLastNValues().containsKey(now));
+        assertEquals(floorHeatingConfiguration.getValuesCountForAverage(), getCalculatedValvePercentFilter().size());
+        assertNotEquals(50, historyService.getAverageCalculatedTargetValvePercentForLastNValues());
 
         invokePutCalculatedTargetValvePercentMethod(50,
                 now.plus(floorHeatingConfiguration.getValuesCountForAverage(), ChronoUnit.MINUTES));
-        assertEquals(floorHeatingConfiguration.getValuesCountForAverage(), getCalculatedValvePercentLastNValues().size());
-        assertFalse(getCalculatedValvePercentLastNValues().containsKey(now));
+        assertEquals(floorHeatingConfiguration.getValuesCountForAverage(), getCalculatedValvePercentFilter().size());
+        assertEquals(50, historyService.getAverageCalculatedTargetValvePercentForLastNValues());
     }
 
     @Test
@@ -161,4 +155,25 @@ public class HistoryServiceTest extends AbstractTest {
         assertTrue(Math.abs(deltaSeconds) < 5);
     }
 
+    @Test
+    @DisplayName("Проверка агрегатов температуры по нескольким разрешениям")
+    void checkTemperatureRollup() {
+        Instant hourStart = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(2, ChronoUnit.HOURS);
+        historyService.putTemperatureToDailyHistory(TemperatureSensor.OUTSIDE_TEMPERATURE, -10F, hourStart);
+        historyService.putTemperatureToDailyHistory(TemperatureSensor.OUTSIDE_TEMPERATURE, -5F,
+                hourStart.plus(20, ChronoUnit.MINUTES));
+        historyService.putTemperatureToDailyHistory(TemperatureSensor.OUTSIDE_TEMPERATURE, 0F,
+                hourStart.plus(70, ChronoUnit.MINUTES));
+
+        List<RollupBucket> hours = historyService.getTemperatureRollup(TemperatureSensor.OUTSIDE_TEMPERATURE,
+                RollupResolution.HOUR, hourStart, Instant.now());
+        assertEquals(2, hours.size());
+        assertEquals(-10F, hours.get(0).getMin());
+        assertEquals(-5F, hours.get(0).getMax());
+        assertEquals(-7.5F, hours.get(0).getAverage());
+        assertEquals(1, hours.get(1).getCount());
+
+        assertEquals(3, historyService.getTemperatureRollup(TemperatureSensor.OUTSIDE_TEMPERATURE,
+                RollupResolution.MINUTE, hourStart, Instant.now()).size());
+    }
 }
@@ -0,0 +1,103 @@
+package home.automation;
+
+import home.automation.scheduling.IsolatedTaskScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IsolatedTaskSchedulerTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IsolatedTaskScheduler scheduler = new IsolatedTaskScheduler(meterRegistry);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger blockedRuns = new AtomicInteger();
+    private final AtomicInteger fastRuns = new AtomicInteger();
+    private final AtomicInteger slowRuns = new AtomicInteger();
+    private final AtomicLong slowFinishedAt = new AtomicLong();
+    private final AtomicLong minPauseNanos = new AtomicLong(Long.MAX_VALUE);
+
+    /* контур управления, зависший на исполнительном устройстве */
+    private void blocked() throws InterruptedException {
+        blockedRuns.incrementAndGet();
+        release.await();
+    }
+
+    private void fast() {
+        fastRuns.incrementAndGet();
+    }
+
+    /* контур, выполнение которого дольше задержки между запусками */
+    private void slow() throws InterruptedException {
+        long finishedAt = slowFinishedAt.get();
+        if (finishedAt != 0) {
+            minPauseNanos.accumulateAndGet(System.nanoTime() - finishedAt, Math::min);
+        }
+        slowRuns.incrementAndGet();
+        Thread.sleep(60);
+        slowFinishedAt.set(System.nanoTime());
+    }
+
+    private ScheduledMethodRunnable task(String method) throws NoSuchMethodException {
+        return new ScheduledMethodRunnable(this, IsolatedTaskSchedulerTest.class.getDeclaredMethod(method));
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        scheduler.destroy();
+    }
+
+    @Test
+    @DisplayName("Проверка что зависшая задача не задерживает остальные и ее пропущенные запуски учитываются")
+    void checkBlockedTaskIsIsolated() throws Exception {
+        scheduler.scheduleAtFixedRate(task("blocked"), Duration.ofMillis(20));
+        scheduler.scheduleAtFixedRate(task("fast"), Duration.ofMillis(20));
+        Thread.sleep(300);
+
+        assertEquals(1, blockedRuns.get());
+        assertTrue(fastRuns.get() >= 5);
+        String blockedName = "IsolatedTaskSchedulerTest.blocked";
+        assertTrue(meterRegistry.get("scheduled_task_overrun").tag("component", blockedName).counter().count() >= 5);
+        assertTrue(meterRegistry.get("scheduled_task_running_seconds").tag("component", blockedName).gauge()
+                .value() >= 0.2);
+        assertEquals(0, meterRegistry.get("scheduled_task_overrun").tag("component", "IsolatedTaskSchedulerTest.fast")
+                .counter().count());
+
+        /* после освобождения задача снова выполняется по расписанию */
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (blockedRuns.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(blockedRuns.get() >= 2);
+        assertTrue(meterRegistry.get("scheduled_task").tag("component", blockedName).timer().count() >= 1);
+        assertEquals(0, meterRegistry.get("scheduled_task_bus_wait").tag("component", blockedName).timer()
+                .totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    @DisplayName("Проверка что задержка задачи с фиксированной задержкой отсчитывается от конца выполнения")
+    void checkFixedDelayWaitsForCompletion() throws Exception {
+        scheduler.scheduleWithFixedDelay(task("slow"), Duration.ofMillis(40));
+        Thread.sleep(500);
+
+        /* выполнение 60 мс и задержка 40 мс - не больше 5 запусков, без перебегов */
+        assertTrue(slowRuns.get() >= 3 && slowRuns.get() <= 6, "запусков " + slowRuns.get());
+        assertTrue(minPauseNanos.get() >= TimeUnit.MILLISECONDS.toNanos(35),
+                "пауза " + TimeUnit.NANOSECONDS.toMillis(minPauseNanos.get()) + " мс");
+        String slowName = "IsolatedTaskSchedulerTest.slow";
+        assertEquals(0, meterRegistry.get("scheduled_task_overrun").tag("component", slowName).counter().count());
+        assertTrue(meterRegistry.get("scheduled_task").tag("component", slowName).timer().count() >= 3);
+    }
+}
@@ -0,0 +1,49 @@
+package home.automation;
+
+import home.automation.modbus.ModbusRtuFrames;
+import home.automation.modbus.ModbusTcpFrames;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ModbusRtuFramesTest {
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    @DisplayName("Проверка кадра запроса RTU и CRC16 по таблице")
+    void checkRequest() {
+        /* пример из спецификации: чтение 10 регистров устройства 1 с нулевого, CRC C5 CD */
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ModbusRtuFrames.REQUEST_LENGTH);
+        ModbusRtuFrames.putRequest(buffer, 1, ModbusTcpFrames.READ_HOLDING_REGISTERS, 0, 10);
+        byte[] frame = new byte[ModbusRtuFrames.REQUEST_LENGTH];
+        buffer.flip().get(frame);
+        assertArrayEquals(bytes(0x01, 0x03, 0x00, 0x00, 0x00, 0x0A, 0xC5, 0xCD), frame);
+        assertEquals(0xCDC5, ModbusRtuFrames.crc16(frame, 0, 6));
+        assertEquals(0, ModbusRtuFrames.crc16(frame, 0, frame.length));
+    }
+
+    @Test
+    @DisplayName("Проверка длины ответа RTU и разбора регистров прямо из буфера")
+    void checkResponse() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes(0x07, 0x03, 0x04, 0x01, 0xC2, 0xFF, 0xFE, 0x00, 0x00));
+        assertEquals(-1, ModbusRtuFrames.responseLength(ModbusTcpFrames.READ_HOLDING_REGISTERS, buffer, 0, 2));
+        assertEquals(9, ModbusRtuFrames.responseLength(ModbusTcpFrames.READ_HOLDING_REGISTERS, buffer, 0, 3));
+        assertArrayEquals(new int[]{450, 65534}, ModbusTcpFrames.decodeRegisters(buffer, 1, 6));
+
+        ByteBuffer exception = ByteBuffer.wrap(bytes(0x07, 0x83, 0x0B, 0x00, 0x00));
+        assertEquals(ModbusRtuFrames.EXCEPTION_LENGTH,
+                ModbusRtuFrames.responseLength(ModbusTcpFrames.READ_HOLDING_REGISTERS, exception, 0, 3));
+        assertEquals(8, ModbusRtuFrames.responseLength(ModbusTcpFrames.WRITE_SINGLE_COIL,
+                ByteBuffer.wrap(bytes(0x02, 0x05, 0x00, 0x01, 0xFF, 0x00, 0x00, 0x00)), 0, 8));
+    }
+}
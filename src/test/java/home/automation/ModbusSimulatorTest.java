@@ -0,0 +1,280 @@
+package home.automation;
+
+import home.automation.enums.TemperatureSensor;
+import home.automation.exception.ModbusException;
+import home.automation.exception.SlaveUnavailableException;
+import home.automation.model.TemperatureSensorsBoardData;
+import home.automation.service.impl.ModbusServiceImpl;
+import home.automation.simulator.ModbusTcpSimulator;
+import home.automation.simulator.SimulatedPlant;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static home.automation.simulator.SimulatedPlant.DAC_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.SECOND_GATEWAY;
+import static home.automation.simulator.SimulatedPlant.TEMPERATURE_BOARD_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.UNIVERSAL_SENSOR_ADDRESS;
+import static home.automation.simulator.SimulatedPlant.VALVE_DAC_CHANNEL;
+import static home.automation.simulator.SimulatedPlant.VALVE_POWER_COIL;
+import static home.automation.simulator.SimulatedPlant.VALVE_RELAY_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* настоящий стек шины против симулятора шлюза, без Spring */
+public class ModbusSimulatorTest {
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(300);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SimulatedPlant plant;
+    private ModbusServiceImpl modbusService;
+
+    private void start(String transport, double timeScale) throws IOException {
+        start(transport, "tcp", timeScale);
+    }
+
+    private void start(String transport, String framing, double timeScale) throws IOException {
+        plant = new SimulatedPlant(Duration.ofMillis(200));
+        plant.getSimulator().setTimeScale(timeScale);
+        modbusService = plant.createModbusService(transport, framing, 0, RESPONSE_TIMEOUT, meterRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        if (modbusService != null) {
+            modbusService.close();
+        }
+        if (plant != null) {
+            plant.close();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"nio, tcp", "nio, rtu", "jlibmodbus, tcp"})
+    @DisplayName("Проверка чтения датчиков и записи реле и ЦАП через симулятор шлюза")
+    void checkDevices(String transport, String framing) throws Exception {
+        start(transport, framing, 0);
+        plant.getTemperatureBoard().setTemperature(TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId(), -11.2F);
+        plant.getTemperatureBoard().setTemperature(TemperatureSensor.BOILER_ROOM_TEMPERATURE.getRegisterId(), 21.5F);
+        plant.getUniversalSensor().setValues(23.4F, 45, 800);
+
+        TemperatureSensorsBoardData boardData = TemperatureSensorsBoardData.fromRegisters(0,
+                modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        assertEquals(-11.2F, boardData.getTemperature(TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId()));
+        assertEquals(21.5F, boardData.getTemperature(TemperatureSensor.BOILER_ROOM_TEMPERATURE.getRegisterId()));
+        assertArrayEquals(new int[]{450, 234, 800}, modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3));
+
+        modbusService.writeCoil(3, 1, true);
+        assertArrayEquals(new boolean[]{false, true}, modbusService.readAllCoilsFromZero(3));
+        plant.getRelay(3).setDiscreteInput(0, true);
+        assertArrayEquals(new boolean[]{true, false}, modbusService.readAllDiscreteInputsFromZero(3));
+
+        modbusService.writeHoldingRegister(DAC_ADDRESS, VALVE_DAC_CHANNEL, 600);
+        assertEquals(600, modbusService.readHoldingRegister(DAC_ADDRESS, VALVE_DAC_CHANNEL));
+    }
+
+    @Test
+    @DisplayName("Проверка что клапан движется к напряжению ЦАП только при поданном питании")
+    void checkValve() throws Exception {
+        start("nio", 0);
+        /* 6 В - середина хода */
+        modbusService.writeHoldingRegister(DAC_ADDRESS, VALVE_DAC_CHANNEL, 600);
+        Thread.sleep(250);
+        assertEquals(0, plant.getValve().getPercent());
+
+        modbusService.writeCoil(VALVE_RELAY_ADDRESS, VALVE_POWER_COIL, true);
+        Thread.sleep(250);
+        modbusService.writeCoil(VALVE_RELAY_ADDRESS, VALVE_POWER_COIL, false);
+        assertEquals(50, plant.getValve().getPercent(), 0.01);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nio", "jlibmodbus"})
+    @DisplayName("Проверка отказов устройства: исключение шлюза и потерянный кадр")
+    void checkFaults(String transport) throws Exception {
+        start(transport, 0);
+        ModbusTcpSimulator simulator = plant.getSimulator();
+
+        simulator.injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.EXCEPTION, 1);
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+
+        simulator.injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.DROP, 1);
+        long startedAt = System.nanoTime();
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(RESPONSE_TIMEOUT) >= 0);
+        assertEquals(1, simulator.getDroppedFrames());
+
+        /* отказы кончились, устройство снова отвечает */
+        assertEquals(8, modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8).length);
+        assertEquals(3, simulator.getRequestCount(TEMPERATURE_BOARD_ADDRESS));
+    }
+
+    @Test
+    @DisplayName("Проверка переподключения после разрыва связи шлюзом")
+    void checkReconnect() throws Exception {
+        /* jlibmodbus узнает о разрыве только на следующем запросе, а nio - из потока ввода-вывода */
+        start("nio", 0);
+        plant.getSimulator().dropConnections();
+        /* транспорт узнает о разрыве из потока чтения */
+        Thread.sleep(100);
+        assertEquals(8, modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8).length);
+
+        plant.getSimulator().injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.DISCONNECT, 1);
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        Thread.sleep(100);
+        assertEquals(8, modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8).length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nio", "jlibmodbus"})
+    @DisplayName("Проверка что без связи запросы сразу завершаются ошибкой, а связь восстанавливается в фоне")
+    void checkSupervisedReconnect(String transport) throws Exception {
+        start(transport, 0);
+        ModbusTcpSimulator simulator = plant.getSimulator();
+        int port = simulator.getPort();
+        simulator.stop();
+        /* потерю связи без разрыва сокета супервизор замечает по серии запросов без ответа. Молчание шлюза не
+        засчитывается устройству, предохранитель не размыкается раньше */
+        for (int i = 0; i < 5; i++) {
+            assertThrows(ModbusException.class,
+                    () -> modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3));
+        }
+        assertEquals(0, meterRegistry.get("modbus_connection_state").gauge().value());
+        assertTrue(modbusService.getUnavailableSlaves().isEmpty());
+
+        long startedAt = System.nanoTime();
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3));
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(RESPONSE_TIMEOUT) < 0);
+
+        /* пока шлюз недоступен, попытки переподключения неудачны */
+        Thread.sleep(100);
+        simulator.start(port);
+        long deadline = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+        while (meterRegistry.get("modbus_connection_state").gauge().value() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3).length);
+        assertTrue(modbusService.getUnavailableSlaves().isEmpty());
+        assertEquals(1, meterRegistry.get("modbus_connection_lost").counter().count());
+        assertTrue(meterRegistry.get("modbus_connect_attempts").tag("result", "error").counter().count() >= 1);
+    }
+
+    @Test
+    @DisplayName("Проверка что опоздавший ответ в режиме RTU не достается следующему запросу")
+    void checkLateRtuResponse() throws Exception {
+        start("nio", "rtu", 0);
+        ModbusTcpSimulator simulator = plant.getSimulator();
+        simulator.setLateResponseDelay(RESPONSE_TIMEOUT.plusMillis(100));
+        plant.getUniversalSensor().setValues(23.4F, 45, 800);
+
+        /* ответ платы датчиков приходит, когда уже ждут ответ датчика на ту же функцию */
+        simulator.injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.LATE, 1);
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        assertArrayEquals(new int[]{450, 234, 800}, modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3));
+
+        /* и когда ждут другие регистры того же устройства */
+        simulator.injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.LATE, 1);
+        assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        assertEquals(2, modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 2).length);
+        assertTrue(modbusService.getUnavailableSlaves().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nio", "jlibmodbus"})
+    @DisplayName("Проверка что чтения неотвечающего устройства не занимают шину до успешной проверки")
+    void checkCircuitBreaker(String transport) throws Exception {
+        start(transport, 0);
+        ModbusTcpSimulator simulator = plant.getSimulator();
+        simulator.injectFaults(TEMPERATURE_BOARD_ADDRESS, ModbusTcpSimulator.Fault.DROP, 3);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ModbusException.class, () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        }
+        /* таймауты засчитываются плате, когда шлюз отвечает другому устройству */
+        assertTrue(modbusService.getUnavailableSlaves().isEmpty());
+        assertEquals(3, modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3).length);
+        assertEquals(Set.of(TEMPERATURE_BOARD_ADDRESS), modbusService.getUnavailableSlaves());
+
+        long startedAt = System.nanoTime();
+        assertThrows(SlaveUnavailableException.class,
+                () -> modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(RESPONSE_TIMEOUT) < 0);
+        assertEquals(3, simulator.getRequestCount(TEMPERATURE_BOARD_ADDRESS));
+        assertEquals(1, meterRegistry.get("modbus_circuit_breaker_rejected").tag("slave", "1").counter().count());
+        assertEquals(2, meterRegistry.get("modbus_circuit_breaker_state").tag("slave", "1").gauge().value());
+        /* остальные устройства опрашиваются как обычно */
+        assertEquals(3, modbusService.readHoldingRegisters(UNIVERSAL_SENSOR_ADDRESS, 0, 3).length);
+
+        /* после интервала проверки чтение снова уходит на шину, ответ замыкает предохранитель */
+        Thread.sleep(250);
+        assertEquals(8, modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8).length);
+        assertTrue(modbusService.getUnavailableSlaves().isEmpty());
+        assertEquals(0, meterRegistry.get("modbus_circuit_breaker_state").tag("slave", "1").gauge().value());
+    }
+
+    /* все чтения цикла опроса дома сразу, как в PlantStateService */
+    private static long sweepNanos(ModbusServiceImpl service) {
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<?>> reads = new ArrayList<>();
+        reads.add(service.readHoldingRegistersAsync(TEMPERATURE_BOARD_ADDRESS, 0, 8));
+        reads.add(service.readHoldingRegistersAsync(UNIVERSAL_SENSOR_ADDRESS, 0, 3));
+        reads.add(service.readHoldingRegistersAsync(DAC_ADDRESS, VALVE_DAC_CHANNEL, 1));
+        for (int address : new int[]{2, 3, 4, 6}) {
+            reads.add(service.readAllCoilsFromZeroAsync(address));
+            reads.add(service.readAllDiscreteInputsFromZeroAsync(address));
+        }
+        CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new)).join();
+        return System.nanoTime() - startedAt;
+    }
+
+    @Test
+    @DisplayName("Проверка что устройства на двух шлюзах опрашиваются параллельно")
+    void checkSegments() throws Exception {
+        start("nio", 1);
+        sweepNanos(modbusService);
+        long singleGateway = sweepNanos(modbusService);
+        modbusService.close();
+
+        plant.getSecondSimulator().setTimeScale(1);
+        MeterRegistry shardedMeterRegistry = new SimpleMeterRegistry();
+        modbusService = plant.createShardedModbusService("nio", 0, RESPONSE_TIMEOUT,
+                Set.of(TEMPERATURE_BOARD_ADDRESS, 4, 6), shardedMeterRegistry);
+        sweepNanos(modbusService);
+        long twoGateways = sweepNanos(modbusService);
+
+        /* линии работают одновременно, цикл опроса занимает время самой загруженной из них */
+        assertTrue(twoGateways < singleGateway * 0.75, twoGateways + " нс против " + singleGateway + " нс");
+        /* два цикла: по чтению платы датчиков и по два чтения каждого реле */
+        assertEquals(2, plant.getSecondSimulator().getRequestCount(TEMPERATURE_BOARD_ADDRESS));
+        assertEquals(4, plant.getSecondSimulator().getRequestCount(6));
+        assertEquals(1, shardedMeterRegistry.get("modbus_connection_state").tag("gateway", SECOND_GATEWAY).gauge()
+                .value());
+    }
+
+    @Test
+    @DisplayName("Проверка что симулятор выдерживает время передачи по RS485 и задержку устройства")
+    void checkSerialTiming() throws Exception {
+        start("nio", 1);
+        /* запрос 8 байт RTU, ответ на 8 регистров 21 байт, по 3.5 символа тишины после каждого, 10 бит на символ */
+        long startedAt = System.nanoTime();
+        modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8);
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).toMillis() >= 37);
+
+        plant.getSimulator().setLatency(TEMPERATURE_BOARD_ADDRESS, Duration.ofMillis(100));
+        startedAt = System.nanoTime();
+        modbusService.readHoldingRegisters(TEMPERATURE_BOARD_ADDRESS, 0, 8);
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).toMillis() >= 137);
+    }
+}
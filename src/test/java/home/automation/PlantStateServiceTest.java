@@ -0,0 +1,166 @@
+package home.automation;
+
+import home.automation.configuration.CityPowerInputConfiguration;
+import home.automation.configuration.GasBoilerConfiguration;
+import home.automation.configuration.StreetLightConfiguration;
+import home.automation.configuration.TemperatureSensorsBoardsConfiguration;
+import home.automation.enums.CityPowerInputStatus;
+import home.automation.enums.TemperatureSensor;
+import home.automation.exception.ModbusException;
+import home.automation.model.PlantSnapshot;
+import home.automation.service.CityPowerInputService;
+import home.automation.service.PlantStateService;
+import home.automation.service.TemperatureSensorsService;
+import home.automation.utils.ValueAgeGauge;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+import static home.automation.configuration.TemperatureSensorsBoardsConfiguration.FIRST_BOARD_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/* снимок живет в синглтоне, поэтому контекст пересоздается после каждого теста */
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class PlantStateServiceTest extends AbstractTest {
+    @Autowired
+    PlantStateService plantStateService;
+
+    @Autowired
+    TemperatureSensorsService temperatureSensorsService;
+
+    @Autowired
+    CityPowerInputService cityPowerInputService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    TemperatureSensorsBoardsConfiguration temperatureSensorsBoardsConfiguration;
+
+    @Autowired
+    GasBoilerConfiguration gasBoilerConfiguration;
+
+    @Autowired
+    CityPowerInputConfiguration cityPowerInputConfiguration;
+
+    @Autowired
+    StreetLightConfiguration streetLightConfiguration;
+
+    /* по умолчанию ни одно устройство не отвечает */
+    @BeforeEach
+    void mockBusErrors() {
+        Mockito.when(modbusService.readHoldingRegistersAsync(anyInt(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new ModbusException()));
+        Mockito.when(modbusService.readAllCoilsFromZeroAsync(anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new ModbusException()));
+        Mockito.when(modbusService.readAllDiscreteInputsFromZeroAsync(anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new ModbusException()));
+    }
+
+    private void mockFirstBoard(int[] boardRegisters) {
+        Mockito.when(modbusService.readHoldingRegistersAsync(temperatureSensorsBoardsConfiguration.getAddressByName(
+                FIRST_BOARD_NAME), 0, 8)).thenReturn(CompletableFuture.completedFuture(boardRegisters));
+    }
+
+    private void invokeScheduledMethod() {
+        try {
+            Method method = plantStateService.getClass().getDeclaredMethod("poll");
+            method.setAccessible(true);
+            method.invoke(plantStateService);
+        } catch (Exception e) {
+            throw new RuntimeException("Не удалось вызвать метод опроса устройств", e);
+        }
+    }
+
+    @Test
+    @DisplayName("Проверка что цикл опроса публикует снимок, а сервисы читают его без обращения к шине")
+    void checkSnapshotServesReads() {
+        int[] boardRegisters = new int[8];
+        boardRegisters[TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId()] = Integer.parseInt("FF90", 16);
+        mockFirstBoard(boardRegisters);
+        Mockito.when(modbusService.readAllCoilsFromZeroAsync(gasBoilerConfiguration.getAddress()))
+                .thenReturn(CompletableFuture.completedFuture(new boolean[]{true, false}));
+        Mockito.when(modbusService.readAllDiscreteInputsFromZeroAsync(cityPowerInputConfiguration.getAddress()))
+                .thenReturn(CompletableFuture.completedFuture(new boolean[]{true, false}));
+
+        assertNull(plantStateService.getSnapshot());
+        invokeScheduledMethod();
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(true, snapshot.getCoil(gasBoilerConfiguration.getAddress(), gasBoilerConfiguration.getCoil()));
+
+        Mockito.clearInvocations(modbusService);
+        assertEquals(-11.2F,
+                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
+        );
+        assertEquals(CityPowerInputStatus.POWER_ON, cityPowerInputService.getStatus());
+        Mockito.verifyNoInteractions(modbusService);
+
+        invokeScheduledMethod();
+        assertEquals(2, plantStateService.getSnapshot().getVersion());
+    }
+
+    @Test
+    @DisplayName("Проверка что в снимок попадает весь банк катушек релейного модуля")
+    void checkSnapshotHoldsCoilBank() {
+        Mockito.when(modbusService.readAllCoilsFromZeroAsync(streetLightConfiguration.getAddress()))
+                .thenReturn(CompletableFuture.completedFuture(new boolean[]{false, true}));
+
+        invokeScheduledMethod();
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        assertEquals(false, snapshot.getCoil(streetLightConfiguration.getAddress(), 0));
+        assertEquals(true, snapshot.getCoil(streetLightConfiguration.getAddress(), 1));
+        /* у модуля CHINALCTECH 2IN-2OUT только две катушки */
+        assertNull(snapshot.getCoil(streetLightConfiguration.getAddress(), 2));
+    }
+
+    @Test
+    @DisplayName("Проверка что ошибка опроса помечает точки снимка как недостоверные")
+    void checkSnapshotQuality() throws ModbusException {
+        Mockito.when(modbusService.readHoldingRegisters(anyInt(), anyInt(), anyInt())).thenThrow(new ModbusException());
+
+        invokeScheduledMethod();
+        PlantSnapshot snapshot = plantStateService.getFreshSnapshot();
+        assertNull(snapshot.getTemperature(TemperatureSensor.OUTSIDE_TEMPERATURE));
+        assertNull(snapshot.getCoil(gasBoilerConfiguration.getAddress(), gasBoilerConfiguration.getCoil()));
+        assertNull(temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE));
+    }
+
+    @Test
+    @DisplayName("Проверка что скрейп метрик не обращается к шине и отдает возраст значений")
+    void checkMetricsReadSnapshotOnly() {
+        int[] boardRegisters = new int[8];
+        boardRegisters[TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId()] = 100;
+        mockFirstBoard(boardRegisters);
+        invokeScheduledMethod();
+        Mockito.clearInvocations(modbusService);
+
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter instanceof Gauge)
+                .forEach(meter -> ((Gauge) meter).value());
+        Mockito.verifyNoInteractions(modbusService);
+
+        assertEquals(10,
+                meterRegistry.get("temperature").tag("component", TemperatureSensor.OUTSIDE_TEMPERATURE.name())
+                        .gauge().value()
+        );
+        double age = meterRegistry.get("temperature" + ValueAgeGauge.SUFFIX)
+                .tag("component", TemperatureSensor.OUTSIDE_TEMPERATURE.name())
+                .gauge().value();
+        assertFalse(Double.isNaN(age));
+        assertTrue(age >= 0);
+    }
+}
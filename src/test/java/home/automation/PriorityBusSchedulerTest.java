@@ -0,0 +1,176 @@
+package home.automation;
+
+import home.automation.enums.ModbusPriority;
+import home.automation.exception.ModbusException;
+import home.automation.modbus.ModbusTransport;
+import home.automation.modbus.PriorityBusScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriorityBusSchedulerTest {
+    private final RecordingTransport transport = new RecordingTransport();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PriorityBusScheduler createScheduler(int queueCapacity, Duration staleAfter) {
+        return new PriorityBusScheduler("main", transport, 1, queueCapacity, staleAfter, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Проверка что запись обгоняет накопившиеся чтения")
+    void checkWritePreemptsReads() throws Exception {
+        PriorityBusScheduler scheduler = createScheduler(16, Duration.ofMinutes(1));
+
+        /* первый запрос занимает транспорт, остальные копятся в очередях */
+        scheduler.readCoils(ModbusPriority.TELEMETRY, 2, 0, 1);
+        assertEquals("coils:2", transport.nextCall());
+        CompletableFuture<int[]> telemetry = scheduler.readHoldingRegisters(ModbusPriority.TELEMETRY, 1, 0, 8);
+        scheduler.readHoldingRegisters(ModbusPriority.INTERACTIVE, 7, 0, 3);
+        scheduler.readHoldingRegisters(ModbusPriority.CONTROL, 5, 1, 1);
+        scheduler.writeSingleCoil(ModbusPriority.ACTUATOR, 3, 0, true);
+
+        for (String expected : List.of("coil:3", "registers:5", "registers:1", "registers:7")) {
+            transport.completeCurrent();
+            assertEquals(expected, transport.nextCall());
+        }
+        transport.completeCurrent();
+        assertEquals(8, telemetry.get(1, TimeUnit.SECONDS).length);
+        scheduler.close();
+    }
+
+    @Test
+    @DisplayName("Проверка вытеснения и отбрасывания устаревших чтений низкого приоритета")
+    void checkDiscardLowPriorityReads() throws Exception {
+        PriorityBusScheduler scheduler = createScheduler(2, Duration.ofMillis(200));
+
+        scheduler.readCoils(ModbusPriority.CONTROL, 2, 0, 1);
+        assertEquals("coils:2", transport.nextCall());
+        CompletableFuture<int[]> oldest = scheduler.readHoldingRegisters(ModbusPriority.TELEMETRY, 1, 0, 8);
+        scheduler.readHoldingRegisters(ModbusPriority.TELEMETRY, 7, 0, 3);
+        scheduler.readHoldingRegisters(ModbusPriority.TELEMETRY, 5, 1, 1);
+        ExecutionException dropped = assertThrows(ExecutionException.class, () -> oldest.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ModbusException.class, dropped.getCause());
+
+        /* очередь управляющих чтений не вытесняется, новый запрос получает ошибку */
+        scheduler.readCoils(ModbusPriority.CONTROL, 3, 0, 1);
+        scheduler.readCoils(ModbusPriority.CONTROL, 4, 0, 1);
+        CompletableFuture<boolean[]> rejected = scheduler.readCoils(ModbusPriority.CONTROL, 6, 0, 1);
+        assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+
+        /* пока транспорт занят, чтения для мониторинга устаревают и до шины не доходят */
+        Thread.sleep(300);
+        transport.completeCurrent();
+        assertEquals("coils:3", transport.nextCall());
+        transport.completeCurrent();
+        assertEquals("coils:4", transport.nextCall());
+        transport.completeCurrent();
+        CompletableFuture<int[]> fresh = scheduler.readHoldingRegisters(ModbusPriority.TELEMETRY, 1, 0, 8);
+        assertEquals("registers:1", transport.nextCall());
+        transport.completeCurrent();
+        fresh.get(1, TimeUnit.SECONDS);
+        scheduler.close();
+    }
+
+    @Test
+    @DisplayName("Проверка учета времени в очереди, времени транзакции и полного времени запроса")
+    void checkBusTimeMetrics() throws Exception {
+        PriorityBusScheduler scheduler = createScheduler(16, Duration.ofMinutes(1));
+
+        scheduler.readCoils(ModbusPriority.TELEMETRY, 2, 0, 1);
+        assertEquals("coils:2", transport.nextCall());
+        CompletableFuture<Void> write = scheduler.writeSingleCoil(ModbusPriority.ACTUATOR, 3, 0, true);
+        Thread.sleep(100);
+        transport.completeCurrent();
+        assertEquals("coil:3", transport.nextCall());
+        Thread.sleep(50);
+        transport.completeCurrent();
+        write.get(1, TimeUnit.SECONDS);
+
+        /* запись ждала в очереди, пока транспорт занят чтением */
+        Timer queueWait = meterRegistry.get("modbus_queue_wait").tag("priority", "ACTUATOR").timer();
+        assertEquals(1, queueWait.count());
+        assertTrue(queueWait.totalTime(TimeUnit.MILLISECONDS) >= 100);
+        Timer transaction = meterRegistry.get("modbus_transaction").tag("gateway", "main").tag("function", "F05")
+                .tag("slave", "3").tag("result", "ok").timer();
+        assertEquals(1, transaction.count());
+        assertTrue(transaction.totalTime(TimeUnit.MILLISECONDS) >= 50);
+        Timer request = meterRegistry.get("modbus_request").tag("function", "F05").tag("priority", "ACTUATOR")
+                .tag("result", "ok").timer();
+        assertTrue(request.totalTime(TimeUnit.MILLISECONDS) >= 150);
+        scheduler.close();
+    }
+
+    /* транспорт, который запоминает порядок запросов и отвечает на них по команде теста */
+    private static class RecordingTransport implements ModbusTransport {
+        private final BlockingQueue<String> calls = new LinkedBlockingQueue<>();
+        private volatile CompletableFuture<?> current;
+        private volatile Object currentResult;
+
+        private String nextCall() throws InterruptedException {
+            String call = calls.poll(1, TimeUnit.SECONDS);
+            assertEquals(0, calls.size());
+            return call;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void completeCurrent() {
+            ((CompletableFuture<Object>) current).complete(currentResult);
+        }
+
+        private <T> CompletableFuture<T> call(String name, T result) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            current = future;
+            currentResult = result;
+            calls.add(name);
+            return future;
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public CompletableFuture<boolean[]> readCoils(int address, int start, int quantity) {
+            return call("coils:" + address, new boolean[8]);
+        }
+
+        @Override
+        public CompletableFuture<boolean[]> readDiscreteInputs(int address, int start, int quantity) {
+            return call("inputs:" + address, new boolean[8]);
+        }
+
+        @Override
+        public CompletableFuture<int[]> readHoldingRegisters(int address, int start, int quantity) {
+            return call("registers:" + address, new int[quantity]);
+        }
+
+        @Override
+        public CompletableFuture<Void> writeSingleCoil(int address, int coil, boolean value) {
+            return call("coil:" + address, null);
+        }
+
+        @Override
+        public CompletableFuture<Void> writeSingleRegister(int address, int register, int value) {
+            return call("register:" + address, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
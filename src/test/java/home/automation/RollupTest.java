@@ -0,0 +1,94 @@
+package home.automation;
+
+import home.automation.enums.RollupResolution;
+import home.automation.model.MultiResolutionRollup;
+import home.automation.model.Rollup;
+import home.automation.model.RollupBucket;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RollupTest {
+    private static final Map<RollupResolution, Integer> CAPACITIES = Map.of(
+            RollupResolution.MINUTE, 3,
+            RollupResolution.HOUR, 24
+    );
+
+    private static List<Long> starts(Rollup rollup, long from, long to) {
+        List<Long> result = new ArrayList<>();
+        rollup.forEach(from, to, (start, min, max, average, count) -> result.add(start));
+        return result;
+    }
+
+    @Test
+    @DisplayName("Проверка что точки сворачиваются в минимум, максимум, среднее и количество корзины")
+    void checkBucketAggregates() {
+        MultiResolutionRollup rollup = new MultiResolutionRollup(CAPACITIES);
+        rollup.append(0L, 10F);
+        rollup.append(30_000L, 20F);
+        rollup.append(60_000L, 40F);
+
+        List<RollupBucket> minutes = rollup.getBuckets(RollupResolution.MINUTE, Instant.EPOCH,
+                Instant.ofEpochSecond(3600));
+        assertEquals(2, minutes.size());
+        assertEquals(10F, minutes.get(0).getMin());
+        assertEquals(20F, minutes.get(0).getMax());
+        assertEquals(15F, minutes.get(0).getAverage());
+        assertEquals(2, minutes.get(0).getCount());
+
+        List<RollupBucket> hours = rollup.getBuckets(RollupResolution.HOUR, Instant.EPOCH,
+                Instant.ofEpochSecond(3600));
+        assertEquals(1, hours.size());
+        assertEquals(3, hours.get(0).getCount());
+        assertEquals(Instant.EPOCH, hours.get(0).getStart());
+
+        /* разрешение без емкости в настройках не хранится */
+        assertEquals(0, rollup.getBuckets(RollupResolution.DAY, Instant.EPOCH, Instant.ofEpochSecond(3600)).size());
+    }
+
+    @Test
+    @DisplayName("Проверка что кольцо корзин хранит только последние корзины и не принимает точки старее них")
+    void checkBoundedBuckets() {
+        Rollup rollup = new Rollup(1000L, 3);
+        for (long second = 0; second < 5; second++) {
+            rollup.append(second * 1000L, second);
+        }
+        assertEquals(List.of(2000L, 3000L, 4000L), starts(rollup, Long.MIN_VALUE + 1, Long.MAX_VALUE));
+
+        rollup.append(500L, 100F);
+        assertEquals(List.of(2000L, 3000L, 4000L), starts(rollup, Long.MIN_VALUE + 1, Long.MAX_VALUE));
+
+        /* после пропуска корзины остаются только корзины из окна последних трех */
+        rollup.append(6000L, 6F);
+        assertEquals(List.of(4000L, 6000L), starts(rollup, Long.MIN_VALUE + 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Проверка что состояние агрегатов переживает запись и чтение")
+    void checkWriteAndRead() throws IOException {
+        MultiResolutionRollup rollup = new MultiResolutionRollup(CAPACITIES);
+        rollup.append(0L, 10F);
+        rollup.append(60_000L, 40F);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rollup.writeTo(new DataOutputStream(bytes));
+
+        MultiResolutionRollup restored = new MultiResolutionRollup(CAPACITIES);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        restored.append(120_000L, 70F);
+        List<RollupBucket> hours = restored.getBuckets(RollupResolution.HOUR, Instant.EPOCH,
+                Instant.ofEpochSecond(3600));
+        assertEquals(3, hours.get(0).getCount());
+        assertEquals(40F, hours.get(0).getAverage());
+    }
+}
@@ -0,0 +1,68 @@
+package home.automation;
+
+import home.automation.enums.ModbusPriority;
+import home.automation.modbus.ModbusTcpFrames;
+import home.automation.modbus.SingleFlightReads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SingleFlightReadsTest {
+    private static final String GAS_BOILER_RELAY_COILS = SingleFlightReads.key(ModbusTcpFrames.READ_COILS, 2, 0, 1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlightReads singleFlightReads = new SingleFlightReads(meterRegistry);
+    private final AtomicInteger busReads = new AtomicInteger();
+    private CompletableFuture<boolean[]> busRead;
+
+    private CompletableFuture<boolean[]> read(ModbusPriority priority) {
+        return singleFlightReads.read(GAS_BOILER_RELAY_COILS, priority, () -> {
+            busReads.incrementAndGet();
+            busRead = new CompletableFuture<>();
+            return busRead;
+        });
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("modbus_single_flight").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("Проверка что одновременные одинаковые чтения обслуживаются одним запросом к шине")
+    void checkConcurrentReadsShareBusRead() {
+        CompletableFuture<boolean[]> first = read(ModbusPriority.CONTROL);
+        CompletableFuture<boolean[]> second = read(ModbusPriority.CONTROL);
+        /* чтение для мониторинга может воспользоваться более срочным */
+        CompletableFuture<boolean[]> telemetry = read(ModbusPriority.TELEMETRY);
+        assertSame(first, second);
+        assertSame(first, telemetry);
+        assertEquals(1, busReads.get());
+
+        busRead.complete(new boolean[]{true, false});
+        assertArrayEquals(new boolean[]{true, false}, second.join());
+
+        /* после ответа следующее чтение снова идет на шину */
+        read(ModbusPriority.CONTROL);
+        assertEquals(2, busReads.get());
+        assertEquals(2, counter("hit"));
+        assertEquals(2, counter("miss"));
+    }
+
+    @Test
+    @DisplayName("Проверка что управляющее чтение не ждет такое же чтение для мониторинга")
+    void checkUrgentReadNotServedByTelemetry() {
+        CompletableFuture<boolean[]> telemetry = read(ModbusPriority.TELEMETRY);
+        CompletableFuture<boolean[]> control = read(ModbusPriority.CONTROL);
+        assertNotSame(telemetry, control);
+        assertEquals(2, busReads.get());
+    }
+}
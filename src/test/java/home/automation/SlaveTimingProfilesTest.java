@@ -0,0 +1,107 @@
+package home.automation;
+
+import home.automation.configuration.ModbusCircuitBreakerConfiguration;
+import home.automation.configuration.ModbusTimingConfiguration;
+import home.automation.enums.CircuitBreakerState;
+import home.automation.modbus.SlaveCircuitBreakers;
+import home.automation.modbus.SlaveTimingProfiles;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestPropertySource(properties = {
+        "modbus.timing.autoTune.enabled = true",
+        "modbus.timing.autoTune.minDelay = 20",
+        "modbus.timing.autoTune.step = 5",
+        "modbus.timing.autoTune.window = 10",
+        "modbus.timing.autoTune.maxErrorRate = 0.1"
+})
+public class SlaveTimingProfilesTest extends AbstractTest {
+    private static final int TEMPERATURE_BOARD_ADDRESS = 1;
+    private static final int UNKNOWN_ADDRESS = 100;
+
+    @Autowired
+    ModbusTimingConfiguration configuration;
+
+    @Autowired
+    ModbusCircuitBreakerConfiguration circuitBreakerConfiguration;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private void recordWindow(SlaveTimingProfiles profiles, int address, int failures) {
+        for (int i = 0; i < configuration.getAutoTune().getWindow(); i++) {
+            if (i < failures) {
+                profiles.recordFailure(address);
+            } else {
+                profiles.recordSuccess(address, TimeUnit.MILLISECONDS.toNanos(15));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Проверка автоподстройки паузы по доле ошибок устройства")
+    void checkAutoTune() {
+        SlaveTimingProfiles profiles = new SlaveTimingProfiles(75, configuration,
+                new SlaveCircuitBreakers(circuitBreakerConfiguration, meterRegistry), meterRegistry);
+        assertEquals(75, profiles.getDelayMillis(TEMPERATURE_BOARD_ADDRESS));
+
+        /* без ошибок пауза уменьшается на шаг за окно, но не ниже минимальной */
+        recordWindow(profiles, TEMPERATURE_BOARD_ADDRESS, 0);
+        assertEquals(70, profiles.getDelayMillis(TEMPERATURE_BOARD_ADDRESS));
+        for (int i = 0; i < 20; i++) {
+            recordWindow(profiles, TEMPERATURE_BOARD_ADDRESS, 1);
+        }
+        assertEquals(20, profiles.getDelayMillis(TEMPERATURE_BOARD_ADDRESS));
+
+        /* при превышении порога пауза растет на два шага */
+        recordWindow(profiles, TEMPERATURE_BOARD_ADDRESS, 2);
+        assertEquals(30, profiles.getDelayMillis(TEMPERATURE_BOARD_ADDRESS));
+
+        /* соседние устройства не затрагиваются, для неизвестного используется общая пауза */
+        assertEquals(75, profiles.getDelayMillis(UNKNOWN_ADDRESS));
+
+        /* в гистограмму времени ответа попадают только успешные запросы */
+        assertEquals(10 + 20 * 9 + 8,
+                meterRegistry.get("modbus_turnaround").tag("slave", "1").timer().count()
+        );
+    }
+
+    @Test
+    @DisplayName("Проверка что таймауты засчитываются устройству, только когда шлюз отвечает")
+    void checkGatewaySilence() {
+        SlaveCircuitBreakers circuitBreakers = new SlaveCircuitBreakers(circuitBreakerConfiguration, meterRegistry);
+        SlaveTimingProfiles profiles = new SlaveTimingProfiles(75, configuration, circuitBreakers, meterRegistry);
+        int threshold = circuitBreakerConfiguration.getFailureThreshold();
+
+        /* шлюз молчит целиком, после переподключения таймауты не в счет */
+        for (int i = 0; i < threshold; i++) {
+            profiles.recordTimeout(TEMPERATURE_BOARD_ADDRESS);
+        }
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreakers.getState(TEMPERATURE_BOARD_ADDRESS));
+        profiles.gatewayReconnected();
+        profiles.recordGatewayAnswer();
+        assertEquals(CircuitBreakerState.CLOSED, circuitBreakers.getState(TEMPERATURE_BOARD_ADDRESS));
+
+        /* шлюз отвечает другим устройствам, значит молчит само устройство */
+        for (int i = 0; i < threshold; i++) {
+            profiles.recordTimeout(TEMPERATURE_BOARD_ADDRESS);
+        }
+        profiles.recordGatewayAnswer();
+        assertEquals(CircuitBreakerState.OPEN, circuitBreakers.getState(TEMPERATURE_BOARD_ADDRESS));
+        assertFalse(circuitBreakers.allowRequest(TEMPERATURE_BOARD_ADDRESS));
+
+        /* после переподключения к шлюзу устройство проверяется сразу, без интервала проверки */
+        profiles.gatewayReconnected();
+        assertTrue(circuitBreakers.allowRequest(TEMPERATURE_BOARD_ADDRESS));
+        assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreakers.getState(TEMPERATURE_BOARD_ADDRESS));
+    }
+}
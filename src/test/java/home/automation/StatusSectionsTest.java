@@ -0,0 +1,85 @@
+package home.automation;
+
+import home.automation.bot.StatusSections;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatusSectionsTest {
+    private static final Duration DEADLINE = Duration.ofMillis(200);
+    private final StatusSections statusSections =
+            new StatusSections(DEADLINE, Duration.ofMillis(500), new SimpleMeterRegistry());
+    private final AtomicInteger slowCalculations = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean fail = false;
+
+    /* раздел, который читает зависшее устройство */
+    private String slow() {
+        int calculation = slowCalculations.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "котел " + calculation;
+    }
+
+    private String failing() {
+        if (fail) {
+            throw new IllegalStateException("нет связи");
+        }
+        return "датчики";
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        statusSections.close();
+    }
+
+    @Test
+    @DisplayName("Проверка что зависший раздел не задерживает статус и показывается последним значением с пометкой")
+    void checkSlowSectionIsBounded() throws Exception {
+        statusSections.add("fast", "Реле", "Статус - ", "\n", () -> "реле").add("slow", "Котел", this::slow);
+
+        long startedAt = System.nanoTime();
+        String message = statusSections.render();
+        long elapsed = System.nanoTime() - startedAt;
+        assertEquals("Статус - реле\n* Котел: нет данных, не успели обновить\n\n", message);
+        assertTrue(elapsed < DEADLINE.toNanos() * 2, "статус считался " + elapsed / 1_000_000 + " мс");
+
+        /* пока раздел считается, повторный запрос не запускает его заново */
+        statusSections.render();
+        assertEquals(1, slowCalculations.get());
+
+        /* досчитанный в фоне раздел попадает в снимок */
+        release.countDown();
+        TimeUnit.MILLISECONDS.sleep(50);
+        release = new CountDownLatch(1);
+        message = statusSections.render();
+        assertTrue(message.endsWith("* котел 1 (данные 0 с назад, не успели обновить)\n\n"), message);
+        assertEquals(2, slowCalculations.get());
+    }
+
+    @Test
+    @DisplayName("Проверка что упавший раздел показывается последним значением, пока оно не старше допустимого")
+    void checkFailedSectionStaleness() throws Exception {
+        statusSections.add("universal_sensors", "Датчики", this::failing);
+        assertEquals("* датчики\n\n", statusSections.render());
+
+        fail = true;
+        assertEquals("* датчики (данные 0 с назад, ошибка при обновлении)\n\n", statusSections.render());
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertTrue(statusSections.render().startsWith("* Датчики: нет данных, ошибка при обновлении"));
+    }
+}
@@ -11,10 +11,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 
+import java.util.Map;
+
+import static home.automation.configuration.TemperatureSensorsBoardsConfiguration.FIRST_BOARD_NAME;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
 
 @DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
 public class TemperatureSensorsServiceTest extends AbstractTest {
+    /* на плате board1 датчики занимают регистры с 0 по 7 */
+    private static final int FIRST_BOARD_START_REGISTER = 0;
+    private static final int FIRST_BOARD_REGISTERS_COUNT = 8;
 
     @Autowired
     TemperatureSensorsBoardsConfiguration configuration;
@@ -22,15 +29,31 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
     @Autowired
     TemperatureSensorsService temperatureSensorsService;
 
+    private int[] boardRegisters(Map<TemperatureSensor, Integer> rawTemperatures) {
+        int[] registers = new int[FIRST_BOARD_REGISTERS_COUNT];
+        rawTemperatures.forEach((sensor, raw) -> registers[sensor.getRegisterId() - FIRST_BOARD_START_REGISTER] = raw);
+        return registers;
+    }
+
+    private void mockFirstBoard(Map<TemperatureSensor, Integer> rawTemperatures) throws ModbusException {
+        Mockito.when(modbusService.readHoldingRegisters(configuration.getAddressByName(FIRST_BOARD_NAME),
+                FIRST_BOARD_START_REGISTER,
+                FIRST_BOARD_REGISTERS_COUNT
+        )).thenReturn(boardRegisters(rawTemperatures));
+    }
+
+    private void verifyFirstBoardPolled(int times) throws ModbusException {
+        Mockito.verify(modbusService, Mockito.times(times)).readHoldingRegisters(
+                configuration.getAddressByName(FIRST_BOARD_NAME),
+                FIRST_BOARD_START_REGISTER,
+                FIRST_BOARD_REGISTERS_COUNT
+        );
+    }
+
     @Test
     @DisplayName("Проверка что не путаемся с отрицательными температурами")
     void checkMinusTemperatures() throws ModbusException, InterruptedException {
-        final Integer outsideTemperatureBoardAddress =
-                configuration.getAddressByName(TemperatureSensor.OUTSIDE_TEMPERATURE.getBoardName());
-        final Integer outsideTemperatureRegisterId = TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId();
-
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(Integer.parseInt("FF90", 16));
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, Integer.parseInt("FF90", 16)));
         assertEquals(-11.2F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
@@ -38,8 +61,7 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
         /* ждем пока кэш протухнет */
         Thread.sleep(1100);
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(Integer.parseInt("7FFF", 16));
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, Integer.parseInt("7FFF", 16)));
         assertEquals(3276.7F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
@@ -47,8 +69,7 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
         /* ждем пока кэш протухнет */
         Thread.sleep(1100);
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(Integer.parseInt("8001", 16));
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, Integer.parseInt("8001", 16)));
         assertEquals(-3276.7F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
@@ -56,8 +77,7 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
         /* ждем пока кэш протухнет */
         Thread.sleep(1100);
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(Integer.parseInt("00DB", 16));
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, Integer.parseInt("00DB", 16)));
         assertEquals(21.9F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
@@ -66,33 +86,58 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
     @Test
     @DisplayName("Проверка что обрабатываем ошибку подключения")
     void checkErrorTemperature() throws ModbusException {
-        final Integer outsideTemperatureBoardAddress =
-                configuration.getAddressByName(TemperatureSensor.OUTSIDE_TEMPERATURE.getBoardName());
-        final Integer outsideTemperatureRegisterId = TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId();
+        mockFirstBoard(Map.of(
+                TemperatureSensor.OUTSIDE_TEMPERATURE, Integer.parseInt("8000", 16),
+                TemperatureSensor.BOILER_ROOM_TEMPERATURE, 200
+        ));
+        assertEquals(null,
+                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
+        );
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(Integer.parseInt("8000", 16));
+        /* отключенный датчик не мешает остальным каналам платы */
+        assertEquals(20F,
+                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.BOILER_ROOM_TEMPERATURE)
+        );
+    }
+
+    @Test
+    @DisplayName("Проверка обработки ошибки опроса платы")
+    void checkBoardPollError() throws ModbusException {
+        Mockito.when(modbusService.readHoldingRegisters(anyInt(), anyInt(), anyInt())).thenThrow(new ModbusException());
         assertEquals(null,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
     }
 
+    @Test
+    @DisplayName("Проверка что все датчики платы читаются одним запросом")
+    void checkBoardBlockRead() throws ModbusException {
+        mockFirstBoard(Map.of(
+                TemperatureSensor.OUTSIDE_TEMPERATURE, 100,
+                TemperatureSensor.BOILER_ROOM_TEMPERATURE, 200,
+                TemperatureSensor.CHILD_BATHROOM_TEMPERATURE, 215
+        ));
+
+        temperatureSensorsService.getCurrentTemperaturesFormatted();
+        assertEquals(21.5F,
+                temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.CHILD_BATHROOM_TEMPERATURE)
+        );
+
+        /* проверяем что плата опрошена один раз, а одиночные регистры не читались вовсе */
+        verifyFirstBoardPolled(1);
+        Mockito.verify(modbusService, Mockito.never()).readHoldingRegister(anyInt(), anyInt());
+    }
+
     @Test
     @DisplayName("Проверка кэширования и протухания значений ")
     void checkCacheAndExpire() throws ModbusException, InterruptedException {
-        final Integer outsideTemperatureBoardAddress =
-                configuration.getAddressByName(TemperatureSensor.OUTSIDE_TEMPERATURE.getBoardName());
-        final Integer outsideTemperatureRegisterId = TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId();
-
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(100);
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, 100));
 
         assertEquals(10F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
         );
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(200);
+        mockFirstBoard(Map.of(TemperatureSensor.OUTSIDE_TEMPERATURE, 200));
 
         /* проверяем, что значение берется из кэша */
         assertEquals(10F,
@@ -100,8 +145,7 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
         );
 
         /* проверяем что сервис ходил за температурой один раз */
-        Mockito.verify(modbusService, Mockito.times(1))
-                .readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId);
+        verifyFirstBoardPolled(1);
 
         /* ждем пока кэш протухнет */
         Thread.sleep(1100);
@@ -112,27 +156,16 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
         );
 
         /* проверяем что сервис сходил за температурой второй раз */
-        Mockito.verify(modbusService, Mockito.times(2))
-                .readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId);
+        verifyFirstBoardPolled(2);
     }
 
     @Test
     @DisplayName("Проверка что значения в кэше не путаются")
     void checkCachingConsistency() throws ModbusException {
-        final Integer outsideTemperatureBoardAddress =
-                configuration.getAddressByName(TemperatureSensor.OUTSIDE_TEMPERATURE.getBoardName());
-        final Integer outsideTemperatureRegisterId = TemperatureSensor.OUTSIDE_TEMPERATURE.getRegisterId();
-
-        final Integer boilerRoomTemperatureBoardAddress =
-                configuration.getAddressByName(TemperatureSensor.BOILER_ROOM_TEMPERATURE.getBoardName());
-        final Integer boilerRoomTemperatureRegisterId = TemperatureSensor.BOILER_ROOM_TEMPERATURE.getRegisterId();
-
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(100);
-
-        Mockito.when(modbusService.readHoldingRegister(boilerRoomTemperatureBoardAddress,
-                boilerRoomTemperatureRegisterId
-        )).thenReturn(200);
+        mockFirstBoard(Map.of(
+                TemperatureSensor.OUTSIDE_TEMPERATURE, 100,
+                TemperatureSensor.BOILER_ROOM_TEMPERATURE, 200
+        ));
 
         assertEquals(10F,
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.OUTSIDE_TEMPERATURE)
@@ -142,12 +175,10 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.BOILER_ROOM_TEMPERATURE)
         );
 
-        Mockito.when(modbusService.readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId))
-                .thenReturn(200);
-
-        Mockito.when(modbusService.readHoldingRegister(boilerRoomTemperatureBoardAddress,
-                boilerRoomTemperatureRegisterId
-        )).thenReturn(100);
+        mockFirstBoard(Map.of(
+                TemperatureSensor.OUTSIDE_TEMPERATURE, 200,
+                TemperatureSensor.BOILER_ROOM_TEMPERATURE, 100
+        ));
 
         /* проверяем, что значение берется из кэша */
         assertEquals(10F,
@@ -157,10 +188,7 @@ public class TemperatureSensorsServiceTest extends AbstractTest {
                 temperatureSensorsService.getCurrentTemperatureForSensor(TemperatureSensor.BOILER_ROOM_TEMPERATURE)
         );
 
-        /* проверяем что сервис ходил за температурой один раз */
-        Mockito.verify(modbusService, Mockito.times(1))
-                .readHoldingRegister(outsideTemperatureBoardAddress, outsideTemperatureRegisterId);
-        Mockito.verify(modbusService, Mockito.times(1))
-                .readHoldingRegister(boilerRoomTemperatureBoardAddress, boilerRoomTemperatureRegisterId);
+        /* проверяем что сервис ходил за температурами один раз */
+        verifyFirstBoardPolled(1);
     }
-}
\ No newline at end of file
+}
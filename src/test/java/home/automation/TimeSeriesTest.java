@@ -0,0 +1,66 @@
+package home.automation;
+
+import home.automation.model.TimeSeries;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesTest {
+    private static List<Long> timestamps(TimeSeries series, long from, long to) {
+        List<Long> result = new ArrayList<>();
+        series.forEach(from, to, (timestamp, value) -> result.add(timestamp));
+        return result;
+    }
+
+    @Test
+    @DisplayName("Проверка что заполненный ряд вытесняет самые старые точки")
+    void checkOverwriteOldest() {
+        TimeSeries series = new TimeSeries(3);
+        for (int i = 1; i <= 5; i++) {
+            series.append(i * 1000L, i);
+        }
+        assertEquals(3, series.size());
+        assertEquals(3000L, series.getOldestTimestamp());
+        assertEquals(5000L, series.getLatestTimestamp());
+        assertEquals(5F, series.getLatestValue());
+        assertEquals(List.of(3000L, 4000L, 5000L), timestamps(series, Long.MIN_VALUE, Long.MAX_VALUE));
+
+        /* точка старее всех хранимых в заполненный ряд не попадает */
+        series.append(1000L, 1);
+        assertEquals(List.of(3000L, 4000L, 5000L), timestamps(series, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Проверка что опоздавшая точка встает на свое место")
+    void checkLateAppend() {
+        TimeSeries series = new TimeSeries(4);
+        series.append(1000L, 1);
+        series.append(3000L, 3);
+        series.append(2000L, 2);
+        assertEquals(List.of(1000L, 2000L, 3000L), timestamps(series, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(2F, series.getValue(1));
+        assertEquals(3F, series.getLatestValue());
+    }
+
+    @Test
+    @DisplayName("Проверка выборки интервала и удаления старых точек после перехода через конец буфера")
+    void checkRangeAndExpire() {
+        TimeSeries series = new TimeSeries(5);
+        for (int i = 1; i <= 8; i++) {
+            series.append(i * 1000L, i);
+        }
+        assertEquals(List.of(5000L, 6000L), timestamps(series, 4500L, 7000L));
+        assertEquals(2, series.firstIndexAtOrAfter(6000L));
+        assertEquals(5, series.firstIndexAtOrAfter(9000L));
+
+        series.expireBefore(7000L);
+        assertEquals(List.of(7000L, 8000L), timestamps(series, Long.MIN_VALUE, Long.MAX_VALUE));
+        series.expireBefore(9000L);
+        assertTrue(series.isEmpty());
+    }
+}
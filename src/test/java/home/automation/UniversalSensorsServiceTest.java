@@ -0,0 +1,90 @@
+package home.automation;
+
+import home.automation.configuration.UniversalSensorsConfiguration;
+import home.automation.enums.UniversalSensor;
+import home.automation.exception.ModbusException;
+import home.automation.model.UniversalSensorData;
+import home.automation.service.UniversalSensorsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@TestPropertySource(properties = {
+        "universalSensors.cache.ttl = PT3S",
+        "universalSensors.cache.refreshAhead = PT1S"
+})
+public class UniversalSensorsServiceTest extends AbstractTest {
+    @Autowired
+    UniversalSensorsConfiguration configuration;
+
+    @Autowired
+    UniversalSensorsService universalSensorsService;
+
+    private void mockSensor(int humidity, int temperature, int co2) throws ModbusException {
+        Mockito.when(modbusService.readHoldingRegisters(
+                configuration.getUniversalSensorAddress(UniversalSensor.STUDY_AIR),
+                0,
+                UniversalSensorData.REGISTERS_COUNT
+        )).thenReturn(new int[]{humidity, temperature, co2});
+    }
+
+    private void verifySensorPolled(int times) throws ModbusException {
+        Mockito.verify(modbusService, Mockito.timeout(1000).times(times)).readHoldingRegisters(
+                configuration.getUniversalSensorAddress(UniversalSensor.STUDY_AIR),
+                0,
+                UniversalSensorData.REGISTERS_COUNT
+        );
+    }
+
+    @Test
+    @DisplayName("Проверка что один опрос датчика обслуживает все три показания")
+    void checkOneReadServesAllParams() throws ModbusException {
+        mockSensor(455, 231, 800);
+
+        assertEquals(23.1F, universalSensorsService.getCurrentTemperatureForSensor(UniversalSensor.STUDY_AIR));
+        assertEquals(46, universalSensorsService.getCurrentHumidityPercentForSensor(UniversalSensor.STUDY_AIR));
+        assertEquals(800, universalSensorsService.getCurrentCO2ppmForSensor(UniversalSensor.STUDY_AIR));
+
+        verifySensorPolled(1);
+    }
+
+    @Test
+    @DisplayName("Проверка фонового обновления и протухания значений")
+    void checkRefreshAheadAndExpire() throws ModbusException, InterruptedException {
+        mockSensor(455, 231, 800);
+        assertEquals(800, universalSensorsService.getCurrentCO2ppmForSensor(UniversalSensor.STUDY_AIR));
+
+        /* ждем пока подойдет время фонового обновления, новый опрос отвечает с задержкой как реальная шина */
+        Thread.sleep(1100);
+        Mockito.when(modbusService.readHoldingRegisters(
+                configuration.getUniversalSensorAddress(UniversalSensor.STUDY_AIR),
+                0,
+                UniversalSensorData.REGISTERS_COUNT
+        )).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new int[]{455, 231, 900};
+        });
+
+        /* пока идет обновление отдается старое значение */
+        assertEquals(800, universalSensorsService.getCurrentCO2ppmForSensor(UniversalSensor.STUDY_AIR));
+        verifySensorPolled(2);
+
+        /* ждем пока фоновое обновление закончится */
+        Thread.sleep(500);
+        assertEquals(900, universalSensorsService.getCurrentCO2ppmForSensor(UniversalSensor.STUDY_AIR));
+
+        /* ждем пока кэш протухнет, после этого ошибка опроса больше не маскируется старым значением */
+        Thread.sleep(3100);
+        Mockito.when(modbusService.readHoldingRegisters(anyInt(), anyInt(), anyInt())).thenThrow(new ModbusException());
+        assertNull(universalSensorsService.getCurrentCO2ppmForSensor(UniversalSensor.STUDY_AIR));
+    }
+}
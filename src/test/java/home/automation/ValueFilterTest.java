@@ -0,0 +1,64 @@
+package home.automation;
+
+import home.automation.model.ExponentialMovingAverage;
+import home.automation.model.MovingAverage;
+import home.automation.model.MovingMedian;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValueFilterTest {
+    @Test
+    @DisplayName("Проверка скользящего среднего с вытеснением старых значений")
+    void checkMovingAverage() {
+        MovingAverage average = new MovingAverage(3);
+        assertNull(average.getValue());
+        average.add(10);
+        average.add(20);
+        assertFalse(average.isReady());
+        assertEquals(15F, average.getValue());
+        average.add(30);
+        average.add(40);
+        assertTrue(average.isReady());
+        assertEquals(3, average.size());
+        assertEquals(30F, average.getValue());
+        assertEquals(40F, average.getLatest());
+    }
+
+    @Test
+    @DisplayName("Проверка экспоненциального скользящего среднего")
+    void checkExponentialMovingAverage() {
+        ExponentialMovingAverage average = new ExponentialMovingAverage(0.5F, 2);
+        average.add(10);
+        assertFalse(average.isReady());
+        assertEquals(10F, average.getValue());
+        average.add(20);
+        average.add(40);
+        assertTrue(average.isReady());
+        assertEquals(27.5F, average.getValue());
+        assertEquals(40F, average.getLatest());
+    }
+
+    @Test
+    @DisplayName("Проверка что скользящая медиана не реагирует на единичный выброс")
+    void checkMovingMedian() {
+        MovingMedian median = new MovingMedian(3);
+        median.add(50);
+        median.add(0);
+        assertEquals(25F, median.getValue());
+        median.add(52);
+        assertEquals(50F, median.getValue());
+        median.add(100);
+        median.add(51);
+        /* в окне 52, 100, 51 */
+        assertEquals(52F, median.getValue());
+        assertEquals(51F, median.getLatest());
+        median.add(51);
+        median.add(51);
+        assertEquals(51F, median.getValue());
+    }
+}
@@ -0,0 +1,114 @@
+package home.automation;
+
+import home.automation.actuation.ValveActuator;
+import home.automation.enums.ValveMotionState;
+import home.automation.exception.ModbusException;
+import home.automation.service.CoilStateService;
+import home.automation.service.ModbusService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValveActuatorTest {
+    private static final int RELAY_ADDRESS = 2;
+    private static final int RELAY_COIL = 1;
+    private static final int DAC_ADDRESS = 5;
+    private static final int DAC_REGISTER = 1;
+
+    private final CoilStateService coilStateService = Mockito.mock(CoilStateService.class);
+    private final ModbusService modbusService = Mockito.mock(ModbusService.class);
+    private final ValveActuator valveActuator = new ValveActuator(coilStateService, modbusService, RELAY_ADDRESS,
+            RELAY_COIL, DAC_ADDRESS, DAC_REGISTER, Duration.ofMillis(100));
+
+    @AfterEach
+    void stop() {
+        valveActuator.close();
+    }
+
+    private static boolean await(CompletableFuture<Boolean> motion) throws Exception {
+        return motion.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Проверка что привод проходит все состояния, не занимая вызывающий поток на время хода")
+    void checkMotion() throws Exception {
+        assertEquals(ValveMotionState.IDLE, valveActuator.getState());
+        long startedAt = System.nanoTime();
+        CompletableFuture<Boolean> motion = valveActuator.move(600, Duration.ofMillis(300));
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).toMillis() < 100);
+
+        Thread.sleep(150);
+        assertEquals(ValveMotionState.MOVING, valveActuator.getState());
+        float progress = valveActuator.getProgress();
+        assertTrue(progress > 0.2 && progress < 0.8);
+
+        Thread.sleep(200);
+        assertEquals(ValveMotionState.SETTLING, valveActuator.getState());
+        assertTrue(await(motion));
+        assertEquals(ValveMotionState.DONE, valveActuator.getState());
+        assertEquals(1, valveActuator.getProgress());
+
+        InOrder order = Mockito.inOrder(coilStateService, modbusService);
+        order.verify(coilStateService).writeCoil(RELAY_ADDRESS, RELAY_COIL, true);
+        order.verify(modbusService).writeHoldingRegister(DAC_ADDRESS, DAC_REGISTER, 600);
+        order.verify(coilStateService).writeCoil(RELAY_ADDRESS, RELAY_COIL, false);
+    }
+
+    @Test
+    @DisplayName("Проверка смены цели во время движения: напряжение перезаписывается, питание продлевается")
+    void checkRetarget() throws Exception {
+        CompletableFuture<Boolean> first = valveActuator.move(600, Duration.ofMillis(200));
+        Thread.sleep(100);
+        long retargetedAt = System.nanoTime();
+        CompletableFuture<Boolean> second = valveActuator.move(400, Duration.ofMillis(300));
+
+        assertTrue(await(first));
+        assertTrue(await(second));
+        assertTrue(Duration.ofNanos(System.nanoTime() - retargetedAt).toMillis() >= 300);
+        /* питание включается и выключается один раз на все движение */
+        Mockito.verify(coilStateService, Mockito.times(1)).writeCoil(RELAY_ADDRESS, RELAY_COIL, true);
+        Mockito.verify(coilStateService, Mockito.times(1)).writeCoil(RELAY_ADDRESS, RELAY_COIL, false);
+        Mockito.verify(modbusService).writeHoldingRegister(DAC_ADDRESS, DAC_REGISTER, 400);
+    }
+
+    @Test
+    @DisplayName("Проверка отмены движения: питание выключается сразу, движение завершается как прерванное")
+    void checkCancel() throws Exception {
+        CompletableFuture<Boolean> motion = valveActuator.move(600, Duration.ofSeconds(60));
+        Thread.sleep(50);
+        valveActuator.cancel();
+
+        assertFalse(await(motion));
+        assertEquals(ValveMotionState.DONE, valveActuator.getState());
+        Mockito.verify(coilStateService).writeCoil(RELAY_ADDRESS, RELAY_COIL, false);
+
+        /* после отмены привод принимает новое движение */
+        assertTrue(await(valveActuator.move(300, Duration.ofMillis(50))));
+    }
+
+    @Test
+    @DisplayName("Проверка что при ошибке записи ЦАП питание привода выключается")
+    void checkDacError() throws Exception {
+        Mockito.doThrow(new ModbusException("нет ответа")).when(modbusService)
+                .writeHoldingRegister(DAC_ADDRESS, DAC_REGISTER, 600);
+        CompletableFuture<Boolean> motion = valveActuator.move(600, Duration.ofSeconds(60));
+
+        CompletionException e = assertThrows(CompletionException.class, motion::join);
+        assertInstanceOf(ModbusException.class, e.getCause());
+        assertEquals(ValveMotionState.DONE, valveActuator.getState());
+        Mockito.verify(coilStateService).writeCoil(RELAY_ADDRESS, RELAY_COIL, false);
+    }
+}
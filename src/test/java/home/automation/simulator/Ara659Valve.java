@@ -0,0 +1,56 @@
+package home.automation.simulator;
+
+import java.time.Duration;
+
+/**
+ * Сервопривод ESBE ARA-659 клапана подмеса. На шине его нет: пока реле подает питание, привод с постоянной скоростью
+ * идет к положению, заданному напряжением ЦАП, 2 В - закрыт, 10 В - открыт полностью. Положение досчитывается перед
+ * каждой записью в реле или ЦАП и при чтении
+ */
+public class Ara659Valve {
+    private static final float MIN_VOLTAGE = 2;
+    private static final float MAX_VOLTAGE = 10;
+    private final RelayModule relay;
+    private final int powerCoil;
+    private final N4dac02Dac dac;
+    private final int dacChannel;
+    private final double percentPerNano;
+    private double percent = 0;
+    private long updatedAt = System.nanoTime();
+
+    /**
+     * @param relay      реле питания привода
+     * @param powerCoil  катушка питания
+     * @param dac        ЦАП управляющего сигнала
+     * @param dacChannel канал ЦАП
+     * @param fullStroke время поворота от закрытого до открытого положения
+     */
+    public Ara659Valve(RelayModule relay, int powerCoil, N4dac02Dac dac, int dacChannel, Duration fullStroke) {
+        this.relay = relay;
+        this.powerCoil = powerCoil;
+        this.dac = dac;
+        this.dacChannel = dacChannel;
+        this.percentPerNano = 100.0 / fullStroke.toNanos();
+        relay.onBeforeWrite(this::advance);
+        dac.onBeforeWrite(this::advance);
+    }
+
+    /**
+     * @return положение клапана в процентах открытия
+     */
+    public synchronized float getPercent() {
+        advance();
+        return (float) percent;
+    }
+
+    private synchronized void advance() {
+        long now = System.nanoTime();
+        if (relay.getCoil(powerCoil)) {
+            float voltage = Math.max(MIN_VOLTAGE, Math.min(MAX_VOLTAGE, dac.getVoltage(dacChannel)));
+            double target = (voltage - MIN_VOLTAGE) / (MAX_VOLTAGE - MIN_VOLTAGE) * 100;
+            double step = (now - updatedAt) * percentPerNano;
+            percent = percent < target ? Math.min(target, percent + step) : Math.max(target, percent - step);
+        }
+        updatedAt = now;
+    }
+}
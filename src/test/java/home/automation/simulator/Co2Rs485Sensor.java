@@ -0,0 +1,18 @@
+package home.automation.simulator;
+
+import home.automation.model.UniversalSensorData;
+
+/**
+ * Универсальный датчик CO2RS485: влажность и температура в десятых в регистрах 0 и 1, CO2 в ppm в регистре 2
+ */
+public class Co2Rs485Sensor extends SimulatedDevice {
+    public Co2Rs485Sensor() {
+        super("CO2RS485", 0, 0, UniversalSensorData.REGISTERS_COUNT, false);
+    }
+
+    public void setValues(float temperature, int humidityPercent, int co2ppm) {
+        setHoldingRegister(0, humidityPercent * 10);
+        setHoldingRegister(1, Math.round(temperature * 10));
+        setHoldingRegister(2, co2ppm);
+    }
+}
@@ -0,0 +1,376 @@
+package home.automation.simulator;
+
+import home.automation.modbus.ModbusRtuFrames;
+import home.automation.modbus.ModbusTcpFrames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Шлюз Modbus TCP - RS485 USR-DR302 в процессе теста. Принимает кадры Modbus TCP от любого числа подключений, в том
+ * числе конвейером, и передает их устройствам строго по одному, как полудуплексная линия RS485: каждый кадр занимает
+ * линию на время передачи запроса и ответа в RTU на заданной скорости, паузы 3.5 символа между кадрами и задержку
+ * ответа устройства. Время можно сжать масштабом, 0 - без задержек. Для проверки отказоустойчивости на каждое
+ * устройство можно добавить задержку и отказы, а также разорвать все подключения. В прозрачном режиме шлюз принимает и
+ * отдает кадры RTU с CRC16 вместо Modbus TCP
+ */
+public class ModbusTcpSimulator implements AutoCloseable {
+    /* код исключения шлюза, когда устройство за ним не ответило */
+    public static final int GATEWAY_TARGET_FAILED = 0x0B;
+    private static final Logger logger = LoggerFactory.getLogger(ModbusTcpSimulator.class);
+    /* 8N1 - старт, 8 бит данных, стоп */
+    private static final int BITS_PER_CHAR = 10;
+    /* адрес устройства и CRC16 в кадре RTU вместо заголовка MBAP */
+    private static final int RTU_OVERHEAD = 3;
+    private static final double FRAME_SILENCE_CHARS = 3.5;
+    private final int baudRate;
+    private final Map<Integer, SimulatedDevice> devices = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> latencies = new ConcurrentHashMap<>();
+    private final Map<Integer, BlockingQueue<Fault>> faults = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Frame> line = new LinkedBlockingQueue<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile double timeScale = 1;
+    private volatile long lateResponseNanos = 0;
+    private volatile boolean rtuFraming = false;
+    private volatile boolean closed = false;
+    private ServerSocket serverSocket;
+    private Thread lineThread;
+    private int port;
+
+    /**
+     * @param baudRate скорость линии RS485, у шлюза в доме 9600
+     */
+    public ModbusTcpSimulator(int baudRate) {
+        this.baudRate = baudRate;
+    }
+
+    public ModbusTcpSimulator addDevice(int address, SimulatedDevice device) {
+        devices.put(address, device);
+        return this;
+    }
+
+    /**
+     * Масштаб времени линии и задержек устройств: 1 - как на реальной шине, 0 - ответ сразу
+     */
+    public void setTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * Прозрачный режим шлюза: кадры RTU over TCP вместо Modbus TCP
+     */
+    public void setRtuFraming(boolean rtuFraming) {
+        this.rtuFraming = rtuFraming;
+    }
+
+    /**
+     * Дополнительная задержка ответа устройства, линия в это время занята, как и на реальной шине
+     */
+    public void setLatency(int address, Duration latency) {
+        latencies.put(address, latency.toNanos());
+    }
+
+    /**
+     * На сколько опаздывает ответ при отказе LATE, масштаб времени на него не действует
+     */
+    public void setLateResponseDelay(Duration delay) {
+        this.lateResponseNanos = delay.toNanos();
+    }
+
+    /**
+     * Отказ на следующие запросы к устройству
+     *
+     * @param address modbus адрес устройства
+     * @param fault   вид отказа
+     * @param count   сколько запросов подряд завершатся отказом
+     */
+    public void injectFaults(int address, Fault fault, int count) {
+        BlockingQueue<Fault> queue = faults.computeIfAbsent(address, key -> new LinkedBlockingQueue<>());
+        for (int i = 0; i < count; i++) {
+            queue.add(fault);
+        }
+    }
+
+    /**
+     * Запуск на свободном порту localhost, порт доступен через getPort
+     */
+    public synchronized void start() throws IOException {
+        start(0);
+    }
+
+    /**
+     * Запуск на заданном порту, после stop можно запустить снова на том же порту
+     */
+    public synchronized void start(int port) throws IOException {
+        closed = false;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.port = serverSocket.getLocalPort();
+        lineThread = daemon(this::lineLoop, "modbus-simulator-line");
+        ServerSocket acceptingSocket = serverSocket;
+        daemon(() -> acceptLoop(acceptingSocket), "modbus-simulator-accept");
+        logger.info("Симулятор modbus шлюза слушает порт {}", this.port);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getHost() {
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    /**
+     * Разрыв всех подключений, как при перезагрузке шлюза, новые подключения принимаются
+     */
+    public void dropConnections() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Остановка шлюза: порт закрыт, подключения разорваны, кадры в очереди линии теряются
+     */
+    public synchronized void stop() {
+        closed = true;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+            serverSocket = null;
+        }
+        if (lineThread != null) {
+            lineThread.interrupt();
+            lineThread = null;
+        }
+        dropConnections();
+        line.clear();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * @return число кадров, дошедших до устройства по адресу, включая отказы
+     */
+    public long getRequestCount(int address) {
+        AtomicLong count = requestCounts.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return число кадров, оставленных без ответа
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void acceptLoop(ServerSocket acceptingSocket) {
+        while (!closed && !acceptingSocket.isClosed()) {
+            try {
+                Socket socket = acceptingSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                daemon(() -> readLoop(connection), "modbus-simulator-connection");
+            } catch (IOException e) {
+                if (!acceptingSocket.isClosed()) {
+                    logger.warn("Ошибка приема подключения симулятором modbus шлюза", e);
+                }
+            }
+        }
+    }
+
+    private void readLoop(Connection connection) {
+        byte[] header = new byte[ModbusTcpFrames.MBAP_HEADER_LENGTH];
+        byte[] rtuRequest = new byte[ModbusRtuFrames.REQUEST_LENGTH];
+        try {
+            DataInputStream input = new DataInputStream(connection.socket.getInputStream());
+            while (!closed) {
+                if (rtuFraming) {
+                    /* все поддерживаемые запросы одной длины */
+                    input.readFully(rtuRequest);
+                    int crc = ModbusRtuFrames.crc16(rtuRequest, 0, rtuRequest.length - 2);
+                    if (crc != ((rtuRequest[6] & 0xFF) | ((rtuRequest[7] & 0xFF) << 8))) {
+                        throw new IOException("Ошибка CRC запроса");
+                    }
+                    byte[] pdu = new byte[rtuRequest.length - ModbusRtuFrames.OVERHEAD];
+                    System.arraycopy(rtuRequest, 1, pdu, 0, pdu.length);
+                    line.add(new Frame(connection, 0, rtuRequest[0] & 0xFF, pdu));
+                    continue;
+                }
+                input.readFully(header);
+                int length = ModbusTcpFrames.getUnsignedShort(header, 4);
+                if (length < 2 || length > ModbusTcpFrames.MAX_PDU_LENGTH + 1) {
+                    throw new IOException("Некорректная длина кадра " + length);
+                }
+                byte[] pdu = new byte[length - 1];
+                input.readFully(pdu);
+                line.add(new Frame(connection, ModbusTcpFrames.getUnsignedShort(header, 0), header[6] & 0xFF, pdu));
+            }
+        } catch (IOException e) {
+            logger.debug("Подключение к симулятору modbus шлюза закрыто", e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void lineLoop() {
+        while (!closed) {
+            try {
+                transmit(line.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /* кадр занимает линию целиком: запрос, задержка устройства, ответ и паузы между кадрами */
+    private void transmit(Frame frame) throws InterruptedException {
+        requestCounts.computeIfAbsent(frame.address, key -> new AtomicLong()).incrementAndGet();
+        SimulatedDevice device = devices.get(frame.address);
+        BlockingQueue<Fault> deviceFaults = faults.get(frame.address);
+        Fault fault = deviceFaults == null ? null : deviceFaults.poll();
+        byte[] response;
+        if (device == null || fault == Fault.DROP) {
+            /* на RS485 никто не ответил, шлюз молчит, запрос уйдет по таймауту клиента */
+            response = null;
+        } else if (fault == Fault.EXCEPTION) {
+            response = SimulatedDevice.exception(frame.pdu[0] & 0xFF, GATEWAY_TARGET_FAILED);
+        } else {
+            response = handle(device, frame.pdu);
+        }
+        long lineNanos = charsNanos(frame.pdu.length + RTU_OVERHEAD + FRAME_SILENCE_CHARS)
+                + latencies.getOrDefault(frame.address, 0L);
+        if (response != null) {
+            lineNanos += charsNanos(response.length + RTU_OVERHEAD + FRAME_SILENCE_CHARS);
+        }
+        sleep(lineNanos);
+        if (fault == Fault.LATE) {
+            TimeUnit.NANOSECONDS.sleep(lateResponseNanos);
+        }
+        if (response == null) {
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        if (fault == Fault.DISCONNECT) {
+            frame.connection.close();
+            return;
+        }
+        frame.connection.send(frame.transactionId, frame.address, response);
+    }
+
+    private static byte[] handle(SimulatedDevice device, byte[] pdu) {
+        int functionCode = pdu[0] & 0xFF;
+        if (pdu.length < 5) {
+            return SimulatedDevice.exception(functionCode, SimulatedDevice.ILLEGAL_DATA_VALUE);
+        }
+        return device.handle(functionCode, ModbusTcpFrames.getUnsignedShort(pdu, 1),
+                ModbusTcpFrames.getUnsignedShort(pdu, 3));
+    }
+
+    private long charsNanos(double chars) {
+        return (long) (chars * BITS_PER_CHAR * TimeUnit.SECONDS.toNanos(1) / baudRate);
+    }
+
+    private void sleep(long nanos) throws InterruptedException {
+        long scaled = (long) (nanos * timeScale);
+        if (scaled > 0) {
+            TimeUnit.NANOSECONDS.sleep(scaled);
+        }
+    }
+
+    public enum Fault {
+        /* устройство не ответило, ответа от шлюза нет */
+        DROP,
+        /* шлюз ответил исключением modbus 0x0B */
+        EXCEPTION,
+        /* шлюз разорвал подключение вместо ответа */
+        DISCONNECT,
+        /* устройство ответило позже, чем клиент ждет ответ, линия все это время занята */
+        LATE
+    }
+
+    private record Frame(Connection connection, int transactionId, int address, byte[] pdu) {
+    }
+
+    private class Connection {
+        private final Socket socket;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        private synchronized void send(int transactionId, int address, byte[] pdu) {
+            if (socket.isClosed()) {
+                return;
+            }
+            byte[] frame = rtuFraming ? rtuFrame(address, pdu) : tcpFrame(transactionId, address, pdu);
+            try {
+                OutputStream output = socket.getOutputStream();
+                output.write(frame);
+                output.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private static byte[] tcpFrame(int transactionId, int address, byte[] pdu) {
+            byte[] frame = new byte[ModbusTcpFrames.MBAP_HEADER_LENGTH + pdu.length];
+            frame[0] = (byte) (transactionId >> 8);
+            frame[1] = (byte) transactionId;
+            frame[4] = (byte) ((pdu.length + 1) >> 8);
+            frame[5] = (byte) (pdu.length + 1);
+            frame[6] = (byte) address;
+            System.arraycopy(pdu, 0, frame, ModbusTcpFrames.MBAP_HEADER_LENGTH, pdu.length);
+            return frame;
+        }
+
+        private static byte[] rtuFrame(int address, byte[] pdu) {
+            byte[] frame = new byte[pdu.length + ModbusRtuFrames.OVERHEAD];
+            frame[0] = (byte) address;
+            System.arraycopy(pdu, 0, frame, 1, pdu.length);
+            int crc = ModbusRtuFrames.crc16(frame, 0, frame.length - 2);
+            frame[frame.length - 2] = (byte) crc;
+            frame[frame.length - 1] = (byte) (crc >> 8);
+            return frame;
+        }
+
+        private void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
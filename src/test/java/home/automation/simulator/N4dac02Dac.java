@@ -0,0 +1,17 @@
+package home.automation.simulator;
+
+/**
+ * ЦАП N4DAC02: два канала 0-10 В в holding регистрах 0 и 1, значение в сотых вольта (F03, F06)
+ */
+public class N4dac02Dac extends SimulatedDevice {
+    public static final int CHANNELS = 2;
+    public static final int MAX_VALUE = 1000;
+
+    public N4dac02Dac() {
+        super("N4DAC02", 0, 0, CHANNELS, true);
+    }
+
+    public float getVoltage(int channel) {
+        return Math.min(getHoldingRegister(channel), MAX_VALUE) / 100F;
+    }
+}
@@ -0,0 +1,26 @@
+package home.automation.simulator;
+
+import home.automation.model.TemperatureSensorsBoardData;
+
+/**
+ * Плата R4DCB08: восемь каналов DS18B20 в holding регистрах 0-7, температура в десятых градуса в дополнительном коде,
+ * канал без датчика отдает 0x8000
+ */
+public class R4dcb08Board extends SimulatedDevice {
+    public static final int CHANNELS = 8;
+
+    public R4dcb08Board() {
+        super("R4DCB08", 0, 0, CHANNELS, false);
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            disconnectSensor(channel);
+        }
+    }
+
+    public void setTemperature(int channel, float temperature) {
+        setHoldingRegister(channel, Math.round(temperature * 10));
+    }
+
+    public void disconnectSensor(int channel) {
+        setHoldingRegister(channel, TemperatureSensorsBoardData.TEMPERATURE_SENSOR_BORDER_VALUE);
+    }
+}
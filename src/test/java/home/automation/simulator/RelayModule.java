@@ -0,0 +1,13 @@
+package home.automation.simulator;
+
+import home.automation.enums.RelayModuleModel;
+
+/**
+ * Релейный модуль CHINALCTECH 2IN-2OUT: две катушки (F01, F05) и два дискретных входа (F02)
+ */
+public class RelayModule extends SimulatedDevice {
+    public RelayModule() {
+        super("CHINALCTECH 2IN-2OUT", RelayModuleModel.CHINALCTECH_2IN_2OUT.getCoils(),
+                RelayModuleModel.CHINALCTECH_2IN_2OUT.getDiscreteInputs(), 0, false);
+    }
+}
@@ -0,0 +1,158 @@
+package home.automation.simulator;
+
+import home.automation.modbus.ModbusTcpFrames;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Устройство на шине RS485 за шлюзом: банки катушек, дискретных входов и holding регистров и разбор PDU поддерживаемых
+ * функций F01, F02, F03, F05, F06. Обращение за пределы банка отвечает исключением modbus 2, неподдерживаемая
+ * функция - исключением 1, как у реальных устройств. Состояние меняют и шина, и тест, поэтому методы синхронизированы
+ */
+public class SimulatedDevice {
+    public static final int ILLEGAL_FUNCTION = 1;
+    public static final int ILLEGAL_DATA_ADDRESS = 2;
+    public static final int ILLEGAL_DATA_VALUE = 3;
+    private static final int EXCEPTION_FLAG = 0x80;
+    private static final int COIL_ON = 0xFF00;
+    private final String name;
+    private final boolean[] coils;
+    private final boolean[] discreteInputs;
+    private final int[] holdingRegisters;
+    private final boolean writableRegisters;
+    private final List<Runnable> writeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param name              название для сообщений
+     * @param coils             число катушек
+     * @param discreteInputs    число дискретных входов
+     * @param holdingRegisters  число holding регистров
+     * @param writableRegisters можно ли писать регистры функцией F06
+     */
+    protected SimulatedDevice(String name, int coils, int discreteInputs, int holdingRegisters,
+                              boolean writableRegisters) {
+        this.name = name;
+        this.coils = new boolean[coils];
+        this.discreteInputs = new boolean[discreteInputs];
+        this.holdingRegisters = new int[holdingRegisters];
+        this.writableRegisters = writableRegisters;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Подписка на запись по шине, слушатель вызывается до изменения состояния, чтобы успеть учесть прошлое
+     */
+    public void onBeforeWrite(Runnable listener) {
+        writeListeners.add(listener);
+    }
+
+    public synchronized boolean getCoil(int coil) {
+        return coils[coil];
+    }
+
+    public synchronized void setCoil(int coil, boolean value) {
+        coils[coil] = value;
+    }
+
+    public synchronized boolean getDiscreteInput(int input) {
+        return discreteInputs[input];
+    }
+
+    public synchronized void setDiscreteInput(int input, boolean value) {
+        discreteInputs[input] = value;
+    }
+
+    public synchronized int getHoldingRegister(int register) {
+        return holdingRegisters[register];
+    }
+
+    public synchronized void setHoldingRegister(int register, int value) {
+        holdingRegisters[register] = value & 0xFFFF;
+    }
+
+    /**
+     * Обработка запроса
+     *
+     * @param functionCode код функции
+     * @param first        адрес первой катушки или регистра
+     * @param second       количество или записываемое значение
+     * @return PDU ответа, в том числе исключения
+     */
+    public byte[] handle(int functionCode, int first, int second) {
+        return switch (functionCode) {
+            case ModbusTcpFrames.READ_COILS -> readBits(functionCode, coils, first, second);
+            case ModbusTcpFrames.READ_DISCRETE_INPUTS -> readBits(functionCode, discreteInputs, first, second);
+            case ModbusTcpFrames.READ_HOLDING_REGISTERS -> readRegisters(functionCode, first, second);
+            case ModbusTcpFrames.WRITE_SINGLE_COIL -> writeCoil(functionCode, first, second);
+            case ModbusTcpFrames.WRITE_SINGLE_REGISTER -> writableRegisters
+                    ? writeRegister(functionCode, first, second)
+                    : exception(functionCode, ILLEGAL_FUNCTION);
+            default -> exception(functionCode, ILLEGAL_FUNCTION);
+        };
+    }
+
+    private synchronized byte[] readBits(int functionCode, boolean[] bits, int start, int quantity) {
+        if (quantity < 1 || start + quantity > bits.length) {
+            return exception(functionCode, ILLEGAL_DATA_ADDRESS);
+        }
+        int byteCount = (quantity + 7) / 8;
+        byte[] pdu = new byte[2 + byteCount];
+        pdu[0] = (byte) functionCode;
+        pdu[1] = (byte) byteCount;
+        for (int i = 0; i < quantity; i++) {
+            if (bits[start + i]) {
+                pdu[2 + i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        return pdu;
+    }
+
+    private synchronized byte[] readRegisters(int functionCode, int start, int quantity) {
+        if (quantity < 1 || start + quantity > holdingRegisters.length) {
+            return exception(functionCode, ILLEGAL_DATA_ADDRESS);
+        }
+        byte[] pdu = new byte[2 + quantity * 2];
+        pdu[0] = (byte) functionCode;
+        pdu[1] = (byte) (quantity * 2);
+        for (int i = 0; i < quantity; i++) {
+            pdu[2 + i * 2] = (byte) (holdingRegisters[start + i] >> 8);
+            pdu[3 + i * 2] = (byte) holdingRegisters[start + i];
+        }
+        return pdu;
+    }
+
+    private byte[] writeCoil(int functionCode, int coil, int value) {
+        if (coil >= coils.length) {
+            return exception(functionCode, ILLEGAL_DATA_ADDRESS);
+        }
+        if (value != COIL_ON && value != 0) {
+            return exception(functionCode, ILLEGAL_DATA_VALUE);
+        }
+        writeListeners.forEach(Runnable::run);
+        setCoil(coil, value == COIL_ON);
+        return echo(functionCode, coil, value);
+    }
+
+    private byte[] writeRegister(int functionCode, int register, int value) {
+        if (register >= holdingRegisters.length) {
+            return exception(functionCode, ILLEGAL_DATA_ADDRESS);
+        }
+        writeListeners.forEach(Runnable::run);
+        setHoldingRegister(register, value);
+        return echo(functionCode, register, value);
+    }
+
+    /* ответ на запись повторяет запрос */
+    private static byte[] echo(int functionCode, int first, int second) {
+        return new byte[]{(byte) functionCode, (byte) (first >> 8), (byte) first, (byte) (second >> 8),
+                (byte) second};
+    }
+
+    public static byte[] exception(int functionCode, int exceptionCode) {
+        return new byte[]{(byte) (functionCode | EXCEPTION_FLAG), (byte) exceptionCode};
+    }
+}
@@ -0,0 +1,173 @@
+package home.automation.simulator;
+
+import home.automation.configuration.ModbusCircuitBreakerConfiguration;
+import home.automation.configuration.ModbusConfiguration;
+import home.automation.configuration.ModbusSegmentsConfiguration;
+import home.automation.configuration.ModbusTimingConfiguration;
+import home.automation.configuration.RelayModulesConfiguration;
+import home.automation.enums.RelayModuleModel;
+import home.automation.service.impl.ModbusServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Шина дома в симуляторе: устройства на тех же адресах, что и в application.yml, и клапан подмеса на реле 2 и ЦАП 5.
+ * Дает настоящий ModbusServiceImpl, подключенный к симулятору, чтобы тесты и бенчмарки проходили весь стек шины
+ */
+public class SimulatedPlant implements AutoCloseable {
+    public static final int BAUD_RATE = 9600;
+    public static final int TEMPERATURE_BOARD_ADDRESS = 1;
+    public static final int VALVE_RELAY_ADDRESS = 2;
+    public static final int VALVE_POWER_COIL = 1;
+    public static final int DAC_ADDRESS = 5;
+    public static final int VALVE_DAC_CHANNEL = 1;
+    public static final int UNIVERSAL_SENSOR_ADDRESS = 7;
+    public static final String SECOND_GATEWAY = "second";
+    private static final int[] RELAY_ADDRESSES = {2, 3, 4, 6};
+    private final ModbusTcpSimulator simulator = new ModbusTcpSimulator(BAUD_RATE);
+    /* второй шлюз со своей линией RS485, запускается только для тестов сегментов */
+    private final ModbusTcpSimulator secondSimulator = new ModbusTcpSimulator(BAUD_RATE);
+    private final Map<Integer, SimulatedDevice> devices = new TreeMap<>();
+    private final R4dcb08Board temperatureBoard = new R4dcb08Board();
+    private final Map<Integer, RelayModule> relays = new TreeMap<>();
+    private final N4dac02Dac dac = new N4dac02Dac();
+    private final Co2Rs485Sensor universalSensor = new Co2Rs485Sensor();
+    private final Ara659Valve valve;
+
+    /**
+     * @param valveStroke время полного хода клапана, у привода в доме 52 секунды
+     */
+    public SimulatedPlant(Duration valveStroke) throws IOException {
+        devices.put(TEMPERATURE_BOARD_ADDRESS, temperatureBoard);
+        for (int address : RELAY_ADDRESSES) {
+            RelayModule relay = new RelayModule();
+            relays.put(address, relay);
+            devices.put(address, relay);
+        }
+        devices.put(DAC_ADDRESS, dac);
+        devices.put(UNIVERSAL_SENSOR_ADDRESS, universalSensor);
+        devices.forEach(simulator::addDevice);
+        valve = new Ara659Valve(relays.get(VALVE_RELAY_ADDRESS), VALVE_POWER_COIL, dac, VALVE_DAC_CHANNEL,
+                valveStroke);
+        simulator.start();
+    }
+
+    /**
+     * Сервис шины с настройками как в application.yml, кроме адреса шлюза и пауз переподключения
+     *
+     * @param transport       nio или jlibmodbus
+     * @param delay           пауза после кадра, миллисекунд
+     * @param responseTimeout время ожидания ответа
+     * @param meterRegistry   реестр метрик
+     */
+    public ModbusServiceImpl createModbusService(String transport, int delay, Duration responseTimeout,
+                                                 MeterRegistry meterRegistry) {
+        return createModbusService(transport, "tcp", delay, responseTimeout, meterRegistry);
+    }
+
+    /**
+     * То же с выбором кадров, для rtu симулятор переключается в прозрачный режим
+     *
+     * @param framing tcp или rtu
+     */
+    public ModbusServiceImpl createModbusService(String transport, String framing, int delay,
+                                                 Duration responseTimeout, MeterRegistry meterRegistry) {
+        return createModbusService(transport, framing, delay, responseTimeout, Set.of(), meterRegistry);
+    }
+
+    /**
+     * Сервис шины на двух шлюзах: перечисленные устройства переносятся на линию второго шлюза и опрашиваются через
+     * него, остальные через первый
+     *
+     * @param secondGatewaySlaves modbus адреса устройств на втором шлюзе
+     */
+    public ModbusServiceImpl createShardedModbusService(String transport, int delay, Duration responseTimeout,
+                                                        Set<Integer> secondGatewaySlaves,
+                                                        MeterRegistry meterRegistry) throws IOException {
+        for (int address : secondGatewaySlaves) {
+            secondSimulator.addDevice(address, devices.get(address));
+        }
+        secondSimulator.start();
+        return createModbusService(transport, "tcp", delay, responseTimeout, secondGatewaySlaves, meterRegistry);
+    }
+
+    private ModbusServiceImpl createModbusService(String transport, String framing, int delay,
+                                                  Duration responseTimeout, Set<Integer> secondGatewaySlaves,
+                                                  MeterRegistry meterRegistry) {
+        simulator.setRtuFraming("rtu".equals(framing));
+        ModbusConfiguration modbusConfiguration = new ModbusConfiguration();
+        ReflectionTestUtils.setField(modbusConfiguration, "host", simulator.getHost());
+        ReflectionTestUtils.setField(modbusConfiguration, "port", simulator.getPort());
+        ReflectionTestUtils.setField(modbusConfiguration, "delay", delay);
+        ReflectionTestUtils.setField(modbusConfiguration, "transport", transport);
+        ReflectionTestUtils.setField(modbusConfiguration, "framing", framing);
+        ReflectionTestUtils.setField(modbusConfiguration, "maxInFlight", 4);
+        ReflectionTestUtils.setField(modbusConfiguration, "responseTimeout", responseTimeout);
+        ReflectionTestUtils.setField(modbusConfiguration, "queueCapacity", 64);
+        ReflectionTestUtils.setField(modbusConfiguration, "staleAfter", Duration.ofSeconds(15));
+        /* в тестах связь восстанавливается за десятки миллисекунд, а не секунды */
+        ReflectionTestUtils.setField(modbusConfiguration, "reconnectInitialBackoff", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(modbusConfiguration, "reconnectMaxBackoff", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(modbusConfiguration, "failuresToReconnect", 5);
+        ModbusCircuitBreakerConfiguration circuitBreakerConfiguration = new ModbusCircuitBreakerConfiguration();
+        ReflectionTestUtils.setField(circuitBreakerConfiguration, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreakerConfiguration, "failureThreshold", 3);
+        ReflectionTestUtils.setField(circuitBreakerConfiguration, "probeInterval", Duration.ofMillis(200));
+        RelayModulesConfiguration relayModulesConfiguration = new RelayModulesConfiguration();
+        for (int address : RELAY_ADDRESSES) {
+            relayModulesConfiguration.getModels().put(address, RelayModuleModel.CHINALCTECH_2IN_2OUT);
+        }
+        ModbusSegmentsConfiguration segmentsConfiguration = new ModbusSegmentsConfiguration();
+        if (!secondGatewaySlaves.isEmpty()) {
+            ModbusSegmentsConfiguration.Gateway gateway = new ModbusSegmentsConfiguration.Gateway();
+            gateway.setHost(secondSimulator.getHost());
+            gateway.setPort(secondSimulator.getPort());
+            segmentsConfiguration.getGateways().put(SECOND_GATEWAY, gateway);
+            for (int address : secondGatewaySlaves) {
+                segmentsConfiguration.getRouting().put(address, SECOND_GATEWAY);
+            }
+        }
+        return new ModbusServiceImpl(modbusConfiguration, new ModbusTimingConfiguration(), segmentsConfiguration,
+                relayModulesConfiguration, circuitBreakerConfiguration, meterRegistry);
+    }
+
+    public ModbusTcpSimulator getSimulator() {
+        return simulator;
+    }
+
+    public ModbusTcpSimulator getSecondSimulator() {
+        return secondSimulator;
+    }
+
+    public R4dcb08Board getTemperatureBoard() {
+        return temperatureBoard;
+    }
+
+    public RelayModule getRelay(int address) {
+        return relays.get(address);
+    }
+
+    public N4dac02Dac getDac() {
+        return dac;
+    }
+
+    public Co2Rs485Sensor getUniversalSensor() {
+        return universalSensor;
+    }
+
+    public Ara659Valve getValve() {
+        return valve;
+    }
+
+    @Override
+    public void close() {
+        simulator.close();
+        secondSimulator.close();
+    }
+}